@@ -0,0 +1,60 @@
+package com.mimiclone.fips202.keccak.core;
+
+import com.mimiclone.fips203.hash.XOFParameterSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single Keccak-f[1600] permutation of one state, and of four states at once with each of the
+ * {@link Keccak1600x4} permutations.  One {@code permuteX4} operation permutes four states, so it breaks even with
+ * {@code permute} at a quarter of its throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+	@State(Scope.Thread)
+	public static class Single {
+
+		private Keccak1600 keccak;
+
+		@Setup
+		public void setUp() {
+			keccak = new Keccak1600(XOFParameterSet.SHAKE128.getCapacityInBits());
+			keccak.setXorBytes(0, new byte[] {1, 2, 3, 4}, 0, 4);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Quadruple {
+
+		@Param({"scalar", "vector"})
+		public String permutation;
+
+		private Keccak1600x4 keccak;
+
+		@Setup
+		public void setUp() {
+			keccak = Keccak1600x4.create(XOFParameterSet.SHAKE128.getCapacityInBits(), permutation);
+			for (int i = 0; i < Keccak1600x4.INSTANCES; i++) {
+				keccak.xorBytes(i, 0, new byte[] {1, 2, 3, (byte) i}, 0, 4);
+			}
+		}
+	}
+
+	@Benchmark
+	public Keccak1600 permute(Single state) {
+		state.keccak.permute();
+		return state.keccak;
+	}
+
+	@Benchmark
+	public Keccak1600x4 permuteX4(Quadruple state) {
+		state.keccak.permute();
+		return state.keccak;
+	}
+}
@@ -0,0 +1,53 @@
+package com.mimiclone.fips202.keccak.core;
+
+import com.mimiclone.fips203.hash.XOFParameterSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SHAKE128 and SHAKE256 through the byte-aligned absorb/squeeze fast path and through the bit streams.
+ * Each operation absorbs and then squeezes {@code length} bytes, so throughput in MB/s is ops/s times
+ * {@code 2 * length} bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShakeBenchmark {
+
+	@Param({"SHAKE128", "SHAKE256"})
+	public XOFParameterSet xof;
+
+	@Param({"34", "504", "4096"})
+	public int length;
+
+	private KeccakSponge sponge;
+	private byte[] message;
+	private byte[] digest;
+
+	@Setup
+	public void setUp() {
+		sponge = new KeccakSponge(xof);
+		message = new byte[length];
+		new Random(202).nextBytes(message);
+		digest = new byte[length];
+	}
+
+	@Benchmark
+	public byte[] fastPath() {
+		sponge.absorb(message);
+		sponge.squeeze(digest);
+		return digest;
+	}
+
+	@Benchmark
+	public byte[] bitStreams() {
+		sponge.getAbsorbStream().write(message);
+		sponge.getSqueezeStream().read(digest);
+		return digest;
+	}
+}
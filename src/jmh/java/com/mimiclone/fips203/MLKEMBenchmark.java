@@ -0,0 +1,67 @@
+package com.mimiclone.fips203;
+
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.message.CipherText;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures key generation, encapsulation and decapsulation through {@link MimicloneFIPS203} on a single thread.
+ * Every thread shares one instance, so {@link Concurrent} measures the same operations with a thread per processor
+ * contending for it.
+ * <p>
+ * Latency percentiles and allocation rates are reported by running with {@code -bm sample -tu us -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class MLKEMBenchmark {
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    private FIPS203 fips203;
+    private KeyPair keyPair;
+    private CipherText cipherText;
+
+    @Setup
+    public void setUp() {
+        fips203 = MimicloneFIPS203.create(parameterSet);
+        keyPair = fips203.generateKeyPair();
+        cipherText = fips203.encapsulate(keyPair.getEncapsulationKey()).getCipherText();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fips203.close();
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() {
+        return fips203.generateKeyPair();
+    }
+
+    @Benchmark
+    public Encapsulation encapsulate() {
+        return fips203.encapsulate(keyPair.getEncapsulationKey());
+    }
+
+    @Benchmark
+    public SharedSecretKey decapsulate() {
+        return fips203.decapsulate(keyPair.getDecapsulationKey(), cipherText);
+    }
+
+    /**
+     * The same benchmarks with one thread per available processor.
+     */
+    @Threads(Threads.MAX)
+    public static class Concurrent extends MLKEMBenchmark {
+    }
+}
@@ -0,0 +1,65 @@
+package com.mimiclone.fips203.codec;
+
+import com.mimiclone.fips203.ParameterSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ByteEncode and ByteDecode, alone and fused with Compress and Decompress, for every coefficient bit
+ * length used by ML-KEM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"1", "4", "5", "10", "11", "12"})
+    public int d;
+
+    private Codec codec;
+    private int[] poly;
+    private int[] decoded;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        codec = MLKEMCodec.create(ParameterSet.ML_KEM_768);
+        Random random = new Random(203);
+        poly = new int[256];
+        for (int i = 0; i < 256; i++) {
+            poly[i] = random.nextInt(1 << d) % 3329;
+        }
+        decoded = new int[256];
+        encoded = codec.byteEncode(d, poly);
+    }
+
+    @Benchmark
+    public byte[] byteEncode() {
+        codec.byteEncode(d, poly, encoded, 0);
+        return encoded;
+    }
+
+    @Benchmark
+    public int[] byteDecode() {
+        codec.byteDecode(d, encoded, 0, decoded);
+        return decoded;
+    }
+
+    @Benchmark
+    public byte[] compressEncode() {
+        codec.compressEncode(d, poly, encoded, 0);
+        return encoded;
+    }
+
+    @Benchmark
+    public int[] decodeDecompress() {
+        codec.decodeDecompress(d, encoded, 0, decoded);
+        return decoded;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.mimiclone.fips203.hash;
+
+import com.mimiclone.fips203.ParameterSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hash functions as ML-KEM calls them: G over {@code m || H(ek)}, H over the encapsulation key, J over
+ * {@code z || c} and the eta1 PRF, each through the allocation free overloads where there is one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    private Hash hash;
+    private byte[] gInput;
+    private byte[] encapsulationKey;
+    private byte[] z;
+    private byte[] cipherText;
+    private byte[] digest;
+
+    @Setup
+    public void setUp() {
+        hash = MLKEMHash.create(parameterSet);
+        Random random = new Random(203);
+        gInput = new byte[64];
+        random.nextBytes(gInput);
+        encapsulationKey = new byte[parameterSet.getEncapsulationKeyLength()];
+        random.nextBytes(encapsulationKey);
+        z = new byte[32];
+        random.nextBytes(z);
+        cipherText = new byte[parameterSet.getCiphertextLength()];
+        random.nextBytes(cipherText);
+        digest = new byte[64];
+    }
+
+    @Benchmark
+    public byte[] gHash() {
+        hash.gHash(gInput, 0, gInput.length, digest);
+        return digest;
+    }
+
+    @Benchmark
+    public byte[] hHash() {
+        hash.hHash(encapsulationKey, 0, encapsulationKey.length, digest);
+        return digest;
+    }
+
+    @Benchmark
+    public byte[] jHash() {
+        hash.jHash(z, 0, cipherText, digest);
+        return digest;
+    }
+
+    @Benchmark
+    public byte[] prfEta1() {
+        return hash.prfEta1(z, (byte) 0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.mimiclone.fips203.provider;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
+import com.mimiclone.fips203.message.CipherText;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.KEM;
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encapsulation and decapsulation through {@code javax.crypto.KEM}, looking up the KEM and creating the
+ * encapsulator or decapsulator for every operation, with the same operations on {@link MimicloneFIPS203} and
+ * prepared keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KEMBenchmark {
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    private FIPS203 fips203;
+    private PreparedEncapsulationKey encapsulationKey;
+    private PreparedDecapsulationKey decapsulationKey;
+    private MLKEMPublicKey publicKey;
+    private MLKEMPrivateKey privateKey;
+    private CipherText cipherText;
+    private byte[] encapsulation;
+
+    @Setup
+    public void setUp() {
+        Security.addProvider(new MimicloneSecurityProvider());
+        fips203 = MimicloneFIPS203.create(parameterSet);
+        KeyPair keyPair = fips203.generateKeyPair();
+        encapsulationKey = fips203.prepare(keyPair.getEncapsulationKey());
+        decapsulationKey = fips203.prepare(keyPair.getDecapsulationKey());
+        publicKey = MLKEMPublicKey.create(parameterSet, keyPair.getEncapsulationKey());
+        privateKey = MLKEMPrivateKey.create(parameterSet, keyPair.getDecapsulationKey());
+        cipherText = fips203.encapsulate(encapsulationKey).getCipherText();
+        encapsulation = cipherText.getBytes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fips203.close();
+    }
+
+    @Benchmark
+    public Encapsulation encapsulate() {
+        return fips203.encapsulate(encapsulationKey);
+    }
+
+    @Benchmark
+    public KEM.Encapsulated kemEncapsulate() throws GeneralSecurityException {
+        return KEM.getInstance(parameterSet.getName(), MimicloneSecurityProvider.PROVIDER_NAME)
+                .newEncapsulator(publicKey)
+                .encapsulate();
+    }
+
+    @Benchmark
+    public SharedSecretKey decapsulate() {
+        return fips203.decapsulate(decapsulationKey, cipherText);
+    }
+
+    @Benchmark
+    public SecretKey kemDecapsulate() throws GeneralSecurityException {
+        return KEM.getInstance(parameterSet.getName(), MimicloneSecurityProvider.PROVIDER_NAME)
+                .newDecapsulator(privateKey)
+                .decapsulate(encapsulation);
+    }
+}
@@ -0,0 +1,119 @@
+package com.mimiclone.fips203.reduce;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.barrett.BarrettReducer;
+import com.mimiclone.fips203.reduce.montgomery.MontgomeryReducer;
+import com.mimiclone.fips203.transform.MLKEMTransformer;
+import com.mimiclone.fips203.transform.Transformer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Barrett and Montgomery reduction backends, both in isolation and when driving the NTT operations
+ * that dominate key generation, encapsulation and decapsulation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReducerBenchmark {
+
+    @Param({"barrett", "montgomery"})
+    public String reducerType;
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    private Reducer reducer;
+    private Transformer transformer;
+
+    private int[] poly;
+    private int[] polyHat;
+    private int[] scratch;
+    private int[][] vector;
+    private int[][] accumulator;
+    private int[][][] matrix;
+
+    @Setup
+    public void setUp() {
+
+        reducer = switch (reducerType) {
+            case "barrett" -> BarrettReducer.create(parameterSet);
+            case "montgomery" -> MontgomeryReducer.create(parameterSet);
+            default -> throw new IllegalArgumentException(reducerType);
+        };
+        transformer = MLKEMTransformer.create(parameterSet, reducer);
+
+        Random random = new Random(203);
+        int k = parameterSet.getK();
+
+        poly = randomPolynomial(random);
+        polyHat = randomPolynomial(random);
+        scratch = new int[256];
+        vector = new int[k][];
+        accumulator = new int[k][256];
+        matrix = new int[k][k][];
+        for (int i = 0; i < k; i++) {
+            vector[i] = randomPolynomial(random);
+            for (int j = 0; j < k; j++) {
+                matrix[i][j] = randomPolynomial(random);
+            }
+        }
+
+    }
+
+    private static int[] randomPolynomial(Random random) {
+        int[] result = new int[256];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = random.nextInt(3329);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int multiplyPolynomials() {
+        int acc = 0;
+        for (int i = 0; i < 256; i++) {
+            acc = reducer.add(acc, reducer.multiply(poly[i], polyHat[i]));
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int[] transformInPlace() {
+        System.arraycopy(poly, 0, scratch, 0, 256);
+        transformer.transformInPlace(scratch, 0);
+        return scratch;
+    }
+
+    @Benchmark
+    public int[] inverseInPlace() {
+        System.arraycopy(polyHat, 0, scratch, 0, 256);
+        transformer.inverseInPlace(scratch, 0);
+        return scratch;
+    }
+
+    @Benchmark
+    public int[] multiplyNTTs() {
+        return transformer.multiplyNTTs(poly, polyHat);
+    }
+
+    @Benchmark
+    public int[][] matrixMultiply() {
+        return transformer.matrixMultiply(matrix, vector);
+    }
+
+    @Benchmark
+    public int[][] matrixTransposeMultiplyAccumulate() {
+        for (int[] row : accumulator) {
+            System.arraycopy(poly, 0, row, 0, 256);
+        }
+        transformer.matrixTransposeMultiplyAccumulate(matrix, vector, accumulator);
+        return accumulator;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.mimiclone.fips203.sample;
+
+import com.mimiclone.fips202.keccak.core.Keccak1600x4;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.hash.Hash;
+import com.mimiclone.fips203.hash.MLKEMHash;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the expansion of the k*k matrix A-hat from rho, one SHAKE128 instance at a time and four at a time with
+ * each of the {@link Keccak1600x4} permutations, and likewise the sampling of the 2k noise polynomials of key
+ * generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SamplerBenchmark {
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    @Param({"scalar", "vector"})
+    public String permutation;
+
+    private Sampler sampler;
+    private Hash hash;
+    private byte[] rho;
+    private byte[] indices;
+    private int[][] matrix;
+    private int[][] noise;
+
+    @Setup
+    public void setUp() {
+        System.setProperty(Keccak1600x4.PERMUTATION_PROPERTY, permutation);
+        sampler = MLKEMSampler.create(parameterSet);
+        hash = MLKEMHash.create(parameterSet);
+        rho = new byte[32];
+        new Random(203).nextBytes(rho);
+        int k = parameterSet.getK();
+        matrix = new int[k * k][256];
+        noise = new int[2 * k][256];
+        indices = new byte[2 * k * k];
+        for (int i = 0; i < k * k; i++) {
+            indices[2 * i] = (byte) (i / k);
+            indices[2 * i + 1] = (byte) (i % k);
+        }
+    }
+
+    @Benchmark
+    public int[][] sampleNTT() {
+        for (int i = 0; i < matrix.length; i++) {
+            sampler.sampleNTT(rho, indices[2 * i], indices[2 * i + 1], matrix[i]);
+        }
+        return matrix;
+    }
+
+    @Benchmark
+    public int[][] sampleNTTBatch() {
+        sampler.sampleNTTBatch(rho, indices, matrix);
+        return matrix;
+    }
+
+    @Benchmark
+    public int[][] samplePolyCBD() {
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = sampler.samplePolyCBDEta1(hash.prfEta1(rho, (byte) i));
+        }
+        return noise;
+    }
+
+    @Benchmark
+    public int[][] sampleNoiseVector() {
+        sampler.sampleNoiseVector(rho, 0, parameterSet.getEta1(), noise);
+        return noise;
+    }
+}
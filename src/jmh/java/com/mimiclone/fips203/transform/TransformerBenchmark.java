@@ -0,0 +1,93 @@
+package com.mimiclone.fips203.transform;
+
+import com.mimiclone.fips203.ParameterSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the NTT, its inverse and the NTT domain products ML-KEM is built from, for every {@link Transformer}
+ * implementation.  The vector implementation falls back to the scalar one unless the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, which the {@code jmh} task does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformerBenchmark {
+
+    @Param({"ML_KEM_512", "ML_KEM_768", "ML_KEM_1024"})
+    public ParameterSet parameterSet;
+
+    @Param({"scalar", "lazy", "vector"})
+    public String implementation;
+
+    private Transformer transformer;
+    private int[] poly;
+    private int[] work;
+    private int[][][] matrix;
+    private int[][] vector;
+    private int[][] productVector;
+    private int[] productPolynomial;
+
+    private static int[] randomPoly(Random random) {
+        int[] poly = new int[256];
+        for (int i = 0; i < 256; i++) {
+            poly[i] = random.nextInt(3329);
+        }
+        return poly;
+    }
+
+    @Setup
+    public void setUp() {
+        transformer = TransformerFactory.create(parameterSet, implementation);
+        Random random = new Random(203);
+        int k = parameterSet.getK();
+        poly = randomPoly(random);
+        work = new int[256];
+        matrix = new int[k][k][];
+        vector = new int[k][];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                matrix[i][j] = randomPoly(random);
+            }
+            vector[i] = randomPoly(random);
+        }
+        productVector = new int[k][256];
+        productPolynomial = new int[256];
+    }
+
+    @Benchmark
+    public int[] transform() {
+        System.arraycopy(poly, 0, work, 0, 256);
+        transformer.transformInPlace(work, 0);
+        return work;
+    }
+
+    @Benchmark
+    public int[] inverse() {
+        System.arraycopy(poly, 0, work, 0, 256);
+        transformer.inverseInPlace(work, 0);
+        return work;
+    }
+
+    @Benchmark
+    public int[] multiplyNTTs() {
+        return transformer.multiplyNTTs(poly, vector[0]);
+    }
+
+    @Benchmark
+    public int[][] matrixMultiplyAccumulate() {
+        transformer.matrixMultiplyAccumulate(matrix, vector, productVector);
+        return productVector;
+    }
+
+    @Benchmark
+    public int[] vectorTransposeMultiplyAccumulate() {
+        transformer.vectorTransposeMultiplyAccumulate(vector, vector, productPolynomial);
+        return productPolynomial;
+    }
+}
@@ -42,6 +42,39 @@ public class CryptoUtils {
 
     }
 
+    /**
+     * Compares two arrays in time that depends only on their lengths, never on their contents.
+     *
+     * @return {@code -1} (all bits set) if the arrays differ and {@code 0} if they are equal
+     */
+    public static int differenceMask(byte[] a, byte[] b) {
+
+        // The lengths are public, so arrays of different lengths may be rejected straight away
+        if (a.length != b.length) {
+            return -1;
+        }
+
+        int difference = 0;
+        for (int i = 0; i < a.length; i++) {
+            // Mask off the sign extension, so that difference stays within 0..255
+            difference |= (a[i] ^ b[i]) & 0xFF;
+        }
+
+        // (difference - 1) has its sign bit set only when difference is 0
+        return ~((difference - 1) >> 31);
+
+    }
+
+    /**
+     * Copies the first {@code length} bytes of {@code from} over those of {@code to} when {@code mask} is
+     * {@code -1} and leaves {@code to} unchanged when it is {@code 0}, without branching on {@code mask}.
+     */
+    public static void conditionalCopy(int mask, byte[] from, byte[] to, int length) {
+        for (int i = 0; i < length; i++) {
+            to[i] = (byte) (to[i] ^ ((to[i] ^ from[i]) & mask));
+        }
+    }
+
     public static void zero(byte[] toZero) {
         Arrays.fill(toZero, (byte) 0);
     }
@@ -56,6 +89,16 @@ public class CryptoUtils {
         }
     }
 
+    public static void zero(short[] toZero) {
+        Arrays.fill(toZero, (short) 0);
+    }
+
+    public static void zero(short[][] toZero) {
+        for (short[] shorts : toZero) {
+            Arrays.fill(shorts, (short) 0);
+        }
+    }
+
     public static void zero(int[][][] toZero) {
         for (int[][] ints : toZero) {
             for (int[] anInt : ints) {
@@ -9,6 +9,9 @@
  */
 package com.mimiclone.fips202.keccak.core;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import com.mimiclone.fips202.keccak.core.KeccakStateUtils.StateOp;
@@ -106,6 +109,93 @@ public final class Keccak1600 {
 		bitsOp(StateOp.UNWRAP, stateBitOff, outBuf, outBufOff, inBuf, inBufOff, lenBits);
 	}
 
+	/**
+	 * Little-endian view of a byte array as longs, which matches the byte order of the lanes in the state.
+	 */
+	private static final VarHandle LITTLE_ENDIAN_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Byte-aligned fast path for absorbing: XORs {@code lenBytes} bytes of {@code buf} into the state starting at
+	 * {@code stateByteOff}, a whole lane at a time wherever the state offset is lane aligned.
+	 */
+	public void xorBytes(int stateByteOff, byte[] buf, int bufByteOff, int lenBytes) {
+
+		// Leading bytes up to the next lane boundary
+		while(lenBytes > 0 && (stateByteOff & 7) != 0) {
+			state[stateByteOff >> 3] ^= (buf[bufByteOff++] & 0xFFL) << ((stateByteOff & 7) << 3);
+			stateByteOff++;
+			lenBytes--;
+		}
+
+		// Whole lanes
+		while(lenBytes >= 8) {
+			state[stateByteOff >> 3] ^= (long) LITTLE_ENDIAN_LONGS.get(buf, bufByteOff);
+			stateByteOff += 8;
+			bufByteOff += 8;
+			lenBytes -= 8;
+		}
+
+		// Trailing bytes
+		while(lenBytes > 0) {
+			state[stateByteOff >> 3] ^= (buf[bufByteOff++] & 0xFFL) << ((stateByteOff & 7) << 3);
+			stateByteOff++;
+			lenBytes--;
+		}
+	}
+
+	/**
+	 * Byte-aligned fast path for squeezing: copies {@code lenBytes} bytes of the state starting at
+	 * {@code stateByteOff} into {@code buf}, a whole lane at a time wherever the state offset is lane aligned.
+	 */
+	public void extractBytes(int stateByteOff, byte[] buf, int bufByteOff, int lenBytes) {
+
+		// Leading bytes up to the next lane boundary
+		while(lenBytes > 0 && (stateByteOff & 7) != 0) {
+			buf[bufByteOff++] = (byte) (state[stateByteOff >> 3] >>> ((stateByteOff & 7) << 3));
+			stateByteOff++;
+			lenBytes--;
+		}
+
+		// Whole lanes
+		while(lenBytes >= 8) {
+			LITTLE_ENDIAN_LONGS.set(buf, bufByteOff, state[stateByteOff >> 3]);
+			stateByteOff += 8;
+			bufByteOff += 8;
+			lenBytes -= 8;
+		}
+
+		// Trailing bytes
+		while(lenBytes > 0) {
+			buf[bufByteOff++] = (byte) (state[stateByteOff >> 3] >>> ((stateByteOff & 7) << 3));
+			stateByteOff++;
+			lenBytes--;
+		}
+	}
+
+	/**
+	 * Byte-aligned multi-rate padding.  Equivalent to {@link #pad(byte, int, int)} when the message ends on a byte
+	 * boundary before the end of the rate and the domain bits leave room for the first padding bit in the same byte,
+	 * which always holds for the SHA-3 and SHAKE functions.
+	 */
+	public void padBytes(byte domainBits, int domainBitLength, int stateByteOff)
+	{
+		if(stateByteOff < 0 || stateByteOff > rateBytes || (rateBits & 7) != 0 || domainBitLength >= 7)
+			throw new IndexOutOfBoundsException();
+
+		// A full rate has to be permuted before the padding can start
+		if(stateByteOff == rateBytes) {
+			permute();
+			stateByteOff = 0;
+		}
+
+		// Domain bits followed by the first padding bit
+		long first = (domainBits | (1 << domainBitLength)) & 0xFFL;
+		state[stateByteOff >> 3] ^= first << ((stateByteOff & 7) << 3);
+
+		// Final padding bit (which may be in the same byte as the first)
+		state[(rateBytes - 1) >> 3] ^= 0x80L << (((rateBytes - 1) & 7) << 3);
+	}
+
 	public int remainingLongs(int longOff) {
 		return remainingBits(longOff << 6) >> 6;
 	}
@@ -183,177 +273,166 @@ public final class Keccak1600 {
 
 	public void permute()
 	{
-/*
-  for (int i=firstRound; i < NR_ROUNDS; ++i) {
-			theta();
-			rho();
-			pi();
-			chi();
-			iota(i);
-	}
-*/
-		long out0 = state[0];
-		long out1 = state[1];
-		long out2 = state[2];
-		long out3 = state[3];
-		long out4 = state[4];
-		long out5 = state[5];
-		long out6 = state[6];
-		long out7 = state[7];
-		long out8 = state[8];
-		long out9 = state[9];
-		long out10 = state[10];
-		long out11 = state[11];
-		long out12 = state[12];
-		long out13 = state[13];
-		long out14 = state[14];
-		long out15 = state[15];
-		long out16 = state[16];
-		long out17 = state[17];
-		long out18 = state[18];
-		long out19 = state[19];
-		long out20 = state[20];
-		long out21 = state[21];
-		long out22 = state[22];
-		long out23 = state[23];
-		long out24 = state[24];
+		permute(state, firstRound);
+	}
+
+	/**
+	 * Applies Keccak-f[1600] to all 24 rounds of {@code state}, see {@link #permute(long[], int)}.
+	 */
+	public static void permute(long[] state)
+	{
+		permute(state, 0);
+	}
+
+	/**
+	 * Applies the rounds {@code firstRound} to 23 of Keccak-f[1600] to the 25 lanes of {@code state}, which lets
+	 * engines that manage their own state reuse the permutation without a sponge.  The lanes are held in locals for
+	 * the whole permutation and nothing is allocated.  Equivalent to
+	 * <pre>
+	 *  for (int i=firstRound; i &lt; NR_ROUNDS; ++i) {
+	 *      theta(state);
+	 *      rho(state);
+	 *      pi(state);
+	 *      chi(state);
+	 *      iota(state, i);
+	 *  }
+	 * </pre>
+	 */
+	public static void permute(long[] state, int firstRound)
+	{
+		if(state.length != NR_LANES || firstRound < 0 || firstRound > NR_ROUNDS)
+			throw new IllegalArgumentException();
+
+		permute(state, 0, 1, firstRound);
+	}
+
+	/**
+	 * Applies the rounds {@code firstRound} to 23 of Keccak-f[1600] in place to the 25 lanes {@code state[offset]},
+	 * {@code state[offset+stride]} up to {@code state[offset+24*stride]}, so that a state interleaved with others
+	 * (see {@link Keccak1600x4}) is permuted without being copied out first.  See {@link #permute(long[], int)}.
+	 */
+	static void permute(long[] state, int offset, int stride, int firstRound)
+	{
+		if(offset < 0 || stride < 1 || offset + (NR_LANES-1)*stride >= state.length || firstRound < 0 || firstRound > NR_ROUNDS)
+			throw new IllegalArgumentException();
+
+		long a0 = state[offset];
+		long a1 = state[offset + stride];
+		long a2 = state[offset + 2*stride];
+		long a3 = state[offset + 3*stride];
+		long a4 = state[offset + 4*stride];
+		long a5 = state[offset + 5*stride];
+		long a6 = state[offset + 6*stride];
+		long a7 = state[offset + 7*stride];
+		long a8 = state[offset + 8*stride];
+		long a9 = state[offset + 9*stride];
+		long a10 = state[offset + 10*stride];
+		long a11 = state[offset + 11*stride];
+		long a12 = state[offset + 12*stride];
+		long a13 = state[offset + 13*stride];
+		long a14 = state[offset + 14*stride];
+		long a15 = state[offset + 15*stride];
+		long a16 = state[offset + 16*stride];
+		long a17 = state[offset + 17*stride];
+		long a18 = state[offset + 18*stride];
+		long a19 = state[offset + 19*stride];
+		long a20 = state[offset + 20*stride];
+		long a21 = state[offset + 21*stride];
+		long a22 = state[offset + 22*stride];
+		long a23 = state[offset + 23*stride];
+		long a24 = state[offset + 24*stride];
 		for (int i=firstRound; i < NR_ROUNDS; ++i) {
-		// Theta
-		long c0 = out0;
-		long c1 = out1;
-		long c2 = out2;
-		long c3 = out3;
-		long c4 = out4;
-		c0 ^= out5;
-		c1 ^= out6;
-		c2 ^= out7;
-		c3 ^= out8;
-		c4 ^= out9;
-		c0 ^= out10;
-		c1 ^= out11;
-		c2 ^= out12;
-		c3 ^= out13;
-		c4 ^= out14;
-		c0 ^= out15;
-		c1 ^= out16;
-		c2 ^= out17;
-		c3 ^= out18;
-		c4 ^= out19;
-		c0 ^= out20;
-		c1 ^= out21;
-		c2 ^= out22;
-		c3 ^= out23;
-		c4 ^= out24;
-		long d0 = Long.rotateLeft(c1, 1) ^ c4;
-		long d1 = Long.rotateLeft(c2, 1) ^ c0;
-		long d2 = Long.rotateLeft(c3, 1) ^ c1;
-		long d3 = Long.rotateLeft(c4, 1) ^ c2;
-		long d4 = Long.rotateLeft(c0, 1) ^ c3;
-		out0 = out0 ^ d0;
-		out1 = out1 ^ d1;
-		out2 = out2 ^ d2;
-		out3 = out3 ^ d3;
-		out4 = out4 ^ d4;
-		out5 = out5 ^ d0;
-		out6 = out6 ^ d1;
-		out7 = out7 ^ d2;
-		out8 = out8 ^ d3;
-		out9 = out9 ^ d4;
-		out10 = out10 ^ d0;
-		out11 = out11 ^ d1;
-		out12 = out12 ^ d2;
-		out13 = out13 ^ d3;
-		out14 = out14 ^ d4;
-		out15 = out15 ^ d0;
-		out16 = out16 ^ d1;
-		out17 = out17 ^ d2;
-		out18 = out18 ^ d3;
-		out19 = out19 ^ d4;
-		out20 = out20 ^ d0;
-		out21 = out21 ^ d1;
-		out22 = out22 ^ d2;
-		out23 = out23 ^ d3;
-		out24 = out24 ^ d4;
-		// RHO AND PI
-		long piOut0 = out0;
-		long piOut16 = Long.rotateLeft(out5, 36);
-		long piOut7 = Long.rotateLeft(out10, 3);
-		long piOut23 = Long.rotateLeft(out15, 41);
-		long piOut14 = Long.rotateLeft(out20, 18);
-		long piOut10 = Long.rotateLeft(out1, 1);
-		long piOut1 = Long.rotateLeft(out6, 44);
-		long piOut17 = Long.rotateLeft(out11, 10);
-		long piOut8 = Long.rotateLeft(out16, 45);
-		long piOut24 = Long.rotateLeft(out21, 2);
-		long piOut20 = Long.rotateLeft(out2, 62);
-		long piOut11 = Long.rotateLeft(out7, 6);
-		long piOut2 = Long.rotateLeft(out12, 43);
-		long piOut18 = Long.rotateLeft(out17, 15);
-		long piOut9 = Long.rotateLeft(out22, 61);
-		long piOut5 = Long.rotateLeft(out3, 28);
-		long piOut21 = Long.rotateLeft(out8, 55);
-		long piOut12 = Long.rotateLeft(out13, 25);
-		long piOut3 = Long.rotateLeft(out18, 21);
-		long piOut19 = Long.rotateLeft(out23, 56);
-		long piOut15 = Long.rotateLeft(out4, 27);
-		long piOut6 = Long.rotateLeft(out9, 20);
-		long piOut22 = Long.rotateLeft(out14, 39);
-		long piOut13 = Long.rotateLeft(out19, 8);
-		long piOut4 = Long.rotateLeft(out24, 14);
-		// CHI
-		out0 = piOut0 ^ ((~piOut1) & piOut2);
-		out1 = piOut1 ^ ((~piOut2) & piOut3);
-		out2 = piOut2 ^ ((~piOut3) & piOut4);
-		out3 = piOut3 ^ ((~piOut4) & piOut0);
-		out4 = piOut4 ^ ((~piOut0) & piOut1);
-		out5 = piOut5 ^ ((~piOut6) & piOut7);
-		out6 = piOut6 ^ ((~piOut7) & piOut8);
-		out7 = piOut7 ^ ((~piOut8) & piOut9);
-		out8 = piOut8 ^ ((~piOut9) & piOut5);
-		out9 = piOut9 ^ ((~piOut5) & piOut6);
-		out10 = piOut10 ^ ((~piOut11) & piOut12);
-		out11 = piOut11 ^ ((~piOut12) & piOut13);
-		out12 = piOut12 ^ ((~piOut13) & piOut14);
-		out13 = piOut13 ^ ((~piOut14) & piOut10);
-		out14 = piOut14 ^ ((~piOut10) & piOut11);
-		out15 = piOut15 ^ ((~piOut16) & piOut17);
-		out16 = piOut16 ^ ((~piOut17) & piOut18);
-		out17 = piOut17 ^ ((~piOut18) & piOut19);
-		out18 = piOut18 ^ ((~piOut19) & piOut15);
-		out19 = piOut19 ^ ((~piOut15) & piOut16);
-		out20 = piOut20 ^ ((~piOut21) & piOut22);
-		out21 = piOut21 ^ ((~piOut22) & piOut23);
-		out22 = piOut22 ^ ((~piOut23) & piOut24);
-		out23 = piOut23 ^ ((~piOut24) & piOut20);
-		out24 = piOut24 ^ ((~piOut20) & piOut21);
-		// IOTA
-		out0 ^= KeccackRoundConstants[i];
+			// Theta
+			long c0 = a0 ^ a5 ^ a10 ^ a15 ^ a20;
+			long c1 = a1 ^ a6 ^ a11 ^ a16 ^ a21;
+			long c2 = a2 ^ a7 ^ a12 ^ a17 ^ a22;
+			long c3 = a3 ^ a8 ^ a13 ^ a18 ^ a23;
+			long c4 = a4 ^ a9 ^ a14 ^ a19 ^ a24;
+			long d0 = Long.rotateLeft(c1, 1) ^ c4;
+			long d1 = Long.rotateLeft(c2, 1) ^ c0;
+			long d2 = Long.rotateLeft(c3, 1) ^ c1;
+			long d3 = Long.rotateLeft(c4, 1) ^ c2;
+			long d4 = Long.rotateLeft(c0, 1) ^ c3;
+			// Theta applied while loading, then rho and pi
+			long b0 = a0 ^ d0;
+			long b10 = Long.rotateLeft(a1 ^ d1, 1);
+			long b20 = Long.rotateLeft(a2 ^ d2, 62);
+			long b5 = Long.rotateLeft(a3 ^ d3, 28);
+			long b15 = Long.rotateLeft(a4 ^ d4, 27);
+			long b16 = Long.rotateLeft(a5 ^ d0, 36);
+			long b1 = Long.rotateLeft(a6 ^ d1, 44);
+			long b11 = Long.rotateLeft(a7 ^ d2, 6);
+			long b21 = Long.rotateLeft(a8 ^ d3, 55);
+			long b6 = Long.rotateLeft(a9 ^ d4, 20);
+			long b7 = Long.rotateLeft(a10 ^ d0, 3);
+			long b17 = Long.rotateLeft(a11 ^ d1, 10);
+			long b2 = Long.rotateLeft(a12 ^ d2, 43);
+			long b12 = Long.rotateLeft(a13 ^ d3, 25);
+			long b22 = Long.rotateLeft(a14 ^ d4, 39);
+			long b23 = Long.rotateLeft(a15 ^ d0, 41);
+			long b8 = Long.rotateLeft(a16 ^ d1, 45);
+			long b18 = Long.rotateLeft(a17 ^ d2, 15);
+			long b3 = Long.rotateLeft(a18 ^ d3, 21);
+			long b13 = Long.rotateLeft(a19 ^ d4, 8);
+			long b14 = Long.rotateLeft(a20 ^ d0, 18);
+			long b24 = Long.rotateLeft(a21 ^ d1, 2);
+			long b9 = Long.rotateLeft(a22 ^ d2, 61);
+			long b19 = Long.rotateLeft(a23 ^ d3, 56);
+			long b4 = Long.rotateLeft(a24 ^ d4, 14);
+			// Chi
+			a0 = b0 ^ ((~b1) & b2);
+			a1 = b1 ^ ((~b2) & b3);
+			a2 = b2 ^ ((~b3) & b4);
+			a3 = b3 ^ ((~b4) & b0);
+			a4 = b4 ^ ((~b0) & b1);
+			a5 = b5 ^ ((~b6) & b7);
+			a6 = b6 ^ ((~b7) & b8);
+			a7 = b7 ^ ((~b8) & b9);
+			a8 = b8 ^ ((~b9) & b5);
+			a9 = b9 ^ ((~b5) & b6);
+			a10 = b10 ^ ((~b11) & b12);
+			a11 = b11 ^ ((~b12) & b13);
+			a12 = b12 ^ ((~b13) & b14);
+			a13 = b13 ^ ((~b14) & b10);
+			a14 = b14 ^ ((~b10) & b11);
+			a15 = b15 ^ ((~b16) & b17);
+			a16 = b16 ^ ((~b17) & b18);
+			a17 = b17 ^ ((~b18) & b19);
+			a18 = b18 ^ ((~b19) & b15);
+			a19 = b19 ^ ((~b15) & b16);
+			a20 = b20 ^ ((~b21) & b22);
+			a21 = b21 ^ ((~b22) & b23);
+			a22 = b22 ^ ((~b23) & b24);
+			a23 = b23 ^ ((~b24) & b20);
+			a24 = b24 ^ ((~b20) & b21);
+			// Iota
+			a0 ^= KeccackRoundConstants[i];
 		}
-		state[0] = out0;
-		state[1] = out1;
-		state[2] = out2;
-		state[3] = out3;
-		state[4] = out4;
-		state[5] = out5;
-		state[6] = out6;
-		state[7] = out7;
-		state[8] = out8;
-		state[9] = out9;
-		state[10] = out10;
-		state[11] = out11;
-		state[12] = out12;
-		state[13] = out13;
-		state[14] = out14;
-		state[15] = out15;
-		state[16] = out16;
-		state[17] = out17;
-		state[18] = out18;
-		state[19] = out19;
-		state[20] = out20;
-		state[21] = out21;
-		state[22] = out22;
-		state[23] = out23;
-		state[24] = out24;
+		state[offset] = a0;
+		state[offset + stride] = a1;
+		state[offset + 2*stride] = a2;
+		state[offset + 3*stride] = a3;
+		state[offset + 4*stride] = a4;
+		state[offset + 5*stride] = a5;
+		state[offset + 6*stride] = a6;
+		state[offset + 7*stride] = a7;
+		state[offset + 8*stride] = a8;
+		state[offset + 9*stride] = a9;
+		state[offset + 10*stride] = a10;
+		state[offset + 11*stride] = a11;
+		state[offset + 12*stride] = a12;
+		state[offset + 13*stride] = a13;
+		state[offset + 14*stride] = a14;
+		state[offset + 15*stride] = a15;
+		state[offset + 16*stride] = a16;
+		state[offset + 17*stride] = a17;
+		state[offset + 18*stride] = a18;
+		state[offset + 19*stride] = a19;
+		state[offset + 20*stride] = a20;
+		state[offset + 21*stride] = a21;
+		state[offset + 22*stride] = a22;
+		state[offset + 23*stride] = a23;
+		state[offset + 24*stride] = a24;
 	}
 
 	public void clear() {
@@ -431,25 +510,38 @@ public final class Keccak1600 {
 		  }
 	 }
 
-	final void theta()
+	// Reference step functions, one step at a time over the state.  Only used to check the unrolled permutation.
+
+	static void theta(long[] state)
+	{
+	    int y;
+
+	    long c0 = column(state, 0);
+	    long c1 = column(state, 1);
+	    long c2 = column(state, 2);
+	    long c3 = column(state, 3);
+	    long c4 = column(state, 4);
+
+	    for(y=0; y<5; y++) {
+	        state[index(0, y)] ^= rol64(c1, 1) ^ c4;
+	        state[index(1, y)] ^= rol64(c2, 1) ^ c0;
+	        state[index(2, y)] ^= rol64(c3, 1) ^ c1;
+	        state[index(3, y)] ^= rol64(c4, 1) ^ c2;
+	        state[index(4, y)] ^= rol64(c0, 1) ^ c3;
+	    }
+	}
+
+	private static long column(long[] state, int x)
 	{
-		long[] tempC = new long[5];
-		long[] tempD = new long[5];
-	       int x, y;
-
-	       for(x=0; x<5; x++) {
-	           tempC[x] = 0;
-	           for(y=0; y<5; y++)
-	               tempC[x] ^= state[index(x, y)];
-	       }
-	       for(x=0; x<5; x++)
-	           tempD[x] = rol64(tempC[((x+1)%5)], 1) ^ tempC[((x+4)%5)];
-	       for(x=0; x<5; x++)
-	           for(y=0; y<5; y++)
-	               state[index(x, y)] ^= tempD[x];
-	}
-
-	final void rho()
+	    int y;
+	    long c = 0;
+
+	    for(y=0; y<5; y++)
+	        c ^= state[index(x, y)];
+	    return c;
+	}
+
+	static void rho(long[] state)
 	{
 	    int x, y;
 
@@ -457,31 +549,42 @@ public final class Keccak1600 {
 	        state[index(x, y)] = rol64(state[index(x, y)], KeccakRhoOffsets[index(x, y)]);
 	}
 
-	final void pi()
+	static void pi(long[] state)
 	{
-		long[] tempA = new long[25];
-	    int x, y;
-
-	    for(x=0; x<5; x++) for(y=0; y<5; y++)
-	        tempA[index(x, y)] = state[index(x, y)];
-	    for(x=0; x<5; x++) for(y=0; y<5; y++)
-	        state[index(0*x+1*y, 2*x+3*y)] = tempA[index(x, y)];
+	    int x = 1, y = 0, t;
+	    long current = state[index(x, y)];
+
+	    // Pi moves lane (x, y) to (y, 2x+3y), which visits all lanes but (0, 0) in a single cycle
+	    for(t=0; t<24; t++) {
+	        int newX = y;
+	        int newY = (2*x+3*y) % 5;
+	        long next = state[index(newX, newY)];
+	        state[index(newX, newY)] = current;
+	        current = next;
+	        x = newX;
+	        y = newY;
+	    }
 	}
 
-	final void chi()
+	static void chi(long[] state)
 	{
-		long[] tempC = new long[5];
-	    int x, y;
+	    int y;
 
 	    for(y=0; y<5; y++) {
-	        for(x=0; x<5; x++)
-	            tempC[x] = state[index(x, y)] ^ ((~state[index(x+1, y)]) & state[index(x+2, y)]);
-	        for(x=0; x<5; x++)
-	            state[index(x, y)] = tempC[x];
+	        long a0 = state[index(0, y)];
+	        long a1 = state[index(1, y)];
+	        long a2 = state[index(2, y)];
+	        long a3 = state[index(3, y)];
+	        long a4 = state[index(4, y)];
+	        state[index(0, y)] = a0 ^ ((~a1) & a2);
+	        state[index(1, y)] = a1 ^ ((~a2) & a3);
+	        state[index(2, y)] = a2 ^ ((~a3) & a4);
+	        state[index(3, y)] = a3 ^ ((~a4) & a0);
+	        state[index(4, y)] = a4 ^ ((~a0) & a1);
 	    }
 	}
 
-	void iota(int indexRound)
+	static void iota(long[] state, int indexRound)
 	{
 	    state[index(0, 0)] ^= KeccackRoundConstants[indexRound];
 	}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2024 - Mimiclone, Inc.
+ *
+
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mimiclone.fips202.keccak.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * Four independent Keccak-1600 states that are absorbed, squeezed and permuted together, for callers that run
+ * several sponges over inputs of the same length (e.g. the k*k SHAKE128 instances that expand the ML-KEM matrix).
+ * <p>
+ * The states are interleaved lane by lane: lane {@code l} of instance {@code n} is {@code state[4*l+n]}, so the
+ * same lane of all four instances can be loaded into a single 256-bit vector.  This class permutes the instances
+ * one after the other, in place with the scalar Keccak-f[1600], while {@code VectorizedKeccak1600x4} permutes
+ * them together with the Vector API.  Obtain an engine with {@link #create(int)}, which picks the vectorized one
+ * when the {@code jdk.incubator.vector} module is available and the hardware has 256-bit vectors.
+ */
+public class Keccak1600x4 {
+
+	public static final int INSTANCES = 4;
+
+	/**
+	 * Name of the system property used to choose the permutation, {@code vector} (the default, which falls back to
+	 * {@code scalar} where it would be slower) or {@code scalar}
+	 */
+	public static final String PERMUTATION_PROPERTY = "com.mimiclone.fips202.keccak.x4";
+
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	/**
+	 * The vectorized permutation is compiled separately against the incubator module, so it is only ever named here
+	 */
+	private static final String VECTORIZED_PERMUTATION = "com.mimiclone.fips202.keccak.core.VectorizedKeccak1600x4";
+
+	protected Keccak1600x4(int bitCapacity, int rounds) {
+		if(bitCapacity <= 0 || bitCapacity >= 1600 || (bitCapacity & 63) != 0 || rounds < 0 || rounds > Keccak1600.NR_ROUNDS)
+			throw new IllegalArgumentException();
+
+		this.rateBytes = (1600-bitCapacity) >> 3;
+		this.firstRound = Keccak1600.NR_ROUNDS - rounds;
+	}
+
+	public static Keccak1600x4 create(int bitCapacity) {
+		return create(bitCapacity, System.getProperty(PERMUTATION_PROPERTY, "vector"));
+	}
+
+	public static Keccak1600x4 create(int bitCapacity, String permutation) {
+		return switch (permutation) {
+			case "scalar" -> new Keccak1600x4(bitCapacity, Keccak1600.NR_ROUNDS);
+			case "vector" -> Vectorized.CONSTRUCTOR != null
+					? Vectorized.create(bitCapacity)
+					: new Keccak1600x4(bitCapacity, Keccak1600.NR_ROUNDS);
+			default -> throw new IllegalArgumentException("Unsupported permutation: " + permutation);
+		};
+	}
+
+	/**
+	 * Looks up VectorizedKeccak1600x4 the first time the vector permutation is requested.
+	 * <p>
+	 * NOTE: The class is only loaded once the module is known to be present, so it (and with it the incubator API)
+	 * is never loaded on JVMs that were started without it.  Without 256-bit vectors the Vector API would emulate
+	 * them, which is slower than the scalar permutation, so the constructor is {@code null} then as well.
+	 */
+	private static final class Vectorized {
+
+		private static final MethodHandle CONSTRUCTOR = find();
+
+		private static MethodHandle find() {
+			if(ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty())
+				return null;
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				Class<?> vectorized = Class.forName(VECTORIZED_PERMUTATION);
+				if(!(boolean) lookup.findStatic(vectorized, "isSupported", MethodType.methodType(boolean.class)).invoke())
+					return null;
+				return lookup.findConstructor(vectorized, MethodType.methodType(void.class, int.class, int.class));
+			} catch(Throwable e) {
+				return null;
+			}
+		}
+
+		private static Keccak1600x4 create(int bitCapacity) {
+			try {
+				return (Keccak1600x4) CONSTRUCTOR.invoke(bitCapacity, Keccak1600.NR_ROUNDS);
+			} catch(RuntimeException | Error e) {
+				throw e;
+			} catch(Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+	public int getRateBytes() {
+		return rateBytes;
+	}
+
+	/**
+	 * XORs {@code lenBytes} bytes of {@code buf} into the state of {@code instance}, starting at
+	 * {@code stateByteOff}.
+	 */
+	public void xorBytes(int instance, int stateByteOff, byte[] buf, int bufByteOff, int lenBytes) {
+		validate(instance, stateByteOff, buf, bufByteOff, lenBytes);
+
+		for(int i = 0; i < lenBytes; i++, stateByteOff++) {
+			state[laneIndex(instance, stateByteOff)] ^= (buf[bufByteOff + i] & 0xFFL) << ((stateByteOff & 7) << 3);
+		}
+	}
+
+	/**
+	 * Copies {@code lenBytes} bytes of the state of {@code instance}, starting at {@code stateByteOff}, into
+	 * {@code buf}.
+	 */
+	public void extractBytes(int instance, int stateByteOff, byte[] buf, int bufByteOff, int lenBytes) {
+		validate(instance, stateByteOff, buf, bufByteOff, lenBytes);
+
+		// Leading bytes up to the next lane boundary
+		while(lenBytes > 0 && (stateByteOff & 7) != 0) {
+			buf[bufByteOff++] = (byte) (state[laneIndex(instance, stateByteOff)] >>> ((stateByteOff & 7) << 3));
+			stateByteOff++;
+			lenBytes--;
+		}
+
+		// Whole lanes, least significant byte first
+		while(lenBytes >= 8) {
+			long lane = state[laneIndex(instance, stateByteOff)];
+			for(int i = 0; i < 8; i++) {
+				buf[bufByteOff++] = (byte) (lane >>> (i << 3));
+			}
+			stateByteOff += 8;
+			lenBytes -= 8;
+		}
+
+		// Trailing bytes
+		while(lenBytes > 0) {
+			buf[bufByteOff++] = (byte) (state[laneIndex(instance, stateByteOff)] >>> ((stateByteOff & 7) << 3));
+			stateByteOff++;
+			lenBytes--;
+		}
+	}
+
+	/**
+	 * Byte-aligned multi-rate padding of the message absorbed by {@code instance}, which ends just before
+	 * {@code stateByteOff}.  See {@link Keccak1600#padBytes(byte, int, int)}, except that the message must end
+	 * before the end of the rate.
+	 */
+	public void padBytes(int instance, byte domainBits, int domainBitLength, int stateByteOff) {
+		if(instance < 0 || instance >= INSTANCES || stateByteOff < 0 || stateByteOff >= rateBytes || domainBitLength >= 7)
+			throw new IndexOutOfBoundsException();
+
+		long first = (domainBits | (1 << domainBitLength)) & 0xFFL;
+		state[laneIndex(instance, stateByteOff)] ^= first << ((stateByteOff & 7) << 3);
+		state[laneIndex(instance, rateBytes - 1)] ^= 0x80L << (((rateBytes - 1) & 7) << 3);
+	}
+
+	/**
+	 * Applies the permutation to all four states, one after the other.  Each state is permuted in place where it is
+	 * interleaved with the others, so this costs the same as four {@link Keccak1600} permutations.
+	 */
+	public void permute() {
+		for(int n = 0; n < INSTANCES; n++) {
+			Keccak1600.permute(state, n, INSTANCES, firstRound);
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(state, 0L);
+	}
+
+	private static int laneIndex(int instance, int stateByteOff) {
+		return INSTANCES*(stateByteOff >> 3) + instance;
+	}
+
+	private void validate(int instance, int stateByteOff, byte[] buf, int bufByteOff, int lenBytes) {
+		if(instance < 0 || instance >= INSTANCES || stateByteOff < 0 || lenBytes < 0 || stateByteOff + lenBytes > rateBytes
+				|| bufByteOff < 0 || bufByteOff + lenBytes > buf.length)
+			throw new IndexOutOfBoundsException();
+	}
+
+	final long[] state = new long[INSTANCES*Keccak1600.NR_LANES];
+
+	final int rateBytes;
+
+	final int firstRound;
+}
@@ -119,7 +119,11 @@ public class KeccakSponge {
 		@Override
 		public void close() {
 			if(!closed){
-				keccak1600.pad(domainPadding, domainPaddingBitLength, ratePos);
+				if((ratePos & 7) == 0 && (keccak1600.getRateBits() & 7) == 0 && domainPaddingBitLength < 7) {
+					keccak1600.padBytes(domainPadding, domainPaddingBitLength, ratePos >> 3);
+				} else {
+					keccak1600.pad(domainPadding, domainPaddingBitLength, ratePos);
+				}
 				keccak1600.permute();
 				closed = true;
 				ratePos = 0;
@@ -201,6 +205,92 @@ public class KeccakSponge {
 		return absorbStream;
 	}
 
+	/**
+	 * Absorbs {@code len} bytes of {@code in} starting at {@code off}.  This is a byte-aligned fast path equivalent
+	 * to writing the bytes to {@link #getAbsorbStream()}, it XORs whole lanes into the state without going through
+	 * the bit stream machinery.  Like the absorb stream, it starts a new message if the sponge is squeezing.
+	 */
+	public void absorb(byte[] in, int off, int len) {
+		getAbsorbStream();
+
+		// Anything absorbed on a partial byte has to continue through the bit stream
+		if((ratePos & 7) != 0) {
+			absorbStream.write(in, off, len);
+			return;
+		}
+
+		int rateBytes = keccak1600.getRateBits() >> 3;
+		while(len > 0) {
+			int pos = ratePos >> 3;
+			if(pos == rateBytes) {
+				keccak1600.permute();
+				pos = 0;
+			}
+			int chunk = Math.min(len, rateBytes - pos);
+			keccak1600.xorBytes(pos, in, off, chunk);
+			ratePos = (pos + chunk) << 3;
+			off += chunk;
+			len -= chunk;
+		}
+	}
+
+	public void absorb(byte[] in) {
+		absorb(in, 0, in.length);
+	}
+
+	/**
+	 * Absorbs a single byte, see {@link #absorb(byte[], int, int)}.
+	 */
+	public void absorb(byte b) {
+		getAbsorbStream();
+
+		if((ratePos & 7) != 0) {
+			absorbStream.write(b);
+			return;
+		}
+
+		int pos = ratePos >> 3;
+		if(pos == keccak1600.getRateBits() >> 3) {
+			keccak1600.permute();
+			pos = 0;
+		}
+		keccak1600.setXorByte(pos, b);
+		ratePos = (pos + 1) << 3;
+	}
+
+	/**
+	 * Squeezes {@code len} bytes into {@code out} starting at {@code off}.  This is a byte-aligned fast path
+	 * equivalent to reading from {@link #getSqueezeStream()}, which pads and finishes the absorb phase if needed and
+	 * then extracts whole lanes from the state without going through the bit stream machinery.
+	 */
+	public void squeeze(byte[] out, int off, int len) {
+		getSqueezeStream();
+
+		// Anything squeezed from a partial byte has to continue through the bit stream
+		if((ratePos & 7) != 0) {
+			squeezeStream.read(out, off, len);
+			return;
+		}
+
+		int rateBytes = keccak1600.getRateBits() >> 3;
+		while(len > 0) {
+			int pos = ratePos >> 3;
+			if(pos == rateBytes) {
+				keccak1600.permute();
+				pos = 0;
+			}
+			int chunk = Math.min(len, rateBytes - pos);
+			keccak1600.extractBytes(pos, out, off, chunk);
+			ratePos = (pos + chunk) << 3;
+			off += chunk;
+			len -= chunk;
+		}
+	}
+
+	public void squeeze(byte[] out) {
+		squeeze(out, 0, out.length);
+	}
+
 	public java.io.FilterOutputStream getTransformingSqueezeStream(final java.io.OutputStream target) {
 		return new FilterOutputStream(target) {
 			byte[] buf = new byte[4096];
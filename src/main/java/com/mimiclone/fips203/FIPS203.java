@@ -1,5 +1,6 @@
 package com.mimiclone.fips203;
 
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.encaps.Encapsulation;
 import com.mimiclone.fips203.key.*;
 import com.mimiclone.fips203.key.check.KeyPairCheckException;
@@ -7,7 +8,11 @@ import com.mimiclone.fips203.key.gen.KeyPairGenerationException;
 import com.mimiclone.fips203.message.CipherText;
 import com.mimiclone.fips203.key.SharedSecretKey;
 
-public interface FIPS203 {
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public interface FIPS203 extends AutoCloseable {
 
     /**
      * Convenience method to verify the ParameterSet of the underlyig implementation.
@@ -19,6 +24,25 @@ public interface FIPS203 {
      */
     KeyPair generateKeyPair() throws KeyPairGenerationException;
 
+    /**
+     * Creates a workspace for this parameter set that can be passed to {@link #generateKeyPair(MLKEMContext)},
+     * {@link #encapsulate(MLKEMContext, EncapsulationKey)} and
+     * {@link #decapsulate(MLKEMContext, DecapsulationKey, CipherText)} by one thread at a time.  The caller should
+     * close the context once it is no longer needed, which zeroes it.
+     */
+    MLKEMContext createContext();
+
+    /**
+     * Identical to {@link #generateKeyPair()}, but works in the buffers of {@code context}.
+     */
+    KeyPair generateKeyPair(MLKEMContext context) throws KeyPairGenerationException;
+
+    /**
+     * Identical to {@link #generateKeyPair()}, but draws the seeds {@code d} and {@code z} from {@code random}
+     * instead of the DRBG of the implementation.
+     */
+    KeyPair generateKeyPair(SecureRandom random) throws KeyPairGenerationException;
+
     void keyPairCheck(KeyPair keyPair) throws KeyPairCheckException;
 
     /**
@@ -27,10 +51,75 @@ public interface FIPS203 {
      */
     Encapsulation encapsulate(EncapsulationKey key);
 
+    /**
+     * Identical to {@link #encapsulate(EncapsulationKey)}, but works in the buffers of {@code context}.
+     */
+    Encapsulation encapsulate(MLKEMContext context, EncapsulationKey key);
+
+    /**
+     * Identical to {@link #encapsulate(EncapsulationKey)}, but draws the 32 bytes of entropy from {@code random}
+     * instead of the DRBG of the implementation.
+     */
+    Encapsulation encapsulate(EncapsulationKey key, SecureRandom random);
+
+    /**
+     * Encapsulates a fresh shared secret to every key in {@code keys}, running the encapsulations in parallel on
+     * the common {@link java.util.concurrent.ForkJoinPool}.
+     * @return One {@link Encapsulation} per key, in the same order as {@code keys}
+     */
+    List<Encapsulation> encapsulateBatch(List<EncapsulationKey> keys);
+
+    /**
+     * Identical to {@link #encapsulateBatch(List)}, but runs the encapsulations on {@code executor}, which may be a
+     * fork join pool, a fixed thread pool or a virtual thread per task executor.
+     */
+    List<Encapsulation> encapsulateBatch(List<EncapsulationKey> keys, Executor executor);
+
+    /**
+     * Derives the values used by {@link #encapsulate(EncapsulationKey)} from the key once, so that repeated
+     * encapsulations to the same key skip decoding the key, sampling the matrix {@code A} and hashing the key.
+     * @return A {@link PreparedEncapsulationKey} that can be used anywhere an {@link EncapsulationKey} is accepted
+     */
+    PreparedEncapsulationKey prepare(EncapsulationKey key);
+
     /**
      * Implementation of the Decaps algorithm as specified in the FIPS203 Specification
      * @return An array of exactly 32 bytes representing the decapsulated cleartext.
      */
     SharedSecretKey decapsulate(DecapsulationKey key, CipherText cipherText);
 
+    /**
+     * Identical to {@link #decapsulate(DecapsulationKey, CipherText)}, but works in the buffers of {@code context}.
+     */
+    SharedSecretKey decapsulate(MLKEMContext context, DecapsulationKey key, CipherText cipherText);
+
+    /**
+     * Decapsulates every ciphertext in {@code cipherTexts} with the same key, running the decapsulations in
+     * parallel on the common {@link java.util.concurrent.ForkJoinPool}.  The key is prepared once for the whole
+     * batch unless it is already a {@link PreparedDecapsulationKey}, and every ciphertext that fails the
+     * re-encryption check yields its own implicit rejection value exactly as {@link #decapsulate} would.
+     * @return One {@link SharedSecretKey} per ciphertext, in the same order as {@code cipherTexts}
+     */
+    List<SharedSecretKey> decapsulateBatch(DecapsulationKey key, List<CipherText> cipherTexts);
+
+    /**
+     * Identical to {@link #decapsulateBatch(DecapsulationKey, List)}, but runs the decapsulations on
+     * {@code executor}.
+     */
+    List<SharedSecretKey> decapsulateBatch(DecapsulationKey key, List<CipherText> cipherTexts, Executor executor);
+
+    /**
+     * Decodes and expands the values used by {@link #decapsulate(DecapsulationKey, CipherText)} from the key once,
+     * so that repeated decapsulations with a long-lived key skip that work.  The caller must destroy the prepared
+     * key once it is no longer needed.
+     * @return A {@link PreparedDecapsulationKey} that can be used anywhere a {@link DecapsulationKey} is accepted
+     */
+    PreparedDecapsulationKey prepare(DecapsulationKey key);
+
+    /**
+     * Zeroes the scratch buffers held by this instance.  The instance must not be used once it has been closed.
+     */
+    @Override
+    void close();
+
 }
@@ -1,48 +1,134 @@
 package com.mimiclone.fips203;
 
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.decaps.Decapsulator;
 import com.mimiclone.fips203.decaps.mlkem.MLKEMDecapsulator;
 import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.encaps.EncapsulationKeyCache;
 import com.mimiclone.fips203.encaps.Encapsulator;
 import com.mimiclone.fips203.encaps.mlkem.MLKEMEncapsulator;
 import com.mimiclone.fips203.key.DecapsulationKey;
 import com.mimiclone.fips203.key.EncapsulationKey;
 import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
 import com.mimiclone.fips203.key.SharedSecretKey;
 import com.mimiclone.fips203.key.check.KeyPairCheckException;
 import com.mimiclone.fips203.key.gen.KeyPairGeneration;
 import com.mimiclone.fips203.key.gen.KeyPairGenerationException;
 import com.mimiclone.fips203.key.gen.mlkem.MLKEMKeyPairGenerator;
 import com.mimiclone.fips203.message.CipherText;
+import com.mimiclone.fips203.metrics.MLKEMMetrics;
 
 import java.security.DrbgParameters;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.SecureRandomParameters;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static com.mimiclone.CryptoUtils.zero;
 
+/**
+ * The default {@link FIPS203} implementation.
+ * <p>
+ * Instances are thread-safe and may be shared freely.  The key generation, encapsulation and decapsulation
+ * components (and the hash and sponge state inside them) are not, so every operation borrows a {@link Workspace} of
+ * components, a DRBG and an {@link MLKEMContext} from a lock-free stack of idle workspaces and pushes it back when
+ * it is done.  Concurrent operations therefore never share mutable state or wait on each other, and a new thread
+ * (such as a virtual thread per task) reuses an idle workspace instead of instantiating a DRBG of its own.  A
+ * workspace is only created when every existing one is busy, and it is kept afterwards, so the pool grows to the
+ * highest number of concurrent operations and no further.  Callers that manage their own contexts pass them to the
+ * methods that accept one instead.  Keys, prepared keys and the optional {@link EncapsulationKeyCache} are immutable
+ * or thread-safe and are shared between all threads.
+ * <p>
+ * {@link #close()} zeroes the contexts of the idle workspaces, and of busy ones as they are returned.
+ */
 public class MimicloneFIPS203 implements FIPS203 {
 
     public static FIPS203 create(ParameterSet params) {
-        return new MimicloneFIPS203(params);
+        return new MimicloneFIPS203(params, null, MLKEMMetrics.none());
+    }
+
+    /**
+     * Creates an instance that transparently prepares every key passed to {@link #encapsulate(EncapsulationKey)}
+     * through the given cache.
+     */
+    public static FIPS203 create(ParameterSet params, EncapsulationKeyCache encapsulationKeyCache) {
+        return new MimicloneFIPS203(params, encapsulationKeyCache, MLKEMMetrics.none());
+    }
+
+    /**
+     * Creates an instance whose key generation, encapsulation and decapsulation record their latencies (and
+     * decapsulation its implicit rejections) with {@code metrics}.
+     */
+    public static FIPS203 create(ParameterSet params, MLKEMMetrics metrics) {
+        return new MimicloneFIPS203(params, null, metrics);
+    }
+
+    /**
+     * Creates an instance that both prepares encapsulation keys through the given cache and records its operations
+     * with {@code metrics}.
+     */
+    public static FIPS203 create(ParameterSet params, EncapsulationKeyCache encapsulationKeyCache, MLKEMMetrics metrics) {
+        return new MimicloneFIPS203(params, encapsulationKeyCache, metrics);
     }
 
     // Secure RBG algorithm set name
     private static final String SECURE_RBG_ALGO = "DRBG";
 
+    /**
+     * Number of tasks a batch is split into per available processor.  Each task works through a contiguous run of
+     * the batch with the workspace of the thread it runs on, so a few tasks per processor even out the progress of
+     * the threads without creating a workspace for every item on executors that start a new thread per task.
+     */
+    private static final int BATCH_TASKS_PER_PROCESSOR = 4;
+
     // FIPS 203 Parameter Set assigned
     private final ParameterSet parameterSet;
-    private final SecureRandom secureRandom;
-    private final KeyPairGeneration keyPairGenerator;
-    private final Encapsulator encapsulator;
-    private final Decapsulator decapsulator;
+    private final EncapsulationKeyCache encapsulationKeyCache;
+    private final MLKEMMetrics metrics;
+    private final ConcurrentLinkedDeque<Workspace> workspaces = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger createdWorkspaces = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * The components and context used by a single operation.  They hold mutable hash and sponge state, so a
+     * workspace must never be used by more than one thread at a time.
+     */
+    private record Workspace(SecureRandom secureRandom,
+                             KeyPairGeneration keyPairGenerator,
+                             Encapsulator encapsulator,
+                             Decapsulator decapsulator,
+                             MLKEMContext context) {
+    }
 
-    private MimicloneFIPS203(ParameterSet parameterSet) {
+    private MimicloneFIPS203(ParameterSet parameterSet, EncapsulationKeyCache encapsulationKeyCache, MLKEMMetrics metrics) {
 
         // Assign the chosen parameter set
         this.parameterSet = parameterSet;
 
+        // Assign the optional cache of prepared encapsulation keys
+        this.encapsulationKeyCache = encapsulationKeyCache;
+
+        // Assign the metrics shared by the components of every workspace
+        this.metrics = metrics;
+
+        // Create the first workspace straight away, so that a missing DRBG is reported here
+        workspaces.push(createWorkspace());
+
+    }
+
+    private Workspace createWorkspace() {
+
+        SecureRandom secureRandom;
         try {
 
             // Create secure random parameters
@@ -58,15 +144,85 @@ public class MimicloneFIPS203 implements FIPS203 {
             throw new FIPS203Exception(e.getMessage());
         }
 
-        // Initialize the Key Pair Generator
-        this.keyPairGenerator = MLKEMKeyPairGenerator.create(parameterSet);
+        createdWorkspaces.incrementAndGet();
+        return new Workspace(
+                secureRandom,
+                MLKEMKeyPairGenerator.create(parameterSet, metrics),
+                MLKEMEncapsulator.create(parameterSet, metrics),
+                MLKEMDecapsulator.create(parameterSet, metrics),
+                MLKEMContext.create(parameterSet)
+        );
+
+    }
+
+    /**
+     * Takes the most recently returned idle workspace, whose state is the most likely to still be cached, or
+     * creates one if every workspace is busy.
+     *
+     * @throws IllegalStateException if the instance has been closed
+     */
+    private Workspace borrow() {
+        if (closed) {
+            throw new IllegalStateException("FIPS203 instance has been closed");
+        }
+        Workspace workspace = workspaces.pollFirst();
+        return workspace != null ? workspace : createWorkspace();
+    }
+
+    /**
+     * Returns a workspace to the idle workspaces, or zeroes its context if the instance has been closed.
+     */
+    private void release(Workspace workspace) {
+        if (closed) {
+            workspace.context().close();
+            return;
+        }
+        workspaces.push(workspace);
+
+        // The instance may have been closed, and the idle workspaces drained, while this one was being returned
+        if (closed) {
+            drain();
+        }
+    }
+
+    private <R> R withWorkspace(Function<Workspace, R> operation) {
+        Workspace workspace = borrow();
+        try {
+            return operation.apply(workspace);
+        } finally {
+            release(workspace);
+        }
+    }
+
+    /**
+     * The number of idle workspaces, for inspection by tests only.
+     */
+    int idleWorkspaces() {
+        return workspaces.size();
+    }
 
-        // Initialize the Encapsulator
-        this.encapsulator = MLKEMEncapsulator.create(parameterSet);
+    /**
+     * The number of workspaces created by this instance, for inspection by tests only.
+     */
+    int createdWorkspaces() {
+        return createdWorkspaces.get();
+    }
 
-        // Initialize the Decapsulator
-        this.decapsulator = MLKEMDecapsulator.create(parameterSet);
+    private void drain() {
+        Workspace workspace;
+        while ((workspace = workspaces.poll()) != null) {
+            workspace.context().close();
+        }
+    }
 
+    /**
+     * Zeroes the contexts of the idle workspaces, and of the busy ones once their operations finish.  Any later
+     * operation throws {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drain();
     }
 
     @Override
@@ -81,6 +237,25 @@ public class MimicloneFIPS203 implements FIPS203 {
      */
     @Override
     public KeyPair generateKeyPair() throws KeyPairGenerationException {
+        return withWorkspace(workspace -> generateKeyPair(workspace, workspace.context(), workspace.secureRandom()));
+    }
+
+    @Override
+    public MLKEMContext createContext() {
+        return MLKEMContext.create(parameterSet);
+    }
+
+    @Override
+    public KeyPair generateKeyPair(MLKEMContext context) throws KeyPairGenerationException {
+        return withWorkspace(workspace -> generateKeyPair(workspace, context, workspace.secureRandom()));
+    }
+
+    @Override
+    public KeyPair generateKeyPair(SecureRandom random) throws KeyPairGenerationException {
+        return withWorkspace(workspace -> generateKeyPair(workspace, workspace.context(), random));
+    }
+
+    private KeyPair generateKeyPair(Workspace workspace, MLKEMContext context, SecureRandom secureRandom) {
 
         // FIPS203:Algorithm19:Line1
         // Generate 'd', a value of 32 random bytes
@@ -97,7 +272,7 @@ public class MimicloneFIPS203 implements FIPS203 {
         // for them to be null.  Checking would raise a compiler error
 
         // Invoke Key Generation
-        KeyPair keyPair = keyPairGenerator.generateKeyPair(d, z);
+        KeyPair keyPair = workspace.keyPairGenerator().generateKeyPair(context, d, z);
 
         // ZERO: d
         zero(d);
@@ -131,15 +306,32 @@ public class MimicloneFIPS203 implements FIPS203 {
      */
     @Override
     public Encapsulation encapsulate(EncapsulationKey key) {
+        return withWorkspace(workspace -> encapsulate(workspace, workspace.context(), key, workspace.secureRandom()));
+    }
+
+    @Override
+    public Encapsulation encapsulate(MLKEMContext context, EncapsulationKey key) {
+        return withWorkspace(workspace -> encapsulate(workspace, context, key, workspace.secureRandom()));
+    }
+
+    @Override
+    public Encapsulation encapsulate(EncapsulationKey key, SecureRandom random) {
+        return withWorkspace(workspace -> encapsulate(workspace, workspace.context(), key, random));
+    }
+
+    /**
+     * Encapsulates to {@code key} with 32 bytes of entropy drawn from {@code random}.
+     */
+    private Encapsulation encapsulate(Workspace workspace, MLKEMContext context, EncapsulationKey key, SecureRandom random) {
 
         // Generate 32 bytes of securely random entropy
         byte[] m = new byte[32];
-        secureRandom.nextBytes(m);
+        random.nextBytes(m);
 
         // The spec requires a null check here for m, but Java is designed such that this isn't possible.
 
         // Perform the encapsulation
-        Encapsulation encapsulation = encapsulator.encapsulate(key, m); // LAST USE: m
+        Encapsulation encapsulation = encapsulate(workspace, context, key, m); // LAST USE: m
 
         // ZERO: m
         zero(m);
@@ -149,6 +341,124 @@ public class MimicloneFIPS203 implements FIPS203 {
 
     }
 
+    @Override
+    public List<Encapsulation> encapsulateBatch(List<EncapsulationKey> keys) {
+        return encapsulateBatch(keys, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public List<Encapsulation> encapsulateBatch(List<EncapsulationKey> keys, Executor executor) {
+
+        // Generate 32 bytes of securely random entropy for every key with a single call to the DRBG
+        byte[] entropy = new byte[32 * keys.size()];
+        Workspace borrowed = borrow();
+        try {
+            borrowed.secureRandom().nextBytes(entropy);
+        } finally {
+            release(borrowed);
+        }
+
+        try {
+            return runBatch(keys, executor, (workspace, i, key) -> {
+
+                // Split out the entropy of this key
+                byte[] m = Arrays.copyOfRange(entropy, 32 * i, 32 * i + 32);
+
+                // Perform the encapsulation with the context of the worker thread
+                Encapsulation encapsulation = encapsulate(workspace, workspace.context(), key, m); // LAST USE: m
+
+                // ZERO: m
+                zero(m);
+
+                return encapsulation;
+
+            });
+        } finally {
+
+            // ZERO: entropy
+            zero(entropy);
+
+        }
+
+    }
+
+    /**
+     * Encapsulates to {@code key} with the given entropy {@code m}, preparing the key through the cache if one is
+     * configured.
+     */
+    private Encapsulation encapsulate(Workspace workspace, MLKEMContext context, EncapsulationKey key, byte[] m) {
+
+        Encapsulator encapsulator = workspace.encapsulator();
+
+        // Use the cached preparation of the key if caching is enabled
+        EncapsulationKey ek = encapsulationKeyCache != null ? encapsulationKeyCache.prepare(key, encapsulator) : key;
+
+        // Perform the encapsulation
+        return encapsulator.encapsulate(context, ek, m);
+
+    }
+
+    /**
+     * An operation applied to item {@code index} of a batch with the workspace of the task it runs in
+     */
+    @FunctionalInterface
+    private interface BatchOperation<T, R> {
+        R apply(Workspace workspace, int index, T item);
+    }
+
+    /**
+     * Applies {@code operation} to every item of a batch on {@code executor} and waits for all of them to finish.
+     * The batch is split into at most {@link #BATCH_TASKS_PER_PROCESSOR} tasks per processor, and each task works
+     * through its items one at a time in a workspace it borrows, so at most one context per task is in use no matter
+     * how large the batch is.  The first exception thrown by any item is rethrown once all tasks are done.
+     *
+     * @return The results in the same order as {@code items}
+     */
+    private <T, R> List<R> runBatch(List<? extends T> items, Executor executor, BatchOperation<T, R> operation) {
+
+        // Copy the items so that lists without random access are only walked once
+        @SuppressWarnings("unchecked")
+        T[] input = (T[]) items.toArray();
+        Object[] results = new Object[input.length];
+
+        int tasks = Math.min(input.length, BATCH_TASKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks];
+        for (int t = 0; t < tasks; t++) {
+            int from = (int) ((long) input.length * t / tasks);
+            int to = (int) ((long) input.length * (t + 1) / tasks);
+            futures[t] = CompletableFuture.runAsync(() -> withWorkspace(workspace -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = operation.apply(workspace, i, input[i]);
+                }
+                return null;
+            }), executor);
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> resultList = (List<R>) List.of(results);
+        return resultList;
+
+    }
+
+    @Override
+    public PreparedEncapsulationKey prepare(EncapsulationKey key) {
+        return withWorkspace(workspace -> encapsulationKeyCache != null
+                ? encapsulationKeyCache.prepare(key, workspace.encapsulator())
+                : workspace.encapsulator().prepare(key));
+    }
+
     /**
      * Implements Algorithm 21 (ML-KEM.Decaps) of the FIPS203 Specification.
      * No randomness is generated so this is a simple pass-through to the internal implementation.
@@ -159,6 +469,42 @@ public class MimicloneFIPS203 implements FIPS203 {
      */
     @Override
     public SharedSecretKey decapsulate(DecapsulationKey key, CipherText cipherText) {
-        return decapsulator.decapsulate(key, cipherText);
+        return withWorkspace(workspace -> workspace.decapsulator().decapsulate(workspace.context(), key, cipherText));
+    }
+
+    @Override
+    public SharedSecretKey decapsulate(MLKEMContext context, DecapsulationKey key, CipherText cipherText) {
+        return withWorkspace(workspace -> workspace.decapsulator().decapsulate(context, key, cipherText));
+    }
+
+    @Override
+    public List<SharedSecretKey> decapsulateBatch(DecapsulationKey key, List<CipherText> cipherTexts) {
+        return decapsulateBatch(key, cipherTexts, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public List<SharedSecretKey> decapsulateBatch(DecapsulationKey key, List<CipherText> cipherTexts, Executor executor) {
+
+        // Decode sHat and tHat, expand the matrix A and check the hash h once for the whole batch
+        PreparedDecapsulationKey preparedKey = prepare(key);
+
+        try {
+            return runBatch(cipherTexts, executor,
+                    (workspace, i, cipherText) -> workspace.decapsulator().decapsulate(workspace.context(), preparedKey, cipherText));
+        } finally {
+
+            // ZERO: preparedKey, unless it was prepared by the caller
+            if (preparedKey != key) {
+                preparedKey.destroy();
+            }
+
+        }
+
     }
+
+    @Override
+    public PreparedDecapsulationKey prepare(DecapsulationKey key) {
+        return withWorkspace(workspace -> workspace.decapsulator().prepare(key));
+    }
+
 }
@@ -4,10 +4,80 @@ public interface Codec {
 
     byte[] byteEncode(int d, int[] f);
 
+    /**
+     * Encodes the 256 coefficients of {@code f} into {@code 32*d} bytes of {@code out} starting at {@code off},
+     * without allocating any memory.
+     *
+     * @param d An {@code int} representing the number of bits to encode per coefficient.
+     * @param f An {@code int} array of 256 coefficients, only the low {@code d} bits of each are encoded.
+     * @param out The array receiving the packed coefficients.
+     * @param off The index in {@code out} of the first encoded byte.
+     */
+    void byteEncode(int d, int[] f, byte[] out, int off);
+
+    /**
+     * Identical to {@link #byteEncode(int, int[], byte[], int)}, but encodes a polynomial held in the signed,
+     * lazily reduced {@code short[]} representation.  Every coefficient is brought into {@code [0, q)} as it is
+     * packed, so the coefficients may be in any signed range.
+     *
+     * @param f A {@code short} array of 256 coefficients congruent (modulo q) to the values to encode.
+     */
+    void byteEncode(int d, short[] f, byte[] out, int off);
+
     int[] compress(int d, int[] x);
 
     int[] byteDecode(int d, byte[] f);
 
+    /**
+     * Decodes {@code 32*d} bytes of {@code in} starting at {@code off} into the 256 coefficients of {@code out},
+     * without allocating any memory.
+     *
+     * @param d An {@code int} representing the number of bits encoded per coefficient.
+     * @param in The array holding the packed coefficients.
+     * @param off The index in {@code in} of the first encoded byte.
+     * @param out An {@code int} array receiving the 256 decoded coefficients.
+     */
+    void byteDecode(int d, byte[] in, int off, int[] out);
+
     int[] decompress(int d, int[] y);
 
+    /**
+     * Compresses the 256 coefficients of {@code x} to {@code d} bits and encodes them into {@code 32*d} bytes of
+     * {@code out} starting at {@code off} in a single pass, equivalent to
+     * {@code byteEncode(d, compress(d, x))} but without any intermediate arrays.
+     *
+     * @param d An {@code int} representing the number of bits per compressed coefficient.
+     * @param x An {@code int} array of 256 coefficients in {@code [0, q)}.
+     * @param out The array receiving the packed coefficients.
+     * @param off The index in {@code out} of the first encoded byte.
+     */
+    void compressEncode(int d, int[] x, byte[] out, int off);
+
+    /**
+     * Identical to {@link #compressEncode(int, int[], byte[], int)}, but compresses a polynomial held in the signed,
+     * lazily reduced {@code short[]} representation.  Every coefficient is brought into {@code [0, q)} before it is
+     * compressed, so the coefficients may be in any signed range.
+     *
+     * @param x A {@code short} array of 256 coefficients congruent (modulo q) to the values to compress.
+     */
+    void compressEncode(int d, short[] x, byte[] out, int off);
+
+    /**
+     * Decodes {@code 32*d} bytes of {@code in} starting at {@code off} and decompresses them into the 256
+     * coefficients of {@code out} in a single pass, equivalent to {@code decompress(d, byteDecode(d, in))} but
+     * without any intermediate arrays.
+     *
+     * @param d An {@code int} representing the number of bits per compressed coefficient.
+     * @param in The array holding the packed coefficients.
+     * @param off The index in {@code in} of the first encoded byte.
+     * @param out An {@code int} array receiving the 256 decompressed coefficients.
+     */
+    void decodeDecompress(int d, byte[] in, int off, int[] out);
+
+    /**
+     * Identical to {@link #decodeDecompress(int, byte[], int, int[])}, but writes the decompressed coefficients
+     * (in {@code [0, q)}) into a {@code short[]} polynomial.
+     */
+    void decodeDecompress(int d, byte[] in, int off, short[] out);
+
 }
@@ -1,22 +1,42 @@
 package com.mimiclone.fips203.codec;
 
-import com.mimiclone.CryptoUtils;
 import com.mimiclone.fips203.ParameterSet;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.util.BitSet;
-
-import static com.mimiclone.CryptoUtils.mod;
-import static com.mimiclone.CryptoUtils.pow;
-
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMCodec implements Codec {
 
+    /**
+     * Shift of the fixed point reciprocal of q used by Compress.  With this shift {@code (n * M) >> 35} equals
+     * {@code n / q} for every numerator Compress can produce (up to {@code (q-1)*2^12 + q/2}).
+     */
+    private static final int COMPRESS_SHIFT = 35;
+
+    /**
+     * Shift of the fixed point reciprocal of q used to normalize signed {@code short} coefficients
+     */
+    private static final int NORMALIZE_SHIFT = 26;
+
     private final ParameterSet parameterSet;
 
+    /**
+     * The value {@code ceil(2^35 / q)}
+     */
+    private final long compressMultiplier;
+
+    /**
+     * The value {@code round(2^26 / q)}
+     */
+    private final int normalizeMultiplier;
+
     public static MLKEMCodec create(ParameterSet parameterSet) {
-        return new MLKEMCodec(parameterSet);
+        int q = parameterSet.getQ();
+        return new MLKEMCodec(
+                parameterSet,
+                ((1L << COMPRESS_SHIFT) + q - 1) / q,
+                ((1 << NORMALIZE_SHIFT) + (q >> 1)) / q
+        );
     }
 
 
@@ -32,87 +52,424 @@ public class MLKEMCodec implements Codec {
      */
     @Override
     public byte[] byteEncode(int d, int[] f) {
+        byte[] result = new byte[32 * d];
+        byteEncode(d, f, result, 0);
+        return result;
+    }
+
+    @Override
+    public void byteEncode(int d, int[] f, byte[] out, int off) {
+
+        // Validate the output buffer can hold the 32*d encoded bytes
+        validateBuffer(d, out.length, off);
+
+        // NOTE: Every kernel packs the coefficients least significant bit first, which is identical to the bit
+        // order of Algorithm 5 in the FIPS203 Specification.  Only the low d bits of each coefficient are kept.
+        switch (d) {
+            case 1 -> encode1(f, out, off);
+            case 4 -> encode4(f, out, off);
+            case 5 -> encode5(f, out, off);
+            case 10 -> encode10(f, out, off);
+            case 11 -> encode11(f, out, off);
+            case 12 -> encode12(f, out, off);
+            default -> encodeBits(d, f, out, off);
+        }
 
-        // Declare bitset
-        int bitCapacity = 256 * d;
-        BitSet b = new BitSet(bitCapacity);
+    }
+
+    @Override
+    public void byteEncode(int d, short[] f, byte[] out, int off) {
 
-        // Iterate over the input array
+        // Validate the output buffer can hold the 32*d encoded bytes
+        validateBuffer(d, out.length, off);
+
+        // Normalize each coefficient and pack it straight into a 64-bit accumulator, flushing whole bytes
+        int mask = (1 << d) - 1;
+        long acc = 0;
+        int bits = 0;
+        int o = off;
         for (int i = 0; i < 256; i++) {
+            acc |= (long) (normalize(f[i]) & mask) << bits;
+            bits += d;
+            while (bits >= 8) {
+                out[o++] = (byte) acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
+
+    }
+
+    /**
+     * Brings any {@code short} value into {@code [0, q)} with a signed Barrett reduction followed by a masked
+     * addition, so the running time does not depend on the value.
+     */
+    private int normalize(int a) {
+        int q = parameterSet.getQ();
+        int r = a - ((normalizeMultiplier * a + (1 << (NORMALIZE_SHIFT - 1))) >> NORMALIZE_SHIFT) * q;
+        return r + ((r >> 31) & q);
+    }
 
-            // Extract a single integer (modulo m) -> Assumes big endian bit order and 32-bit ints
-            int a = f[i] & CryptoUtils.INT_BIT_MASKS[d];
+    private static void validateBuffer(int d, int length, int off) {
+        if (d < 1 || d > 12) {
+            throw new IllegalArgumentException("Coefficient bit length must be between 1 and 12");
+        }
+        if (off < 0 || length - off < 32 * d) {
+            throw new IllegalArgumentException("Buffer must hold %d bytes at the given offset".formatted(32 * d));
+        }
+    }
 
-            // Iterate over the bits in the integer
-            for (int j = 0; j < d; j++) {
+    /**
+     * Packs eight 1-bit coefficients per byte.
+     */
+    private static void encode1(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 32; i++) {
+            int b = 0;
+            for (int j = 0; j < 8; j++) {
+                b |= (f[8*i+j] & 0x1) << j;
+            }
+            out[off+i] = (byte) b;
+        }
+    }
 
-                // Calculate the bit index for the operation
-                int bitIndex = i * d + j;
+    /**
+     * Packs two 4-bit coefficients per byte.
+     */
+    private static void encode4(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 128; i++) {
+            out[off+i] = (byte) ((f[2*i] & 0xF) | ((f[2*i+1] & 0xF) << 4));
+        }
+    }
 
-                // Set the bit at the calculated bit index to a mod 2 which is the least significant bit of a
-                b.set(bitIndex, (a & CryptoUtils.INT_BIT_MASKS[1]) != 0);
+    /**
+     * Packs eight 5-bit coefficients into a 40-bit word which is written as 5 bytes.
+     */
+    private static void encode5(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 32; i++) {
+            long t = 0;
+            for (int j = 0; j < 8; j++) {
+                t |= (long) (f[8*i+j] & 0x1F) << (5*j);
+            }
+            writeLittleEndian(t, 5, out, off + 5*i);
+        }
+    }
 
-                // Update a
-                a = (a - (b.get(bitIndex) ? 1 : 0))/2;
+    /**
+     * Packs four 10-bit coefficients into a 40-bit word which is written as 5 bytes.
+     */
+    private static void encode10(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 64; i++) {
+            long t = (f[4*i] & 0x3FFL)
+                    | (f[4*i+1] & 0x3FFL) << 10
+                    | (f[4*i+2] & 0x3FFL) << 20
+                    | (f[4*i+3] & 0x3FFL) << 30;
+            writeLittleEndian(t, 5, out, off + 5*i);
+        }
+    }
 
+    /**
+     * Packs eight 11-bit coefficients into 11 bytes.  The first five coefficients and the low 9 bits of the sixth
+     * fill a 64-bit word, and the remaining 24 bits are written as the final 3 bytes.
+     */
+    private static void encode11(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 32; i++) {
+            long lo = 0;
+            for (int j = 0; j < 5; j++) {
+                lo |= (long) (f[8*i+j] & 0x7FF) << (11*j);
             }
+            long t5 = f[8*i+5] & 0x7FF;
+            lo |= t5 << 55;
+
+            // Remaining bits: 2 from t5, then t6 and t7, 24 bits in total
+            int hi = (int) (t5 >>> 9)
+                    | (f[8*i+6] & 0x7FF) << 2
+                    | (f[8*i+7] & 0x7FF) << 13;
 
+            writeLittleEndian(lo, 8, out, off + 11*i);
+            writeLittleEndian(hi, 3, out, off + 11*i + 8);
         }
+    }
 
-        // Convert the bitset to a byte array
-        byte[] result = new byte[bitCapacity/8];
-        byte[] bitsAsBytes = b.toByteArray();
-        System.arraycopy(bitsAsBytes, 0, result, 0, bitsAsBytes.length);
-        return result;
+    /**
+     * Packs two 12-bit coefficients into 3 bytes.
+     */
+    private static void encode12(int[] f, byte[] out, int off) {
+        for (int i = 0; i < 128; i++) {
+            int t0 = f[2*i] & 0xFFF;
+            int t1 = f[2*i+1] & 0xFFF;
+            out[off+3*i] = (byte) t0;
+            out[off+3*i+1] = (byte) ((t0 >>> 8) | (t1 << 4));
+            out[off+3*i+2] = (byte) (t1 >>> 4);
+        }
+    }
 
+    /**
+     * Packs coefficients of any bit length through a 64-bit accumulator, flushing whole bytes as they fill.
+     */
+    private static void encodeBits(int d, int[] f, byte[] out, int off) {
+        int mask = (1 << d) - 1;
+        long acc = 0;
+        int bits = 0;
+        int o = off;
+        for (int i = 0; i < 256; i++) {
+            acc |= (long) (f[i] & mask) << bits;
+            bits += d;
+            while (bits >= 8) {
+                out[o++] = (byte) acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
     }
 
-    @Override
-    public int[] compress(int d, int[] x) {
+    private static void writeLittleEndian(long value, int length, byte[] out, int off) {
+        for (int i = 0; i < length; i++) {
+            out[off+i] = (byte) (value >>> (8*i));
+        }
+    }
 
-        // return ((x * d.Exp2() + (_param.Q / 2)) / _param.Q);
+    private static long readLittleEndian(byte[] in, int off, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value |= (in[off+i] & 0xFFL) << (8*i);
+        }
+        return value;
+    }
 
-        int q = parameterSet.getQ();
+    @Override
+    public int[] compress(int d, int[] x) {
         int[] result = new int[x.length];
         for (int i = 0; i < x.length; i++) {
-            result[i] = ((x[i] * pow(2, d)) + (q >> 1)) / q;
+            result[i] = compress(d, x[i]);
         }
-
         return result;
     }
 
+    /**
+     * Calculates {@code round(x * 2^d / q) mod 2^d} without any division, so the running time does not depend on
+     * the value of {@code x}.
+     */
+    private int compress(int d, int x) {
+        long numerator = ((long) x << d) + (parameterSet.getQ() >> 1);
+        return (int) ((numerator * compressMultiplier) >>> COMPRESS_SHIFT) & ((1 << d) - 1);
+    }
+
+    /**
+     * Calculates {@code round(y * q / 2^d)}, where the division by a power of two is a shift.
+     */
+    private int decompress(int d, int y) {
+        return (y * parameterSet.getQ() + (1 << (d - 1))) >>> d;
+    }
+
     @Override
-    public int[] byteDecode(int d, byte[] f) {
+    public void compressEncode(int d, int[] x, byte[] out, int off) {
 
-        BitSet bits = BitSet.valueOf(f);
-        int[] result = new int[256];
-        int dPow = pow(2, d);
-        int q = parameterSet.getQ();
-        int m = (d == 12) ? q : dPow;
+        // Validate the output buffer can hold the 32*d encoded bytes
+        validateBuffer(d, out.length, off);
+
+        // Compress each coefficient and pack it straight into a 64-bit accumulator, flushing whole bytes
+        long acc = 0;
+        int bits = 0;
+        int o = off;
+        for (int i = 0; i < 256; i++) {
+            acc |= (long) compress(d, x[i]) << bits;
+            bits += d;
+            while (bits >= 8) {
+                out[o++] = (byte) acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
+
+    }
+
+    @Override
+    public void compressEncode(int d, short[] x, byte[] out, int off) {
+
+        // Validate the output buffer can hold the 32*d encoded bytes
+        validateBuffer(d, out.length, off);
+
+        // Normalize and compress each coefficient and pack it straight into a 64-bit accumulator
+        long acc = 0;
+        int bits = 0;
+        int o = off;
+        for (int i = 0; i < 256; i++) {
+            acc |= (long) compress(d, normalize(x[i])) << bits;
+            bits += d;
+            while (bits >= 8) {
+                out[o++] = (byte) acc;
+                acc >>>= 8;
+                bits -= 8;
+            }
+        }
+
+    }
+
+    @Override
+    public void decodeDecompress(int d, byte[] in, int off, int[] out) {
+
+        // Validate the input buffer holds the 32*d encoded bytes
+        validateBuffer(d, in.length, off);
+
+        // Unpack each coefficient from a 64-bit accumulator and decompress it immediately
+        int mask = (1 << d) - 1;
+        long acc = 0;
+        int bits = 0;
+        int o = off;
+        for (int i = 0; i < 256; i++) {
+            while (bits < d) {
+                acc |= (in[o++] & 0xFFL) << bits;
+                bits += 8;
+            }
+            out[i] = decompress(d, (int) acc & mask);
+            acc >>>= d;
+            bits -= d;
+        }
+
+    }
+
+    @Override
+    public void decodeDecompress(int d, byte[] in, int off, short[] out) {
 
+        // Validate the input buffer holds the 32*d encoded bytes
+        validateBuffer(d, in.length, off);
+
+        // Unpack each coefficient from a 64-bit accumulator and decompress it immediately
+        int mask = (1 << d) - 1;
+        long acc = 0;
+        int bits = 0;
+        int o = off;
         for (int i = 0; i < 256; i++) {
-            for (int j = 0; j < d; j++) {
-                int jPow = pow(2, j);
-                result[i] = mod(result[i] + (bits.get(i * d + j) ? jPow : 0), m);
+            while (bits < d) {
+                acc |= (in[o++] & 0xFFL) << bits;
+                bits += 8;
             }
+            out[i] = (short) decompress(d, (int) acc & mask);
+            acc >>>= d;
+            bits -= d;
         }
 
+    }
+
+    @Override
+    public int[] byteDecode(int d, byte[] f) {
+        int[] result = new int[256];
+        byteDecode(d, f, 0, result);
         return result;
     }
 
     @Override
-    public int[] decompress(int d, int[] y) {
+    public void byteDecode(int d, byte[] in, int off, int[] out) {
+
+        // Validate the input buffer holds the 32*d encoded bytes
+        validateBuffer(d, in.length, off);
+
+        switch (d) {
+            case 1 -> decode1(in, off, out);
+            case 4 -> decode4(in, off, out);
+            case 5 -> decode5(in, off, out);
+            case 10 -> decode10(in, off, out);
+            case 11 -> decode11(in, off, out);
+            case 12 -> decode12(in, off, out, parameterSet.getQ());
+            default -> decodeBits(d, in, off, out);
+        }
 
-        int[] result = new int[y.length];
+    }
 
-        int q = parameterSet.getQ();
-        int d2 = pow(2, d);
-        int d2Half = pow(2, d) >>> 1;
+    private static void decode1(byte[] in, int off, int[] out) {
+        for (int i = 0; i < 32; i++) {
+            int b = in[off+i];
+            for (int j = 0; j < 8; j++) {
+                out[8*i+j] = (b >>> j) & 0x1;
+            }
+        }
+    }
 
-        for (int i = 0; i < y.length; i++) {
-            result[i] = (y[i] * q + d2Half) / d2;
+    private static void decode4(byte[] in, int off, int[] out) {
+        for (int i = 0; i < 128; i++) {
+            int b = in[off+i];
+            out[2*i] = b & 0xF;
+            out[2*i+1] = (b >>> 4) & 0xF;
         }
+    }
+
+    private static void decode5(byte[] in, int off, int[] out) {
+        for (int i = 0; i < 32; i++) {
+            long t = readLittleEndian(in, off + 5*i, 5);
+            for (int j = 0; j < 8; j++) {
+                out[8*i+j] = (int) (t >>> (5*j)) & 0x1F;
+            }
+        }
+    }
 
+    private static void decode10(byte[] in, int off, int[] out) {
+        for (int i = 0; i < 64; i++) {
+            long t = readLittleEndian(in, off + 5*i, 5);
+            out[4*i] = (int) t & 0x3FF;
+            out[4*i+1] = (int) (t >>> 10) & 0x3FF;
+            out[4*i+2] = (int) (t >>> 20) & 0x3FF;
+            out[4*i+3] = (int) (t >>> 30) & 0x3FF;
+        }
+    }
+
+    private static void decode11(byte[] in, int off, int[] out) {
+        for (int i = 0; i < 32; i++) {
+            long lo = readLittleEndian(in, off + 11*i, 8);
+            int hi = (int) readLittleEndian(in, off + 11*i + 8, 3);
+            for (int j = 0; j < 5; j++) {
+                out[8*i+j] = (int) (lo >>> (11*j)) & 0x7FF;
+            }
+            out[8*i+5] = ((int) (lo >>> 55) | (hi << 9)) & 0x7FF;
+            out[8*i+6] = (hi >>> 2) & 0x7FF;
+            out[8*i+7] = (hi >>> 13) & 0x7FF;
+        }
+    }
+
+    /**
+     * Unpacks two 12-bit values from every 3 bytes and reduces them modulo q, as required by Algorithm 6 of the
+     * FIPS203 Specification when {@code d = 12}.
+     */
+    private static void decode12(byte[] in, int off, int[] out, int q) {
+        for (int i = 0; i < 128; i++) {
+            int b0 = in[off+3*i] & 0xFF;
+            int b1 = in[off+3*i+1] & 0xFF;
+            int b2 = in[off+3*i+2] & 0xFF;
+
+            // A 12-bit value is less than 2q, so a single masked subtraction reduces it
+            int t0 = (b0 | (b1 << 8)) & 0xFFF;
+            int t1 = (b1 >>> 4) | (b2 << 4);
+            t0 -= q;
+            t1 -= q;
+            out[2*i] = t0 + ((t0 >> 31) & q);
+            out[2*i+1] = t1 + ((t1 >> 31) & q);
+        }
+    }
+
+    /**
+     * Unpacks coefficients of any bit length through a 64-bit accumulator, refilling it a byte at a time.
+     */
+    private static void decodeBits(int d, byte[] in, int off, int[] out) {
+        int mask = (1 << d) - 1;
+        long acc = 0;
+        int bits = 0;
+        int o = off;
+        for (int i = 0; i < 256; i++) {
+            while (bits < d) {
+                acc |= (in[o++] & 0xFFL) << bits;
+                bits += 8;
+            }
+            out[i] = (int) acc & mask;
+            acc >>>= d;
+            bits -= d;
+        }
+    }
+
+    @Override
+    public int[] decompress(int d, int[] y) {
+        int[] result = new int[y.length];
+        for (int i = 0; i < y.length; i++) {
+            result[i] = decompress(d, y[i]);
+        }
         return result;
     }
 }
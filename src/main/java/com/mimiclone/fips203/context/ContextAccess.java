@@ -0,0 +1,176 @@
+package com.mimiclone.fips203.context;
+
+import com.mimiclone.fips202.keccak.core.Keccak1600x4;
+
+/**
+ * Grants the ML-KEM components access to the scratch buffers of an {@link MLKEMContext}.
+ * <p>
+ * The buffers carry secrets from one step of an operation to the next, so the accessors of the context itself are
+ * package-private and callers that merely create, pass around and close contexts can neither read nor overwrite
+ * them.  The components in other packages each obtain the single instance with {@link #get()} when they are
+ * initialized and reach the buffers through it.
+ */
+public final class ContextAccess {
+
+    private static final String LIBRARY_PACKAGE = "com.mimiclone.fips203";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private static final ContextAccess INSTANCE = new ContextAccess();
+
+    private ContextAccess() {
+    }
+
+    /**
+     * @throws SecurityException unless the caller is a class of this library, loaded by the same class loader
+     */
+    public static ContextAccess get() {
+        Class<?> caller = STACK_WALKER.getCallerClass();
+        if (caller.getClassLoader() != ContextAccess.class.getClassLoader()
+                || !(caller.getPackageName() + ".").startsWith(LIBRARY_PACKAGE + ".")) {
+            throw new SecurityException(caller.getName() + " may not access the buffers of an ML-KEM context");
+        }
+        return INSTANCE;
+    }
+
+    public Keccak1600x4 getShake128(MLKEMContext context) {
+        return context.getShake128();
+    }
+
+    public Keccak1600x4 getShake256(MLKEMContext context) {
+        return context.getShake256();
+    }
+
+    public byte[] getXofBlock(MLKEMContext context) {
+        return context.getXofBlock();
+    }
+
+    public byte[][] getPrfOutputs(MLKEMContext context) {
+        return context.getPrfOutputs();
+    }
+
+    public int[] getSampledCounts(MLKEMContext context) {
+        return context.getSampledCounts();
+    }
+
+    public int[][] getMatrixRow(MLKEMContext context) {
+        return context.getMatrixRow();
+    }
+
+    public byte[] getMatrixIndices(MLKEMContext context) {
+        return context.getMatrixIndices();
+    }
+
+    public int[] getMatrixEntry(MLKEMContext context) {
+        return context.getMatrixEntry();
+    }
+
+    public int[][] getSecretVector(MLKEMContext context) {
+        return context.getSecretVector();
+    }
+
+    public int[][] getErrorVector(MLKEMContext context) {
+        return context.getErrorVector();
+    }
+
+    public int[] getErrorPolynomial(MLKEMContext context) {
+        return context.getErrorPolynomial();
+    }
+
+    public int[][] getKeyGenerationNoise(MLKEMContext context) {
+        return context.getKeyGenerationNoise();
+    }
+
+    public int[][] getEncryptionNoise(MLKEMContext context) {
+        return context.getEncryptionNoise();
+    }
+
+    public int[][] getPublicVector(MLKEMContext context) {
+        return context.getPublicVector();
+    }
+
+    public int[][] getProductVector(MLKEMContext context) {
+        return context.getProductVector();
+    }
+
+    public int[] getProductPolynomial(MLKEMContext context) {
+        return context.getProductPolynomial();
+    }
+
+    public int[] getMessagePolynomial(MLKEMContext context) {
+        return context.getMessagePolynomial();
+    }
+
+    public short[][] getLazySecretVector(MLKEMContext context) {
+        return context.getLazySecretVector();
+    }
+
+    public short[][] getLazyErrorVector(MLKEMContext context) {
+        return context.getLazyErrorVector();
+    }
+
+    public short[] getLazyErrorPolynomial(MLKEMContext context) {
+        return context.getLazyErrorPolynomial();
+    }
+
+    public short[][] getLazyKeyGenerationNoise(MLKEMContext context) {
+        return context.getLazyKeyGenerationNoise();
+    }
+
+    public short[][] getLazyEncryptionNoise(MLKEMContext context) {
+        return context.getLazyEncryptionNoise();
+    }
+
+    public short[][] getLazyProductVector(MLKEMContext context) {
+        return context.getLazyProductVector();
+    }
+
+    public short[] getLazyProductPolynomial(MLKEMContext context) {
+        return context.getLazyProductPolynomial();
+    }
+
+    public short[] getLazyMessagePolynomial(MLKEMContext context) {
+        return context.getLazyMessagePolynomial();
+    }
+
+    public byte[] getSeed(MLKEMContext context) {
+        return context.getSeed();
+    }
+
+    public byte[] getNoiseSeed(MLKEMContext context) {
+        return context.getNoiseSeed();
+    }
+
+    public byte[] getHashInput(MLKEMContext context) {
+        return context.getHashInput();
+    }
+
+    public byte[] getHashOutput(MLKEMContext context) {
+        return context.getHashOutput();
+    }
+
+    public byte[] getMessage(MLKEMContext context) {
+        return context.getMessage();
+    }
+
+    public byte[] getKeyHash(MLKEMContext context) {
+        return context.getKeyHash();
+    }
+
+    public byte[] getSharedSecret(MLKEMContext context) {
+        return context.getSharedSecret();
+    }
+
+    public byte[] getRejectionSecret(MLKEMContext context) {
+        return context.getRejectionSecret();
+    }
+
+    public byte[] getCipherText(MLKEMContext context) {
+        return context.getCipherText();
+    }
+
+    public byte[] getDecapsulationKey(MLKEMContext context) {
+        return context.getDecapsulationKey();
+    }
+
+}
@@ -0,0 +1,338 @@
+package com.mimiclone.fips203.context;
+
+import com.mimiclone.fips202.keccak.core.Keccak1600x4;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.hash.XOFParameterSet;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import static com.mimiclone.CryptoUtils.zero;
+
+/**
+ * Reusable workspace for the key generation, encapsulation and decapsulation of a single parameter set.
+ * <p>
+ * A context owns every scratch polynomial, byte buffer and Keccak state those operations need, so that an
+ * operation given a context only allocates the objects it returns.  The buffers are shared between operations
+ * (for example the secret vector holds {@code s} during key generation, {@code y} during encryption and
+ * {@code sHat} during decryption), so a context must only be used by one thread at a time.  Each polynomial an
+ * operation computes has a {@code short[]} counterpart, which the components use instead when the
+ * {@code LazyReductionTransformer} is selected.  Only the components
+ * of this library can reach the buffers, through {@link ContextAccess}.
+ * <p>
+ * Operations zero the secret parts of the workspace as they finish with them, and {@link #close()} zeroes all of
+ * it.  A closed context may be used again.
+ */
+@Getter(AccessLevel.PACKAGE)
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MLKEMContext implements AutoCloseable {
+
+    @Getter
+    private final ParameterSet parameterSet;
+
+    // Sampling
+
+    /**
+     * Four SHAKE128 instances used to expand the matrix {@code A}
+     */
+    private final Keccak1600x4 shake128;
+
+    /**
+     * Four SHAKE256 instances used by the noise PRF
+     */
+    private final Keccak1600x4 shake256;
+
+    /**
+     * One SHAKE128 rate block squeezed by the rejection sampler
+     */
+    private final byte[] xofBlock;
+
+    /**
+     * The {@code 64*eta} PRF output bytes of each of the four noise polynomials sampled together
+     */
+    private final byte[][] prfOutputs;
+
+    /**
+     * The number of coefficients sampled so far for each of the four polynomials sampled together
+     */
+    private final int[] sampledCounts;
+
+    /**
+     * The row of {@code A} (or of its transpose) currently being multiplied in, and the index bytes it was
+     * sampled with
+     */
+    private final int[][] matrixRow;
+    private final byte[] matrixIndices;
+
+    /**
+     * The matrix entry handed to the transformer
+     */
+    private final int[] matrixEntry;
+
+    // Polynomials
+
+    /**
+     * {@code s} during key generation, {@code y} during encryption and {@code sHat} during decryption
+     */
+    private final int[][] secretVector;
+
+    /**
+     * {@code e} (and with it {@code tHat}) during key generation and {@code e1} during encryption
+     */
+    private final int[][] errorVector;
+
+    /**
+     * {@code e2} during encryption
+     */
+    private final int[] errorPolynomial;
+
+    /**
+     * The polynomials of {@code secretVector} followed by those of {@code errorVector}, sampled
+     * together during key generation
+     */
+    private final int[][] keyGenerationNoise;
+
+    /**
+     * The polynomials of {@code errorVector} followed by {@code errorPolynomial}, sampled together
+     * during encryption
+     */
+    private final int[][] encryptionNoise;
+
+    /**
+     * {@code tHat} decoded during encryption
+     */
+    private final int[][] publicVector;
+
+    /**
+     * {@code u} during encryption and {@code u'} during decryption
+     */
+    private final int[][] productVector;
+
+    /**
+     * {@code v} during encryption and {@code w} during decryption
+     */
+    private final int[] productPolynomial;
+
+    /**
+     * {@code mu} during encryption and {@code v'} during decryption
+     */
+    private final int[] messagePolynomial;
+
+    // Lazily reduced polynomials
+
+    /**
+     * {@code s} during key generation and {@code y} during encryption
+     */
+    private final short[][] lazySecretVector;
+
+    /**
+     * {@code e} (and with it {@code tHat}) during key generation and {@code e1} during encryption
+     */
+    private final short[][] lazyErrorVector;
+
+    /**
+     * {@code e2} during encryption
+     */
+    private final short[] lazyErrorPolynomial;
+
+    /**
+     * The polynomials of {@code lazySecretVector} followed by those of {@code lazyErrorVector}
+     */
+    private final short[][] lazyKeyGenerationNoise;
+
+    /**
+     * The polynomials of {@code lazyErrorVector} followed by {@code lazyErrorPolynomial}
+     */
+    private final short[][] lazyEncryptionNoise;
+
+    /**
+     * {@code u} during encryption and {@code u'} during decryption
+     */
+    private final short[][] lazyProductVector;
+
+    /**
+     * {@code v} during encryption and {@code w} during decryption
+     */
+    private final short[] lazyProductPolynomial;
+
+    /**
+     * {@code mu} during encryption and {@code v'} during decryption
+     */
+    private final short[] lazyMessagePolynomial;
+
+    // Bytes
+
+    /**
+     * {@code rho}
+     */
+    private final byte[] seed;
+
+    /**
+     * {@code sigma} during key generation and {@code r} during encryption
+     */
+    private final byte[] noiseSeed;
+
+    /**
+     * The input and output of the hash function G
+     */
+    private final byte[] hashInput;
+    private final byte[] hashOutput;
+
+    /**
+     * {@code m'} during decapsulation
+     */
+    private final byte[] message;
+
+    /**
+     * {@code H(ek)}
+     */
+    private final byte[] keyHash;
+
+    /**
+     * The shared secret {@code K}, or {@code K'} during decapsulation
+     */
+    private final byte[] sharedSecret;
+
+    /**
+     * The implicit rejection value {@code K-bar}
+     */
+    private final byte[] rejectionSecret;
+
+    /**
+     * The re-encrypted {@code c'} during decapsulation
+     */
+    private final byte[] cipherText;
+
+    /**
+     * The decapsulation key encoded during key generation, {@code dkPKE || ekPKE || H(ek) || z}
+     */
+    private final byte[] decapsulationKey;
+
+    public static MLKEMContext create(ParameterSet parameterSet) {
+
+        int k = parameterSet.getK();
+        int maximumEta = Math.max(parameterSet.getEta1(), parameterSet.getEta2());
+
+        int[][] secretVector = new int[k][256];
+        int[][] errorVector = new int[k][256];
+        int[] errorPolynomial = new int[256];
+
+        int[][] keyGenerationNoise = new int[2 * k][];
+        System.arraycopy(secretVector, 0, keyGenerationNoise, 0, k);
+        System.arraycopy(errorVector, 0, keyGenerationNoise, k, k);
+
+        int[][] encryptionNoise = new int[k + 1][];
+        System.arraycopy(errorVector, 0, encryptionNoise, 0, k);
+        encryptionNoise[k] = errorPolynomial;
+
+        short[][] lazySecretVector = new short[k][256];
+        short[][] lazyErrorVector = new short[k][256];
+        short[] lazyErrorPolynomial = new short[256];
+
+        short[][] lazyKeyGenerationNoise = new short[2 * k][];
+        System.arraycopy(lazySecretVector, 0, lazyKeyGenerationNoise, 0, k);
+        System.arraycopy(lazyErrorVector, 0, lazyKeyGenerationNoise, k, k);
+
+        short[][] lazyEncryptionNoise = new short[k + 1][];
+        System.arraycopy(lazyErrorVector, 0, lazyEncryptionNoise, 0, k);
+        lazyEncryptionNoise[k] = lazyErrorPolynomial;
+
+        return new MLKEMContext(
+                parameterSet,
+                Keccak1600x4.create(XOFParameterSet.SHAKE128.getCapacityInBits()),
+                Keccak1600x4.create(XOFParameterSet.SHAKE256.getCapacityInBits()),
+                new byte[(1600 - XOFParameterSet.SHAKE128.getCapacityInBits()) / 8],
+                new byte[Keccak1600x4.INSTANCES][64 * maximumEta],
+                new int[Keccak1600x4.INSTANCES],
+                new int[k][256],
+                new byte[2 * k],
+                new int[256],
+                secretVector,
+                errorVector,
+                errorPolynomial,
+                keyGenerationNoise,
+                encryptionNoise,
+                new int[k][256],
+                new int[k][256],
+                new int[256],
+                new int[256],
+                lazySecretVector,
+                lazyErrorVector,
+                lazyErrorPolynomial,
+                lazyKeyGenerationNoise,
+                lazyEncryptionNoise,
+                new short[k][256],
+                new short[256],
+                new short[256],
+                new byte[32],
+                new byte[32],
+                new byte[64],
+                new byte[64],
+                new byte[32],
+                new byte[32],
+                new byte[32],
+                new byte[32],
+                new byte[parameterSet.getCiphertextLength()],
+                new byte[parameterSet.getDecapsulationKeyLength()]
+        );
+
+    }
+
+    /**
+     * @throws IllegalArgumentException if this context was created for a different parameter set
+     */
+    public void check(ParameterSet parameterSet) {
+        if (this.parameterSet != parameterSet) {
+            throw new IllegalArgumentException("Context was created for %s, not %s"
+                    .formatted(this.parameterSet.getName(), parameterSet.getName()));
+        }
+    }
+
+    /**
+     * Zeroes the whole workspace.
+     */
+    @Override
+    public void close() {
+
+        // ZERO: Sampling state
+        shake128.clear();
+        shake256.clear();
+        zero(xofBlock);
+        for (byte[] prfOutput : prfOutputs) {
+            zero(prfOutput);
+        }
+        zero(sampledCounts);
+        zero(matrixRow);
+        zero(matrixIndices);
+        zero(matrixEntry);
+
+        // ZERO: Polynomials
+        zero(secretVector);
+        zero(errorVector);
+        zero(errorPolynomial);
+        zero(publicVector);
+        zero(productVector);
+        zero(productPolynomial);
+        zero(messagePolynomial);
+        zero(lazySecretVector);
+        zero(lazyErrorVector);
+        zero(lazyErrorPolynomial);
+        zero(lazyProductVector);
+        zero(lazyProductPolynomial);
+        zero(lazyMessagePolynomial);
+
+        // ZERO: Bytes
+        zero(seed);
+        zero(noiseSeed);
+        zero(hashInput);
+        zero(hashOutput);
+        zero(message);
+        zero(keyHash);
+        zero(sharedSecret);
+        zero(rejectionSecret);
+        zero(cipherText);
+        zero(decapsulationKey);
+
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.mimiclone.fips203.decaps;
 
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
 import com.mimiclone.fips203.key.SharedSecretKey;
 import com.mimiclone.fips203.message.CipherText;
 
@@ -8,4 +10,19 @@ public interface Decapsulator {
 
     SharedSecretKey decapsulate(DecapsulationKey key, CipherText cipherText) throws DecapsulationException;
 
+    /**
+     * Identical to {@link #decapsulate(DecapsulationKey, CipherText)}, but works in the buffers of {@code context}
+     * so that only the returned shared secret is allocated.  The default ignores the context.
+     */
+    default SharedSecretKey decapsulate(MLKEMContext context, DecapsulationKey key, CipherText cipherText) throws DecapsulationException {
+        return decapsulate(key, cipherText);
+    }
+
+    /**
+     * Decodes and expands everything decapsulation needs from the key bytes ahead of time.  Passing the result to
+     * {@link #decapsulate(DecapsulationKey, CipherText)} skips decoding {@code sHat} and {@code tHat} and sampling
+     * the matrix {@code A}.  The caller is responsible for destroying the prepared key once it is no longer needed.
+     */
+    PreparedDecapsulationKey prepare(DecapsulationKey key) throws DecapsulationException;
+
 }
@@ -1,104 +1,280 @@
 package com.mimiclone.fips203.decaps.mlkem;
 
 import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.decaps.DecapsulationException;
 import com.mimiclone.fips203.decrypt.Decryptor;
 import com.mimiclone.fips203.decrypt.kpke.KPKEDecryptor;
 import com.mimiclone.fips203.encrypt.Encryptor;
 import com.mimiclone.fips203.encrypt.kpke.KPKEEncryptor;
+import com.mimiclone.fips203.event.DecapsulationEvent;
 import com.mimiclone.fips203.hash.Hash;
 import com.mimiclone.fips203.hash.MLKEMHash;
 import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
 import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMPreparedDecapsulationKey;
 import com.mimiclone.fips203.key.mlkem.MLKEMSharedSecretKey;
 import com.mimiclone.fips203.message.CipherText;
+import com.mimiclone.fips203.metrics.MLKEMMetrics;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import static com.mimiclone.CryptoUtils.conditionalCopy;
+import static com.mimiclone.CryptoUtils.differenceMask;
+import static com.mimiclone.CryptoUtils.zero;
+
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMDecapsulator implements com.mimiclone.fips203.decaps.Decapsulator {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
 
     private final Hash hash;
     private final Encryptor encryptor;
     private final Decryptor decryptor;
+    private final MLKEMMetrics metrics;
 
     public static MLKEMDecapsulator create(ParameterSet parameterSet) {
+        return create(parameterSet, MLKEMMetrics.none());
+    }
+
+    /**
+     * Creates a decapsulator that records the latency of every decapsulation, and whether it was an implicit
+     * rejection, with {@code metrics}.
+     */
+    public static MLKEMDecapsulator create(ParameterSet parameterSet, MLKEMMetrics metrics) {
         return new MLKEMDecapsulator(
                 parameterSet,
                 MLKEMHash.create(parameterSet),
                 KPKEEncryptor.create(parameterSet),
-                KPKEDecryptor.create(parameterSet)
+                KPKEDecryptor.create(parameterSet),
+                metrics
         );
     }
 
     @Override
     public SharedSecretKey decapsulate(DecapsulationKey key, CipherText cipherText) throws DecapsulationException {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            return decapsulate(context, key, cipherText);
+        }
+    }
 
-        // Wrap a copy of the decapsulation key into a buffer
-        ByteBuffer dkBuffer = ByteBuffer.wrap(key.getBytes());
+    @Override
+    public SharedSecretKey decapsulate(MLKEMContext context, DecapsulationKey key, CipherText cipherText) throws DecapsulationException {
 
-        // Extract the PKE decryption key (first 384*k bytes)
-        byte[] dkPKE = new byte[384*parameterSet.getK()];
-        dkBuffer.get(dkPKE);
+        context.check(parameterSet);
+        long start = System.nanoTime();
 
-        // Extract the PKE encryption key (next 384*k + 32 bytes)
-        byte[] ekPKE = new byte[384*parameterSet.getK() + 32];
-        dkBuffer.get(ekPKE);
+        // A destroyed key has been zeroed, and decapsulating with it would hand out secrets anyone can compute
+        checkNotDestroyed(key);
 
-        // Extract the PKE encryption key hash (next 32 bytes)
-        byte[] h = new byte[32];
-        dkBuffer.get(h);
+        // Prepared keys have already been decoded and expanded
+        if (key instanceof PreparedDecapsulationKey prepared) {
+            return decapsulate(context, start, prepared, cipherText);
+        }
 
-        // Extract the implicit rejection value (next 32 bytes)
-        byte[] z = new byte[32];
-        dkBuffer.get(z);
+        DecapsulationEvent event = new DecapsulationEvent();
+        event.start();
+
+        // The decapsulation key is dkPKE (384*k bytes), ekPKE (384*k + 32 bytes), the hash of ekPKE (32 bytes) and
+        // the implicit rejection value (32 bytes).  Each part is read in place from a copy of the key.
+        byte[] dk = key.getBytes();
+        int ekOffset = 384*parameterSet.getK();
+        int hOffset = ekOffset + 384*parameterSet.getK() + 32;
+        int zOffset = hOffset + 32;
 
         // Extract the cipherText bytes
         byte[] c = cipherText.getBytes();
 
         // Decrypt the ciphertext
-        byte[] mPrime = decryptor.decrypt(dkPKE, c);
+        int[][] sHat = ACCESS.getSecretVector(context);
+        decryptor.decodeSHat(dk, 0, sHat);
+        byte[] mPrime = ACCESS.getMessage(context);
+        decryptor.decrypt(context, sHat, c, mPrime); // LAST USE: sHat
+
+        // ZERO: sHat
+        zero(sHat);
+
+        SharedSecretKey sharedSecretKey = checkAndDerive(context, start, event, c, mPrime, dk, hOffset, dk, zOffset,
+                (m, r, out) -> encryptor.encrypt(context, dk, ekOffset, m, r, out)); // LAST USE: dk
+
+        // ZERO: dk
+        zero(dk);
+
+        return sharedSecretKey;
+    }
+
+    private SharedSecretKey decapsulate(MLKEMContext context, long start, PreparedDecapsulationKey key,
+                                        CipherText cipherText) {
+
+        DecapsulationEvent event = new DecapsulationEvent();
+        event.start();
+        event.prepared = true;
+
+        // Extract the cipherText bytes
+        byte[] c = cipherText.getBytes();
+
+        // Decrypt the ciphertext with the already decoded sHat
+        byte[] mPrime = ACCESS.getMessage(context);
+        decryptor.decrypt(context, key.getSHat(), c, mPrime);
+
+        // Re-encrypt with the already expanded encapsulation key
+        // NOTE: h and z are read in place from the prepared key, which owns (and zeroes) them
+        PreparedEncapsulationKey ek = key.getEncapsulationKey();
+        return checkAndDerive(context, start, event, c, mPrime, ek.getHash(), 0, key.getImplicitRejectionValue(), 0,
+                (m, r, out) -> encryptor.encrypt(context, ek, m, r, out));
+    }
+
+    /**
+     * K-PKE.Encrypt with the decapsulation key's embedded encryption key, writing the cipherText into {@code out}
+     */
+    @FunctionalInterface
+    private interface ReEncryption {
+        void encrypt(byte[] message, byte[] random, byte[] out);
+    }
+
+    /**
+     * Derives the shared secret from the decrypted message and performs the re-encryption check that selects
+     * the implicit rejection value when the ciphertext was not produced by encapsulation.
+     *
+     * @param start The {@link System#nanoTime()} at which the decapsulation started
+     * @param event The started event that receives the time spent in each phase, and is committed on return
+     * @param h The array holding the 32 byte hash of the encryption key at {@code hOffset}
+     * @param z The array holding the 32 byte implicit rejection value at {@code zOffset}
+     */
+    private SharedSecretKey checkAndDerive(MLKEMContext context, long start, DecapsulationEvent event, byte[] c,
+                                           byte[] mPrime, byte[] h, int hOffset, byte[] z, int zOffset,
+                                           ReEncryption reEncrypt) {
+
+        event.decryption += event.lap();
 
         // Hash the concatenation of the shared secret and its own hash
-        ByteBuffer integrityCheckInputBuffer = ByteBuffer.allocate(mPrime.length + h.length)
-                        .put(mPrime).put(h);
-        ByteBuffer integrityCheckOutputBuffer = ByteBuffer.wrap(hash.gHash(integrityCheckInputBuffer.array().clone()));
+        byte[] integrityCheckInput = ACCESS.getHashInput(context);
+        System.arraycopy(mPrime, 0, integrityCheckInput, 0, 32);
+        System.arraycopy(h, hOffset, integrityCheckInput, 32, 32);
+        byte[] integrityCheckOutput = ACCESS.getHashOutput(context);
+        hash.gHash(integrityCheckInput, 0, 64, integrityCheckOutput); // LAST USE: integrityCheckInput
+
+        // ZERO: integrityCheckInput
+        zero(integrityCheckInput);
 
         // Split out kPrime
-        byte[] kPrime = new byte[32];
-        integrityCheckOutputBuffer.get(kPrime);
+        byte[] kPrime = ACCESS.getSharedSecret(context);
+        System.arraycopy(integrityCheckOutput, 0, kPrime, 0, 32);
 
         // Split out rPrime
-        byte[] rPrime = new byte[32];
-        integrityCheckOutputBuffer.get(rPrime);
+        byte[] rPrime = ACCESS.getNoiseSeed(context);
+        System.arraycopy(integrityCheckOutput, 32, rPrime, 0, 32); // LAST USE: integrityCheckOutput
+
+        // ZERO: integrityCheckOutput
+        zero(integrityCheckOutput);
 
         // Generate kBar (implicit rejection flag)
-        ByteBuffer implicitRejectionBuffer = ByteBuffer.allocate(z.length + c.length).put(z).put(c);
-        byte[] kBar = hash.jHash(implicitRejectionBuffer.array().clone());
+        byte[] kBar = ACCESS.getRejectionSecret(context);
+        hash.jHash(z, zOffset, c, kBar);
+        event.hashing += event.lap();
 
         // K-PKE encrypt the recovered shared secret and the calculated randomness kPrime
-        byte[] cPrime = encryptor.encrypt(ekPKE, mPrime, rPrime);
+        byte[] cPrime = ACCESS.getCipherText(context);
+        reEncrypt.encrypt(mPrime, rPrime, cPrime); // LAST USE: mPrime, rPrime
+
+        // ZERO: mPrime, rPrime
+        zero(mPrime);
+        zero(rPrime);
+        event.reEncryption += event.lap();
+
+        // Check integrity of calculated values, and set the implicit rejection flag if they differ
+        // NOTE: Both the comparison and the selection of kBar take the same time whatever the outcome, so the
+        //       timing does not reveal whether the ciphertext was rejected.
+        int rejected = differenceMask(c, cPrime);
+        conditionalCopy(rejected, kBar, kPrime, 32);
+
+        // Construct the calculated shared secret key, which takes ownership of its own copy
+        SharedSecretKey sharedSecretKey = MLKEMSharedSecretKey.create(kPrime.clone()); // LAST USE: kPrime
+
+        // ZERO: kPrime, kBar, cPrime
+        // NOTE: Java uses JVM-managed garbage collection so we must overwrite the values to guarantee
+        //       value destruction.
+        zero(kPrime);
+        zero(kBar);
+        zero(cPrime);
+
+        event.comparison += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
+
+        // The mask is 0 or -1, so the low bit counts the rejection without branching on it
+        metrics.recordDecapsulation(parameterSet, System.nanoTime() - start, rejected & 1);
+
+        return sharedSecretKey;
+    }
+
+    private static void checkNotDestroyed(DecapsulationKey key) {
+        if (key.isDestroyed()) {
+            throw new DecapsulationException("Decapsulation key has been destroyed");
+        }
+    }
+
+    @Override
+    public PreparedDecapsulationKey prepare(DecapsulationKey key) throws DecapsulationException {
+
+        checkNotDestroyed(key);
+
+        // Already prepared keys are returned unchanged
+        if (key instanceof PreparedDecapsulationKey prepared) {
+            return prepared;
+        }
+
+        // Copy the decapsulation key bytes and validate the length
+        byte[] dk = key.getBytes();
+        if (dk.length != parameterSet.getDecapsulationKeyLength()) {
+            throw new DecapsulationException("Decapsulation key must be %d bytes".formatted(parameterSet.getDecapsulationKeyLength()));
+        }
+        ByteBuffer dkBuffer = ByteBuffer.wrap(dk);
 
-        // Check integrity of calculated values
-        if (!Arrays.equals(c, cPrime)) {
+        // Extract the PKE decryption key (first 384*k bytes)
+        byte[] dkPKE = new byte[384*parameterSet.getK()];
+        dkBuffer.get(dkPKE);
 
-            // Set the implicit rejection flag
-            kPrime = kBar.clone();
+        // Extract the PKE encryption key (next 384*k + 32 bytes)
+        byte[] ekPKE = new byte[384*parameterSet.getK() + 32];
+        dkBuffer.get(ekPKE);
 
-            // Destroy the internal implicit rejection value
-            // NOTE: Java uses JVM-managed garbage collection so we must overwrite the value to guarantee
-            //       value destruction.
-            Arrays.fill(kBar, (byte)0L);
-            kBar = null;
+        // Extract the PKE encryption key hash (next 32 bytes)
+        byte[] h = new byte[32];
+        dkBuffer.get(h);
 
+        // Extract the implicit rejection value (next 32 bytes)
+        byte[] z = new byte[32];
+        dkBuffer.get(z);
+
+        // Hash check: the embedded hash must match the embedded encapsulation key
+        // NOTE: This is only done once per prepared key, so it adds nothing to the cost of decapsulation.
+        if (!Arrays.equals(h, hash.hHash(ekPKE))) {
+            throw new DecapsulationException("Decapsulation key hash check failed");
         }
 
-        // Construct and return the calculated shared secret key
-        return MLKEMSharedSecretKey.create(kPrime);
+        // Decode sHat and prepare the embedded encapsulation key
+        int[][] sHat = decryptor.decodeSHat(dkPKE); // LAST USE: dkPKE
+        PreparedEncapsulationKey ek = encryptor.prepare(ekPKE, h);
+
+        // Create the prepared key, which makes its own copies of dk and z
+        PreparedDecapsulationKey prepared = MLKEMPreparedDecapsulationKey.create(dk, sHat, ek, z); // LAST USE: dk, z
+
+        // ZERO: dkPKE, dk, z
+        zero(dkPKE);
+        zero(dk);
+        zero(z);
+
+        return prepared;
+
     }
+
 }
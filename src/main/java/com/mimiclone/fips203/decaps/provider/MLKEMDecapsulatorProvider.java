@@ -1,39 +1,69 @@
 package com.mimiclone.fips203.decaps.provider;
 
-import com.mimiclone.fips203.ParameterSet;
-import com.mimiclone.fips203.decaps.Decapsulator;
-import com.mimiclone.fips203.decaps.mlkem.MLKEMDecapsulator;
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
 import javax.crypto.DecapsulateException;
 import javax.crypto.KEMSpi;
 import javax.crypto.SecretKey;
-import java.security.PrivateKey;
-import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Objects;
 
-@RequiredArgsConstructor
+import static com.mimiclone.CryptoUtils.zero;
+
+/**
+ * The {@link KEMSpi.DecapsulatorSpi} of a single prepared decapsulation key.  Like the engine it uses, it holds no
+ * mutable state and may be used by many threads at once.  Once the {@link java.security.PrivateKey} it was created
+ * for is destroyed, so is its preparation, and the decapsulator refuses to be used.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMDecapsulatorProvider implements KEMSpi.DecapsulatorSpi {
 
-    private final Decapsulator decapsulator;
+    private final FIPS203 fips203;
+    private final PreparedDecapsulationKey key;
 
-    public static MLKEMDecapsulatorProvider getInstance(PrivateKey privateKey, AlgorithmParameterSpec spec) {
-        return new MLKEMDecapsulatorProvider(MLKEMDecapsulator.create(ParameterSet.ML_KEM_768));
+    public static MLKEMDecapsulatorProvider create(FIPS203 fips203, PreparedDecapsulationKey key) {
+        return new MLKEMDecapsulatorProvider(fips203, key);
     }
 
     @Override
     public SecretKey engineDecapsulate(byte[] encapsulation, int from, int to, String algorithm) throws DecapsulateException {
 
-        return null;
+        if (key.isDestroyed()) {
+            throw new IllegalStateException("Private key has been destroyed");
+        }
+        Objects.checkFromToIndex(from, to, engineSecretSize());
+        Objects.requireNonNull(algorithm, "Algorithm must not be null");
+        if (encapsulation.length != engineEncapsulationSize()) {
+            throw new DecapsulateException("Encapsulation must be %d bytes".formatted(engineEncapsulationSize()));
+        }
+
+        // A ciphertext that fails the re-encryption check yields the implicit rejection value, not an exception
+        SharedSecretKey sharedSecretKey = fips203.decapsulate(key, MLKEMCipherText.create(encapsulation));
+
+        // Hand the requested range of the shared secret over as a JCA secret key
+        byte[] sharedSecret = sharedSecretKey.getBytes();
+        SecretKey secretKey = new SecretKeySpec(sharedSecret, from, to - from, algorithm); // LAST USE: sharedSecret
+
+        // ZERO: sharedSecret, sharedSecretKey
+        zero(sharedSecret);
+        sharedSecretKey.destroy();
+
+        return secretKey;
 
     }
 
     @Override
     public int engineSecretSize() {
-        return 0;
+        return 32;
     }
 
     @Override
     public int engineEncapsulationSize() {
-        return 0;
+        return fips203.getParameterSet().getCiphertextLength();
     }
 }
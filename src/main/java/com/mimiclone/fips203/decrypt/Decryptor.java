@@ -1,7 +1,35 @@
 package com.mimiclone.fips203.decrypt;
 
+import com.mimiclone.fips203.context.MLKEMContext;
+
 public interface Decryptor {
 
     byte[] decrypt(byte[] dkPKE, byte[] cipherText);
 
+    /**
+     * Identical to {@link #decrypt(byte[], byte[])}, but uses a secret vector {@code sHat} that has already been
+     * decoded with {@link #decodeSHat(byte[])}.
+     */
+    byte[] decrypt(int[][] sHat, byte[] cipherText);
+
+    /**
+     * Decodes the secret vector {@code sHat} from the decryption key.
+     *
+     * @param dkPKE An array of {@code 384*k} bytes representing the decryption key.
+     * @return The {@code k} polynomials of {@code sHat} in NTT form.
+     */
+    int[][] decodeSHat(byte[] dkPKE);
+
+    /**
+     * Identical to {@link #decodeSHat(byte[])}, but decodes the decryption key starting at {@code offset} into the
+     * {@code k} polynomials of {@code out}.
+     */
+    void decodeSHat(byte[] dkPKE, int offset, int[][] out);
+
+    /**
+     * Identical to {@link #decrypt(int[][], byte[])}, but works in the buffers of {@code context} and writes the
+     * 32 byte message into {@code out} instead of allocating.
+     */
+    void decrypt(MLKEMContext context, int[][] sHat, byte[] cipherText, byte[] out);
+
 }
@@ -3,17 +3,23 @@ package com.mimiclone.fips203.decrypt.kpke;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.codec.Codec;
 import com.mimiclone.fips203.codec.MLKEMCodec;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.decrypt.Decryptor;
-import com.mimiclone.fips203.transform.MLKEMTransformer;
+import com.mimiclone.fips203.event.DecryptionEvent;
+import com.mimiclone.fips203.transform.LazyReductionTransformer;
+import com.mimiclone.fips203.transform.TransformerFactory;
 import com.mimiclone.fips203.transform.Transformer;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.nio.ByteBuffer;
+import static com.mimiclone.CryptoUtils.zero;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class KPKEDecryptor implements Decryptor {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
     private final Codec codec;
     private final Transformer ntt;
@@ -22,69 +28,157 @@ public class KPKEDecryptor implements Decryptor {
         return new KPKEDecryptor(
                 parameterSet,
                 MLKEMCodec.create(parameterSet),
-                MLKEMTransformer.create(parameterSet)
+                TransformerFactory.create(parameterSet)
         );
     }
 
     @Override
     public byte[] decrypt(byte[] dkPKE, byte[] cipherText) {
 
-        // Wrap cipherText in a buffer
-        ByteBuffer cipherTextBuffer = ByteBuffer.wrap(cipherText);
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+
+            // ALGO 5: Calculate sHat
+            int[][] sHat = ACCESS.getSecretVector(context);
+            decodeSHat(dkPKE, 0, sHat);
+
+            // Decrypt using the decoded key
+            // The context is closed afterwards, which zeroes sHat
+            byte[] m = new byte[32];
+            decrypt(context, sHat, cipherText, m); // LAST USE: sHat
+            return m;
+
+        }
+
+    }
+
+    @Override
+    public int[][] decodeSHat(byte[] dkPKE) {
+        int[][] sHat = new int[parameterSet.getK()][256];
+        decodeSHat(dkPKE, 0, sHat);
+        return sHat;
+    }
+
+    @Override
+    public void decodeSHat(byte[] dkPKE, int offset, int[][] sHat) {
+
+        // Decode each 384-byte chunk of dkPKE
+        for (int i = 0; i < parameterSet.getK(); i++) {
+            codec.byteDecode(12, dkPKE, offset + 384*i, sHat[i]);
+        }
+
+    }
+
+    @Override
+    public byte[] decrypt(int[][] sHat, byte[] cipherText) {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            byte[] m = new byte[32];
+            decrypt(context, sHat, cipherText, m);
+            return m;
+        }
+    }
+
+    @Override
+    public void decrypt(MLKEMContext context, int[][] sHat, byte[] cipherText, byte[] out) {
+
+        context.check(parameterSet);
 
-        // ALGO 1: Extract c1
-        byte[] c1 = new byte[32 * parameterSet.getDu() * parameterSet.getK()];
-        cipherTextBuffer.get(c1);
+        DecryptionEvent event = new DecryptionEvent();
+        event.start();
 
-        // ALGO 2: Extract c2
-        byte[] c2 = new byte[32 * parameterSet.getDv()];
-        cipherTextBuffer.get(c2);
+        // NOTE: The lazy transformer works on short[] polynomials, which are only normalized as they are encoded
+        if (ntt instanceof LazyReductionTransformer lazy) {
+            decrypt(context, event, lazy, sHat, cipherText, out);
+            return;
+        }
 
-        // Setup up processing buffer c1
-        ByteBuffer c1ChunkBuffer = ByteBuffer.wrap(c1);
+        // ALGO 1&2: c1 is the first 32*du*k bytes of the cipherText and c2 is the remaining 32*dv bytes, both are
+        // decoded directly from the cipherText
+        int c1ChunkLength = 32 * parameterSet.getDu();
+        int c2Offset = c1ChunkLength * parameterSet.getK();
 
         // ALGO 3: Calculate uPrime
-        int[][] uPrime = new int[parameterSet.getK()][];
+        int[][] uPrime = ACCESS.getProductVector(context);
         for (int i = 0; i < parameterSet.getK(); i++) {
-            byte[] c1Chunk = new byte[32 * parameterSet.getDu()];
-            c1ChunkBuffer.get(c1Chunk);
-            uPrime[i] = codec.decompress(
-                    parameterSet.getDu(),
-                    codec.byteDecode(
-                            parameterSet.getDu(),
-                            c1Chunk.clone()
-                    )
-            );
+            codec.decodeDecompress(parameterSet.getDu(), cipherText, c1ChunkLength * i, uPrime[i]);
         }
 
         // ALGO 4: Calculate vPrime
-        int[] vPrime = codec.decompress(
-                parameterSet.getDv(),
-                codec.byteDecode(
-                        parameterSet.getDv(),
-                        c2.clone()
-                )
-        );
+        int[] vPrime = ACCESS.getMessagePolynomial(context);
+        codec.decodeDecompress(parameterSet.getDv(), cipherText, c2Offset, vPrime);
+        event.decoding += event.lap();
+
+        // ALGO 6: Calculate w
+        // The transform is performed in place, so uPrime becomes uPrimeNTT
+        int[][] uPrimeNTT = uPrime;
+        for (int i = 0; i < parameterSet.getK(); i++) {
+            ntt.transformInPlace(uPrimeNTT[i], 0);
+        }
+        int[] w = ACCESS.getProductPolynomial(context);
+        zero(w);
+        ntt.vectorTransposeMultiplyAccumulate(sHat, uPrimeNTT, w);
+        ntt.inverseInPlace(w, 0);
+        ntt.arraySubtract(vPrime, w, w);
+        event.ntt += event.lap();
+
+        // ALGO 7&8: Compress and encode the plaintext
+        codec.compressEncode(1, w, out, 0); // LAST USE: w
+
+        // ZERO: w
+        zero(w);
+
+        event.encoding += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
 
-        // Wrap dkPKE in a buffer for chunking
-        ByteBuffer dkPKEChunkBuffer = ByteBuffer.wrap(dkPKE);
-        byte[] dkPKEChunk = new byte[384];
+    }
+
+    /**
+     * The body of {@link #decrypt(MLKEMContext, int[][], byte[], byte[])} for the lazy transformer, which holds
+     * {@code u'}, {@code v'} and {@code w} in the {@code short[]} buffers of the context and leaves their
+     * coefficients lazily reduced until {@code w} is compressed.
+     */
+    private void decrypt(MLKEMContext context, DecryptionEvent event, LazyReductionTransformer lazy, int[][] sHat,
+                         byte[] cipherText, byte[] out) {
+
+        // ALGO 1&2: c1 is the first 32*du*k bytes of the cipherText and c2 is the remaining 32*dv bytes, both are
+        // decoded directly from the cipherText
+        int c1ChunkLength = 32 * parameterSet.getDu();
+        int c2Offset = c1ChunkLength * parameterSet.getK();
 
-        // ALGO 5: Calculate sHat
-        int[][] sHat = new int[parameterSet.getK()][];
+        // ALGO 3: Calculate uPrime
+        short[][] uPrime = ACCESS.getLazyProductVector(context);
         for (int i = 0; i < parameterSet.getK(); i++) {
-            dkPKEChunkBuffer.get(dkPKEChunk);
-            sHat[i] = codec.byteDecode(12, dkPKEChunk.clone());
+            codec.decodeDecompress(parameterSet.getDu(), cipherText, c1ChunkLength * i, uPrime[i]);
         }
 
-        // ALGO 6: Calculate w
-        int[][] uPrimeNTT = new int[parameterSet.getK()][];
+        // ALGO 4: Calculate vPrime
+        short[] vPrime = ACCESS.getLazyMessagePolynomial(context);
+        codec.decodeDecompress(parameterSet.getDv(), cipherText, c2Offset, vPrime);
+        event.decoding += event.lap();
+
+        // ALGO 6: Calculate w, its coefficients are in (-q, 2q)
+        // The transform is performed in place, so uPrime becomes uPrimeNTT
+        short[][] uPrimeNTT = uPrime;
         for (int i = 0; i < parameterSet.getK(); i++) {
-            uPrimeNTT[i] = ntt.transform(uPrime[i]);
+            lazy.transformInPlace(uPrimeNTT[i], 0);
         }
-        int[] w = ntt.arraySubtract(vPrime, ntt.inverse(ntt.vectorTransposeMultiply(sHat, uPrimeNTT)));
+        short[] w = ACCESS.getLazyProductPolynomial(context);
+        zero(w);
+        lazy.vectorTransposeMultiplyAccumulate(sHat, uPrimeNTT, w);
+        lazy.inverseInPlace(w, 0);
+        lazy.arraySubtract(vPrime, w, w);
+        event.ntt += event.lap();
+
+        // ALGO 7&8: Normalize, compress and encode the plaintext
+        codec.compressEncode(1, w, out, 0); // LAST USE: w
+
+        // ZERO: w
+        zero(w);
+
+        event.encoding += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
 
-        // ALGO 7&8: Compress, encode and return plaintext
-        return codec.byteEncode(1, codec.compress(1, w));
     }
+
 }
@@ -0,0 +1,191 @@
+package com.mimiclone.fips203.encaps;
+
+import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded, thread-safe cache of {@link PreparedEncapsulationKey}s for callers that repeatedly encapsulate to the
+ * same set of peer keys.
+ * <p>
+ * Entries are looked up by the contents of the encapsulation key and evicted in insertion order once the cache
+ * holds more than {@code maximumSize} keys, or on access once they are older than {@code timeToLive}.  The cache
+ * does not lock: two threads missing on the same key at the same time will both prepare it, and the first one to
+ * finish wins.
+ * <p>
+ * Every call returns its own handle onto the shared preparation.  Destroying a handle only stops that handle from
+ * being used, so one caller disposing of its key can never zero the values the other callers encapsulate with.
+ * Evicted preparations are dropped rather than zeroed, as handles given out earlier may still be encapsulating with
+ * them and every value they hold is public.
+ */
+public final class EncapsulationKeyCache {
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+
+    private final Map<CacheKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<CacheKey> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    EncapsulationKeyCache(int maximumSize, Duration timeToLive, LongSupplier clock) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.clock = clock;
+    }
+
+    public static EncapsulationKeyCache create(int maximumSize, Duration timeToLive) {
+        return new EncapsulationKeyCache(maximumSize, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * Returns the cached preparation of {@code ek}, preparing and caching it with {@code encapsulator} if it is not
+     * present or has expired.
+     */
+    public PreparedEncapsulationKey prepare(EncapsulationKey ek, Encapsulator encapsulator) {
+
+        // Already prepared keys don't need to be cached
+        if (ek instanceof PreparedEncapsulationKey prepared) {
+            return prepared;
+        }
+
+        CacheKey key = new CacheKey(ek.getBytes());
+        long now = clock.getAsLong();
+
+        // Return a live entry
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (now - entry.created() < timeToLiveNanos) {
+                return new Handle(entry.prepared());
+            }
+            if (entries.remove(key, entry)) {
+                size.decrementAndGet();
+            }
+        }
+
+        // Prepare the key and cache it, unless another thread got there first
+        PreparedEncapsulationKey prepared = encapsulator.prepare(ek);
+        Entry existing = entries.putIfAbsent(key, new Entry(prepared, now));
+        if (existing != null) {
+            return new Handle(existing.prepared());
+        }
+        insertionOrder.add(key);
+
+        // Evict the oldest entries until the cache is back within its bounds
+        // NOTE: Keys whose entries expired and were prepared again appear in the queue more than once, so the
+        // refreshed entry may be evicted early.  That only costs another preparation.
+        if (size.incrementAndGet() > maximumSize) {
+            CacheKey oldest;
+            while (size.get() > maximumSize && (oldest = insertionOrder.poll()) != null) {
+                if (entries.remove(oldest) != null) {
+                    size.decrementAndGet();
+                }
+            }
+        }
+
+        return new Handle(prepared);
+
+    }
+
+    /**
+     * @return The number of prepared keys currently held by the cache, including expired keys not yet evicted
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        CacheKey key;
+        while ((key = insertionOrder.poll()) != null) {
+            if (entries.remove(key) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A caller's view of a cached preparation, which it may destroy without affecting the other callers
+     */
+    private static final class Handle implements PreparedEncapsulationKey {
+
+        private final PreparedEncapsulationKey prepared;
+        private volatile boolean destroyed;
+
+        private Handle(PreparedEncapsulationKey prepared) {
+            this.prepared = prepared;
+        }
+
+        private PreparedEncapsulationKey prepared() {
+            if (destroyed) {
+                throw new IllegalStateException("Prepared encapsulation key has been destroyed");
+            }
+            return prepared;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return prepared().getBytes();
+        }
+
+        @Override
+        public int[][] getTHat() {
+            return prepared().getTHat();
+        }
+
+        @Override
+        public int[][][] getAHatTranspose() {
+            return prepared().getAHatTranspose();
+        }
+
+        @Override
+        public byte[] getHash() {
+            return prepared().getHash();
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+
+    }
+
+    private record Entry(PreparedEncapsulationKey prepared, long created) {
+    }
+
+    private record CacheKey(byte[] bytes) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CacheKey other && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+    }
+
+}
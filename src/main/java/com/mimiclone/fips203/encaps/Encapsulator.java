@@ -1,10 +1,27 @@
 package com.mimiclone.fips203.encaps;
 
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
 import com.mimiclone.fips203.key.SharedSecretKey;
 
 public interface Encapsulator {
 
     Encapsulation encapsulate(EncapsulationKey ek, byte[] entropy) throws EncapsulationException;
 
+    /**
+     * Identical to {@link #encapsulate(EncapsulationKey, byte[])}, but works in the buffers of {@code context} so
+     * that only the returned encapsulation is allocated.  The default ignores the context.
+     */
+    default Encapsulation encapsulate(MLKEMContext context, EncapsulationKey ek, byte[] entropy) throws EncapsulationException {
+        return encapsulate(ek, entropy);
+    }
+
+    /**
+     * Derives everything encapsulation needs from the key bytes ahead of time.  Passing the result to
+     * {@link #encapsulate(EncapsulationKey, byte[])} skips hashing the key, decoding {@code tHat} and sampling the
+     * matrix {@code A}.
+     */
+    PreparedEncapsulationKey prepare(EncapsulationKey ek) throws EncapsulationException;
+
 }
@@ -1,6 +1,8 @@
 package com.mimiclone.fips203.encaps.mlkem;
 
 import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.encaps.Encapsulation;
 import com.mimiclone.fips203.encaps.EncapsulationException;
 import com.mimiclone.fips203.encrypt.Encryptor;
@@ -8,23 +10,38 @@ import com.mimiclone.fips203.encrypt.kpke.KPKEEncryptor;
 import com.mimiclone.fips203.hash.Hash;
 import com.mimiclone.fips203.hash.MLKEMHash;
 import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.metrics.MLKEMMetrics;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.mimiclone.CryptoUtils.zero;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMEncapsulator implements com.mimiclone.fips203.encaps.Encapsulator {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
     private final Hash hash;
     private final Encryptor encryptor;
+    private final MLKEMMetrics metrics;
 
     public static MLKEMEncapsulator create(ParameterSet parameterSet) {
+        return create(parameterSet, MLKEMMetrics.none());
+    }
+
+    /**
+     * Creates an encapsulator that records the latency of every encapsulation with {@code metrics}.
+     */
+    public static MLKEMEncapsulator create(ParameterSet parameterSet, MLKEMMetrics metrics) {
         return new MLKEMEncapsulator(
                 parameterSet,
                 MLKEMHash.create(parameterSet),
-                KPKEEncryptor.create(parameterSet)
+                KPKEEncryptor.create(parameterSet),
+                metrics
         );
     }
 
@@ -37,31 +54,78 @@ public class MLKEMEncapsulator implements com.mimiclone.fips203.encaps.Encapsula
      */
     @Override
     public Encapsulation encapsulate(EncapsulationKey ek, byte[] entropy) throws EncapsulationException {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            return encapsulate(context, ek, entropy);
+        }
+    }
+
+    @Override
+    public Encapsulation encapsulate(MLKEMContext context, EncapsulationKey ek, byte[] entropy) throws EncapsulationException {
+
+        context.check(parameterSet);
+        long start = System.nanoTime();
 
-        // Derive encapsulation key hash
-        byte[] ekHash = hash.hHash(ek.getBytes());
+        // Derive encapsulation key hash, unless it was already derived when the key was prepared
+        PreparedEncapsulationKey preparedEk = ek instanceof PreparedEncapsulationKey prepared ? prepared : null;
+        byte[] ekBytes = preparedEk != null ? null : ek.getBytes();
+        byte[] ekHash = ACCESS.getKeyHash(context);
+        if (preparedEk != null) {
+            System.arraycopy(preparedEk.getHash(), 0, ekHash, 0, 32);
+        } else {
+            hash.hHash(ekBytes, 0, ekBytes.length, ekHash);
+        }
 
         // Concatenate entropy and encapsulation key hash
-        byte[] entropyAndKeyHash = ByteBuffer.allocate(64).put(entropy).put(ekHash).array();
+        byte[] entropyAndKeyHash = ACCESS.getHashInput(context);
+        System.arraycopy(entropy, 0, entropyAndKeyHash, 0, 32);
+        System.arraycopy(ekHash, 0, entropyAndKeyHash, 32, 32);
 
         // Generate the shared secret and randomness
-        byte[] sharedSecretAndRandom = hash.gHash(entropyAndKeyHash);
+        byte[] sharedSecretAndRandom = ACCESS.getHashOutput(context);
+        hash.gHash(entropyAndKeyHash, 0, 64, sharedSecretAndRandom); // LAST USE: entropyAndKeyHash
 
-        // Split out the shared secret and randomness
-        ByteBuffer sharedSecretAndRandomBuffer = ByteBuffer.wrap(sharedSecretAndRandom);
-
-        // Split out shared secret
-        byte[] sharedSecretBytes = new byte[32];
-        sharedSecretAndRandomBuffer.get(sharedSecretBytes);
+        // ZERO: entropyAndKeyHash
+        zero(entropyAndKeyHash);
 
         // Split out random
-        byte[] random = new byte[32];
-        sharedSecretAndRandomBuffer.get(random);
+        byte[] random = ACCESS.getNoiseSeed(context);
+        System.arraycopy(sharedSecretAndRandom, 32, random, 0, 32);
 
         // Generate cipherText bytes
-        byte[] cipherTextBytes = encryptor.encrypt(ek.getBytes(), entropy, random);
+        byte[] cipherTextBytes = new byte[parameterSet.getCiphertextLength()];
+        if (preparedEk != null) {
+            encryptor.encrypt(context, preparedEk, entropy, random, cipherTextBytes);
+        } else {
+            encryptor.encrypt(context, ekBytes, 0, entropy, random, cipherTextBytes);
+        }
+
+        // Split out shared secret, which is handed over to the result without a copy
+        byte[] sharedSecretBytes = Arrays.copyOf(sharedSecretAndRandom, 32); // LAST USE: sharedSecretAndRandom
+
+        // ZERO: sharedSecretAndRandom, random
+        zero(sharedSecretAndRandom);
+        zero(random);
 
+        metrics.recordEncapsulation(parameterSet, System.nanoTime() - start);
         return MLKEMEncapsulation.build(sharedSecretBytes, cipherTextBytes);
     }
 
+    @Override
+    public PreparedEncapsulationKey prepare(EncapsulationKey ek) throws EncapsulationException {
+
+        // Already prepared keys are returned unchanged
+        if (ek instanceof PreparedEncapsulationKey prepared) {
+            return prepared;
+        }
+
+        // Validate the key length
+        byte[] ekBytes = ek.getBytes();
+        if (ekBytes.length != parameterSet.getEncapsulationKeyLength()) {
+            throw new EncapsulationException("Encapsulation key must be %d bytes".formatted(parameterSet.getEncapsulationKeyLength()));
+        }
+
+        return encryptor.prepare(ekBytes, hash.hHash(ekBytes));
+
+    }
+
 }
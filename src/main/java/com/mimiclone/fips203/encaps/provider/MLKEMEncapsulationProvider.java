@@ -1,22 +1,69 @@
 package com.mimiclone.fips203.encaps.provider;
 
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.key.SharedSecretKey;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
 import javax.crypto.KEM;
 import javax.crypto.KEMSpi;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Objects;
+
+import static com.mimiclone.CryptoUtils.zero;
 
+/**
+ * The {@link KEMSpi.EncapsulatorSpi} of a single prepared encapsulation key.  Like the engine it uses, it holds no
+ * mutable state and may be used by many threads at once.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMEncapsulationProvider implements KEMSpi.EncapsulatorSpi {
 
+    private final FIPS203 fips203;
+    private final PreparedEncapsulationKey key;
+
+    /**
+     * The caller's source of entropy, or {@code null} to use the DRBG of the engine
+     */
+    private final SecureRandom secureRandom;
+
+    public static MLKEMEncapsulationProvider create(FIPS203 fips203, PreparedEncapsulationKey key, SecureRandom secureRandom) {
+        return new MLKEMEncapsulationProvider(fips203, key, secureRandom);
+    }
+
     @Override
     public KEM.Encapsulated engineEncapsulate(int from, int to, String algorithm) {
-        return null;
+
+        Objects.checkFromToIndex(from, to, engineSecretSize());
+        Objects.requireNonNull(algorithm, "Algorithm must not be null");
+
+        Encapsulation encapsulation = secureRandom == null
+                ? fips203.encapsulate(key)
+                : fips203.encapsulate(key, secureRandom);
+
+        // Hand the requested range of the shared secret over as a JCA secret key
+        SharedSecretKey sharedSecretKey = encapsulation.getSharedSecretKey();
+        byte[] sharedSecret = sharedSecretKey.getBytes();
+        SecretKeySpec secretKey = new SecretKeySpec(sharedSecret, from, to - from, algorithm); // LAST USE: sharedSecret
+
+        // ZERO: sharedSecret, sharedSecretKey
+        zero(sharedSecret);
+        sharedSecretKey.destroy();
+
+        return new KEM.Encapsulated(secretKey, encapsulation.getCipherText().getBytes(), null);
+
     }
 
     @Override
     public int engineSecretSize() {
-        return 0;
+        return 32;
     }
 
     @Override
     public int engineEncapsulationSize() {
-        return 0;
+        return fips203.getParameterSet().getCiphertextLength();
     }
 }
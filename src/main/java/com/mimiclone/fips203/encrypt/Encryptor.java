@@ -1,7 +1,41 @@
 package com.mimiclone.fips203.encrypt;
 
+import com.mimiclone.fips203.context.MLKEMContext;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+
 public interface Encryptor {
 
     byte[] encrypt(byte[] ekPKE, byte[] message, byte[] random);
 
+    /**
+     * Identical to {@link #encrypt(byte[], byte[], byte[])}, but uses the values already derived from the
+     * encryption key instead of decoding {@code tHat} and sampling the matrix {@code A} again.
+     */
+    byte[] encrypt(PreparedEncapsulationKey ek, byte[] message, byte[] random);
+
+    /**
+     * Identical to {@link #encrypt(byte[], byte[], byte[])}, but reads the encryption key from {@code ekPKE}
+     * starting at {@code ekOffset}, works in the buffers of {@code context} and writes the cipherText into
+     * {@code out} instead of allocating.
+     *
+     * @param out An array of at least {@code 32(du*k + dv)} bytes that receives the cipherText.
+     */
+    void encrypt(MLKEMContext context, byte[] ekPKE, int ekOffset, byte[] message, byte[] random, byte[] out);
+
+    /**
+     * Identical to {@link #encrypt(PreparedEncapsulationKey, byte[], byte[])}, but works in the buffers of
+     * {@code context} and writes the cipherText into {@code out} instead of allocating.
+     */
+    void encrypt(MLKEMContext context, PreparedEncapsulationKey ek, byte[] message, byte[] random, byte[] out);
+
+    /**
+     * Decodes {@code tHat} and expands the transpose of the matrix {@code A} for the given encryption key.
+     *
+     * @param ekPKE An array of {@code 384*k+32} bytes representing the encryption key.
+     * @param ekHash The 32 byte hash {@code H(ek)} that is stored alongside the derived values.
+     * @return A {@link PreparedEncapsulationKey} that can be passed to
+     * {@link #encrypt(PreparedEncapsulationKey, byte[], byte[])} any number of times.
+     */
+    PreparedEncapsulationKey prepare(byte[] ekPKE, byte[] ekHash);
+
 }
@@ -3,24 +3,30 @@ package com.mimiclone.fips203.encrypt.kpke;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.codec.Codec;
 import com.mimiclone.fips203.codec.MLKEMCodec;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.encrypt.Encryptor;
-import com.mimiclone.fips203.hash.Hash;
-import com.mimiclone.fips203.hash.MLKEMHash;
+import com.mimiclone.fips203.event.EncryptionEvent;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMPreparedEncapsulationKey;
 import com.mimiclone.fips203.sample.MLKEMSampler;
 import com.mimiclone.fips203.sample.Sampler;
-import com.mimiclone.fips203.transform.MLKEMTransformer;
+import com.mimiclone.fips203.transform.LazyReductionTransformer;
+import com.mimiclone.fips203.transform.MatrixEntrySource;
+import com.mimiclone.fips203.transform.TransformerFactory;
 import com.mimiclone.fips203.transform.Transformer;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.nio.ByteBuffer;
+import static com.mimiclone.CryptoUtils.zero;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class KPKEEncryptor implements Encryptor {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
     private final Codec codec;
-    private final Hash hash;
     private final Sampler sampler;
     private final Transformer ntt;
 
@@ -28,9 +34,8 @@ public class KPKEEncryptor implements Encryptor {
         return new KPKEEncryptor(
                 parameterSet,
                 MLKEMCodec.create(parameterSet),
-                MLKEMHash.create(parameterSet),
                 MLKEMSampler.create(parameterSet),
-                MLKEMTransformer.create(parameterSet)
+                TransformerFactory.create(parameterSet)
         );
     }
 
@@ -43,89 +48,271 @@ public class KPKEEncryptor implements Encryptor {
      */
     @Override
     public byte[] encrypt(byte[] ekPKE, byte[] message, byte[] random) {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            byte[] result = new byte[parameterSet.getCiphertextLength()];
+            encrypt(context, ekPKE, 0, message, random, result);
+            return result;
+        }
+    }
 
-        int n = 0;
+    @Override
+    public byte[] encrypt(PreparedEncapsulationKey ek, byte[] message, byte[] random) {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            byte[] result = new byte[parameterSet.getCiphertextLength()];
+            encrypt(context, ek, message, random, result);
+            return result;
+        }
+    }
 
-        // Create a byte buffer to wrap the passed in ekPKE
-        ByteBuffer ekPKEBuffer = ByteBuffer.wrap(ekPKE);
+    @Override
+    public void encrypt(MLKEMContext context, byte[] ekPKE, int ekOffset, byte[] message, byte[] random, byte[] out) {
 
-        // Allocate tHat
-        int[][] tHat = new int[parameterSet.getK()][];
+        context.check(parameterSet);
 
-        // Iterate over the 384-byte chunks of tHat and perform a byte decode on each chunk
-        // When this operation is complete there will be 32-bytes remaining in the buffer
-        // which are the seed rho.
-        for (int i = 0; i < parameterSet.getK(); i++) {
+        EncryptionEvent event = new EncryptionEvent();
+        event.start();
 
-            // Split off a 384-byte chunk of ekPKE
-            byte[] ekPKEChunk = new byte[384];
-            ekPKEBuffer.get(ekPKEChunk);
+        // Decode tHat
+        int[][] tHat = ACCESS.getPublicVector(context);
+        decodeTHat(ekPKE, ekOffset, tHat);
 
-            // Fill tHat
-            tHat[i] = codec.byteDecode(12, ekPKEChunk);
+        // Split off rho, the final 32 bytes of ekPKE
+        byte[] rho = ACCESS.getSeed(context);
+        System.arraycopy(ekPKE, ekOffset + 384 * parameterSet.getK(), rho, 0, 32);
+        event.encoding += event.lap();
 
-        }
+        // aHatMatrix is never materialized, each row of its transpose is regenerated from rho immediately
+        // before it is multiplied in.  Entry (i, j) of aHatMatrix is sampled with the bytes j and i, so entry
+        // (i, j) of the transpose is sampled with the bytes i and j.
+        encrypt(context, event, tHat, null, sampler.matrixSource(context, rho, true), message, random, out);
+
+    }
+
+    @Override
+    public void encrypt(MLKEMContext context, PreparedEncapsulationKey ek, byte[] message, byte[] random, byte[] out) {
+
+        context.check(parameterSet);
+
+        EncryptionEvent event = new EncryptionEvent();
+        event.start();
+        event.prepared = true;
 
-        // Split off rho
+        // The expanded entries are multiplied in where they are stored, nothing is copied into the context
+        encrypt(context, event, ek.getTHat(), ek.getAHatTranspose(), null, message, random, out);
+
+    }
+
+    @Override
+    public PreparedEncapsulationKey prepare(byte[] ekPKE, byte[] ekHash) {
+
+        // Decode tHat
+        int[][] tHat = new int[parameterSet.getK()][256];
+        decodeTHat(ekPKE, 0, tHat);
+
+        // Split off rho, the final 32 bytes of ekPKE
         byte[] rho = new byte[32];
-        ekPKEBuffer.get(rho);
+        System.arraycopy(ekPKE, 384 * parameterSet.getK(), rho, 0, 32);
 
-        // Regenerate aHatMatrix
-        int[][][] aHatMatrix = new int[parameterSet.getK()][parameterSet.getK()][];
-        for (int i = 0; i < parameterSet.getK(); i++) {
-            for (int j = 0; j < parameterSet.getK(); j++) {
-                aHatMatrix[i][j] = sampler.sampleNTT(rho, (byte) j, (byte) i);
+        // Expand the transpose of aHatMatrix, entry (i, j) of the transpose is sampled with the bytes i and j
+        // All k*k entries are sampled in a single batch
+        int k = parameterSet.getK();
+        int[][][] aHatTranspose = new int[k][k][256];
+        int[][] entries = new int[k * k][];
+        byte[] indices = new byte[2 * k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                entries[k * i + j] = aHatTranspose[i][j];
+                indices[2 * (k * i + j)] = (byte) i;
+                indices[2 * (k * i + j) + 1] = (byte) j;
             }
         }
+        sampler.sampleNTTBatch(rho, indices, entries);
+
+        return MLKEMPreparedEncapsulationKey.create(ekPKE, tHat, aHatTranspose, ekHash);
 
-        // Generate y
-        int[][] y = new int[parameterSet.getK()][];
+    }
+
+    private void decodeTHat(byte[] ekPKE, int offset, int[][] tHat) {
+
+        // Iterate over the 384-byte chunks of tHat and perform a byte decode on each chunk
+        // The 32-bytes remaining after the last chunk are the seed rho.
         for (int i = 0; i < parameterSet.getK(); i++) {
-            y[i] = sampler.samplePolyCBDEta1(hash.prfEta1(random, (byte) n));
-            n++;
+            codec.byteDecode(12, ekPKE, offset + 384*i, tHat[i]);
         }
 
-        // Generate e1
-        int[][] e1 = new int[parameterSet.getK()][];
-        for (int i = 0; i < parameterSet.getK(); i++) {
-            e1[i] = sampler.samplePolyCBDEta2(hash.prfEta2(random, (byte) n));
-            n++;
+    }
+
+    /**
+     * The body of Algorithm 14 (K-PKE.Encrypt) following the decoding of {@code tHat} and {@code rho}.
+     *
+     * @param event The started event that receives the time spent in each phase, and is committed on return.
+     * @param tHat The decoded vector {@code tHat}.
+     * @param aHatTranspose The expanded transpose of the matrix {@code A}, or {@code null} to take its entries from
+     *                      {@code aHatTransposeSource}.
+     * @param aHatTransposeSource The source of the entries of the transpose, used only when {@code aHatTranspose}
+     *                            is {@code null}.
+     */
+    private void encrypt(MLKEMContext context, EncryptionEvent event, int[][] tHat, int[][][] aHatTranspose,
+                         MatrixEntrySource aHatTransposeSource, byte[] message, byte[] random, byte[] out) {
+
+        // NOTE: The lazy transformer works on short[] polynomials, which are only normalized as they are encoded
+        if (ntt instanceof LazyReductionTransformer lazy) {
+            encrypt(context, event, lazy, tHat, aHatTranspose, aHatTransposeSource, message, random, out);
+            return;
         }
 
-        // Sample e2
-        int[] e2 = sampler.samplePolyCBDEta2(hash.prfEta2(random, (byte) n));
+        int k = parameterSet.getK();
+
+        // Generate y with the nonces 0 to k-1
+        int[][] y = ACCESS.getSecretVector(context);
+        sampler.sampleNoiseVector(context, random, 0, parameterSet.getEta1(), y);
+
+        // Generate e1 and sample e2 in a single batch, with the nonces k to 2k-1 and 2k
+        int[][] e1 = ACCESS.getErrorVector(context);
+        int[] e2 = ACCESS.getErrorPolynomial(context);
+        sampler.sampleNoiseVector(context, random, k, parameterSet.getEta2(), ACCESS.getEncryptionNoise(context));
+        event.noiseSampling += event.lap();
 
         // Generate yHat
-        int[][] yHat = new int[parameterSet.getK()][];
-        for (int i = 0; i < parameterSet.getK(); i++) {
-            yHat[i] = ntt.transform(y[i]);
+        // The transform is performed in place, so y becomes yHat
+        int[][] yHat = y;
+        for (int i = 0; i < k; i++) {
+            ntt.transformInPlace(yHat[i], 0);
         }
+        event.ntt += event.lap();
 
         // Generate u
-        int[][] u = new int[parameterSet.getK()][];
-        int[][] matrixOp = ntt.matrixMultiply(ntt.matrixTranspose(aHatMatrix), yHat);
-        for (int i = 0; i < parameterSet.getK(); i++) {
-            u[i] = ntt.inverse(matrixOp[i]);
+        int[][] u = ACCESS.getProductVector(context);
+        zero(u);
+        if (aHatTranspose != null) {
+            ntt.matrixMultiplyAccumulate(aHatTranspose, yHat, u);
+        } else {
+            ntt.matrixMultiplyAccumulate(aHatTransposeSource, yHat, u, ACCESS.getMatrixEntry(context));
         }
-        u = ntt.matrixAdd(u, e1);
+        event.matrixMultiplication += event.lap();
+        for (int i = 0; i < k; i++) {
+            ntt.inverseInPlace(u[i], 0);
+            ntt.arrayAdd(u[i], e1[i], u[i]); // LAST USE: e1
+        }
+        event.ntt += event.lap();
 
         // Generate mu
-        int[] decodedMessage = codec.byteDecode(1, message);
-        int[] mu = codec.decompress(1, decodedMessage);
+        int[] mu = ACCESS.getMessagePolynomial(context);
+        codec.decodeDecompress(1, message, 0, mu);
+        event.encoding += event.lap();
 
         // Generate v
-        int[] v = ntt.arrayAdd(ntt.arrayAdd(ntt.inverse(ntt.vectorTransposeMultiply(tHat, yHat)), e2), mu);
+        int[] v = ACCESS.getProductPolynomial(context);
+        zero(v);
+        ntt.vectorTransposeMultiplyAccumulate(tHat, yHat, v); // LAST USE: yHat
+        event.matrixMultiplication += event.lap();
+        ntt.inverseInPlace(v, 0);
+        ntt.arrayAdd(v, e2, v); // LAST USE: e2
+        ntt.arrayAdd(v, mu, v); // LAST USE: mu
+
+        // ZERO: yHat, e1, e2, mu
+        zero(yHat);
+        zero(e1);
+        zero(e2);
+        zero(mu);
 
         // Generate result
-        int resultLength = 32 * (parameterSet.getDu() * parameterSet.getK() + parameterSet.getDv());
-        ByteBuffer resultBuffer = ByteBuffer.allocate(resultLength);
+        // Each polynomial is compressed and encoded in a single pass directly into its position in the cipherText
+        int c1ChunkLength = 32 * parameterSet.getDu();
+        for (int i = 0; i < k; i++) {
+            codec.compressEncode(parameterSet.getDu(), u[i], out, c1ChunkLength * i);
+        }
+        codec.compressEncode(parameterSet.getDv(), v, out, c1ChunkLength * k);
+
+        // ZERO: u, v
+        zero(u);
+        zero(v);
+
+        event.encoding += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
+
+    }
+
+    /**
+     * The body of Algorithm 14 (K-PKE.Encrypt) for the lazy transformer, which holds every polynomial it computes in
+     * the {@code short[]} buffers of the context and leaves their coefficients lazily reduced until they are
+     * compressed.
+     */
+    private void encrypt(MLKEMContext context, EncryptionEvent event, LazyReductionTransformer lazy, int[][] tHat,
+                         int[][][] aHatTranspose, MatrixEntrySource aHatTransposeSource, byte[] message,
+                         byte[] random, byte[] out) {
 
-        for (int[] ints : u) {
-            resultBuffer.put(codec.byteEncode(parameterSet.getDu(), codec.compress(parameterSet.getDu(), ints)));
+        int k = parameterSet.getK();
+
+        // Generate y with the nonces 0 to k-1, its coefficients are in [-eta1, eta1]
+        short[][] y = ACCESS.getLazySecretVector(context);
+        sampler.sampleNoiseVector(context, random, 0, parameterSet.getEta1(), y);
+
+        // Generate e1 and sample e2 in a single batch, with the nonces k to 2k-1 and 2k
+        short[][] e1 = ACCESS.getLazyErrorVector(context);
+        short[] e2 = ACCESS.getLazyErrorPolynomial(context);
+        sampler.sampleNoiseVector(context, random, k, parameterSet.getEta2(), ACCESS.getLazyEncryptionNoise(context));
+        event.noiseSampling += event.lap();
+
+        // Generate yHat
+        // The transform is performed in place, so y becomes yHat
+        short[][] yHat = y;
+        for (int i = 0; i < k; i++) {
+            lazy.transformInPlace(yHat[i], 0);
         }
-        resultBuffer.put(codec.byteEncode(parameterSet.getDv(), codec.compress(parameterSet.getDv(), v)));
+        event.ntt += event.lap();
+
+        // Generate u, its coefficients are in (-q-eta2, q+eta2)
+        short[][] u = ACCESS.getLazyProductVector(context);
+        zero(u);
+        if (aHatTranspose != null) {
+            lazy.matrixMultiplyAccumulate(aHatTranspose, yHat, u);
+        } else {
+            lazy.matrixMultiplyAccumulate(aHatTransposeSource, yHat, u, ACCESS.getMatrixEntry(context));
+        }
+        event.matrixMultiplication += event.lap();
+        for (int i = 0; i < k; i++) {
+            lazy.inverseInPlace(u[i], 0);
+            lazy.arrayAdd(u[i], e1[i], u[i]); // LAST USE: e1
+        }
+        event.ntt += event.lap();
+
+        // Generate mu
+        short[] mu = ACCESS.getLazyMessagePolynomial(context);
+        codec.decodeDecompress(1, message, 0, mu);
+        event.encoding += event.lap();
+
+        // Generate v, its coefficients are in (-q-eta2, 2q+eta2)
+        short[] v = ACCESS.getLazyProductPolynomial(context);
+        zero(v);
+        lazy.vectorTransposeMultiplyAccumulate(tHat, yHat, v); // LAST USE: yHat
+        event.matrixMultiplication += event.lap();
+        lazy.inverseInPlace(v, 0);
+        lazy.arrayAdd(v, e2, v); // LAST USE: e2
+        lazy.arrayAdd(v, mu, v); // LAST USE: mu
+
+        // ZERO: yHat, e1, e2, mu
+        zero(yHat);
+        zero(e1);
+        zero(e2);
+        zero(mu);
+
+        // Generate result
+        // Each polynomial is normalized, compressed and encoded in a single pass into its position in the cipherText
+        int c1ChunkLength = 32 * parameterSet.getDu();
+        for (int i = 0; i < k; i++) {
+            codec.compressEncode(parameterSet.getDu(), u[i], out, c1ChunkLength * i);
+        }
+        codec.compressEncode(parameterSet.getDv(), v, out, c1ChunkLength * k);
+
+        // ZERO: u, v
+        zero(u);
+        zero(v);
 
-        return resultBuffer.array().clone();
+        event.encoding += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
 
     }
 
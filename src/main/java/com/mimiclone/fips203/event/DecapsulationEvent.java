@@ -0,0 +1,41 @@
+package com.mimiclone.fips203.event;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted by {@link com.mimiclone.fips203.decaps.mlkem.MLKEMDecapsulator} for every decapsulation.  The
+ * decryption and re-encryption it performs emit their own {@link DecryptionEvent} and {@link EncryptionEvent}.
+ */
+@Name("com.mimiclone.fips203.Decapsulation")
+@Label("ML-KEM Decapsulation")
+@Description("ML-KEM.Decaps_internal, with the time spent in each of its phases")
+public class DecapsulationEvent extends MLKEMEvent {
+
+    @Label("Prepared Key")
+    @Description("Whether the decapsulation key had already been decoded and expanded")
+    public boolean prepared;
+
+    @Label("Decryption")
+    @Description("Decoding s-hat, unless the key was prepared, and decrypting the ciphertext")
+    @Timespan
+    public long decryption;
+
+    @Label("Hashing")
+    @Description("Deriving K' and r' with G and the implicit rejection value with J")
+    @Timespan
+    public long hashing;
+
+    @Label("Re-encryption")
+    @Description("Encrypting m' again with r'")
+    @Timespan
+    public long reEncryption;
+
+    @Label("Comparison")
+    @Description("Comparing the ciphertexts and selecting the shared secret")
+    @Timespan
+    public long comparison;
+
+}
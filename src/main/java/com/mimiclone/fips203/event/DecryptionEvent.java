@@ -0,0 +1,31 @@
+package com.mimiclone.fips203.event;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted by {@link com.mimiclone.fips203.decrypt.kpke.KPKEDecryptor} for every decryption.
+ */
+@Name("com.mimiclone.fips203.Decryption")
+@Label("K-PKE Decryption")
+@Description("K-PKE.Decrypt, with the time spent in each of its phases")
+public class DecryptionEvent extends MLKEMEvent {
+
+    @Label("Decoding")
+    @Description("Decoding and decompressing u' and v'")
+    @Timespan
+    public long decoding;
+
+    @Label("NTT")
+    @Description("Transforming u', multiplying in s-hat and transforming w back")
+    @Timespan
+    public long ntt;
+
+    @Label("Encoding")
+    @Description("Compressing and encoding the message")
+    @Timespan
+    public long encoding;
+
+}
@@ -0,0 +1,42 @@
+package com.mimiclone.fips203.event;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted by {@link com.mimiclone.fips203.encrypt.kpke.KPKEEncryptor} for every encryption, including the
+ * re-encryption performed by decapsulation.
+ */
+@Name("com.mimiclone.fips203.Encryption")
+@Label("K-PKE Encryption")
+@Description("K-PKE.Encrypt, with the time spent in each of its phases")
+public class EncryptionEvent extends MLKEMEvent {
+
+    @Label("Prepared Key")
+    @Description("Whether the encapsulation key had already been decoded and expanded")
+    public boolean prepared;
+
+    @Label("Noise Sampling")
+    @Description("Sampling y, e1 and e2")
+    @Timespan
+    public long noiseSampling;
+
+    @Label("NTT")
+    @Description("The forward and inverse transforms and the coefficient-wise additions")
+    @Timespan
+    public long ntt;
+
+    @Label("Matrix Expansion and Multiplication")
+    @Description("Sampling A-hat from rho (or copying it from a prepared key) as each entry is multiplied into u, "
+            + "and multiplying t-hat into v")
+    @Timespan
+    public long matrixMultiplication;
+
+    @Label("Encoding")
+    @Description("Decoding t-hat and the message, and compressing and encoding the ciphertext")
+    @Timespan
+    public long encoding;
+
+}
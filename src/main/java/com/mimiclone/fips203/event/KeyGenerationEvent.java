@@ -0,0 +1,41 @@
+package com.mimiclone.fips203.event;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted by {@link com.mimiclone.fips203.key.gen.mlkem.MLKEMKeyPairGenerator} for every key pair it generates.
+ */
+@Name("com.mimiclone.fips203.KeyGeneration")
+@Label("ML-KEM Key Generation")
+@Description("ML-KEM.KeyGen_internal, with the time spent in each of its phases")
+public class KeyGenerationEvent extends MLKEMEvent {
+
+    @Label("Hashing")
+    @Description("Deriving rho and sigma with G and hashing the encapsulation key with H")
+    @Timespan
+    public long hashing;
+
+    @Label("Noise Sampling")
+    @Description("Sampling s and e")
+    @Timespan
+    public long noiseSampling;
+
+    @Label("NTT")
+    @Description("Transforming s and e")
+    @Timespan
+    public long ntt;
+
+    @Label("Matrix Expansion and Multiplication")
+    @Description("Sampling A-hat from rho as each entry is multiplied into t-hat")
+    @Timespan
+    public long matrixMultiplication;
+
+    @Label("Encoding")
+    @Description("Encoding the decapsulation and encapsulation keys")
+    @Timespan
+    public long encoding;
+
+}
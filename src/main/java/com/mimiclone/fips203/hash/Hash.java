@@ -12,4 +12,22 @@ public interface Hash {
 
     byte[] jHash(byte[] s);
 
+    /**
+     * Identical to {@link #gHash(byte[])}, but hashes the {@code length} bytes of {@code input} starting at
+     * {@code offset} and writes the 64 byte digest into {@code out}.
+     */
+    void gHash(byte[] input, int offset, int length, byte[] out);
+
+    /**
+     * Identical to {@link #hHash(byte[])}, but hashes the {@code length} bytes of {@code input} starting at
+     * {@code offset} and writes the 32 byte digest into {@code out}.
+     */
+    void hHash(byte[] input, int offset, int length, byte[] out);
+
+    /**
+     * Computes {@code J(z || c)}, where {@code z} is the 32 bytes of {@code input} starting at {@code offset}, into
+     * the first 32 bytes of {@code out} without concatenating {@code z} and {@code c}.
+     */
+    void jHash(byte[] input, int offset, byte[] c, byte[] out);
+
 }
@@ -1,13 +1,11 @@
 package com.mimiclone.fips203.hash;
 
 import com.mimiclone.fips202.keccak.core.KeccakSponge;
-import com.mimiclone.fips202.keccak.io.BitInputStream;
-import com.mimiclone.fips202.keccak.io.BitOutputStream;
 import com.mimiclone.fips203.ParameterSet;
-import com.mimiclone.fips203.key.gen.KeyPairGenerationException;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -56,19 +54,13 @@ public class MLKEMHash implements Hash {
 
         int eta = parameterSet.getEta1();
 
-        // Init XOF
-        BitOutputStream absorbStream = shake256.getAbsorbStream();
-        BitInputStream squeezeStream = shake256.getSqueezeStream();
-
         // Absorb s and b
-        absorbStream.write(s);
-        absorbStream.write(new byte[] {b});
+        shake256.absorb(s);
+        shake256.absorb(b);
 
         // Squeeze the result
         byte[] digest = new byte[64 * eta];
-        if (squeezeStream.read(digest) != digest.length) {
-            throw new KeyPairGenerationException("PRF SHAKE256.Squeeze() operation failed");
-        }
+        shake256.squeeze(digest);
 
         return digest;
 
@@ -79,19 +71,13 @@ public class MLKEMHash implements Hash {
 
         int eta = parameterSet.getEta2();
 
-        // Init XOF
-        BitOutputStream absorbStream = shake256.getAbsorbStream();
-        BitInputStream squeezeStream = shake256.getSqueezeStream();
-
         // Absorb s and b
-        absorbStream.write(s);
-        absorbStream.write(new byte[] {b});
+        shake256.absorb(s);
+        shake256.absorb(b);
 
         // Squeeze the result
         byte[] digest = new byte[64 * eta];
-        if (squeezeStream.read(digest) != digest.length) {
-            throw new KeyPairGenerationException("PRF SHAKE256.Squeeze() operation failed");
-        }
+        shake256.squeeze(digest);
 
         return digest;
 
@@ -114,20 +100,51 @@ public class MLKEMHash implements Hash {
     @Override
     public byte[] jHash(byte[] s) {
 
-        // Init XOF
-        BitOutputStream absorbStream = shake256.getAbsorbStream();
-        BitInputStream squeezeStream = shake256.getSqueezeStream();
-
         // Absorb s
-        absorbStream.write(s);
+        shake256.absorb(s);
 
         // Squeeze the result
         byte[] digest = new byte[32];
-        if (squeezeStream.read(digest) != digest.length) {
-            throw new KeyPairGenerationException("PRF SHAKE256.Squeeze() operation failed");
-        }
+        shake256.squeeze(digest);
 
         return digest;
 
     }
+
+    @Override
+    public void gHash(byte[] input, int offset, int length, byte[] out) {
+
+        digest(sha3Hash512, input, offset, length, out);
+
+    }
+
+    @Override
+    public void hHash(byte[] input, int offset, int length, byte[] out) {
+
+        digest(sha3Hash256, input, offset, length, out);
+
+    }
+
+    private static void digest(MessageDigest messageDigest, byte[] input, int offset, int length, byte[] out) {
+
+        messageDigest.update(input, offset, length);
+        try {
+            messageDigest.digest(out, 0, messageDigest.getDigestLength());
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    @Override
+    public void jHash(byte[] input, int offset, byte[] c, byte[] out) {
+
+        // Absorb z and c
+        shake256.absorb(input, offset, 32);
+        shake256.absorb(c);
+
+        // Squeeze the result
+        shake256.squeeze(out, 0, 32);
+
+    }
 }
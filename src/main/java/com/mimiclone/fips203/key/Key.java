@@ -9,4 +9,11 @@ public interface Key {
      */
     void destroy();
 
+    /**
+     * @return Whether {@link #destroy()} has zeroed this key.  Keys that do not track it always return {@code false}.
+     */
+    default boolean isDestroyed() {
+        return false;
+    }
+
 }
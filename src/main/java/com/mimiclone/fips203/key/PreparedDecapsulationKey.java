@@ -0,0 +1,30 @@
+package com.mimiclone.fips203.key;
+
+/**
+ * A {@link DecapsulationKey} that also carries the values derived from the key bytes during decapsulation, so
+ * that a long-lived key does not have to decode {@code sHat}, decode {@code tHat} and expand the matrix {@code A}
+ * for every ciphertext.
+ * <p>
+ * Unlike a {@link PreparedEncapsulationKey} this holds secret values.  The arrays returned by {@link #getSHat()} and
+ * {@link #getImplicitRejectionValue()} are the internal state of the key and are shared between threads, so callers
+ * must never modify them, and
+ * {@link #destroy()} zeroes every derived value as well as the key bytes.
+ */
+public interface PreparedDecapsulationKey extends DecapsulationKey {
+
+    /**
+     * @return The decoded secret vector {@code sHat} in NTT form (read only)
+     */
+    int[][] getSHat();
+
+    /**
+     * @return The prepared form of the encapsulation key embedded in this key, including its hash {@code h}
+     */
+    PreparedEncapsulationKey getEncapsulationKey();
+
+    /**
+     * @return The 32 byte implicit rejection value {@code z} (read only)
+     */
+    byte[] getImplicitRejectionValue();
+
+}
@@ -0,0 +1,29 @@
+package com.mimiclone.fips203.key;
+
+/**
+ * An {@link EncapsulationKey} that also carries the values derived from the key bytes during encapsulation, so
+ * that repeated encapsulations to the same key can skip decoding {@code tHat}, expanding the matrix {@code A}
+ * from the seed {@code rho} and hashing the key.
+ * <p>
+ * The derived values are all public information.  The arrays returned by {@link #getTHat()},
+ * {@link #getAHatTranspose()} and {@link #getHash()} are the internal state of the key and are shared between
+ * threads, so callers must never modify them.
+ */
+public interface PreparedEncapsulationKey extends EncapsulationKey {
+
+    /**
+     * @return The decoded vector {@code tHat} in NTT form (read only)
+     */
+    int[][] getTHat();
+
+    /**
+     * @return The transpose of the matrix {@code A} in NTT form as used by K-PKE.Encrypt (read only)
+     */
+    int[][][] getAHatTranspose();
+
+    /**
+     * @return The 32 byte hash {@code H(ek)} of the encapsulation key (read only)
+     */
+    byte[] getHash();
+
+}
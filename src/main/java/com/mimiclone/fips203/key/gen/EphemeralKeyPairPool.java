@@ -0,0 +1,292 @@
+package com.mimiclone.fips203.key.gen;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.context.MLKEMContext;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.gen.mlkem.MLKEMKeyPairGenerator;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static com.mimiclone.CryptoUtils.zero;
+
+/**
+ * A bounded, thread-safe pool of pre-generated key pairs of a single parameter set, for callers that need a fresh
+ * ephemeral key pair on a latency sensitive path such as connection setup.
+ * <p>
+ * {@link #take()} hands out a queued key pair when one is available and otherwise generates one on the calling
+ * thread.  Whenever the number of queued key pairs drops below {@code lowWaterMark} a background virtual thread
+ * generates key pairs until the pool holds {@code capacity} of them again.  At most one refill runs at a time, and
+ * it owns its own generator, context and DRBG.
+ * <p>
+ * Key pairs that have been queued for longer than {@code maximumAge} are evicted instead of handed out.  Evicted
+ * key pairs, key pairs that no longer fit in the pool and every key pair still queued when the pool is closed are
+ * destroyed.  Key pairs handed out by {@link #take()} belong to the caller, who must destroy them.
+ */
+public final class EphemeralKeyPairPool implements AutoCloseable {
+
+    // Secure RBG algorithm set name
+    private static final String SECURE_RBG_ALGO = "DRBG";
+
+    private final ParameterSet parameterSet;
+    private final int capacity;
+    private final int lowWaterMark;
+    private final long maximumAgeNanos;
+    private final LongSupplier clock;
+
+    private final BlockingQueue<Entry> queue;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Generates key pairs on the threads of callers that find the pool empty
+     */
+    private final FIPS203 fallback;
+
+    /**
+     * Used by the refill in progress only, which the {@link #refilling} flag hands from one refill to the next
+     */
+    private final KeyPairGeneration refillGenerator;
+    private final MLKEMContext refillContext;
+    private final SecureRandom refillRandom;
+
+    // Metrics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder refilled = new LongAdder();
+    private final LongAdder refillNanos = new LongAdder();
+    private final LongAccumulator maximumRefillNanos = new LongAccumulator(Math::max, 0);
+
+    EphemeralKeyPairPool(ParameterSet parameterSet, int capacity, int lowWaterMark, Duration maximumAge, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (lowWaterMark < 1 || lowWaterMark > capacity) {
+            throw new IllegalArgumentException("Low water mark must be between 1 and the capacity");
+        }
+        if (maximumAge.isNegative() || maximumAge.isZero()) {
+            throw new IllegalArgumentException("Maximum age must be positive");
+        }
+        this.parameterSet = parameterSet;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.maximumAgeNanos = maximumAge.toNanos();
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.fallback = MimicloneFIPS203.create(parameterSet);
+        this.refillGenerator = MLKEMKeyPairGenerator.create(parameterSet);
+        this.refillContext = MLKEMContext.create(parameterSet);
+        try {
+            this.refillRandom = SecureRandom.getInstance(SECURE_RBG_ALGO, DrbgParameters.instantiation(
+                    parameterSet.getMinSecurityStrength(),
+                    DrbgParameters.Capability.PR_AND_RESEED,
+                    null));
+        } catch (NoSuchAlgorithmException e) {
+            throw new KeyPairGenerationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a pool whose key pairs never expire, and starts filling it in the background.
+     */
+    public static EphemeralKeyPairPool create(ParameterSet parameterSet, int capacity, int lowWaterMark) {
+        return create(parameterSet, capacity, lowWaterMark, Duration.ofNanos(Long.MAX_VALUE));
+    }
+
+    /**
+     * Creates a pool that evicts key pairs once they have been queued for longer than {@code maximumAge}, and
+     * starts filling it in the background.
+     */
+    public static EphemeralKeyPairPool create(ParameterSet parameterSet, int capacity, int lowWaterMark, Duration maximumAge) {
+        EphemeralKeyPairPool pool = new EphemeralKeyPairPool(parameterSet, capacity, lowWaterMark, maximumAge, System::nanoTime);
+        pool.scheduleRefill();
+        return pool;
+    }
+
+    public ParameterSet getParameterSet() {
+        return parameterSet;
+    }
+
+    /**
+     * Hands out a pre-generated key pair, or generates one on the calling thread if the pool is empty.  The caller
+     * is responsible for destroying the key pair once it is done with it.
+     *
+     * @throws IllegalStateException if the pool has been closed
+     */
+    public KeyPair take() {
+
+        if (closed) {
+            throw new IllegalStateException("Key pair pool has been closed");
+        }
+
+        try {
+
+            // Skip over (and destroy) key pairs that have been queued for too long
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                if (clock.getAsLong() - entry.created() < maximumAgeNanos) {
+                    hits.increment();
+                    return entry.keyPair();
+                }
+                evictions.increment();
+                destroy(entry.keyPair());
+            }
+
+            misses.increment();
+            return fallback.generateKeyPair();
+
+        } finally {
+            if (queue.size() < lowWaterMark) {
+                scheduleRefill();
+            }
+        }
+
+    }
+
+    /**
+     * @return {@code true} once {@link #close()} has been called
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return The number of key pairs currently queued, including expired key pairs not yet evicted
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    /**
+     * @return A snapshot of the counters of this pool
+     */
+    public Metrics metrics() {
+        long count = refilled.sum();
+        return new Metrics(
+                hits.sum(),
+                misses.sum(),
+                evictions.sum(),
+                count,
+                Duration.ofNanos(count == 0 ? 0 : refillNanos.sum() / count),
+                Duration.ofNanos(maximumRefillNanos.get()),
+                queue.size()
+        );
+    }
+
+    /**
+     * Stops refilling, destroys every queued key pair and zeroes the scratch buffers of the fallback generator.  Key pairs already handed out are not affected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drain();
+        fallback.close();
+    }
+
+    /**
+     * @param hits The number of key pairs handed out from the queue
+     * @param misses The number of key pairs generated on the calling thread because the queue was empty
+     * @param evictions The number of queued key pairs destroyed because they were too old or did not fit
+     * @param refilled The number of key pairs generated by background refills
+     * @param meanRefillLatency The mean time a background refill took to generate one key pair
+     * @param maximumRefillLatency The longest time a background refill took to generate one key pair
+     * @param depth The number of key pairs queued when the snapshot was taken
+     */
+    public record Metrics(long hits, long misses, long evictions, long refilled, Duration meanRefillLatency,
+                          Duration maximumRefillLatency, int depth) {
+    }
+
+    /**
+     * Key pairs queued by the pool, for inspection by tests only.
+     */
+    List<KeyPair> queuedKeyPairs() {
+        List<KeyPair> keyPairs = new ArrayList<>();
+        queue.forEach(entry -> keyPairs.add(entry.keyPair()));
+        return keyPairs;
+    }
+
+    /**
+     * Starts a refill on a new virtual thread unless one is already running or the pool is closed.
+     */
+    void scheduleRefill() {
+        if (!closed && refilling.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("mlkem-key-pair-pool-refill").start(this::refill);
+        }
+    }
+
+    private void refill() {
+
+        byte[] d = new byte[32];
+        byte[] z = new byte[32];
+        try {
+            while (!closed && queue.size() < capacity) {
+
+                // Generate a key pair exactly as FIPS203.generateKeyPair() does, in the refill's own context
+                long start = clock.getAsLong();
+                refillRandom.nextBytes(d);
+                refillRandom.nextBytes(z);
+                KeyPair keyPair = refillGenerator.generateKeyPair(refillContext, d, z);
+                long now = clock.getAsLong();
+
+                refilled.increment();
+                refillNanos.add(now - start);
+                maximumRefillNanos.accumulate(now - start);
+
+                if (!queue.offer(new Entry(keyPair, now))) {
+                    evictions.increment();
+                    destroy(keyPair);
+                    break;
+                }
+
+                // The pool may have been closed, and drained, while this key pair was generated
+                if (closed) {
+                    drain();
+                }
+            }
+        } finally {
+
+            // ZERO: d, z and the refill context
+            zero(d);
+            zero(z);
+            refillContext.close();
+
+            refilling.set(false);
+
+        }
+
+        // Key pairs may have been taken after the loop last checked the depth
+        if (queue.size() < lowWaterMark) {
+            scheduleRefill();
+        }
+
+    }
+
+    private void drain() {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            destroy(entry.keyPair());
+        }
+    }
+
+    private static void destroy(KeyPair keyPair) {
+        keyPair.getEncapsulationKey().destroy();
+        keyPair.getDecapsulationKey().destroy();
+    }
+
+    private record Entry(KeyPair keyPair, long created) {
+    }
+
+}
@@ -1,9 +1,18 @@
 package com.mimiclone.fips203.key.gen;
 
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.key.KeyPair;
 
 public interface KeyPairGeneration {
 
     KeyPair generateKeyPair(byte[] d, byte[] z);
 
+    /**
+     * Identical to {@link #generateKeyPair(byte[], byte[])}, but works in the buffers of {@code context} so that
+     * only the returned key pair is allocated.  The default ignores the context.
+     */
+    default KeyPair generateKeyPair(MLKEMContext context, byte[] d, byte[] z) {
+        return generateKeyPair(d, z);
+    }
+
 }
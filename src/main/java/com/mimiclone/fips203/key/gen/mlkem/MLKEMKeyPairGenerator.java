@@ -3,26 +3,33 @@ package com.mimiclone.fips203.key.gen.mlkem;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.codec.Codec;
 import com.mimiclone.fips203.codec.MLKEMCodec;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
+import com.mimiclone.fips203.event.KeyGenerationEvent;
 import com.mimiclone.fips203.hash.Hash;
 import com.mimiclone.fips203.hash.MLKEMHash;
 import com.mimiclone.fips203.key.KeyPair;
 import com.mimiclone.fips203.key.gen.KeyPairGeneration;
 import com.mimiclone.fips203.key.gen.KeyPairGenerationException;
+import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
 import com.mimiclone.fips203.key.mlkem.MLKEMKeyPair;
+import com.mimiclone.fips203.metrics.MLKEMMetrics;
 import com.mimiclone.fips203.sample.MLKEMSampler;
 import com.mimiclone.fips203.sample.Sampler;
-import com.mimiclone.fips203.transform.MLKEMTransformer;
+import com.mimiclone.fips203.transform.LazyReductionTransformer;
+import com.mimiclone.fips203.transform.TransformerFactory;
 import com.mimiclone.fips203.transform.Transformer;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.nio.ByteBuffer;
-
 import static com.mimiclone.CryptoUtils.zero;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public final class MLKEMKeyPairGenerator implements KeyPairGeneration {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
 
     final Codec codec;
@@ -33,13 +40,23 @@ public final class MLKEMKeyPairGenerator implements KeyPairGeneration {
 
     final Transformer ntt;
 
+    private final MLKEMMetrics metrics;
+
     public static MLKEMKeyPairGenerator create(ParameterSet parameterSet) {
+        return create(parameterSet, MLKEMMetrics.none());
+    }
+
+    /**
+     * Creates a generator that records the latency of every key pair it generates with {@code metrics}.
+     */
+    public static MLKEMKeyPairGenerator create(ParameterSet parameterSet, MLKEMMetrics metrics) {
         return new MLKEMKeyPairGenerator(
                 parameterSet,
                 MLKEMCodec.create(parameterSet),
                 MLKEMHash.create(parameterSet),
                 MLKEMSampler.create(parameterSet),
-                MLKEMTransformer.create(parameterSet)
+                TransformerFactory.create(parameterSet),
+                metrics
         );
     }
 
@@ -53,64 +70,59 @@ public final class MLKEMKeyPairGenerator implements KeyPairGeneration {
      */
     @Override
     public KeyPair generateKeyPair(byte[] d, byte[] z) {
+        try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+            return generateKeyPair(context, d, z);
+        }
+    }
+
+    @Override
+    public KeyPair generateKeyPair(MLKEMContext context, byte[] d, byte[] z) {
 
         // Ensure d, z exist and are 32 bytes long
         if (d == null || d.length != 32 || z == null || z.length != 32) {
             throw new KeyPairGenerationException("Entropy sources 'd' and 'z' must be 32 bytes");
         }
+        context.check(parameterSet);
 
-        // It is the responsibility of the caller to destroy the memory they passed in by reference.
-        // We will only work on local copies, which will be destroyed after last use.
-        byte[] dLocal = d.clone();
-        byte[] zLocal = z.clone();
-
-        // Call K-PKE.KeyGen
-        KeyPair baseKeyPair = generateKPKE(dLocal); // LAST USE: dLocal
-
-        // ZERO: dLocal
-        zero(dLocal);
-
-        // Retrieve bytes array for the pke keys
-        byte[] ekPKE = baseKeyPair.getEncapsulationKey().getBytes();
-        byte[] dkPKE = baseKeyPair.getDecapsulationKey().getBytes(); // LAST USE: baseKeyPair
+        long start = System.nanoTime();
+        KeyGenerationEvent event = new KeyGenerationEvent();
+        event.start();
 
-        // ZERO: baseKeyPair
-        baseKeyPair.getEncapsulationKey().destroy();
-        baseKeyPair.getDecapsulationKey().destroy();
+        // It is the responsibility of the caller to destroy the memory they passed in by reference.
+        // Only copies in the context are worked on, and they are destroyed after last use.
+        int k = parameterSet.getK();
+        byte[] dk = ACCESS.getDecapsulationKey(context);
 
-        // Hash the encapsulation key
-        byte[] ekHash = hash.hHash(ekPKE);
+        // Call K-PKE.KeyGen, which encodes dkPKE and ekPKE straight into the start of dk
+        generateKPKE(context, event, d, dk);
 
-        // Allocate byte array for composite decaps key
-        byte[] dkResult = new byte[dkPKE.length + ekPKE.length + ekHash.length + zLocal.length];
+        // Hash the encapsulation key and append it to dk
+        byte[] ekHash = ACCESS.getKeyHash(context);
+        hash.hHash(dk, 384*k, 384*k+32, ekHash);
+        System.arraycopy(ekHash, 0, dk, 768*k+32, 32); // LAST USE: ekHash
+        event.hashing += event.lap();
 
-        // Wrap in a buffer to fill and fill the result
-        // It doesn't matter if the ByteBuffer wrapper sticks around in memory as long as the wrapped memory is cleared.
-        ByteBuffer dkResultBuffer = ByteBuffer.wrap(dkResult);
-        dkResultBuffer.put(dkPKE)
-                .put(ekPKE)
-                .put(ekHash) // LAST USE: ekHash
-                .put(zLocal); // LAST USE: zLocal
+        // Append z to dk
+        System.arraycopy(z, 0, dk, 768*k+64, 32);
 
         // ZERO: ekHash
         zero(ekHash);
 
-        // ZERO: zLocal
-        zero(zLocal);
-
         // Create result keypair
-        // The implementation itself will make a copy of the key bytes, so we don't need to
-        // worry about it being modified by outside code.
-        KeyPair keyPair = MLKEMKeyPair.fromBytes(ekPKE, dkResult);  // LAST USE: ekPKE, dkResult
-
-        // ZERO: dkResult
-        zero(dkResult);
+        // The implementations make their own copies of the key bytes, so we don't need to
+        // worry about them being modified by outside code.
+        KeyPair keyPair = new MLKEMKeyPair(
+                MLKEMEncapsulationKey.create(dk, 384*k, 384*k+32),
+                MLKEMDecapsulationKey.create(dk)
+        ); // LAST USE: dk
 
-        // ZERO: ekPKE
-        zero(ekPKE);
+        // ZERO: dk
+        zero(dk);
 
-        // ZERO: dkPKE
-        zero(dkPKE);
+        event.encoding += event.lap();
+        event.parameterSet = parameterSet.getName();
+        event.commit();
+        metrics.recordKeyGeneration(parameterSet, System.nanoTime() - start);
 
         // Return result value
         // Caller is responsible for destroying the KeyPair once they are done
@@ -122,144 +134,159 @@ public final class MLKEMKeyPairGenerator implements KeyPairGeneration {
      * Implements Algorithm 13 of the FIPS203 Specification.
      * This is described in Section 5.1 of the August 13 Spec Release starting on Page 28
      *
+     * @param event The event that receives the time spent in each phase.
      * @param d An array of exactly 32 randomly generated bytes.
-     *
-     * @return An initial FIPS203KeyPair instance
+     * @param out An array that receives dkPKE ({@code 384*k} bytes) immediately followed by ekPKE
+     *            ({@code 384*k+32} bytes).
      */
-    KeyPair generateKPKE(byte[] d) {
+    void generateKPKE(MLKEMContext context, KeyGenerationEvent event, byte[] d, byte[] out) {
 
         // Ensure d exists and is 32 bytes long
         if (d == null || d.length != 32) {
             throw new KeyPairGenerationException("Entropy source 'd' must be 32 bytes");
         }
 
-        // It is the responsibility of the caller to destroy the memory they passed in by reference.
-        // We will only work on local copies, which will be destroyed after last use.
-        byte[] dLocal = d.clone();
-
-        // Get k as a byte value from parameter set
+        // Get k from parameter set
         int k = parameterSet.getK();
-        byte[] kb = { (byte) k };
 
         // 1: Expand 32 + 1 bytes to two pseudorandom 32-byte seeds
-        byte[] dk = new byte[33];
-        ByteBuffer buffer = ByteBuffer.wrap(dk);
-        buffer.put(dLocal); // LAST USE: dLocal
-        buffer.put(kb); // LAST USE: kb
-
-        // ZERO: dLocal
-        zero(dLocal);
-
-        // ZERO: kb
-        zero(kb);
+        byte[] dk = ACCESS.getHashInput(context);
+        System.arraycopy(d, 0, dk, 0, 32);
+        dk[32] = (byte) k;
 
         // Generate the combined seeds
-        byte[] rhoAndSigma = hash.gHash(dk); // LAST USE: dk
+        byte[] rhoAndSigma = ACCESS.getHashOutput(context);
+        hash.gHash(dk, 0, 33, rhoAndSigma); // LAST USE: dk
 
         // ZERO: dk
         zero(dk);
 
-        if (rhoAndSigma == null || rhoAndSigma.length != 64) {
-            throw new KeyPairGenerationException("Unable to generate 'rho' and 'sigma' 32-byte seed values");
-        }
-
-        // Wrap rhoAndSigma in a ByteBuffer for future reads
-        ByteBuffer rhoAndSigmaBuffer = ByteBuffer.wrap(rhoAndSigma);
-
         // Split out rho
-        byte[] rho = new byte[32];
-        rhoAndSigmaBuffer.get(rho);
+        byte[] rho = ACCESS.getSeed(context);
+        System.arraycopy(rhoAndSigma, 0, rho, 0, 32);
 
         // Split out sigma
-        byte[] sigma = new byte[32];
-        rhoAndSigmaBuffer.get(sigma); // LAST USE: rhoAndSigma
+        byte[] sigma = ACCESS.getNoiseSeed(context);
+        System.arraycopy(rhoAndSigma, 32, sigma, 0, 32); // LAST USE: rhoAndSigma
 
         // ZERO: rhoAndSigma
         zero(rhoAndSigma);
+        event.hashing += event.lap();
+
+        // NOTE: The lazy transformer works on short[] polynomials, which are only normalized as they are encoded
+        if (ntt instanceof LazyReductionTransformer lazy) {
+            generateKPKE(context, event, lazy, rho, sigma, out);
+            return;
+        }
 
-        int n = 0;
+        // Generate s and e
+        // Both are sampled in a single batch, s with the nonces 0 to k-1 and e with the nonces k to 2k-1
+        int[][] s = ACCESS.getSecretVector(context);
+        int[][] e = ACCESS.getErrorVector(context);
+        sampler.sampleNoiseVector(context, sigma, 0, parameterSet.getEta1(), ACCESS.getKeyGenerationNoise(context)); // LAST USE: sigma
 
-        int[][][] aHatMatrix = new int[k][k][256];
+        // ZERO: sigma
+        zero(sigma);
+        event.noiseSampling += event.lap();
 
-        // Generate A hat matrix
+        // Calculate sHat
+        // The transform is performed in place, so s becomes sHat and is zeroed along with it
+        int[][] sHat = s;
         for (int i = 0; i < k; i++) {
-            for (int j = 0; j < k; j++) {
-                aHatMatrix[i][j] = sampler.sampleNTT(rho, (byte) j, (byte) i);
-            }
+            ntt.transformInPlace(sHat[i], 0);
         }
 
-        // Generate s
-        int[][] s = new int[k][256];
+        // Calculate eHat
+        // The transform is performed in place, so e becomes eHat and is zeroed along with it
+        int[][] eHat = e;
         for (int i = 0; i < k; i++) {
-            s[i] = sampler.samplePolyCBDEta1(hash.prfEta1(sigma, (byte) n));
-            n++;
+            ntt.transformInPlace(eHat[i], 0);
         }
+        event.ntt += event.lap();
 
-        // Generate e
-        int[][] e = new int[k][256];
-        for (int i = 0; i < k; i++) {
-            e[i] = sampler.samplePolyCBDEta1(hash.prfEta1(sigma, (byte) n));
-            n++;
-        }
+        // Noisy linear system in NTT domain
+        // The product is accumulated directly into eHat, so eHat becomes tHat (which is public)
+        // The A hat matrix is never materialized, each row is generated from rho immediately before it is used
+        int[][] tHat = eHat;
+        ntt.matrixMultiplyAccumulate(sampler.matrixSource(context, rho, false), sHat, tHat, ACCESS.getMatrixEntry(context));
+        event.matrixMultiplication += event.lap();
 
-        // Calculate sHat
-        int[][] sHat = new int[k][256];
+        // ByteEncode dkPKE
         for (int i = 0; i < k; i++) {
-            sHat[i] = ntt.transform(s[i]); // LAST USE: s
+            codec.byteEncode(12, sHat[i], out, 384*i); // LAST USE: sHat
         }
 
-        // ZERO: s
-        zero(s);
+        // ZERO: sHat
+        zero(sHat);
 
-        // Calculate eHat
-        int[][] eHat = new int[k][256];
+        // ByteEncode ekPKE and append rho
         for (int i = 0; i < k; i++) {
-            eHat[i] = ntt.transform(e[i]); // LAST USE: e
+            codec.byteEncode(12, tHat[i], out, 384*k + 384*i);
         }
+        System.arraycopy(rho, 0, out, 768*k, 32); // LAST USE: rho
 
-        // ZERO: e
-        zero(e);
+        // ZERO: tHat, rho
+        zero(tHat);
+        zero(rho);
+        event.encoding += event.lap();
 
-        // Noisy linear system in NTT domain
-        int[][] tHat = ntt.matrixAdd(ntt.matrixMultiply(aHatMatrix, sHat), eHat); // LAST USE: aHatMatrix, eHat
+    }
 
-        // ZERO: aHatMatrix, eHat
-        zero(aHatMatrix);
-        zero(eHat);
+    /**
+     * The remainder of Algorithm 13 following the expansion of {@code rho} and {@code sigma}, for the lazy
+     * transformer.  Every polynomial is held in the {@code short[]} buffers of the context and its coefficients
+     * are only normalized as they are encoded.
+     */
+    private void generateKPKE(MLKEMContext context, KeyGenerationEvent event, LazyReductionTransformer lazy,
+                              byte[] rho, byte[] sigma, byte[] out) {
 
-        // ByteEncode ekPKE and append rho
-        byte[] ekPKE = new byte[384*k+32];
-        ByteBuffer ekPKEBuffer = ByteBuffer.wrap(ekPKE);
+        int k = parameterSet.getK();
+
+        // Generate s and e, their coefficients are in [-eta1, eta1]
+        // Both are sampled in a single batch, s with the nonces 0 to k-1 and e with the nonces k to 2k-1
+        short[][] s = ACCESS.getLazySecretVector(context);
+        short[][] e = ACCESS.getLazyErrorVector(context);
+        sampler.sampleNoiseVector(context, sigma, 0, parameterSet.getEta1(), ACCESS.getLazyKeyGenerationNoise(context)); // LAST USE: sigma
+
+        // ZERO: sigma
+        zero(sigma);
+        event.noiseSampling += event.lap();
+
+        // Calculate sHat and eHat
+        // The transforms are performed in place, so s becomes sHat and e becomes eHat
+        short[][] sHat = s;
+        short[][] eHat = e;
         for (int i = 0; i < k; i++) {
-            ekPKEBuffer.put(codec.byteEncode(12, tHat[i]));
+            lazy.transformInPlace(sHat[i], 0);
+            lazy.transformInPlace(eHat[i], 0);
         }
-        ekPKEBuffer.put(rho); // LAST USE: rho
+        event.ntt += event.lap();
 
-        // ZERO: rho
-        zero(rho);
+        // Noisy linear system in NTT domain
+        // The product is accumulated directly into eHat, so eHat becomes tHat (which is public)
+        short[][] tHat = eHat;
+        lazy.matrixMultiplyAccumulate(sampler.matrixSource(context, rho, false), sHat, tHat, ACCESS.getMatrixEntry(context));
+        event.matrixMultiplication += event.lap();
 
-        // ByteEncode dkPKE
-        byte[] dkPKE = new byte[384*k];
-        ByteBuffer dkPKEBuffer = ByteBuffer.wrap(dkPKE);
+        // ByteEncode dkPKE, normalizing sHat as it is encoded
         for (int i = 0; i < k; i++) {
-            dkPKEBuffer.put(codec.byteEncode(12, sHat[i])); // LAST USE: sHat
+            codec.byteEncode(12, sHat[i], out, 384*i); // LAST USE: sHat
         }
 
         // ZERO: sHat
         zero(sHat);
 
-        // Create and a result object wrapping the keypair
-        // This will make copies of the byte arrays, and we will destroy the originals
-        KeyPair keyPair = MLKEMKeyPair.fromBytes(ekPKE, dkPKE); // LAST USE: ekPKE, dkPKE
-
-        // ZERO: ekPKE
-        zero(ekPKE);
+        // ByteEncode ekPKE, normalizing tHat as it is encoded, and append rho
+        for (int i = 0; i < k; i++) {
+            codec.byteEncode(12, tHat[i], out, 384*k + 384*i);
+        }
+        System.arraycopy(rho, 0, out, 768*k, 32); // LAST USE: rho
 
-        // ZERO: dkPKE
-        zero(dkPKE);
+        // ZERO: tHat, rho
+        zero(tHat);
+        zero(rho);
+        event.encoding += event.lap();
 
-        // Return result
-        return keyPair;
     }
 
 }
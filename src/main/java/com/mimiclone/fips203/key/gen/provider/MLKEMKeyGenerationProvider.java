@@ -1,17 +1,80 @@
 package com.mimiclone.fips203.key.gen.provider;
 
 import com.mimiclone.fips203.ParameterSet;
-import lombok.RequiredArgsConstructor;
+import com.mimiclone.fips203.key.gen.EphemeralKeyPairPool;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
+import com.mimiclone.fips203.provider.MLKEMEngines;
 
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
 import java.security.KeyPair;
 import java.security.KeyPairGeneratorSpi;
 import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.NamedParameterSpec;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-@RequiredArgsConstructor
+/**
+ * The {@link java.security.KeyPairGenerator} SPI of a single ML-KEM parameter set, generating
+ * {@link MLKEMPublicKey}/{@link MLKEMPrivateKey} pairs.
+ * <p>
+ * A generator that has not been initialized uses the DRBG of the shared engine of its parameter set, and one that
+ * has been initialized with a {@link SecureRandom} draws the seeds of every key pair from it.  A generator
+ * initialized with a {@link MLKEMPrefetchParameterSpec} instead takes its key pairs from a pool that generates them
+ * ahead of demand with its own DRBG, and ignores the {@link SecureRandom}.  Setting the
+ * {@value #PREFETCH_PROPERTY} system property to a capacity turns prefetching on for generators that are never
+ * initialized, with a low water mark of half the capacity.
+ * <p>
+ * A prefetching pool holds up to its capacity of generated decapsulation keys in memory until they are handed out,
+ * expire or the pool is closed, and runs a DRBG and a refill thread of its own.  Generators initialized with equal
+ * specs share a pool, and at most {@value #MAXIMUM_POOLS} pools are kept: creating one more closes the least
+ * recently requested pool, destroying the key pairs it still holds, and generators still using it move on to a new
+ * pool for their spec.
+ */
 public class MLKEMKeyGenerationProvider extends KeyPairGeneratorSpi {
 
+    /**
+     * Name of the system property giving the capacity of the pool used by generators that are not initialized
+     */
+    public static final String PREFETCH_PROPERTY = "com.mimiclone.fips203.prefetch";
+
+    /**
+     * The number of prefetching pools kept at once, across all parameter sets
+     */
+    public static final int MAXIMUM_POOLS = 8;
+
+    /**
+     * The pools of the parameter sets and specs that generators were most recently initialized with, in access
+     * order.  The JCA creates a new SPI object for every {@code getInstance} call, so the pools must outlive the
+     * generators that use them.
+     */
+    private static final Map<Prefetch, EphemeralKeyPairPool> POOLS = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Prefetch, EphemeralKeyPairPool> eldest) {
+                    if (size() <= MAXIMUM_POOLS) {
+                        return false;
+                    }
+                    eldest.getValue().close();
+                    return true;
+                }
+            });
+
     private final ParameterSet params;
 
+    private SecureRandom random;
+    private MLKEMPrefetchParameterSpec prefetch;
+    private EphemeralKeyPairPool pool;
+
+    public MLKEMKeyGenerationProvider(ParameterSet params) {
+        this.params = params;
+        this.prefetch = defaultPrefetch();
+        this.pool = prefetch != null ? pool(params, prefetch) : null;
+    }
+
     public static MLKEMKeyGenerationProvider getMLKEM512Provider() {
         return new MLKEMKeyGenerationProvider(ParameterSet.ML_KEM_512);
     }
@@ -24,13 +87,82 @@ public class MLKEMKeyGenerationProvider extends KeyPairGeneratorSpi {
         return new MLKEMKeyGenerationProvider(ParameterSet.ML_KEM_1024);
     }
 
+    /**
+     * Every parameter set has a fixed size, so the only key size accepted is the security strength of the
+     * parameter set (i.e. 192 for ML-KEM-768).
+     */
     @Override
     public void initialize(int keysize, SecureRandom random) {
+        if (keysize != params.getMinSecurityStrength()) {
+            throw new InvalidParameterException("Key size of " + params.getName() + " must be "
+                    + params.getMinSecurityStrength());
+        }
+        this.random = random;
+        this.prefetch = null;
+        this.pool = null;
+    }
 
+    /**
+     * Accepts a {@link NamedParameterSpec} naming the parameter set of this generator, or a
+     * {@link MLKEMPrefetchParameterSpec} to prefetch key pairs of it.
+     */
+    @Override
+    public void initialize(AlgorithmParameterSpec params, SecureRandom random) throws InvalidAlgorithmParameterException {
+        if (params instanceof MLKEMPrefetchParameterSpec spec) {
+            this.random = null;
+            this.prefetch = spec;
+            this.pool = pool(this.params, spec);
+        } else if (params instanceof NamedParameterSpec spec && spec.getName().equalsIgnoreCase(this.params.getName())) {
+            this.random = random;
+            this.prefetch = null;
+            this.pool = null;
+        } else {
+            throw new InvalidAlgorithmParameterException("Unsupported parameters for " + this.params.getName()
+                    + ": " + params);
+        }
     }
 
     @Override
     public KeyPair generateKeyPair() {
-        return null;
+
+        com.mimiclone.fips203.key.KeyPair keyPair;
+        if (pool != null) {
+            // The pool is closed once it has been evicted to make room for others, so move on to a new one
+            if (pool.isClosed()) {
+                pool = pool(params, prefetch);
+            }
+            keyPair = pool.take();
+        } else if (random != null) {
+            keyPair = MLKEMEngines.get(params).generateKeyPair(random);
+        } else {
+            keyPair = MLKEMEngines.get(params).generateKeyPair();
+        }
+
+        return new KeyPair(
+                MLKEMPublicKey.create(params, keyPair.getEncapsulationKey()),
+                MLKEMPrivateKey.create(params, keyPair.getDecapsulationKey())
+        );
+    }
+
+    private static MLKEMPrefetchParameterSpec defaultPrefetch() {
+        Integer capacity = Integer.getInteger(PREFETCH_PROPERTY);
+        if (capacity == null || capacity < 1) {
+            return null;
+        }
+        return MLKEMPrefetchParameterSpec.create(capacity, Math.max(1, capacity / 2));
+    }
+
+    /**
+     * Returns the pool shared by the generators of {@code parameterSet} initialized with {@code spec}, creating it
+     * (and starting to fill it) the first time, and closing the least recently requested pool if that makes more
+     * than {@value #MAXIMUM_POOLS}.
+     */
+    static EphemeralKeyPairPool pool(ParameterSet parameterSet, MLKEMPrefetchParameterSpec spec) {
+        return POOLS.computeIfAbsent(new Prefetch(parameterSet, spec), prefetch -> EphemeralKeyPairPool.create(
+                parameterSet, spec.capacity(), spec.lowWaterMark(), spec.maximumAge()));
+    }
+
+    private record Prefetch(ParameterSet parameterSet, MLKEMPrefetchParameterSpec spec) {
     }
+
 }
@@ -0,0 +1,50 @@
+package com.mimiclone.fips203.key.gen.provider;
+
+import com.mimiclone.fips203.key.gen.EphemeralKeyPairPool;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Switches an ML-KEM {@link java.security.KeyPairGenerator} of this provider to prefetching, in which key pairs
+ * are generated ahead of demand on a background virtual thread and handed out by an {@link EphemeralKeyPairPool}.
+ * <p>
+ * Generators initialized with equal specs for the same parameter set share one pool, so a generator obtained with
+ * {@code getInstance} for a single key pair still finds the pool filled by the generators before it.  The pool keeps
+ * up to {@code capacity} secret decapsulation keys in memory until they are handed out, expire or the pool is
+ * closed, and the provider closes the least recently used pool once more than
+ * {@value MLKEMKeyGenerationProvider#MAXIMUM_POOLS} specs are in use.
+ *
+ * @param capacity The number of key pairs the pool refills to
+ * @param lowWaterMark The depth below which the pool starts a refill
+ * @param maximumAge How long a key pair may be queued before it is evicted instead of handed out
+ */
+public record MLKEMPrefetchParameterSpec(int capacity, int lowWaterMark, Duration maximumAge)
+        implements AlgorithmParameterSpec {
+
+    public MLKEMPrefetchParameterSpec {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (lowWaterMark < 1 || lowWaterMark > capacity) {
+            throw new IllegalArgumentException("Low water mark must be between 1 and the capacity");
+        }
+        Objects.requireNonNull(maximumAge, "maximumAge");
+        if (maximumAge.isNegative() || maximumAge.isZero()) {
+            throw new IllegalArgumentException("Maximum age must be positive");
+        }
+    }
+
+    /**
+     * Creates a spec whose key pairs never expire.
+     */
+    public static MLKEMPrefetchParameterSpec create(int capacity, int lowWaterMark) {
+        return new MLKEMPrefetchParameterSpec(capacity, lowWaterMark, Duration.ofNanos(Long.MAX_VALUE));
+    }
+
+    public static MLKEMPrefetchParameterSpec create(int capacity, int lowWaterMark, Duration maximumAge) {
+        return new MLKEMPrefetchParameterSpec(capacity, lowWaterMark, maximumAge);
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.Arrays;
 public class MLKEMDecapsulationKey implements DecapsulationKey {
 
     private final byte[] keyBytes;
+    private volatile boolean destroyed;
 
     public static MLKEMDecapsulationKey create(byte[] keyBytes) {
         return new MLKEMDecapsulationKey(keyBytes.clone());
@@ -20,8 +21,14 @@ public class MLKEMDecapsulationKey implements DecapsulationKey {
         return keyBytes.clone();
     }
 
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
     @Override
     public void destroy() {
+        destroyed = true;
         Arrays.fill(keyBytes, (byte)0);
     }
 }
@@ -15,6 +15,13 @@ public class MLKEMEncapsulationKey implements EncapsulationKey {
         return new MLKEMEncapsulationKey(keyBytes.clone());
     }
 
+    /**
+     * Creates a key from a copy of the {@code length} bytes of {@code keyBytes} starting at {@code offset}.
+     */
+    public static MLKEMEncapsulationKey create(byte[] keyBytes, int offset, int length) {
+        return new MLKEMEncapsulationKey(Arrays.copyOfRange(keyBytes, offset, offset + length));
+    }
+
     @Override
     public byte[] getBytes() {
         return keyBytes.clone();
@@ -0,0 +1,77 @@
+package com.mimiclone.fips203.key.mlkem;
+
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+import static com.mimiclone.CryptoUtils.zero;
+
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MLKEMPreparedDecapsulationKey implements PreparedDecapsulationKey {
+
+    private final byte[] keyBytes;
+    private final int[][] sHat;
+    private final PreparedEncapsulationKey encapsulationKey;
+    private final byte[] z;
+    private volatile boolean destroyed;
+
+    /**
+     * Wraps the values derived from a decapsulation key.  The key bytes and {@code z} are copied, while
+     * {@code sHat} and {@code encapsulationKey} are taken over and must not be used by the caller afterwards.
+     */
+    public static MLKEMPreparedDecapsulationKey create(byte[] keyBytes, int[][] sHat,
+                                                       PreparedEncapsulationKey encapsulationKey, byte[] z) {
+        return new MLKEMPreparedDecapsulationKey(keyBytes.clone(), sHat, encapsulationKey, z.clone());
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return keyBytes.clone();
+    }
+
+    @Override
+    public int[][] getSHat() {
+        checkNotDestroyed();
+        return sHat;
+    }
+
+    @Override
+    public PreparedEncapsulationKey getEncapsulationKey() {
+        checkNotDestroyed();
+        return encapsulationKey;
+    }
+
+    @Override
+    public byte[] getImplicitRejectionValue() {
+        checkNotDestroyed();
+        return z;
+    }
+
+    /**
+     * A destroyed key holds zeroes in place of {@code sHat} and {@code z}, and the implicit rejection values
+     * derived from them could be computed by anyone, so every use of one fails instead.
+     */
+    private void checkNotDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Prepared decapsulation key has been destroyed");
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(keyBytes, (byte)0);
+        zero(sHat);
+        encapsulationKey.destroy();
+        zero(z);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.mimiclone.fips203.key.mlkem;
+
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+import static com.mimiclone.CryptoUtils.zero;
+
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MLKEMPreparedEncapsulationKey implements PreparedEncapsulationKey {
+
+    private final byte[] keyBytes;
+    private final int[][] tHat;
+    private final int[][][] aHatTranspose;
+    private final byte[] hash;
+    private volatile boolean destroyed;
+
+    /**
+     * Wraps the values derived from an encapsulation key.  The key bytes and hash are copied, while {@code tHat} and
+     * {@code aHatTranspose} are taken over and must not be modified by the caller afterwards.
+     */
+    public static MLKEMPreparedEncapsulationKey create(byte[] keyBytes, int[][] tHat, int[][][] aHatTranspose, byte[] hash) {
+        return new MLKEMPreparedEncapsulationKey(keyBytes.clone(), tHat, aHatTranspose, hash.clone());
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return keyBytes.clone();
+    }
+
+    @Override
+    public int[][] getTHat() {
+        checkNotDestroyed();
+        return tHat;
+    }
+
+    @Override
+    public int[][][] getAHatTranspose() {
+        checkNotDestroyed();
+        return aHatTranspose;
+    }
+
+    @Override
+    public byte[] getHash() {
+        checkNotDestroyed();
+        return hash;
+    }
+
+    /**
+     * A destroyed key holds zeroes in place of {@code A}, {@code tHat} and {@code H(ek)}, and encapsulating to it
+     * would send the message in the clear, so every use of one fails instead.
+     */
+    private void checkNotDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Prepared encapsulation key has been destroyed");
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(keyBytes, (byte)0);
+        zero(tHat);
+        zero(aHatTranspose);
+        zero(hash);
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.mimiclone.fips203.key.provider;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.security.PrivateKey;
+
+/**
+ * A JCA {@link PrivateKey} wrapping an ML-KEM {@link DecapsulationKey}.
+ * <p>
+ * The algorithm is the name of the parameter set (i.e. {@code ML-KEM-768}) and the encoding is the raw
+ * decapsulation key.  Like {@link MLKEMPublicKey} the key remembers its preparation, which holds the decoded
+ * secret {@code sHat}, until it is destroyed.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MLKEMPrivateKey implements PrivateKey {
+
+    private static final String FORMAT = "RAW";
+
+    @Getter
+    private final ParameterSet parameterSet;
+
+    @Getter
+    private final DecapsulationKey decapsulationKey;
+
+    private transient volatile PreparedDecapsulationKey preparedKey;
+    private volatile boolean destroyed;
+
+    public static MLKEMPrivateKey create(ParameterSet parameterSet, DecapsulationKey decapsulationKey) {
+        return new MLKEMPrivateKey(parameterSet, decapsulationKey);
+    }
+
+    /**
+     * Creates a key from a copy of the raw decapsulation key.
+     */
+    public static MLKEMPrivateKey create(ParameterSet parameterSet, byte[] encoded) {
+        return new MLKEMPrivateKey(parameterSet, MLKEMDecapsulationKey.create(encoded));
+    }
+
+    /**
+     * Returns the preparation of this key, preparing it with {@code fips203} the first time.  Two threads calling
+     * this at the same time may both prepare the key, in which case the first preparation is kept and the other one
+     * is destroyed.
+     *
+     * @throws IllegalStateException if the key has been destroyed
+     */
+    public PreparedDecapsulationKey prepare(FIPS203 fips203) {
+        if (destroyed) {
+            throw new IllegalStateException("Private key has been destroyed");
+        }
+        PreparedDecapsulationKey prepared = preparedKey;
+        if (prepared == null) {
+            PreparedDecapsulationKey candidate = fips203.prepare(decapsulationKey);
+            synchronized (this) {
+                prepared = preparedKey;
+                if (prepared == null) {
+                    prepared = candidate;
+                    preparedKey = prepared;
+                }
+            }
+
+            // ZERO: candidate, if another thread's preparation was kept
+            if (prepared != candidate) {
+                candidate.destroy();
+            }
+
+            // The key may have been destroyed while it was prepared
+            if (destroyed) {
+                prepared.destroy();
+                throw new IllegalStateException("Private key has been destroyed");
+            }
+        }
+        return prepared;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return parameterSet.getName();
+    }
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return decapsulationKey.getBytes();
+    }
+
+    /**
+     * Zeroes the decapsulation key and its preparation.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        decapsulationKey.destroy();
+        PreparedDecapsulationKey prepared = preparedKey;
+        if (prepared != null) {
+            prepared.destroy();
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.mimiclone.fips203.key.provider;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.security.PublicKey;
+
+/**
+ * A JCA {@link PublicKey} wrapping an ML-KEM {@link EncapsulationKey}.
+ * <p>
+ * The algorithm is the name of the parameter set (i.e. {@code ML-KEM-768}) and the encoding is the raw
+ * encapsulation key.  The key remembers its preparation, so every encapsulator created for it after the first
+ * skips the decoding of {@code tHat} and the expansion of the matrix {@code A}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MLKEMPublicKey implements PublicKey {
+
+    private static final String FORMAT = "RAW";
+
+    @Getter
+    private final ParameterSet parameterSet;
+
+    @Getter
+    private final EncapsulationKey encapsulationKey;
+
+    private transient volatile PreparedEncapsulationKey preparedKey;
+
+    public static MLKEMPublicKey create(ParameterSet parameterSet, EncapsulationKey encapsulationKey) {
+        return new MLKEMPublicKey(parameterSet, encapsulationKey);
+    }
+
+    /**
+     * Creates a key from a copy of the raw encapsulation key, for example one received from a peer.
+     */
+    public static MLKEMPublicKey create(ParameterSet parameterSet, byte[] encoded) {
+        return new MLKEMPublicKey(parameterSet, MLKEMEncapsulationKey.create(encoded));
+    }
+
+    /**
+     * Returns the preparation of this key, preparing it with {@code fips203} the first time.  Two threads calling
+     * this at the same time may both prepare the key, and either preparation may be kept.
+     */
+    public PreparedEncapsulationKey prepare(FIPS203 fips203) {
+        PreparedEncapsulationKey prepared = preparedKey;
+        if (prepared == null) {
+            prepared = fips203.prepare(encapsulationKey);
+            preparedKey = prepared;
+        }
+        return prepared;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return parameterSet.getName();
+    }
+
+    @Override
+    public String getFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return encapsulationKey.getBytes();
+    }
+
+}
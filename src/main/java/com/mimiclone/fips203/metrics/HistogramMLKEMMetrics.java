@@ -0,0 +1,136 @@
+package com.mimiclone.fips203.metrics;
+
+import com.mimiclone.fips203.ParameterSet;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@link MLKEMMetrics} that count operations and keep a {@link LatencyHistogram} of each operation of each
+ * parameter set, along with the number of implicit rejections.
+ * <p>
+ * Recording is lock-free and allocation free: every figure is a {@link java.util.concurrent.atomic.LongAdder}, so
+ * threads recording at the same time do not contend.  The figures are read through {@link #keyGeneration},
+ * {@link #encapsulation}, {@link #decapsulation} and {@link #implicitRejections}, or through JMX once
+ * {@link #registerMBeans()} has been called.  A single instance may be shared by components of every parameter
+ * set.
+ */
+public final class HistogramMLKEMMetrics implements MLKEMMetrics {
+
+    /**
+     * JMX domain of the MBeans, which are named {@code com.mimiclone.fips203:type=MLKEMMetrics,parameterSet=<name>}
+     */
+    public static final String MBEAN_DOMAIN = "com.mimiclone.fips203";
+
+    private final Map<ParameterSet, ParameterSetMetrics> metrics;
+
+    private HistogramMLKEMMetrics() {
+        Map<ParameterSet, ParameterSetMetrics> metrics = new EnumMap<>(ParameterSet.class);
+        for (ParameterSet parameterSet : ParameterSet.values()) {
+            metrics.put(parameterSet, new ParameterSetMetrics(parameterSet));
+        }
+        this.metrics = metrics;
+    }
+
+    public static HistogramMLKEMMetrics create() {
+        return new HistogramMLKEMMetrics();
+    }
+
+    @Override
+    public void recordKeyGeneration(ParameterSet parameterSet, long nanos) {
+        metrics.get(parameterSet).keyGeneration.record(nanos);
+    }
+
+    @Override
+    public void recordEncapsulation(ParameterSet parameterSet, long nanos) {
+        metrics.get(parameterSet).encapsulation.record(nanos);
+    }
+
+    @Override
+    public void recordDecapsulation(ParameterSet parameterSet, long nanos, int implicitRejections) {
+        ParameterSetMetrics parameterSetMetrics = metrics.get(parameterSet);
+        parameterSetMetrics.decapsulation.record(nanos);
+        parameterSetMetrics.implicitRejections.add(implicitRejections);
+    }
+
+    public LatencySnapshot keyGeneration(ParameterSet parameterSet) {
+        return metrics.get(parameterSet).getKeyGeneration();
+    }
+
+    public LatencySnapshot encapsulation(ParameterSet parameterSet) {
+        return metrics.get(parameterSet).getEncapsulation();
+    }
+
+    public LatencySnapshot decapsulation(ParameterSet parameterSet) {
+        return metrics.get(parameterSet).getDecapsulation();
+    }
+
+    public long implicitRejections(ParameterSet parameterSet) {
+        return metrics.get(parameterSet).getImplicitRejections();
+    }
+
+    /**
+     * Registers an {@link MLKEMMetricsMXBean} for every parameter set with the platform MBean server.
+     *
+     * @throws MetricsException if the MBeans could not be registered, for example because another instance has
+     * already registered them
+     */
+    public void registerMBeans() {
+        registerMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Registers an {@link MLKEMMetricsMXBean} for every parameter set with {@code server}.
+     *
+     * @throws MetricsException if the MBeans could not be registered
+     */
+    public void registerMBeans(MBeanServer server) {
+        for (ParameterSetMetrics parameterSetMetrics : metrics.values()) {
+            try {
+                server.registerMBean(parameterSetMetrics, objectName(parameterSetMetrics.getParameterSet()));
+            } catch (JMException e) {
+                throw new MetricsException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by {@link #registerMBeans()}.
+     */
+    public void unregisterMBeans() {
+        unregisterMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Unregisters the MBeans registered with {@code server}.  MBeans that are not registered are skipped.
+     */
+    public void unregisterMBeans(MBeanServer server) {
+        for (ParameterSetMetrics parameterSetMetrics : metrics.values()) {
+            try {
+                server.unregisterMBean(objectName(parameterSetMetrics.getParameterSet()));
+            } catch (InstanceNotFoundException e) {
+                // Nothing to unregister
+            } catch (JMException e) {
+                throw new MetricsException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The name of the MBean of the parameter set named {@code parameterSet}
+     */
+    public static ObjectName objectName(String parameterSet) {
+        try {
+            return new ObjectName(MBEAN_DOMAIN + ":type=MLKEMMetrics,parameterSet=" + parameterSet);
+        } catch (MalformedObjectNameException e) {
+            throw new MetricsException(e.getMessage());
+        }
+    }
+
+}
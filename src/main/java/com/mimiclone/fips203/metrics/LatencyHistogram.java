@@ -0,0 +1,122 @@
+package com.mimiclone.fips203.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with a fixed set of log-linear buckets.
+ * <p>
+ * Latencies below {@value #SUB_BUCKETS} ns have a bucket each.  Above that every power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so a bucket is never wider than an eighth of its lower bound and
+ * percentiles are overestimated by at most 12.5%.  Latencies of {@code 2^MAXIMUM_EXPONENT} ns (about 69 seconds)
+ * and above share the last bucket.  Recording a latency increments one {@link LongAdder} and never allocates or
+ * locks.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAXIMUM_EXPONENT = 36;
+    static final int BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maximumNanos = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+
+        // The clock is monotonic, but a negative latency must not index outside the buckets
+        long latency = Math.max(nanos, 0);
+
+        buckets[bucket(latency)].increment();
+        totalNanos.add(latency);
+        maximumNanos.accumulate(latency);
+
+    }
+
+    /**
+     * @return The index of the bucket holding {@code nanos}
+     */
+    static int bucket(long nanos) {
+
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+
+        // The leading SUB_BUCKET_BITS + 1 bits select the bucket within the power of two
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+
+    }
+
+    /**
+     * @return The smallest latency held by the bucket at {@code index}, where {@code index} may be one past the last
+     * bucket
+     */
+    static long lowerBound(int index) {
+
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (index / SUB_BUCKETS - 1);
+
+    }
+
+    /**
+     * Summarizes the latencies recorded so far.  Latencies recorded while the snapshot is taken may be counted in
+     * some of its figures but not in others.
+     */
+    LatencySnapshot snapshot() {
+
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        long maximum = maximumNanos.get();
+
+        return new LatencySnapshot(
+                count,
+                count == 0 ? 0 : totalNanos.sum() / count,
+                percentile(counts, count, maximum, 0.5),
+                percentile(counts, count, maximum, 0.9),
+                percentile(counts, count, maximum, 0.99),
+                percentile(counts, count, maximum, 0.999),
+                maximum
+        );
+
+    }
+
+    /**
+     * @return The largest latency of the bucket holding the {@code quantile} of the recorded latencies, or the
+     * maximum latency if that is smaller
+     */
+    private static long percentile(long[] counts, long count, long maximum, double quantile) {
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i + 1) - 1, maximum);
+            }
+        }
+        return maximum;
+
+    }
+
+}
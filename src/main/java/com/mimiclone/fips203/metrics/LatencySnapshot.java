@@ -0,0 +1,23 @@
+package com.mimiclone.fips203.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The number of operations recorded by a latency histogram and the distribution of their latencies, all in
+ * nanoseconds.  Percentiles are the upper bound of the histogram bucket they fall in.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maximumNanos;
+
+}
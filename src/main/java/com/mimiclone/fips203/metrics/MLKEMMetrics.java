@@ -0,0 +1,33 @@
+package com.mimiclone.fips203.metrics;
+
+import com.mimiclone.fips203.ParameterSet;
+
+/**
+ * Receives the outcome of every key generation, encapsulation and decapsulation performed by the ML-KEM
+ * components it is given to.
+ * <p>
+ * Implementations are called on the threads performing the operations, so they must be thread-safe and should
+ * neither block nor allocate.  {@link #none()} discards everything and is used when no metrics are configured;
+ * {@link HistogramMLKEMMetrics} keeps counts and latency histograms and exports them through JMX.
+ */
+public interface MLKEMMetrics {
+
+    /**
+     * @return Metrics that discard everything recorded
+     */
+    static MLKEMMetrics none() {
+        return NoOpMLKEMMetrics.INSTANCE;
+    }
+
+    void recordKeyGeneration(ParameterSet parameterSet, long nanos);
+
+    void recordEncapsulation(ParameterSet parameterSet, long nanos);
+
+    /**
+     * @param implicitRejections 1 if the ciphertext failed the re-encryption check and the implicit rejection value
+     *                           was returned, otherwise 0.  It is a count rather than a flag so that implementations
+     *                           can add it up without branching on the outcome, which must not show in the timing.
+     */
+    void recordDecapsulation(ParameterSet parameterSet, long nanos, int implicitRejections);
+
+}
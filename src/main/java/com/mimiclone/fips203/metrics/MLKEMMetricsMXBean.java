@@ -0,0 +1,23 @@
+package com.mimiclone.fips203.metrics;
+
+/**
+ * The metrics of a single parameter set, as registered by {@link HistogramMLKEMMetrics#registerMBeans()} under
+ * {@code com.mimiclone.fips203:type=MLKEMMetrics,parameterSet=<name>}.
+ */
+public interface MLKEMMetricsMXBean {
+
+    String getParameterSet();
+
+    LatencySnapshot getKeyGeneration();
+
+    LatencySnapshot getEncapsulation();
+
+    LatencySnapshot getDecapsulation();
+
+    /**
+     * @return The number of decapsulations whose ciphertext failed the re-encryption check.  A sudden rise points
+     * at corrupted traffic or at an attack.
+     */
+    long getImplicitRejections();
+
+}
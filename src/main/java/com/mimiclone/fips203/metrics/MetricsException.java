@@ -0,0 +1,7 @@
+package com.mimiclone.fips203.metrics;
+
+public class MetricsException extends RuntimeException {
+    public MetricsException(String message) {
+        super(message);
+    }
+}
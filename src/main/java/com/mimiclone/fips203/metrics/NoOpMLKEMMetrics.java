@@ -0,0 +1,24 @@
+package com.mimiclone.fips203.metrics;
+
+import com.mimiclone.fips203.ParameterSet;
+
+/**
+ * See {@link MLKEMMetrics#none()}
+ */
+enum NoOpMLKEMMetrics implements MLKEMMetrics {
+
+    INSTANCE;
+
+    @Override
+    public void recordKeyGeneration(ParameterSet parameterSet, long nanos) {
+    }
+
+    @Override
+    public void recordEncapsulation(ParameterSet parameterSet, long nanos) {
+    }
+
+    @Override
+    public void recordDecapsulation(ParameterSet parameterSet, long nanos, int implicitRejections) {
+    }
+
+}
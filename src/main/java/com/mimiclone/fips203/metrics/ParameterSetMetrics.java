@@ -0,0 +1,48 @@
+package com.mimiclone.fips203.metrics;
+
+import com.mimiclone.fips203.ParameterSet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The histograms and counters of a single parameter set, which double as its MBean.
+ */
+final class ParameterSetMetrics implements MLKEMMetricsMXBean {
+
+    private final ParameterSet parameterSet;
+
+    final LatencyHistogram keyGeneration = new LatencyHistogram();
+    final LatencyHistogram encapsulation = new LatencyHistogram();
+    final LatencyHistogram decapsulation = new LatencyHistogram();
+    final LongAdder implicitRejections = new LongAdder();
+
+    ParameterSetMetrics(ParameterSet parameterSet) {
+        this.parameterSet = parameterSet;
+    }
+
+    @Override
+    public String getParameterSet() {
+        return parameterSet.getName();
+    }
+
+    @Override
+    public LatencySnapshot getKeyGeneration() {
+        return keyGeneration.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getEncapsulation() {
+        return encapsulation.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getDecapsulation() {
+        return decapsulation.snapshot();
+    }
+
+    @Override
+    public long getImplicitRejections() {
+        return implicitRejections.sum();
+    }
+
+}
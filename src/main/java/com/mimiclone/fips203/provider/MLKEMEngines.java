@@ -0,0 +1,28 @@
+package com.mimiclone.fips203.provider;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link FIPS203} instances shared by every JCA service of the provider, one per parameter set.
+ * <p>
+ * The JCA creates a new SPI object for every {@code getInstance} call and for every encapsulator and decapsulator,
+ * so the SPIs must not own engines of their own.  Instead they all use the instance of their parameter set here,
+ * which is created on first use and, being thread-safe with a pool of reusable workspaces, is never closed.
+ */
+public final class MLKEMEngines {
+
+    private static final Map<ParameterSet, FIPS203> ENGINES = new ConcurrentHashMap<>();
+
+    private MLKEMEngines() {
+    }
+
+    public static FIPS203 get(ParameterSet parameterSet) {
+        return ENGINES.computeIfAbsent(parameterSet, MimicloneFIPS203::create);
+    }
+
+}
@@ -1,37 +1,93 @@
 package com.mimiclone.fips203.provider;
 
+import com.mimiclone.fips203.FIPS203;
 import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.decaps.DecapsulationException;
 import com.mimiclone.fips203.decaps.provider.MLKEMDecapsulatorProvider;
+import com.mimiclone.fips203.encaps.EncapsulationException;
+import com.mimiclone.fips203.encaps.provider.MLKEMEncapsulationProvider;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
 import javax.crypto.KEMSpi;
 import java.security.*;
 import java.security.spec.AlgorithmParameterSpec;
 
-@RequiredArgsConstructor
+/**
+ * The {@link KEMSpi} of a single parameter set.  It is stateless, so one instance per parameter set serves every
+ * {@code KEM.getInstance} call, and the encapsulators and decapsulators it creates share the engine of their
+ * parameter set from {@link MLKEMEngines}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMProvider implements KEMSpi {
 
+    private static final MLKEMProvider ML_KEM_512 = new MLKEMProvider(ParameterSet.ML_KEM_512);
+    private static final MLKEMProvider ML_KEM_768 = new MLKEMProvider(ParameterSet.ML_KEM_768);
+    private static final MLKEMProvider ML_KEM_1024 = new MLKEMProvider(ParameterSet.ML_KEM_1024);
+
     private final ParameterSet params;
 
     public static MLKEMProvider getMLKEM512Provider() {
-        return new MLKEMProvider(ParameterSet.ML_KEM_512);
+        return ML_KEM_512;
     }
 
     public static MLKEMProvider getMLKEM768Provider() {
-        return new MLKEMProvider(ParameterSet.ML_KEM_768);
+        return ML_KEM_768;
     }
 
     public static MLKEMProvider getMLKEM1024Provider() {
-        return new MLKEMProvider(ParameterSet.ML_KEM_1024);
+        return ML_KEM_1024;
+    }
+
+    public static MLKEMProvider getProvider(ParameterSet params) {
+        return switch (params) {
+            case ML_KEM_512 -> ML_KEM_512;
+            case ML_KEM_768 -> ML_KEM_768;
+            case ML_KEM_1024 -> ML_KEM_1024;
+        };
     }
 
     @Override
     public EncapsulatorSpi engineNewEncapsulator(PublicKey publicKey, AlgorithmParameterSpec spec, SecureRandom secureRandom) throws InvalidAlgorithmParameterException, InvalidKeyException {
-        return null;
+
+        checkSpec(spec);
+        if (!(publicKey instanceof MLKEMPublicKey key) || key.getParameterSet() != params) {
+            throw new InvalidKeyException("Public key must be an %s key".formatted(params.getName()));
+        }
+
+        // The key is prepared by the first encapsulator only
+        FIPS203 fips203 = MLKEMEngines.get(params);
+        try {
+            return MLKEMEncapsulationProvider.create(fips203, key.prepare(fips203), secureRandom);
+        } catch (EncapsulationException e) {
+            throw new InvalidKeyException(e.getMessage());
+        }
+
     }
 
     @Override
     public DecapsulatorSpi engineNewDecapsulator(PrivateKey privateKey, AlgorithmParameterSpec spec) throws InvalidAlgorithmParameterException, InvalidKeyException {
-        return MLKEMDecapsulatorProvider.getInstance(privateKey, spec);
+
+        checkSpec(spec);
+        if (!(privateKey instanceof MLKEMPrivateKey key) || key.getParameterSet() != params) {
+            throw new InvalidKeyException("Private key must be an %s key".formatted(params.getName()));
+        }
+
+        // The key is prepared, and its hash checked, by the first decapsulator only
+        FIPS203 fips203 = MLKEMEngines.get(params);
+        try {
+            return MLKEMDecapsulatorProvider.create(fips203, key.prepare(fips203));
+        } catch (DecapsulationException | IllegalStateException e) {
+            throw new InvalidKeyException(e.getMessage());
+        }
+
+    }
+
+    private static void checkSpec(AlgorithmParameterSpec spec) throws InvalidAlgorithmParameterException {
+        if (spec != null) {
+            throw new InvalidAlgorithmParameterException("ML-KEM does not take algorithm parameters");
+        }
     }
 }
@@ -3,6 +3,8 @@ package com.mimiclone.fips203.provider;
 import com.mimiclone.fips203.FIPS203;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.key.gen.provider.MLKEMKeyGenerationProvider;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
 
 import java.security.*;
 import java.security.spec.AlgorithmParameterSpec;
@@ -71,28 +73,40 @@ public class MimicloneSecurityProvider extends Provider implements javax.crypto.
         putService(new MimicloneSecurityProvider.ProviderService(this,
                 "KEM",
                 "ML-KEM-512",
-                MLKEMKeyGenerationProvider.class.getName()));
+                MLKEMProvider.class.getName()));
         putService(new MimicloneSecurityProvider.ProviderService(this,
                 "KEM",
                 "ML-KEM-768",
-                MLKEMKeyGenerationProvider.class.getName()));
+                MLKEMProvider.class.getName()));
         putService(new MimicloneSecurityProvider.ProviderService(this,
                 "KEM",
                 "ML-KEM-1024",
-                MLKEMKeyGenerationProvider.class.getName()));
+                MLKEMProvider.class.getName()));
     }
 
     void install() {
         Security.addProvider(this);
     }
 
+    /**
+     * Creates an encapsulator for any parameter set, taken from the key.
+     */
     @Override
     public EncapsulatorSpi engineNewEncapsulator(PublicKey publicKey, AlgorithmParameterSpec spec, SecureRandom secureRandom) throws InvalidAlgorithmParameterException, InvalidKeyException {
-        return null;
+        if (!(publicKey instanceof MLKEMPublicKey key)) {
+            throw new InvalidKeyException("Public key must be an ML-KEM key");
+        }
+        return MLKEMProvider.getProvider(key.getParameterSet()).engineNewEncapsulator(publicKey, spec, secureRandom);
     }
 
+    /**
+     * Creates a decapsulator for any parameter set, taken from the key.
+     */
     @Override
     public DecapsulatorSpi engineNewDecapsulator(PrivateKey privateKey, AlgorithmParameterSpec spec) throws InvalidAlgorithmParameterException, InvalidKeyException {
-        return null;
+        if (!(privateKey instanceof MLKEMPrivateKey key)) {
+            throw new InvalidKeyException("Private key must be an ML-KEM key");
+        }
+        return MLKEMProvider.getProvider(key.getParameterSet()).engineNewDecapsulator(privateKey, spec);
     }
 }
@@ -2,6 +2,79 @@ package com.mimiclone.fips203.reduce;
 
 public interface Reducer {
 
+    /**
+     * Reduces a value into the canonical range {@code [0, q)}.
+     *
+     * @param a An {@code int} value to reduce
+     * @return The value of {@code a mod q} in the range {@code [0, q)}
+     * @throws ReductionException If the value is outside the range the concrete implementation supports
+     */
     int reduce(int a) throws ReductionException;
 
+    /**
+     * @return The modulus q this reducer operates over
+     */
+    int getModulus();
+
+    /**
+     * Multiplies two values and reduces the product.
+     * Implementations that work in a transformed domain (such as Montgomery form) return {@code a*b*D^-1 mod q}
+     * where {@code D} is the domain factor, so multiplying any value by a constant that was passed through
+     * {@link #toDomain(int)} yields the ordinary product.
+     *
+     * @param a An {@code int}, typically in the range {@code [0, q)}
+     * @param b An {@code int}, typically in the range {@code [0, q)}
+     * @return The reduced product in the range {@code [0, q)}
+     */
+    default int multiply(int a, int b) {
+        return reduce(a * b);
+    }
+
+    /**
+     * Converts a value in the range {@code [0, q)} into the domain used by {@link #multiply(int, int)}.
+     *
+     * @param a An {@code int} in the range {@code [0, q)}
+     * @return The value {@code a*D mod q}, which is {@code a} itself for reducers without a transformed domain
+     */
+    default int toDomain(int a) {
+        return a;
+    }
+
+    /**
+     * Converts a value out of the domain used by {@link #multiply(int, int)}.
+     *
+     * @param a An {@code int} in the range {@code [0, q)}
+     * @return The value {@code a*D^-1 mod q}, which is {@code a} itself for reducers without a transformed domain
+     */
+    default int fromDomain(int a) {
+        return a;
+    }
+
+    /**
+     * Adds two values in the range {@code [0, q)} using a single conditional subtraction instead of a
+     * full reduction.  The subtraction is performed with a mask rather than a branch.
+     *
+     * @param a An {@code int} in the range {@code [0, q)}
+     * @param b An {@code int} in the range {@code [0, q)}
+     * @return The value {@code (a + b) mod q}
+     */
+    default int add(int a, int b) {
+        int q = getModulus();
+        int r = a + b - q;
+        return r + ((r >> 31) & q);
+    }
+
+    /**
+     * Subtracts two values in the range {@code [0, q)} using a single conditional addition instead of a
+     * full reduction.  The addition is performed with a mask rather than a branch.
+     *
+     * @param a An {@code int} in the range {@code [0, q)}
+     * @param b An {@code int} in the range {@code [0, q)}
+     * @return The value {@code (a - b) mod q}
+     */
+    default int subtract(int a, int b) {
+        int r = a - b;
+        return r + ((r >> 31) & getModulus());
+    }
+
 }
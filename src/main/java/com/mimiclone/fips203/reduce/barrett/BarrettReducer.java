@@ -4,12 +4,14 @@ import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.reduce.Reducer;
 import com.mimiclone.fips203.reduce.ReductionException;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public final class BarrettReducer implements Reducer {
 
     private final ParameterSet parameterSet;
+    @Getter
     private final int modulus;
     private final int multiplier;
     private final long shift = 32;
@@ -0,0 +1,126 @@
+package com.mimiclone.fips203.reduce.montgomery;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.Reducer;
+import com.mimiclone.fips203.reduce.ReductionException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Montgomery reduction over a 16-bit Montgomery radix {@code R = 2^16}.
+ * <p>
+ * A value {@code a} is held in Montgomery form as {@code a*R mod q}.  Multiplying two values with
+ * {@link #multiply(int, int)} yields {@code a*b*R^-1 mod q}, so as long as one of the operands is a constant that
+ * was converted with {@link #toDomain(int)} the product comes out as an ordinary value.  This lets the zeta and
+ * gamma tables used by the NTT live in Montgomery form while the polynomial coefficients never have to be
+ * converted, and each multiplication costs two multiplies, a subtraction and a shift instead of a division.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MontgomeryReducer implements Reducer {
+
+    private static final int SHIFT = 16;
+
+    private final ParameterSet parameterSet;
+
+    @Getter
+    private final int modulus;
+
+    /**
+     * The value {@code q^-1 mod 2^16}
+     */
+    private final int modulusInverse;
+
+    /**
+     * The value {@code R^2 mod q}, used to move values into Montgomery form
+     */
+    private final int rSquared;
+
+    /**
+     * The largest magnitude that {@link #montgomeryReduce(int)} can accept, {@code q*2^15}
+     */
+    private final int inputBound;
+
+    private static int calculateModulusInverse(int modulus) {
+
+        // Newton iteration doubles the number of correct low bits on each pass, and an odd modulus is its own
+        // inverse modulo 8, so three passes give us 24 correct bits which covers our 16-bit radix.
+        int inverse = modulus;
+        for (int i = 0; i < 3; i++) {
+            inverse *= 2 - modulus * inverse;
+        }
+        return inverse & 0xFFFF;
+    }
+
+    private static int calculateRSquared(int modulus) {
+        return (int) ((1L << (2 * SHIFT)) % modulus);
+    }
+
+    public static MontgomeryReducer create(ParameterSet parameterSet) {
+        return create(parameterSet, parameterSet.getQ());
+    }
+
+    public static MontgomeryReducer create(ParameterSet parameterSet, int modulus) {
+
+        // Montgomery reduction requires the modulus to be coprime with the radix and small enough that products
+        // of two reduced values stay within the supported input range.
+        if ((modulus & 1) == 0 || modulus >= (1 << (SHIFT - 1))) {
+            throw new ReductionException("Montgomery reduction requires an odd modulus below %d".formatted(1 << (SHIFT - 1)));
+        }
+
+        return new MontgomeryReducer(
+                parameterSet,
+                modulus,
+                calculateModulusInverse(modulus),
+                calculateRSquared(modulus),
+                modulus << (SHIFT - 1)
+        );
+    }
+
+    /**
+     * Computes {@code a*R^-1 mod q} in the range {@code [0, q)}.
+     *
+     * @param a An {@code int} with magnitude less than {@code q*2^15}
+     * @return The value {@code a*R^-1 mod q}
+     */
+    private int montgomeryReduce(int a) {
+
+        // Find t such that a - t*q is divisible by R.  Only the low 16 bits of the product matter, so the
+        // multiplication is allowed to overflow and the result is sign extended from 16 bits.
+        int t = (short) (a * modulusInverse);
+
+        // Exact division by R, which leaves a value in the range (-q, q)
+        int r = (a - t * modulus) >> SHIFT;
+
+        // Final correction, performed with a mask rather than a branch
+        return r + ((r >> 31) & modulus);
+    }
+
+    @Override
+    public int reduce(int a) throws ReductionException {
+
+        // Validate the input is within the range Montgomery reduction supports
+        if (a >= inputBound || a <= -inputBound) {
+            throw new ReductionException("Montgomery reduction input must have magnitude below %d".formatted(inputBound));
+        }
+
+        // Reducing once leaves a*R^-1, multiplying by R^2 and reducing again restores a
+        return montgomeryReduce(montgomeryReduce(a) * rSquared);
+    }
+
+    @Override
+    public int multiply(int a, int b) {
+        return montgomeryReduce(a * b);
+    }
+
+    @Override
+    public int toDomain(int a) {
+        return montgomeryReduce(a * rSquared);
+    }
+
+    @Override
+    public int fromDomain(int a) {
+        return montgomeryReduce(a);
+    }
+
+}
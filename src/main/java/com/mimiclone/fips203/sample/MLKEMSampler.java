@@ -1,21 +1,23 @@
 package com.mimiclone.fips203.sample;
 
+import com.mimiclone.fips202.keccak.core.Keccak1600x4;
 import com.mimiclone.fips202.keccak.core.KeccakSponge;
-import com.mimiclone.fips202.keccak.io.BitInputStream;
-import com.mimiclone.fips202.keccak.io.BitOutputStream;
 import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.context.ContextAccess;
+import com.mimiclone.fips203.context.MLKEMContext;
 import com.mimiclone.fips203.hash.XOFParameterSet;
 import com.mimiclone.fips203.key.gen.KeyPairGenerationException;
+import com.mimiclone.fips203.transform.MatrixEntrySource;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 
-import java.util.BitSet;
-
-import static com.mimiclone.CryptoUtils.mod;
+import java.util.Arrays;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class MLKEMSampler implements Sampler {
 
+    private static final ContextAccess ACCESS = ContextAccess.get();
+
     private final ParameterSet parameterSet;
 
     public static MLKEMSampler create(ParameterSet parameterSet) {
@@ -24,49 +26,248 @@ public class MLKEMSampler implements Sampler {
 
     @Override
     public int[] sampleNTT(byte[] seed, byte a, byte b) {
-
-        // Setup internal context vars
-        int j = 0;
         int[] aHat = new int[256];
-        byte[] sample = new byte[3];
+        sampleNTT(seed, a, b, aHat);
+        return aHat;
+    }
+
+    @Override
+    public void sampleNTT(byte[] seed, byte a, byte b, int[] aHat) {
 
         // Init context for XOF
         KeccakSponge xof = new KeccakSponge(XOFParameterSet.SHAKE128);
-        BitOutputStream absorbStream = xof.getAbsorbStream();
-        BitInputStream squeezeStream = xof.getSqueezeStream();
 
         // Absorb the seed rho, and the indices i and j that have been appended as bytes
-        absorbStream.write(seed);
-        absorbStream.write(new byte[] {a, b});
+        xof.absorb(seed);
+        xof.absorb(a);
+        xof.absorb(b);
 
+        // Squeeze a whole rate block (168 bytes, 56 groups of 3 bytes) at a time and parse every candidate in it
+        byte[] block = new byte[xof.getRateBits() >> 3];
+        int j = 0;
         while (j < 256) {
+            xof.squeeze(block);
+            j = parseBlock(block, block.length, aHat, j);
+        }
+
+    }
+
+    @Override
+    public void sampleNTTBatch(byte[] seed, byte[] indices, int[][] out) {
+
+        // Only the XOF states and a block are needed, not a whole context
+        Keccak1600x4 keccak = Keccak1600x4.create(XOFParameterSet.SHAKE128.getCapacityInBits());
+        sampleNTTBatch(keccak, new byte[keccak.getRateBytes()], new int[Keccak1600x4.INSTANCES], seed, indices, out);
+
+    }
+
+    @Override
+    public void sampleNTTBatch(MLKEMContext context, byte[] seed, byte[] indices, int[][] out) {
+        context.check(parameterSet);
+        sampleNTTBatch(ACCESS.getShake128(context), ACCESS.getXofBlock(context), ACCESS.getSampledCounts(context),
+                seed, indices, out);
+    }
 
-            if (squeezeStream.read(sample) != 3) {
-                throw new KeyPairGenerationException("Unable to squeeze 3 bytes of data");
+    /**
+     * Samples {@code out} with the four SHAKE128 states {@code keccak}, squeezing into {@code block} and counting
+     * the coefficients sampled for each state in {@code filled}.
+     */
+    private void sampleNTTBatch(Keccak1600x4 keccak, byte[] block, int[] filled, byte[] seed, byte[] indices, int[][] out) {
+
+        if (indices.length != 2 * out.length) {
+            throw new IllegalArgumentException("Two index bytes are required for each sampled polynomial");
+        }
+
+        XOFParameterSet xof = XOFParameterSet.SHAKE128;
+        int rateBytes = keccak.getRateBytes();
+
+        for (int first = 0; first < out.length; first += Keccak1600x4.INSTANCES) {
+            int count = Math.min(Keccak1600x4.INSTANCES, out.length - first);
+
+            // Absorb seed || a || b into one state per polynomial.  The 34 byte message always fits in a single
+            // block, so it is padded straight away.  Unused states are left empty and ignored.
+            keccak.clear();
+            for (int n = 0; n < count; n++) {
+                keccak.xorBytes(n, 0, seed, 0, seed.length);
+                keccak.xorBytes(n, seed.length, indices, 2 * (first + n), 2);
+                keccak.padBytes(n, xof.getDomainPadding(), xof.getDomainPaddingBitLength(), seed.length + 2);
+                filled[n] = 0;
             }
 
-            // Java doesn't have unsigned bytes, but this algorithm treats sampled bytes as if they are integers
-            // which leads to strange behavior with a signed byte type.  So we extract the sample values and convert
-            // them to unsigned integers.
-            int c0 = Byte.toUnsignedInt(sample[0]);
-            int c1 = Byte.toUnsignedInt(sample[1]);
-            int c2 = Byte.toUnsignedInt(sample[2]);
+            // Squeeze a block from every state until all the polynomials are complete
+            int remaining = count;
+            while (remaining > 0) {
+                keccak.permute();
+                for (int n = 0; n < count; n++) {
+                    if (filled[n] < 256) {
+                        keccak.extractBytes(n, 0, block, 0, rateBytes);
+                        filled[n] = parseBlock(block, rateBytes, out[first + n], filled[n]);
+                        if (filled[n] == 256) {
+                            remaining--;
+                        }
+                    }
+                }
+            }
+        }
+
+        // ZERO: The XOF states and last block
+        keccak.clear();
+        Arrays.fill(block, (byte) 0);
+
+    }
+
+    /**
+     * Parses candidate coefficients from the first {@code length} bytes of {@code block} (a multiple of 3) into
+     * {@code aHat}, starting at coefficient {@code j}, until the block is exhausted or all 256 coefficients are
+     * sampled.
+     *
+     * @return The number of coefficients of {@code aHat} sampled so far
+     */
+    private int parseBlock(byte[] block, int length, int[] aHat, int j) {
+
+        int q = parameterSet.getQ();
+
+        for (int off = 0; off < length && j < 256; off += 3) {
 
-            int d1 = c0 + 256 * (c1 % 16);
-            int d2 = (c1 / 16) + (16 * c2);
+            int c0 = block[off] & 0xFF;
+            int c1 = block[off + 1] & 0xFF;
+            int c2 = block[off + 2] & 0xFF;
 
-            if (d1 < parameterSet.getQ()) {
-                aHat[j] = d1;
-                j++;
+            int d1 = c0 | ((c1 & 0x0F) << 8);
+            int d2 = (c1 >>> 4) | (c2 << 4);
+
+            if (d1 < q) {
+                aHat[j++] = d1;
             }
 
-            if (d2 < parameterSet.getQ() && j < 256) {
-                aHat[j] = d2;
-                j++;
+            if (d2 < q && j < 256) {
+                aHat[j++] = d2;
             }
         }
 
-        return aHat;
+        return j;
+
+    }
+
+    @Override
+    public MatrixEntrySource matrixSource(byte[] rho, int k, boolean transpose) {
+
+        if (k != parameterSet.getK()) {
+            throw new IllegalArgumentException("Matrix dimension %d does not match %s".formatted(k, parameterSet.getName()));
+        }
+
+        // Only the XOF states, a block and one row are needed, not a whole context.  The matrix is public, so they
+        // are simply left to the garbage collector.
+        Keccak1600x4 keccak = Keccak1600x4.create(XOFParameterSet.SHAKE128.getCapacityInBits());
+        return matrixSource(keccak, new byte[keccak.getRateBytes()], new int[Keccak1600x4.INSTANCES],
+                new int[k][256], new byte[2 * k], rho, transpose);
+
+    }
+
+    @Override
+    public MatrixEntrySource matrixSource(MLKEMContext context, byte[] rho, boolean transpose) {
+        context.check(parameterSet);
+        return matrixSource(ACCESS.getShake128(context), ACCESS.getXofBlock(context), ACCESS.getSampledCounts(context),
+                ACCESS.getMatrixRow(context), ACCESS.getMatrixIndices(context), rho, transpose);
+    }
+
+    /**
+     * Source that samples each row of the matrix into {@code row} with the given XOF states and buffers.
+     */
+    private MatrixEntrySource matrixSource(Keccak1600x4 keccak, byte[] block, int[] filled, int[][] row,
+                                           byte[] indices, byte[] rho, boolean transpose) {
+
+        int k = parameterSet.getK();
+        int[] sampledRow = {-1};
+
+        return (i, j, entry) -> {
+            if (sampledRow[0] != i) {
+                // A-hat[i][j] is sampled from rho || j || i, and its transpose from rho || i || j
+                for (int col = 0; col < k; col++) {
+                    indices[2 * col] = (byte) (transpose ? i : col);
+                    indices[2 * col + 1] = (byte) (transpose ? col : i);
+                }
+                sampleNTTBatch(keccak, block, filled, rho, indices, row);
+                sampledRow[0] = i;
+            }
+            System.arraycopy(row[j], 0, entry, 0, 256);
+        };
+
+    }
+
+    @Override
+    public void sampleNoiseVector(byte[] sigma, int startNonce, int eta, int[][] out) {
+
+        // Only the PRF states and outputs are needed, not a whole context
+        sampleNoiseVector(Keccak1600x4.create(XOFParameterSet.SHAKE256.getCapacityInBits()),
+                new byte[Keccak1600x4.INSTANCES][64 * Math.max(parameterSet.getEta1(), parameterSet.getEta2())],
+                sigma, startNonce, eta, out, null);
+
+    }
+
+    @Override
+    public void sampleNoiseVector(MLKEMContext context, byte[] sigma, int startNonce, int eta, int[][] out) {
+        context.check(parameterSet);
+        sampleNoiseVector(ACCESS.getShake256(context), ACCESS.getPrfOutputs(context), sigma, startNonce, eta, out, null);
+    }
+
+    @Override
+    public void sampleNoiseVector(MLKEMContext context, byte[] sigma, int startNonce, int eta, short[][] out) {
+        context.check(parameterSet);
+        sampleNoiseVector(ACCESS.getShake256(context), ACCESS.getPrfOutputs(context), sigma, startNonce, eta, null, out);
+    }
+
+    /**
+     * Samples {@code out}, or {@code signedOut} when {@code out} is {@code null}, with the four SHAKE256 states
+     * {@code keccak}, squeezing the PRF output of each into {@code prf}.  Both are zeroed before returning.
+     */
+    private void sampleNoiseVector(Keccak1600x4 keccak, byte[][] prf, byte[] sigma, int startNonce, int eta,
+                                   int[][] out, short[][] signedOut) {
+
+        if (eta != parameterSet.getEta1() && eta != parameterSet.getEta2()) {
+            throw new IllegalArgumentException("Unsupported eta: " + eta);
+        }
+
+        XOFParameterSet xof = XOFParameterSet.SHAKE256;
+        int rateBytes = keccak.getRateBytes();
+        int polynomials = out != null ? out.length : signedOut.length;
+
+        for (int first = 0; first < polynomials; first += Keccak1600x4.INSTANCES) {
+            int count = Math.min(Keccak1600x4.INSTANCES, polynomials - first);
+
+            // Absorb sigma || nonce into one state per polynomial, which fits in a single block.  The nonce byte is
+            // staged in the PRF output buffer, which is overwritten when the state is squeezed.
+            keccak.clear();
+            for (int n = 0; n < count; n++) {
+                prf[n][0] = (byte) (startNonce + first + n);
+                keccak.xorBytes(n, 0, sigma, 0, sigma.length);
+                keccak.xorBytes(n, sigma.length, prf[n], 0, 1);
+                keccak.padBytes(n, xof.getDomainPadding(), xof.getDomainPaddingBitLength(), sigma.length + 1);
+            }
+
+            // Squeeze the 64*eta PRF bytes of every state, a block at a time
+            for (int off = 0; off < 64 * eta; off += rateBytes) {
+                keccak.permute();
+                int length = Math.min(rateBytes, 64 * eta - off);
+                for (int n = 0; n < count; n++) {
+                    keccak.extractBytes(n, 0, prf[n], off, length);
+                }
+            }
+
+            for (int n = 0; n < count; n++) {
+                if (out != null) {
+                    samplePolyCBD(eta, prf[n], out[first + n], null);
+                } else {
+                    samplePolyCBD(eta, prf[n], null, signedOut[first + n]);
+                }
+            }
+        }
+
+        // ZERO: The PRF states and outputs, which determine the secret noise
+        keccak.clear();
+        for (byte[] bytes : prf) {
+            Arrays.fill(bytes, (byte) 0);
+        }
 
     }
 
@@ -77,29 +278,62 @@ public class MLKEMSampler implements Sampler {
             throw new KeyPairGenerationException("PolyCBD sample input must be %d bytes".formatted(64*eta));
         }
 
-        // Declare result array
         int[] result = new int[256];
+        samplePolyCBD(eta, input, result, null);
+        return result;
 
-        BitSet b = BitSet.valueOf(input);
+    }
+
+    /**
+     * Algorithm 8 (SamplePolyCBD) of the FIPS203 Specification, writing the 256 coefficients into {@code out}
+     * mapped into {@code [0, q)} or, when {@code out} is {@code null}, into {@code signedOut} as they are.
+     */
+    private void samplePolyCBD(int eta, byte[] input, int[] out, short[] signedOut) {
+
+        int q = parameterSet.getQ();
+        long mask = (1L << eta) - 1;
+
+        // Each coefficient consumes 2*eta bits of the input, least significant bit first.  The input is read a
+        // 64-bit little-endian word at a time, and each of x and y is the population count of eta of its bits.
+        // A word holds a whole number of coefficients for eta = 2 (16) but not for eta = 3 (10 and 4 bits over), so
+        // leftover bits are carried into the next word.
+        long bits = 0;
+        int available = 0;
+        int offset = 0;
         for (int i = 0; i < 256; i++) {
 
-            // Calculate X
-            int x = 0;
-            for (int j = 0; j < eta; j++) {
-                x += b.get(2*i*eta + j) ? 1 : 0;
+            int x;
+            int y;
+            if (available < 2 * eta) {
+                long word = 0;
+                for (int b = 7; b >= 0; b--) {
+                    word = (word << 8) | (input[offset + b] & 0xFFL);
+                }
+                offset += 8;
+
+                // A coefficient straddling two words is completed from the low bits of the new word
+                long combined = bits | (word << available);
+                x = Long.bitCount(combined & mask);
+                y = Long.bitCount((combined >>> eta) & mask);
+                int used = 2 * eta - available;
+                bits = word >>> used;
+                available = 64 - used;
+            } else {
+                x = Long.bitCount(bits & mask);
+                y = Long.bitCount((bits >>> eta) & mask);
+                bits >>>= 2 * eta;
+                available -= 2 * eta;
             }
 
-            // Calculate Y
-            int y = 0;
-            for (int j = 0; j < eta; j++) {
-                y += b.get(2*i*eta + eta + j) ? 1 : 0;
+            // Map x - y in [-eta, eta] into [0, q), unless it is kept signed
+            int r = x - y;
+            if (out != null) {
+                out[i] = r + ((r >> 31) & q);
+            } else {
+                signedOut[i] = (short) r;
             }
-
-            result[i] = mod(x - y, parameterSet.getQ());
         }
 
-        return result;
-
     }
 
     @Override
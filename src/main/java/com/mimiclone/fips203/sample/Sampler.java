@@ -1,9 +1,75 @@
 package com.mimiclone.fips203.sample;
 
+import com.mimiclone.fips203.context.MLKEMContext;
+import com.mimiclone.fips203.transform.MatrixEntrySource;
+
 public interface Sampler {
 
     int[] sampleNTT(byte[] seed, byte a, byte b);
 
+    /**
+     * Identical to {@link #sampleNTT(byte[], byte, byte)}, but writes the 256 sampled coefficients into
+     * {@code out} instead of allocating a new array.
+     */
+    void sampleNTT(byte[] seed, byte a, byte b, int[] out);
+
+    /**
+     * Samples several polynomials from the same seed at once, equivalent to calling
+     * {@code sampleNTT(seed, indices[2*n], indices[2*n+1], out[n])} for every {@code n}, but running the independent
+     * XOF instances side by side.
+     *
+     * @param seed The 32 byte seed shared by all the polynomials
+     * @param indices The two index bytes appended to the seed for each polynomial
+     * @param out One array of 256 integers per polynomial that receives the sampled coefficients
+     */
+    void sampleNTTBatch(byte[] seed, byte[] indices, int[][] out);
+
+    /**
+     * Identical to {@link #sampleNTTBatch(byte[], byte[], int[][])}, but runs the XOF instances in the Keccak states
+     * and buffers of {@code context} instead of allocating them.
+     */
+    void sampleNTTBatch(MLKEMContext context, byte[] seed, byte[] indices, int[][] out);
+
+    /**
+     * Source for the entries of the k*k matrix A-hat generated from {@code rho}, where entry {@code (i, j)} is
+     * {@code sampleNTT(rho, j, i)}, or of its transpose.  Each row is sampled with
+     * {@link #sampleNTTBatch(byte[], byte[], int[][])} the first time one of its entries is requested, so entries
+     * should be requested row by row as the matrix products of the transformer do.
+     */
+    MatrixEntrySource matrixSource(byte[] rho, int k, boolean transpose);
+
+    /**
+     * Identical to {@link #matrixSource(byte[], int, boolean)}, but samples each row into the matrix row buffer of
+     * {@code context} with {@link #sampleNTTBatch(MLKEMContext, byte[], byte[], int[][])}.  The source is only valid
+     * until the context is next used for sampling.
+     */
+    MatrixEntrySource matrixSource(MLKEMContext context, byte[] rho, boolean transpose);
+
+    /**
+     * Samples a vector of noise polynomials, equivalent to
+     * {@code out[i] = SamplePolyCBD_eta(PRF_eta(sigma, startNonce + i))} for every {@code i}, but running the
+     * independent PRF instances side by side and writing the coefficients straight into {@code out}.
+     *
+     * @param sigma The 32 byte PRF seed
+     * @param startNonce The nonce byte used for {@code out[0]}, incremented for each following polynomial
+     * @param eta The parameter eta of the distribution, which must be 2 or 3
+     * @param out One array of 256 integers per polynomial that receives the sampled coefficients
+     */
+    void sampleNoiseVector(byte[] sigma, int startNonce, int eta, int[][] out);
+
+    /**
+     * Identical to {@link #sampleNoiseVector(byte[], int, int, int[][])}, but runs the PRF instances in the Keccak
+     * states and buffers of {@code context} instead of allocating them.
+     */
+    void sampleNoiseVector(MLKEMContext context, byte[] sigma, int startNonce, int eta, int[][] out);
+
+    /**
+     * Identical to {@link #sampleNoiseVector(MLKEMContext, byte[], int, int, int[][])}, but writes the coefficients
+     * into {@code short[]} polynomials as the signed values in {@code [-eta, eta]} that the distribution produces,
+     * instead of mapping them into {@code [0, q)}.
+     */
+    void sampleNoiseVector(MLKEMContext context, byte[] sigma, int startNonce, int eta, short[][] out);
+
     int[] samplePolyCBDEta1(byte[] input);
 
     int[] samplePolyCBDEta2(byte[] input);
@@ -0,0 +1,384 @@
+package com.mimiclone.fips203.transform;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.montgomery.MontgomeryReducer;
+
+/**
+ * A {@link Transformer} that delays modular reduction for as long as the coefficients are guaranteed to fit.
+ * <p>
+ * {@link MLKEMTransformer} fully reduces every coefficient into {@code [0, q)} after each butterfly.  This
+ * implementation instead keeps coefficients as signed values in a bounded range: each forward butterfly layer
+ * only adds at most {@code q} to the magnitude of a coefficient, so after all seven layers every coefficient is
+ * still smaller than {@code 8q = 26632} and fits in a signed 16-bit value.  Multiplications by the zeta values
+ * use signed Montgomery reduction (with the zeta table held in centered Montgomery form) and the only other
+ * reductions are a single Barrett pass at the end of the forward transform and one Barrett reduction per
+ * butterfly on the sum leg of the inverse transform.
+ * <p>
+ * The results of the {@link Transformer} API are always in {@code [0, q)}, so this class can be swapped in for
+ * {@link MLKEMTransformer} anywhere.  Along with it this class provides the same kernels over polynomials held in
+ * {@code short[]}, which the key generation, encryption and decryption components use for every polynomial of an
+ * operation when this transformer is selected.  Those kernels leave coefficients in a bounded signed range that is
+ * documented on each of them, and the {@code short[]} overloads of the codec bring them into {@code [0, q)} as
+ * they are encoded.  The key material ({@code sHat}, {@code tHat} and the matrix {@code A}) is shared with the
+ * prepared keys and stays in {@code int[]} with coefficients in {@code [0, q)}, so the products take one operand
+ * of each kind.
+ */
+public class LazyReductionTransformer extends MLKEMTransformer {
+
+    private static final int MONTGOMERY_SHIFT = 16;
+    private static final int BARRETT_SHIFT = 26;
+
+    private final int q;
+
+    /**
+     * The value {@code q^-1 mod 2^16} used for signed Montgomery reduction
+     */
+    private final int qInverse;
+
+    /**
+     * The value {@code round(2^26 / q)} used for signed Barrett reduction
+     */
+    private final int barrettMultiplier;
+
+    /**
+     * The zeta and gamma tables in Montgomery form, centered into {@code (-q/2, q/2]} so that products with any
+     * coefficient smaller than {@code 2^16} in magnitude stay within the range Montgomery reduction accepts.
+     */
+    private final short[] lazyTransformZetas;
+    private final short[] lazyInverseZetas;
+
+    private final short[] lazyGammas;
+
+    /**
+     * The value {@code 128^-1} in Montgomery form used to scale the inverse transform.
+     */
+    private final short lazyInverseScale;
+
+    /**
+     * The value {@code R^2 mod q} which removes the Montgomery factor left behind by base case multiplication.
+     */
+    private final short lazyProductCorrection;
+
+    protected LazyReductionTransformer(ParameterSet parameterSet, MontgomeryReducer reducer) {
+        super(parameterSet, reducer);
+        this.q = parameterSet.getQ();
+        this.qInverse = calculateInverse(q);
+        this.barrettMultiplier = ((1 << BARRETT_SHIFT) + (q >> 1)) / q;
+        this.lazyTransformZetas = centeredDomain(reducer, transformZetaVals);
+        this.lazyInverseZetas = centeredDomain(reducer, inverseZetaVals);
+        this.lazyGammas = centeredDomain(reducer, nttGammaVals);
+        this.lazyInverseScale = center(reducer.toDomain(3303));
+        this.lazyProductCorrection = center(reducer.toDomain(reducer.toDomain(1)));
+    }
+
+    public static LazyReductionTransformer create(ParameterSet parameterSet) {
+        return new LazyReductionTransformer(parameterSet, MontgomeryReducer.create(parameterSet));
+    }
+
+    private static int calculateInverse(int modulus) {
+        int inverse = modulus;
+        for (int i = 0; i < 3; i++) {
+            inverse *= 2 - modulus * inverse;
+        }
+        return inverse & 0xFFFF;
+    }
+
+    private short center(int value) {
+        return (short) (value > (q >> 1) ? value - q : value);
+    }
+
+    private short[] centeredDomain(MontgomeryReducer reducer, int[] values) {
+        short[] result = new short[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = center(reducer.toDomain(reducer.reduce(values[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Signed Montgomery reduction.
+     *
+     * @param a An {@code int} with magnitude less than {@code q*2^15}
+     * @return A value congruent to {@code a*2^-16 mod q} in the range {@code (-q, q)}
+     */
+    private int montgomeryReduce(int a) {
+        int t = (short) (a * qInverse);
+        return (a - t * q) >> MONTGOMERY_SHIFT;
+    }
+
+    /**
+     * Signed Barrett reduction.
+     *
+     * @param a An {@code int} with magnitude less than {@code 2^16}
+     * @return A value congruent to {@code a mod q} in the range {@code [-(q-1)/2, (q-1)/2]}
+     */
+    private int barrettReduce(int a) {
+        int t = (barrettMultiplier * a + (1 << (BARRETT_SHIFT - 1))) >> BARRETT_SHIFT;
+        return a - t * q;
+    }
+
+    /**
+     * Brings a coefficient with magnitude less than {@code 2^16} into the canonical range {@code [0, q)}.
+     */
+    private int canonical(int a) {
+        int r = barrettReduce(a);
+        return r + ((r >> 31) & q);
+    }
+
+    private static void validateBuffer(int length, int offset) {
+        if (offset < 0 || length - offset < INPUT_OUTPUT_LENGTH) {
+            throw new IllegalArgumentException("Input must be an array of %d long values".formatted(INPUT_OUTPUT_LENGTH));
+        }
+    }
+
+    @Override
+    public void transformInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        if (poly == null) {
+            throw new IllegalArgumentException("Input must be an array of %d long values".formatted(INPUT_OUTPUT_LENGTH));
+        }
+        validateBuffer(poly.length, offset);
+
+        // Butterflies without any reduction of the sum and difference legs
+        for (int i = 0; i < transformLenVals.length; i++) {
+            int len = transformLenVals[i];
+            int start = offset + transformStartVals[i];
+            int zeta = lazyTransformZetas[i];
+            for (int j = start; j < start + len; j++) {
+                int t = montgomeryReduce(zeta * poly[j + len]);
+                poly[j + len] = poly[j] - t;
+                poly[j] = poly[j] + t;
+            }
+        }
+
+        // Single reduction pass into [0, q)
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
+            poly[i] = canonical(poly[i]);
+        }
+
+    }
+
+    @Override
+    public void inverseInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        if (poly == null) {
+            throw new IllegalArgumentException("Input must be an array of %d long values".formatted(INPUT_OUTPUT_LENGTH));
+        }
+        validateBuffer(poly.length, offset);
+
+        // Butterflies reducing only the sum leg, the difference leg is reduced by the multiplication
+        for (int i = 0; i < inverseLenVals.length; i++) {
+            int len = inverseLenVals[i];
+            int start = offset + inverseStartVals[i];
+            int zeta = lazyInverseZetas[i];
+            for (int j = start; j < start + len; j++) {
+                int t = poly[j];
+                poly[j] = barrettReduce(t + poly[j + len]);
+                poly[j + len] = montgomeryReduce(zeta * (poly[j + len] - t));
+            }
+        }
+
+        // Scale by 128^-1 and bring the result into [0, q)
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
+            int r = montgomeryReduce(lazyInverseScale * poly[i]);
+            poly[i] = r + ((r >> 31) & q);
+        }
+
+    }
+
+    /**
+     * Performs a number theoretic transform in place on the 256 coefficients of {@code poly} starting at
+     * {@code offset} without allocating any memory.
+     * <p>
+     * The output coefficients are in the signed range {@code [-(q-1)/2, (q-1)/2]}.
+     *
+     * @param poly An array of coefficients, each with magnitude less than {@code q}
+     * @param offset The index of the first coefficient of the polynomial within {@code poly}
+     */
+    public void transformInPlace(short[] poly, int offset) {
+
+        // Validate the input
+        if (poly == null) {
+            throw new IllegalArgumentException("Input must be an array of %d short values".formatted(INPUT_OUTPUT_LENGTH));
+        }
+        validateBuffer(poly.length, offset);
+
+        // Butterflies without any reduction of the sum and difference legs, every layer grows the magnitude
+        // of the coefficients by less than q so they stay below 8q and fit in a short
+        for (int i = 0; i < transformLenVals.length; i++) {
+            int len = transformLenVals[i];
+            int start = offset + transformStartVals[i];
+            int zeta = lazyTransformZetas[i];
+            for (int j = start; j < start + len; j++) {
+                int t = montgomeryReduce(zeta * poly[j + len]);
+                poly[j + len] = (short) (poly[j] - t);
+                poly[j] = (short) (poly[j] + t);
+            }
+        }
+
+        // Single reduction pass so the result can be multiplied without overflowing Montgomery reduction
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
+            poly[i] = (short) barrettReduce(poly[i]);
+        }
+
+    }
+
+    /**
+     * Performs the inverse of a number theoretic transform in place on the 256 coefficients of {@code poly}
+     * starting at {@code offset} without allocating any memory.
+     * <p>
+     * The output coefficients are in the signed range {@code (-q, q)}.
+     *
+     * @param poly An array of coefficients in NTT form, each with magnitude less than {@code q}
+     * @param offset The index of the first coefficient of the polynomial within {@code poly}
+     */
+    public void inverseInPlace(short[] poly, int offset) {
+
+        // Validate the input
+        if (poly == null) {
+            throw new IllegalArgumentException("Input must be an array of %d short values".formatted(INPUT_OUTPUT_LENGTH));
+        }
+        validateBuffer(poly.length, offset);
+
+        // Butterflies reducing only the sum leg, the difference leg is reduced by the multiplication
+        for (int i = 0; i < inverseLenVals.length; i++) {
+            int len = inverseLenVals[i];
+            int start = offset + inverseStartVals[i];
+            int zeta = lazyInverseZetas[i];
+            for (int j = start; j < start + len; j++) {
+                int t = poly[j];
+                poly[j] = (short) barrettReduce(t + poly[j + len]);
+                poly[j + len] = (short) montgomeryReduce(zeta * (poly[j + len] - t));
+            }
+        }
+
+        // Scale by 128^-1
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
+            poly[i] = (short) montgomeryReduce(lazyInverseScale * poly[i]);
+        }
+
+    }
+
+    /**
+     * Computes {@code out = out + a * b} in the NTT domain, like
+     * {@link #matrixMultiplyAccumulate(int[][][], int[][], int[][])}, for a vector {@code b} held in {@code short[]}.
+     * <p>
+     * The output coefficients are in the signed range {@code (-q, q)}.
+     *
+     * @param a A {@code k x k} matrix of polynomials in NTT form with coefficients in {@code [0, q)}
+     * @param b A vector of {@code k} polynomials in NTT form as returned by {@link #transformInPlace(short[], int)}
+     * @param out A vector of {@code k} polynomials, each coefficient with magnitude less than {@code q}, that
+     *            receives the accumulated product
+     */
+    public void matrixMultiplyAccumulate(int[][][] a, short[][] b, short[][] out) {
+
+        // Accumulate the scaled base case products of each row and apply a single correction per coefficient
+        for (int i = 0; i < out.length; i++) {
+            scaleAccumulator(out[i]);
+            for (int j = 0; j < b.length; j++) {
+                accumulateProduct(a[i][j], b[j], out[i]);
+            }
+            correctProduct(out[i]);
+        }
+
+    }
+
+    /**
+     * Identical to {@link #matrixMultiplyAccumulate(int[][][], short[][], short[][])}, but requests each entry of
+     * {@code a} from the source immediately before it is used, receiving it into the caller's {@code entry} buffer.
+     */
+    public void matrixMultiplyAccumulate(MatrixEntrySource a, short[][] b, short[][] out, int[] entry) {
+
+        for (int i = 0; i < out.length; i++) {
+            scaleAccumulator(out[i]);
+            for (int j = 0; j < b.length; j++) {
+                a.fill(i, j, entry);
+                accumulateProduct(entry, b[j], out[i]);
+            }
+            correctProduct(out[i]);
+        }
+
+    }
+
+    /**
+     * Computes {@code out = out + transpose(a) * b} in the NTT domain, like
+     * {@link #vectorTransposeMultiplyAccumulate(int[][], int[][], int[])}, for a vector {@code b} held in
+     * {@code short[]}.
+     * <p>
+     * The output coefficients are in the signed range {@code (-q, q)}.
+     *
+     * @param a A vector of {@code k} polynomials in NTT form with coefficients in {@code [0, q)}
+     * @param b A vector of {@code k} polynomials in NTT form as returned by {@link #transformInPlace(short[], int)}
+     * @param out A polynomial, each coefficient with magnitude less than {@code q}, that receives the accumulated
+     *            product
+     */
+    public void vectorTransposeMultiplyAccumulate(int[][] a, short[][] b, short[] out) {
+        scaleAccumulator(out);
+        for (int i = 0; i < a.length; i++) {
+            accumulateProduct(a[i], b[i], out);
+        }
+        correctProduct(out);
+    }
+
+    /**
+     * Brings the existing values of {@code accumulator} into the same Montgomery scaled form as the products added
+     * by {@link #accumulateProduct(int[], short[], short[])}, in the range {@code (-q, q)}.
+     */
+    private void scaleAccumulator(short[] accumulator) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i++) {
+            accumulator[i] = (short) montgomeryReduce(accumulator[i]);
+        }
+    }
+
+    /**
+     * Adds the base case products of {@code fHat} and {@code gHat} (Algorithm 11 of the FIPS203 Specification)
+     * into {@code accumulator} without any further reduction.  Each product is in {@code (-2q, 2q)}, so up to four
+     * of them fit in a short on top of a value scaled by {@link #scaleAccumulator(short[])}.
+     */
+    private void accumulateProduct(int[] fHat, short[] gHat, short[] accumulator) {
+        for (int i = 0; i < 128; i++) {
+
+            int a0 = fHat[2*i];
+            int a1 = fHat[2*i+1];
+            int b0 = gHat[2*i];
+            int b1 = gHat[2*i+1];
+
+            // Each Montgomery product carries a factor of R^-1 which is removed by the final correction
+            accumulator[2*i] += montgomeryReduce(a0 * b0) + montgomeryReduce(montgomeryReduce(a1 * b1) * lazyGammas[i]);
+            accumulator[2*i+1] += montgomeryReduce(a0 * b1) + montgomeryReduce(a1 * b0);
+
+        }
+    }
+
+    /**
+     * Removes the Montgomery factor of accumulated base case products, leaving them in {@code (-q, q)}.
+     */
+    private void correctProduct(short[] accumulator) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i++) {
+            accumulator[i] = (short) montgomeryReduce(accumulator[i] * lazyProductCorrection);
+        }
+    }
+
+    /**
+     * Adds two polynomials coefficient by coefficient into {@code out}, which may be {@code a} or {@code b} itself,
+     * without reducing the result.  The caller is responsible for ensuring the sums fit in a short.
+     */
+    public void arrayAdd(short[] a, short[] b, short[] out) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i++) {
+            out[i] = (short) (a[i] + b[i]);
+        }
+    }
+
+    /**
+     * Subtracts two polynomials coefficient by coefficient into {@code out}, which may be {@code a} or {@code b}
+     * itself, without reducing the result.  The caller is responsible for ensuring the differences fit in a short.
+     */
+    public void arraySubtract(short[] a, short[] b, short[] out) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i++) {
+            out[i] = (short) (a[i] - b[i]);
+        }
+    }
+
+}
@@ -3,18 +3,24 @@ package com.mimiclone.fips203.transform;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.reduce.Reducer;
 import com.mimiclone.fips203.reduce.barrett.BarrettReducer;
-import lombok.RequiredArgsConstructor;
+import com.mimiclone.fips203.reduce.montgomery.MontgomeryReducer;
 
 import java.util.List;
 import java.util.stream.IntStream;
 
-@RequiredArgsConstructor(access = lombok.AccessLevel.PRIVATE)
 public class MLKEMTransformer implements Transformer {
 
-    private final ParameterSet parameterSet;
-    private final Reducer reducer;
+    final ParameterSet parameterSet;
+    final Reducer reducer;
 
-    private static final int INPUT_OUTPUT_LENGTH = 256;
+    static final int INPUT_OUTPUT_LENGTH = 256;
+
+    /**
+     * When the {@code com.mimiclone.fips203.debug} system property is set to {@code true} every polynomial passed
+     * into a transform has its coefficients checked to be in modulo q.  This is a full pass over the input, so
+     * it is disabled by default and only the (allocation free) length checks are performed.
+     */
+    static final boolean DEBUG = Boolean.getBoolean("com.mimiclone.fips203.debug");
 
     final int[] transformLenVals = {
             128, 64, 64, 32, 32, 32, 32, 16, 16, 16, 16, 16, 16, 16, 16, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8, 8,
@@ -92,28 +98,86 @@ public class MLKEMTransformer implements Transformer {
             2110, -2110, 2935, -2935, 885, -885, 2154, -2154
     };
 
+    /**
+     * The zeta, gamma and scaling constants converted into the domain of the reducer in use.  Multiplying a
+     * coefficient by one of these with {@link Reducer#multiply(int, int)} yields the ordinary product regardless
+     * of whether the reducer works in Montgomery form or not.
+     */
+    final int[] transformZetas;
+    final int[] inverseZetas;
+    final int[] nttGammas;
+    final int inverseScale;
+
+    /**
+     * Multiplying two coefficients with {@link Reducer#multiply(int, int)} leaves the product scaled by the
+     * inverse of the reducer's domain factor.  Base case products are accumulated in that scaled form and then
+     * multiplied by this constant (the domain factor squared, in domain form) which corrects the scale and
+     * performs the single final reduction at the same time.  For reducers without a domain this is simply 1.
+     */
+    final int productCorrection;
+
+    protected MLKEMTransformer(ParameterSet parameterSet, Reducer reducer) {
+        this.parameterSet = parameterSet;
+        this.reducer = reducer;
+        this.transformZetas = toDomain(transformZetaVals);
+        this.inverseZetas = toDomain(inverseZetaVals);
+        this.nttGammas = toDomain(nttGammaVals);
+        this.inverseScale = reducer.toDomain(3303);
+        this.productCorrection = reducer.toDomain(reducer.toDomain(1));
+    }
+
+    private int[] toDomain(int[] values) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = reducer.toDomain(reducer.reduce(values[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Name of the system property used to choose the {@link Reducer} backing transformers built with
+     * {@link #create(ParameterSet)}.  Supported values are {@code barrett} (the default) and {@code montgomery}.
+     */
+    public static final String REDUCER_PROPERTY = "com.mimiclone.fips203.reducer";
+
     public static MLKEMTransformer create(ParameterSet parameterSet) {
-        return new MLKEMTransformer(
-                parameterSet,
-                BarrettReducer.create(parameterSet)
-        );
+        String reducer = System.getProperty(REDUCER_PROPERTY, "barrett");
+        return switch (reducer) {
+            case "barrett" -> create(parameterSet, BarrettReducer.create(parameterSet));
+            case "montgomery" -> create(parameterSet, MontgomeryReducer.create(parameterSet));
+            default -> throw new TransformerException("Unsupported reducer: " + reducer);
+        };
     }
 
-    private void validateInput(int[] input) {
+    public static MLKEMTransformer create(ParameterSet parameterSet, Reducer reducer) {
+        return new MLKEMTransformer(parameterSet, reducer);
+    }
 
-        int q = parameterSet.getQ();
+    void validateInput(int[] input, int offset) {
 
-        // Validate input is correct length
-        if (input == null || input.length != INPUT_OUTPUT_LENGTH) {
+        // Validate input is long enough to hold a polynomial at the given offset
+        // NOTE: This check is cheap and does not allocate, so it is always performed.
+        if (input == null || offset < 0 || input.length - offset < INPUT_OUTPUT_LENGTH) {
             throw new IllegalArgumentException("Input must be an array of %d long values".formatted(INPUT_OUTPUT_LENGTH));
         }
 
+        // Validating the coefficients is a full pass over the polynomial, so it is only performed in debug mode
+        if (!DEBUG) {
+            return;
+        }
+
         // Validate input has properly bounded values in modulo q
-        List<Integer> incorrectIndexes = IntStream.range(0, input.length)
-                .filter(i -> input[i] < 0 || input[i] > q)
-                .boxed().toList();
-        if (!incorrectIndexes.isEmpty()) {
-            throw new IllegalArgumentException("Input values at the following indexes were not in modulo %d: %s".formatted(q, incorrectIndexes));
+        int q = parameterSet.getQ();
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
+            if (input[i] < 0 || input[i] > q) {
+
+                // Only collect the offending indexes once we know we are going to fail
+                List<Integer> incorrectIndexes = IntStream.range(offset, offset + INPUT_OUTPUT_LENGTH)
+                        .filter(x -> input[x] < 0 || input[x] > q)
+                        .boxed().toList();
+                throw new IllegalArgumentException("Input values at the following indexes were not in modulo %d: %s".formatted(q, incorrectIndexes));
+
+            }
         }
     }
 
@@ -121,12 +185,25 @@ public class MLKEMTransformer implements Transformer {
     public int[] transform(int[] input) {
 
         // Validate the input
-        validateInput(input);
+        validateInput(input, 0);
 
         // Make a copy of the input to operate on
         // This variable is called f-hat in the FIPS203 spec, Algorithm 9, Line 1
         int[] result = input.clone();
 
+        // Transform the copy
+        transformInPlace(result, 0);
+
+        // Return the resulting transform
+        return result;
+    }
+
+    @Override
+    public void transformInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        validateInput(poly, offset);
+
         // NOTE: The FIPS203 spec has two outer loops that calculate {@code len} and {@code start} values that are used
         // to modify the inner loop conditions.  It also defines a manually incremented {@code i} loop counter that
         // is used as input to calculate the zeta values.  To improve performance and readability, we have
@@ -136,31 +213,43 @@ public class MLKEMTransformer implements Transformer {
 
             // Retrieve pre-calculated loop values
             int len = transformLenVals[i];
-            int start = transformStartVals[i];
-            int zeta = transformZetaVals[i];
+            int start = offset + transformStartVals[i];
+            int zeta = transformZetas[i];
 
             // Core transform loop
             for (int j = start; j < start + len; j++) {
-                int t = reducer.reduce(zeta * result[j + len]);
-                result[j + len] = reducer.reduce(result[j] - t);
-                result[j] = reducer.reduce(result[j] + t);
+                int t = reducer.multiply(zeta, poly[j + len]);
+                poly[j + len] = reducer.subtract(poly[j], t);
+                poly[j] = reducer.add(poly[j], t);
             }
         }
 
-        // Return the resulting transform
-        return result;
     }
 
     @Override
     public int[] inverse(int[] input) {
 
         // Validate the input
-        validateInput(input);
+        validateInput(input, 0);
 
         // Make a copy of the input to operate on
-        // This variable is called f-hat in the FIPS203 spec, Algorithm 9, Line 1
+        // This variable is called f in the FIPS203 spec, Algorithm 10, Line 1
         int[] result = input.clone();
 
+        // Invert the transform on the copy
+        inverseInPlace(result, 0);
+
+        // Return the resulting transform
+        return result;
+
+    }
+
+    @Override
+    public void inverseInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        validateInput(poly, offset);
+
         // NOTE: The FIPS203 spec has two outer loops that calculate {@code len} and {@code start} values that are used
         // to modify the inner loop conditions.  It also defines a manually decremented {@code i} loop counter that
         // is used as input to calculate the zeta values.  To improve performance and readability, we have
@@ -170,47 +259,82 @@ public class MLKEMTransformer implements Transformer {
 
             // Retrieve pre-calculated loop values
             int len = inverseLenVals[i];
-            int start = inverseStartVals[i];
-            int zeta = inverseZetaVals[i];
+            int start = offset + inverseStartVals[i];
+            int zeta = inverseZetas[i];
 
             // Core inverse transform loop
             for (int j = start; j < start + len; j++) {
-                int t = result[j];
-                result[j] = reducer.reduce(t + result[j + len]);
-                result[j + len] = reducer.reduce(zeta * (result[j + len] - t));
+                int t = poly[j];
+                poly[j] = reducer.add(t, poly[j + len]);
+                poly[j + len] = reducer.multiply(zeta, reducer.subtract(poly[j + len], t));
             }
         }
 
         // Multiply all entries
-        for (int i = 0; i < result.length; i++) {
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i++) {
 
             // NOTE: The magic number 3303 is defined in the FIPS203 spec as 128^-1.
-            result[i] = reducer.reduce(result[i] * 3303);
+            poly[i] = reducer.multiply(inverseScale, poly[i]);
 
         }
 
-        // Return the resulting transform
-        return result;
-
     }
 
     @Override
     public int[][] matrixMultiply(int[][][] a, int[][] b) {
-        int aRows = a.length;
-        int aCols = a[0].length;
+        int[][] product = new int[a.length][256];
+        matrixMultiplyAccumulate(a, b, product);
+        return product;
+    }
 
-        int[][] product = new int[aRows][256];
+    @Override
+    public void matrixMultiplyAccumulate(int[][][] a, int[][] b, int[][] out) {
 
-        for (int i = 0; i < aRows; i++) {
-            for (int j = 0; j < aCols; j++) {
-                int[] nttProduct = multiplyNTTs(a[i][j], b[j]);
-                for (int k = 0; k < 256; k++) {
-                    product[i][k] = reducer.reduce(product[i][k] + nttProduct[k]);
-                }
+        // Accumulate the scaled base case products of each row and apply a single correction per coefficient
+        for (int i = 0; i < out.length; i++) {
+            scaleAccumulator(out[i]);
+            for (int j = 0; j < b.length; j++) {
+                accumulateProduct(a[i][j], b[j], out[i]);
             }
+            correctProduct(out[i]);
+        }
+
+    }
+
+    @Override
+    public void matrixTransposeMultiplyAccumulate(int[][][] a, int[][] b, int[][] out) {
+
+        // Identical to matrixMultiplyAccumulate, but walks the columns of a instead of its rows
+        for (int i = 0; i < out.length; i++) {
+            scaleAccumulator(out[i]);
+            for (int j = 0; j < b.length; j++) {
+                accumulateProduct(a[j][i], b[j], out[i]);
+            }
+            correctProduct(out[i]);
+        }
+
+    }
+
+    @Override
+    public void matrixMultiplyAccumulate(MatrixEntrySource a, int[][] b, int[][] out) {
+
+        // Single buffer reused for every entry of a
+        matrixMultiplyAccumulate(a, b, out, new int[256]);
+
+    }
+
+    @Override
+    public void matrixMultiplyAccumulate(MatrixEntrySource a, int[][] b, int[][] out, int[] entry) {
+
+        for (int i = 0; i < out.length; i++) {
+            scaleAccumulator(out[i]);
+            for (int j = 0; j < b.length; j++) {
+                a.fill(i, j, entry);
+                accumulateProduct(entry, b[j], out[i]);
+            }
+            correctProduct(out[i]);
         }
 
-        return product;
     }
 
     @Override
@@ -224,7 +348,7 @@ public class MLKEMTransformer implements Transformer {
         for (int i = 0; i < rows; i++) {
             sum[i] = new int[cols];
             for (int j = 0; j < cols; j++) {
-                sum[i][j] = reducer.reduce(a[i][j] + b[i][j]);
+                sum[i][j] = reducer.add(a[i][j], b[i][j]);
             }
         }
 
@@ -262,36 +386,77 @@ public class MLKEMTransformer implements Transformer {
 
         int[] hHat = new int[256];
 
-        for (int i = 0; i < 128; i++) {
-            int[] c = baseCaseMultiply(
-                    fHat[2*i],
-                    fHat[2*i+1],
-                    gHat[2*i],
-                    gHat[2*i+1],
-                    nttGammaVals[i]
-            );
-            hHat[2*i] = c[0];
-            hHat[2*i+1] = c[1];
-        }
+        accumulateProduct(fHat, gHat, hHat);
+        correctProduct(hHat);
 
         // Return the result
         return hHat;
 
     }
 
+    /**
+     * Brings the existing values of {@code accumulator} (in {@code [0, q)}) into the same scaled form as the
+     * products added by {@link #accumulateProduct(int[], int[], int[])}, so that {@link #correctProduct(int[])}
+     * restores them unchanged.
+     * <p>
+     * NOTE: Multiplying by {@code 1} scales a value by the inverse of the reducer's domain factor, which is exactly
+     * what the correction undoes.
+     */
+    void scaleAccumulator(int[] accumulator) {
+        for (int i = 0; i < 256; i++) {
+            accumulator[i] = reducer.multiply(accumulator[i], 1);
+        }
+    }
+
+    /**
+     * Adds the base case products of {@code fHat} and {@code gHat} (Algorithm 11 of the FIPS203 Specification)
+     * into {@code accumulator} without performing the final reduction.  Each product is left scaled by the inverse
+     * of the reducer's domain factor and is at most {@code 2q}, so up to four products (on top of a value scaled by
+     * {@link #scaleAccumulator(int[])}) can be accumulated before the accumulator has to be finished with
+     * {@link #correctProduct(int[])}.
+     */
+    void accumulateProduct(int[] fHat, int[] gHat, int[] accumulator) {
+        for (int i = 0; i < 128; i++) {
+
+            int a0 = fHat[2*i];
+            int a1 = fHat[2*i+1];
+            int b0 = gHat[2*i];
+            int b1 = gHat[2*i+1];
+
+            // Calculate c0
+            accumulator[2*i] += reducer.multiply(a0, b0) + reducer.multiply(reducer.multiply(a1, b1), nttGammas[i]);
+
+            // Calculate c1
+            accumulator[2*i+1] += reducer.multiply(a0, b1) + reducer.multiply(a1, b0);
+
+        }
+    }
+
+    /**
+     * Corrects the domain scaling of accumulated base case products and reduces them into {@code [0, q)}.
+     */
+    void correctProduct(int[] accumulator) {
+        for (int i = 0; i < 256; i++) {
+            accumulator[i] = reducer.multiply(accumulator[i], productCorrection);
+        }
+    }
+
     @Override
     public int[] baseCaseMultiply(int a0, int a1, int b0, int b1, int gamma) {
 
+        // Convert gamma into the domain of the reducer
+        int gammaDomain = reducer.toDomain(reducer.reduce(gamma));
+
         // Calculate c0
-        int a0b0 = reducer.reduce(a0 * b0);
-        int a1b1 = reducer.reduce(a1 * b1);
-        int a1b1gamma = reducer.reduce(a1b1 * gamma);
-        int c0 = reducer.reduce(a0b0 + a1b1gamma);
+        int a0b0 = reducer.multiply(a0, b0);
+        int a1b1 = reducer.multiply(a1, b1);
+        int a1b1gamma = reducer.multiply(a1b1, gammaDomain);
+        int c0 = reducer.multiply(a0b0 + a1b1gamma, productCorrection);
 
         // Calculate c1
-        int a0b1 = reducer.reduce(a0 * b1);
-        int a1b0 = reducer.reduce(a1 * b0);
-        int c1 = reducer.reduce(a0b1 + a1b0);
+        int a0b1 = reducer.multiply(a0, b1);
+        int a1b0 = reducer.multiply(a1, b0);
+        int c1 = reducer.multiply(a0b1 + a1b0, productCorrection);
 
         // Return compound result
         return new int[]{c0, c1};
@@ -302,29 +467,46 @@ public class MLKEMTransformer implements Transformer {
     public int[] vectorTransposeMultiply(int[][] a, int[][] b) {
         int[] product = new int[parameterSet.getN()];
         for (var i = 0; i < a.length; i++) {
-            var nttProduct = multiplyNTTs(a[i], b[i]);
-            for (var j = 0; j < parameterSet.getN(); j++) {
-                product[j] = (product[j] + nttProduct[j]) % parameterSet.getQ();
-            }
+            accumulateProduct(a[i], b[i], product);
         }
+        correctProduct(product);
         return product;
     }
 
+    @Override
+    public void vectorTransposeMultiplyAccumulate(int[][] a, int[][] b, int[] out) {
+        scaleAccumulator(out);
+        for (var i = 0; i < a.length; i++) {
+            accumulateProduct(a[i], b[i], out);
+        }
+        correctProduct(out);
+    }
+
     @Override
     public int[] arrayAdd(int[] a, int[] b) {
         int[] sum = new int[a.length];
+        arrayAdd(a, b, sum);
+        return sum;
+    }
+
+    @Override
+    public void arrayAdd(int[] a, int[] b, int[] out) {
         for (int i = 0; i < a.length; i++) {
-            sum[i] = reducer.reduce(a[i] + b[i]);
+            out[i] = reducer.add(a[i], b[i]);
         }
-        return sum;
     }
 
     @Override
     public int[] arraySubtract(int[] a, int[] b) {
         int[] difference = new int[a.length];
+        arraySubtract(a, b, difference);
+        return difference;
+    }
+
+    @Override
+    public void arraySubtract(int[] a, int[] b, int[] out) {
         for (int i = 0; i < a.length; i++) {
-            difference[i] = reducer.reduce(a[i] - b[i]);
+            out[i] = reducer.subtract(a[i], b[i]);
         }
-        return difference;
     }
 }
@@ -0,0 +1,19 @@
+package com.mimiclone.fips203.transform;
+
+/**
+ * Produces the entries of a matrix of polynomials on demand, so that a matrix product can consume each entry as
+ * soon as it is generated instead of holding the whole matrix in memory.
+ */
+@FunctionalInterface
+public interface MatrixEntrySource {
+
+    /**
+     * Writes the entry at {@code row} and {@code col} into {@code out}, overwriting all 256 coefficients.
+     *
+     * @param row The row of the requested entry
+     * @param col The column of the requested entry
+     * @param out An array of 256 integers that receives the entry
+     */
+    void fill(int row, int col, int[] out);
+
+}
@@ -20,8 +20,66 @@ public interface Transformer {
      */
     int[] inverse(int[] input);
 
+    /**
+     * Performs a number theoretic transform in place on the 256 coefficients (modulo q=3329) of {@code poly}
+     * starting at {@code offset}.  This mimics the output characteristics of Algorithm 9 in the FIPS203
+     * Specification, but operates directly on the caller's buffer and does not allocate any memory.
+     *
+     * @param poly An array containing at least {@code offset + 256} integers in modulo q
+     * @param offset The index of the first coefficient of the polynomial within {@code poly}
+     */
+    void transformInPlace(int[] poly, int offset);
+
+    /**
+     * Performs the inverse of a number theoretic transform in place on the 256 coefficients (modulo q=3329) of
+     * {@code poly} starting at {@code offset}.  This mimics the output characteristics of Algorithm 10 in the
+     * FIPS203 Specification, but operates directly on the caller's buffer and does not allocate any memory.
+     *
+     * @param poly An array containing at least {@code offset + 256} integers in modulo q in NTT form
+     * @param offset The index of the first coefficient of the polynomial within {@code poly}
+     */
+    void inverseInPlace(int[] poly, int offset);
+
     int[][] matrixMultiply(int[][][] a, int[][] b);
 
+    /**
+     * Computes {@code out = out + a * b} in the NTT domain, where {@code a} is a matrix of polynomials and
+     * {@code b} and {@code out} are vectors of polynomials.  The base case products are accumulated directly
+     * into {@code out} with a single reduction per coefficient and no intermediate arrays are allocated.
+     *
+     * @param a A {@code k x k} matrix of polynomials in NTT form
+     * @param b A vector of {@code k} polynomials in NTT form
+     * @param out A vector of {@code k} polynomials in modulo q that receives the accumulated product
+     */
+    void matrixMultiplyAccumulate(int[][][] a, int[][] b, int[][] out);
+
+    /**
+     * Computes {@code out = out + transpose(a) * b} in the NTT domain without materializing the transpose of
+     * {@code a}.  Otherwise behaves exactly like {@link #matrixMultiplyAccumulate(int[][][], int[][], int[][])}.
+     *
+     * @param a A {@code k x k} matrix of polynomials in NTT form
+     * @param b A vector of {@code k} polynomials in NTT form
+     * @param out A vector of {@code k} polynomials in modulo q that receives the accumulated product
+     */
+    void matrixTransposeMultiplyAccumulate(int[][][] a, int[][] b, int[][] out);
+
+    /**
+     * Computes {@code out = out + a * b} in the NTT domain, requesting each entry of {@code a} from the source
+     * exactly once, immediately before it is used.  Only a single polynomial of {@code a} is held in memory at any
+     * time, so a transposed product is computed by simply swapping the indices inside the source.
+     *
+     * @param a The source of the entries of a {@code k x k} matrix of polynomials in NTT form
+     * @param b A vector of {@code k} polynomials in NTT form
+     * @param out A vector of {@code k} polynomials in modulo q that receives the accumulated product
+     */
+    void matrixMultiplyAccumulate(MatrixEntrySource a, int[][] b, int[][] out);
+
+    /**
+     * Identical to {@link #matrixMultiplyAccumulate(MatrixEntrySource, int[][], int[][])}, but receives each entry
+     * of {@code a} into the caller's {@code entry} buffer of 256 integers instead of allocating one.
+     */
+    void matrixMultiplyAccumulate(MatrixEntrySource a, int[][] b, int[][] out, int[] entry);
+
     int[][] matrixAdd(int[][] a, int[][] b);
 
     int[][][] matrixTranspose(int[][][] a);
@@ -32,8 +90,30 @@ public interface Transformer {
 
     int[] vectorTransposeMultiply(int[][] a, int[][] b);
 
+    /**
+     * Computes {@code out = out + transpose(a) * b} in the NTT domain, where {@code a} and {@code b} are vectors of
+     * polynomials, with a single reduction per coefficient and no intermediate arrays.
+     *
+     * @param a A vector of {@code k} polynomials in NTT form
+     * @param b A vector of {@code k} polynomials in NTT form
+     * @param out A polynomial in modulo q that receives the accumulated product
+     */
+    void vectorTransposeMultiplyAccumulate(int[][] a, int[][] b, int[] out);
+
     int[] arrayAdd(int[] a, int[] b);
 
+    /**
+     * Identical to {@link #arrayAdd(int[], int[])}, but writes the sum into {@code out}, which may be {@code a} or
+     * {@code b} itself.
+     */
+    void arrayAdd(int[] a, int[] b, int[] out);
+
     int[] arraySubtract(int[] a, int[] b);
 
+    /**
+     * Identical to {@link #arraySubtract(int[], int[])}, but writes the difference into {@code out}, which may be
+     * {@code a} or {@code b} itself.
+     */
+    void arraySubtract(int[] a, int[] b, int[] out);
+
 }
@@ -0,0 +1,78 @@
+package com.mimiclone.fips203.transform;
+
+import com.mimiclone.fips203.ParameterSet;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Chooses the {@link Transformer} implementation used by the key generation, encryption and decryption
+ * components.
+ * <p>
+ * The implementation is selected with the {@value #TRANSFORMER_PROPERTY} system property:
+ * <ul>
+ *     <li>{@code scalar} (the default) - {@link MLKEMTransformer}, using the reducer chosen by
+ *     {@value MLKEMTransformer#REDUCER_PROPERTY}</li>
+ *     <li>{@code lazy} - {@link LazyReductionTransformer}, with which key generation, encryption and decryption hold
+ *     their polynomials in {@code short[]}</li>
+ *     <li>{@code vector} - {@code VectorizedTransformer} if the {@code jdk.incubator.vector} module is available
+ *     (i.e. the JVM was started with {@code --add-modules jdk.incubator.vector}), otherwise the scalar
+ *     implementation</li>
+ * </ul>
+ */
+public final class TransformerFactory {
+
+    /**
+     * Name of the system property used to choose the {@link Transformer} implementation
+     */
+    public static final String TRANSFORMER_PROPERTY = "com.mimiclone.fips203.transformer";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * The vectorized transformer is compiled separately against the incubator module, so it is only ever named here
+     */
+    private static final String VECTORIZED_TRANSFORMER = "com.mimiclone.fips203.transform.VectorizedTransformer";
+
+    private TransformerFactory() {
+    }
+
+    /**
+     * @return {@code true} if the incubating Vector API module has been resolved in the boot layer
+     */
+    public static boolean isVectorApiAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    public static Transformer create(ParameterSet parameterSet) {
+        return create(parameterSet, System.getProperty(TRANSFORMER_PROPERTY, "scalar"));
+    }
+
+    public static Transformer create(ParameterSet parameterSet, String implementation) {
+        return switch (implementation) {
+            case "scalar" -> MLKEMTransformer.create(parameterSet);
+            case "lazy" -> LazyReductionTransformer.create(parameterSet);
+            // NOTE: VectorizedTransformer is only loaded once the module is known to be present, so the class
+            // (and with it the incubator API) is never loaded on JVMs that were started without it.
+            case "vector" -> isVectorApiAvailable()
+                    ? createVectorized(parameterSet)
+                    : MLKEMTransformer.create(parameterSet);
+            default -> throw new TransformerException("Unsupported transformer: " + implementation);
+        };
+    }
+
+    private static Transformer createVectorized(ParameterSet parameterSet) {
+        try {
+            return (Transformer) Class.forName(VECTORIZED_TRANSFORMER)
+                    .getMethod("create", ParameterSet.class)
+                    .invoke(null, parameterSet);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new TransformerException("Could not create the vectorized transformer: " + e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new TransformerException("Could not create the vectorized transformer: " + e);
+        }
+    }
+
+}
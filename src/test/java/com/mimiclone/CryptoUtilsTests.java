@@ -0,0 +1,44 @@
+package com.mimiclone;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CryptoUtilsTests {
+
+    @Test
+    public void testDifferenceMask() {
+
+        assertEquals(0, CryptoUtils.differenceMask(new byte[0], new byte[0]));
+        assertEquals(0, CryptoUtils.differenceMask(new byte[]{1, (byte) 0x80, (byte) 0xFF}, new byte[]{1, (byte) 0x80, (byte) 0xFF}));
+        assertEquals(-1, CryptoUtils.differenceMask(new byte[3], new byte[4]));
+
+        // Every single bit difference, including those in the high bit that sign extension used to hide
+        for (int position = 0; position < 4; position++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] a = new byte[4];
+                byte[] b = new byte[4];
+                b[position] = (byte) (1 << bit);
+                assertEquals(-1, CryptoUtils.differenceMask(a, b));
+                assertEquals(-1, CryptoUtils.differenceMask(b, a));
+            }
+        }
+        assertEquals(-1, CryptoUtils.differenceMask(new byte[]{(byte) 0x80}, new byte[]{0x00}));
+        assertEquals(-1, CryptoUtils.differenceMask(new byte[]{(byte) 0xFF}, new byte[]{0x7F}));
+    }
+
+    @Test
+    public void testConditionalCopy() {
+
+        byte[] from = {(byte) 0x80, 1, (byte) 0xFF, 3};
+
+        byte[] unchanged = {4, 5, 6, 7};
+        CryptoUtils.conditionalCopy(0, from, unchanged, 4);
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, unchanged);
+
+        byte[] copied = {4, 5, 6, 7};
+        CryptoUtils.conditionalCopy(-1, from, copied, 3);
+        assertArrayEquals(new byte[]{(byte) 0x80, 1, (byte) 0xFF, 7}, copied);
+    }
+}
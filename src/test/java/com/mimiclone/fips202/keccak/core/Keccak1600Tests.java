@@ -0,0 +1,70 @@
+package com.mimiclone.fips202.keccak.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Keccak1600Tests {
+
+	private final Random random = new Random(1600);
+
+	@Test
+	public void testPermuteZeroState() {
+
+		// First lanes of Keccak-f[1600] applied once to the all zero state
+		long[] state = new long[25];
+		Keccak1600.permute(state);
+
+		assertEquals(0xF1258F7940E1DDE7L, state[0]);
+		assertEquals(0x84D5CCF933C0478AL, state[1]);
+	}
+
+	@Test
+	public void testPermuteMatchesStepFunctions() {
+
+		for (int firstRound = 0; firstRound <= Keccak1600.NR_ROUNDS; firstRound++) {
+			long[] state = new long[25];
+			for (int i = 0; i < state.length; i++) {
+				state[i] = random.nextLong();
+			}
+
+			long[] expected = state.clone();
+			for (int i = firstRound; i < Keccak1600.NR_ROUNDS; i++) {
+				Keccak1600.theta(expected);
+				Keccak1600.rho(expected);
+				Keccak1600.pi(expected);
+				Keccak1600.chi(expected);
+				Keccak1600.iota(expected, i);
+			}
+
+			Keccak1600.permute(state, firstRound);
+			assertArrayEquals(expected, state);
+		}
+	}
+
+	@Test
+	public void testInstanceMatchesStatic() {
+
+		Keccak1600 keccak1600 = new Keccak1600(256, 12);
+		byte[] block = new byte[136];
+		random.nextBytes(block);
+		keccak1600.xorBytes(0, block, 0, block.length);
+
+		long[] state = keccak1600.state.clone();
+		keccak1600.permute();
+		Keccak1600.permute(state, 12);
+
+		assertArrayEquals(state, keccak1600.state);
+	}
+
+	@Test
+	public void testPermuteRejectsBadArguments() {
+
+		assertThrows(IllegalArgumentException.class, () -> Keccak1600.permute(new long[24]));
+		assertThrows(IllegalArgumentException.class, () -> Keccak1600.permute(new long[25], 25));
+	}
+}
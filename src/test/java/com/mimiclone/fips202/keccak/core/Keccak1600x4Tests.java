@@ -0,0 +1,71 @@
+package com.mimiclone.fips202.keccak.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class Keccak1600x4Tests {
+
+	private final Random random = new Random(1600);
+
+	/**
+	 * Absorbs a different random message into each instance of {@code x4} and into a matching {@link Keccak1600},
+	 * then checks that several squeezed blocks agree.
+	 */
+	private void assertMatchesKeccak1600(Keccak1600x4 x4) {
+
+		Keccak1600[] expected = new Keccak1600[Keccak1600x4.INSTANCES];
+		for (int n = 0; n < Keccak1600x4.INSTANCES; n++) {
+			expected[n] = new Keccak1600(256);
+			byte[] message = new byte[random.nextInt(x4.getRateBytes())];
+			random.nextBytes(message);
+
+			expected[n].xorBytes(0, message, 0, message.length);
+			expected[n].padBytes((byte) 0xf, 4, message.length);
+			x4.xorBytes(n, 0, message, 0, message.length);
+			x4.padBytes(n, (byte) 0xf, 4, message.length);
+		}
+
+		byte[] expectedBlock = new byte[x4.getRateBytes()];
+		byte[] actualBlock = new byte[x4.getRateBytes()];
+		for (int block = 0; block < 3; block++) {
+			x4.permute();
+			for (int n = 0; n < Keccak1600x4.INSTANCES; n++) {
+				expected[n].permute();
+				expected[n].extractBytes(0, expectedBlock, 0, expectedBlock.length);
+				x4.extractBytes(n, 0, actualBlock, 0, actualBlock.length);
+				assertArrayEquals(expectedBlock, actualBlock);
+			}
+		}
+	}
+
+	@Test
+	public void testScalarMatchesKeccak1600() {
+		assertMatchesKeccak1600(Keccak1600x4.create(256, "scalar"));
+	}
+
+	@Test
+	public void testVectorMatchesKeccak1600() {
+		assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+
+		// The vectorized permutation is correct even where it is emulated, but only picked where it is not
+		assertMatchesKeccak1600(new VectorizedKeccak1600x4(256, Keccak1600.NR_ROUNDS));
+		assertEquals(VectorizedKeccak1600x4.isSupported(),
+				Keccak1600x4.create(256, "vector") instanceof VectorizedKeccak1600x4);
+	}
+
+	@Test
+	public void testRejectsBadArguments() {
+
+		Keccak1600x4 x4 = Keccak1600x4.create(256, "scalar");
+		assertThrows(IndexOutOfBoundsException.class, () -> x4.xorBytes(4, 0, new byte[1], 0, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> x4.xorBytes(0, x4.getRateBytes(), new byte[1], 0, 1));
+		assertThrows(IndexOutOfBoundsException.class, () -> x4.extractBytes(0, 0, new byte[1], 0, 2));
+		assertThrows(IllegalArgumentException.class, () -> Keccak1600x4.create(256, "simd"));
+	}
+}
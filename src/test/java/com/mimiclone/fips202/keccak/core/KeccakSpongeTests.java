@@ -0,0 +1,128 @@
+package com.mimiclone.fips202.keccak.core;
+
+import com.mimiclone.fips203.hash.XOFParameterSet;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class KeccakSpongeTests {
+
+	private final Random random = new Random(202);
+
+	/**
+	 * Reference output of the sponge through the bit stream API.
+	 */
+	private static byte[] streamDigest(XOFParameterSet params, byte[] message, int outputLength) {
+		KeccakSponge sponge = new KeccakSponge(params);
+		sponge.getAbsorbStream().write(message);
+		byte[] digest = new byte[outputLength];
+		sponge.getSqueezeStream().read(digest);
+		return digest;
+	}
+
+	@Test
+	public void testShakeKnownAnswers() {
+
+		KeccakSponge shake128 = new KeccakSponge(XOFParameterSet.SHAKE128);
+		shake128.absorb(new byte[0]);
+		byte[] digest = new byte[32];
+		shake128.squeeze(digest);
+		assertArrayEquals(HexFormat.of().parseHex("7f9c2ba4e88f827d616045507605853ed73b8093f6efbc88eb1a6eacfa66ef26"), digest);
+
+		KeccakSponge shake256 = new KeccakSponge(XOFParameterSet.SHAKE256);
+		shake256.absorb(new byte[0]);
+		shake256.squeeze(digest);
+		assertArrayEquals(HexFormat.of().parseHex("46b9dd2b0ba88d13233b3feb743eeb243fcd52ea62b81b82b50c27646ed5762f"), digest);
+	}
+
+	@Test
+	public void testSha3MatchesJdk() throws Exception {
+
+		// Lengths around the 136 byte rate of SHA3-256, including exactly one and two full blocks
+		for (int length : new int[] {0, 1, 7, 8, 9, 135, 136, 137, 271, 272, 273, 1000}) {
+			byte[] message = new byte[length];
+			random.nextBytes(message);
+
+			KeccakSponge sponge = new KeccakSponge(XOFParameterSet.SHA3_256);
+			sponge.absorb(message);
+			byte[] digest = new byte[32];
+			sponge.squeeze(digest);
+
+			assertArrayEquals(MessageDigest.getInstance("SHA3-256").digest(message), digest);
+		}
+	}
+
+	@Test
+	public void testFastPathMatchesStreams() {
+
+		for (XOFParameterSet params : new XOFParameterSet[] {XOFParameterSet.SHAKE128, XOFParameterSet.SHAKE256}) {
+			for (int i = 0; i < 100; i++) {
+				byte[] message = new byte[random.nextInt(600)];
+				random.nextBytes(message);
+				int outputLength = random.nextInt(600);
+
+				// Absorb and squeeze in random sized, unaligned pieces, absorbing at least once so that an empty
+				// message is still padded
+				KeccakSponge sponge = new KeccakSponge(params);
+				int off = 0;
+				do {
+					int chunk = Math.min(message.length - off, random.nextInt(20));
+					sponge.absorb(message, off, chunk);
+					off += chunk;
+				} while (off < message.length);
+				byte[] digest = new byte[outputLength];
+				off = 0;
+				while (off < outputLength) {
+					int chunk = Math.min(outputLength - off, random.nextInt(20));
+					sponge.squeeze(digest, off, chunk);
+					off += chunk;
+				}
+
+				assertArrayEquals(streamDigest(params, message, outputLength), digest);
+			}
+		}
+	}
+
+	@Test
+	public void testSpongeIsReusable() {
+
+		KeccakSponge sponge = new KeccakSponge(XOFParameterSet.SHAKE256);
+		for (int i = 0; i < 10; i++) {
+			byte[] message = new byte[33];
+			random.nextBytes(message);
+
+			sponge.absorb(message, 0, 32);
+			sponge.absorb(message[32]);
+			byte[] digest = new byte[200];
+			sponge.squeeze(digest);
+
+			assertArrayEquals(streamDigest(XOFParameterSet.SHAKE256, message, 200), digest);
+		}
+	}
+
+	@Test
+	public void testUnalignedAbsorbFallsBackToBits() {
+
+		byte[] message = new byte[300];
+		random.nextBytes(message);
+
+		// Three bits through the bit stream leave the rate position off a byte boundary
+		KeccakSponge expected = new KeccakSponge(XOFParameterSet.SHAKE128);
+		expected.getAbsorbStream().writeBits(message, 0, 3);
+		expected.getAbsorbStream().write(message);
+		byte[] expectedDigest = new byte[400];
+		expected.getSqueezeStream().read(expectedDigest);
+
+		KeccakSponge actual = new KeccakSponge(XOFParameterSet.SHAKE128);
+		actual.getAbsorbStream().writeBits(message, 0, 3);
+		actual.absorb(message);
+		byte[] actualDigest = new byte[400];
+		actual.squeeze(actualDigest);
+
+		assertArrayEquals(expectedDigest, actualDigest);
+	}
+}
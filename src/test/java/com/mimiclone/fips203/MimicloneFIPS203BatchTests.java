@@ -0,0 +1,196 @@
+package com.mimiclone.fips203;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.encaps.EncapsulationException;
+import com.mimiclone.fips203.encaps.EncapsulationKeyCache;
+import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
+import com.mimiclone.fips203.message.CipherText;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import com.mimiclone.harness.TestCase;
+import com.mimiclone.harness.TestGroup;
+import com.mimiclone.harness.TestPrompt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MimicloneFIPS203BatchTests {
+
+    private static final int RECIPIENTS = 40;
+
+    /**
+     * Checks that every encapsulation decapsulates with the key pair of the recipient at the same position and
+     * that no two recipients were given the same shared secret.
+     */
+    private static void assertEncapsulatedInOrder(FIPS203 fips203, List<KeyPair> keyPairs, List<Encapsulation> encapsulations) {
+
+        assertEquals(keyPairs.size(), encapsulations.size());
+
+        Set<String> sharedSecrets = new HashSet<>();
+        for (int i = 0; i < keyPairs.size(); i++) {
+            byte[] sharedSecret = encapsulations.get(i).getSharedSecretKey().getBytes();
+            assertArrayEquals(
+                    sharedSecret,
+                    fips203.decapsulate(keyPairs.get(i).getDecapsulationKey(), encapsulations.get(i).getCipherText()).getBytes()
+            );
+            sharedSecrets.add(HexFormat.of().formatHex(sharedSecret));
+        }
+        assertEquals(keyPairs.size(), sharedSecrets.size());
+    }
+
+    private static List<KeyPair> generateKeyPairs(FIPS203 fips203, int count) {
+        List<KeyPair> keyPairs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keyPairs.add(fips203.generateKeyPair());
+        }
+        return keyPairs;
+    }
+
+    @Test
+    public void testEncapsulateBatchOnCommonPool() {
+
+        for (ParameterSet params : ParameterSet.values()) {
+            FIPS203 fips203 = MimicloneFIPS203.create(params);
+            List<KeyPair> keyPairs = generateKeyPairs(fips203, RECIPIENTS);
+
+            // A linked list exercises the copy of lists without random access
+            List<EncapsulationKey> keys = new LinkedList<>();
+            keyPairs.forEach(keyPair -> keys.add(keyPair.getEncapsulationKey()));
+
+            assertEncapsulatedInOrder(fips203, keyPairs, fips203.encapsulateBatch(keys));
+        }
+    }
+
+    @Test
+    public void testEncapsulateBatchOnVirtualThreads() {
+
+        FIPS203 fips203 = MimicloneFIPS203.create(ParameterSet.ML_KEM_768, EncapsulationKeyCache.create(8, Duration.ofMinutes(1)));
+
+        // Recipients repeat, so most of the keys come out of the cache
+        List<KeyPair> distinct = generateKeyPairs(fips203, 4);
+        List<KeyPair> keyPairs = new ArrayList<>();
+        for (int i = 0; i < RECIPIENTS; i++) {
+            keyPairs.add(distinct.get(i % distinct.size()));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Encapsulation> encapsulations = fips203.encapsulateBatch(
+                    keyPairs.stream().map(KeyPair::getEncapsulationKey).toList(), executor);
+            assertEncapsulatedInOrder(fips203, keyPairs, encapsulations);
+        }
+    }
+
+    @Test
+    public void testEncapsulateEmptyBatch() {
+        assertTrue(MimicloneFIPS203.create(ParameterSet.ML_KEM_512).encapsulateBatch(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testEncapsulateBatchRethrowsFailures() {
+
+        FIPS203 fips203 = MimicloneFIPS203.create(ParameterSet.ML_KEM_512, EncapsulationKeyCache.create(8, Duration.ofMinutes(1)));
+        List<EncapsulationKey> keys = new ArrayList<>(generateKeyPairs(fips203, 3).stream().map(KeyPair::getEncapsulationKey).toList());
+
+        // The cache rejects keys of the wrong length while preparing them
+        keys.add(1, MLKEMEncapsulationKey.create(new byte[17]));
+
+        assertThrows(EncapsulationException.class, () -> fips203.encapsulateBatch(keys));
+    }
+
+    @Test
+    public void testDecapsulateBatchMatchesKnownAnswers() throws IOException {
+
+        String resource = "/com/mimiclone/fips203/decaps/mlkem/internalProjection.json";
+        TestPrompt prompt;
+        try (InputStream inputStream = MimicloneFIPS203BatchTests.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("Could not find " + resource);
+            }
+            prompt = new ObjectMapper().readValue(inputStream, TestPrompt.class);
+        }
+
+        for (ParameterSet params : ParameterSet.values()) {
+            FIPS203 fips203 = MimicloneFIPS203.create(params);
+            for (TestGroup testGroup : prompt.getTestGroups()) {
+                if (!Objects.equals(testGroup.getParameterSet(), params.getName())
+                        || !Objects.equals(testGroup.getFunction(), "decapsulation")) {
+                    continue;
+                }
+
+                // The vectors include modified ciphertexts, each of which must be rejected with its own value
+                List<CipherText> cipherTexts = new ArrayList<>();
+                List<byte[]> expected = new ArrayList<>();
+                for (TestCase testCase : testGroup.getTests()) {
+                    cipherTexts.add(MLKEMCipherText.create(HexFormat.of().parseHex((String) testCase.getValues().get("c"))));
+                    expected.add(HexFormat.of().parseHex((String) testCase.getValues().get("k")));
+                }
+
+                DecapsulationKey dk = MLKEMDecapsulationKey.create(HexFormat.of().parseHex(testGroup.getDk()));
+                List<SharedSecretKey> sharedSecretKeys = fips203.decapsulateBatch(dk, cipherTexts);
+
+                assertEquals(expected.size(), sharedSecretKeys.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), sharedSecretKeys.get(i).getBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDecapsulateBatchOnVirtualThreads() {
+
+        FIPS203 fips203 = MimicloneFIPS203.create(ParameterSet.ML_KEM_1024);
+        KeyPair keyPair = fips203.generateKeyPair();
+
+        // Every third ciphertext has a flipped bit and must come back as the same implicit rejection value that a
+        // single decapsulation gives
+        List<CipherText> cipherTexts = new ArrayList<>();
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < RECIPIENTS; i++) {
+            Encapsulation encapsulation = fips203.encapsulate(keyPair.getEncapsulationKey());
+            CipherText cipherText = encapsulation.getCipherText();
+            if (i % 3 == 0) {
+                byte[] bytes = cipherText.getBytes();
+                bytes[i] ^= 1;
+                cipherText = MLKEMCipherText.create(bytes);
+                expected.add(fips203.decapsulate(keyPair.getDecapsulationKey(), cipherText).getBytes());
+            } else {
+                expected.add(encapsulation.getSharedSecretKey().getBytes());
+            }
+            cipherTexts.add(cipherText);
+        }
+
+        // A key prepared by the caller is used as is and left intact
+        PreparedDecapsulationKey preparedKey = fips203.prepare(keyPair.getDecapsulationKey());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<SharedSecretKey> sharedSecretKeys = fips203.decapsulateBatch(preparedKey, cipherTexts, executor);
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), sharedSecretKeys.get(i).getBytes());
+            }
+        }
+        assertArrayEquals(expected.get(1), fips203.decapsulate(preparedKey, cipherTexts.get(1)).getBytes());
+        preparedKey.destroy();
+    }
+}
@@ -0,0 +1,241 @@
+package com.mimiclone.fips203;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.encaps.EncapsulationKeyCache;
+import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
+import com.mimiclone.fips203.message.CipherText;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import com.mimiclone.harness.TestCase;
+import com.mimiclone.harness.TestGroup;
+import com.mimiclone.harness.TestPrompt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Hammers shared {@link MimicloneFIPS203} instances from many threads at once and checks every result against the
+ * decapsulation known answer tests and against round trips through the same instance.
+ */
+public class MimicloneFIPS203ConcurrencyTests {
+
+    private static final int ITERATIONS = 40;
+
+    /**
+     * A decapsulation known answer test
+     */
+    private record Vector(ParameterSet parameterSet, DecapsulationKey dk, EncapsulationKey ek, CipherText c, byte[] k) {
+    }
+
+    private static List<Vector> loadVectors() throws IOException {
+
+        String resource = "/com/mimiclone/fips203/decaps/mlkem/internalProjection.json";
+        TestPrompt prompt;
+        try (InputStream inputStream = MimicloneFIPS203ConcurrencyTests.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new IOException("Could not find " + resource);
+            }
+            prompt = new ObjectMapper().readValue(inputStream, TestPrompt.class);
+        }
+
+        List<Vector> vectors = new ArrayList<>();
+        for (ParameterSet params : ParameterSet.values()) {
+            for (TestGroup testGroup : prompt.getTestGroups()) {
+                if (Objects.equals(testGroup.getParameterSet(), params.getName())
+                        && Objects.equals(testGroup.getFunction(), "decapsulation")) {
+                    for (TestCase testCase : testGroup.getTests()) {
+                        vectors.add(new Vector(
+                                params,
+                                MLKEMDecapsulationKey.create(HexFormat.of().parseHex(testGroup.getDk())),
+                                MLKEMEncapsulationKey.create(HexFormat.of().parseHex(testGroup.getEk())),
+                                MLKEMCipherText.create(HexFormat.of().parseHex((String) testCase.getValues().get("c"))),
+                                HexFormat.of().parseHex((String) testCase.getValues().get("k"))
+                        ));
+                    }
+                }
+            }
+        }
+        return vectors;
+    }
+
+    @Test
+    public void testConcurrentUseMatchesKnownAnswers() throws Exception {
+
+        List<Vector> vectors = loadVectors();
+        assertFalse(vectors.isEmpty());
+
+        // One shared instance per parameter set, half of them encapsulating through a cache
+        Map<ParameterSet, FIPS203> instances = new HashMap<>();
+        for (ParameterSet params : ParameterSet.values()) {
+            instances.put(params, params.ordinal() % 2 == 0
+                    ? MimicloneFIPS203.create(params)
+                    : MimicloneFIPS203.create(params, EncapsulationKeyCache.create(16, Duration.ofMinutes(1))));
+        }
+
+        // Prepared decapsulation keys are shared by all the threads as well
+        Map<Vector, PreparedDecapsulationKey> prepared = new HashMap<>();
+        for (Vector vector : vectors) {
+            prepared.put(vector, instances.get(vector.parameterSet()).prepare(vector.dk()));
+        }
+
+        int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        Vector vector = vectors.get(random.nextInt(vectors.size()));
+                        FIPS203 fips203 = instances.get(vector.parameterSet());
+
+                        // Known answers, with the plain and the prepared key
+                        assertArrayEquals(vector.k(), fips203.decapsulate(vector.dk(), vector.c()).getBytes());
+                        assertArrayEquals(vector.k(), fips203.decapsulate(prepared.get(vector), vector.c()).getBytes());
+
+                        // Encapsulation to the known key must decapsulate with the known key
+                        Encapsulation encapsulation = fips203.encapsulate(vector.ek());
+                        assertArrayEquals(
+                                encapsulation.getSharedSecretKey().getBytes(),
+                                fips203.decapsulate(vector.dk(), encapsulation.getCipherText()).getBytes()
+                        );
+
+                        // Round trip through a freshly generated key pair
+                        KeyPair keyPair = fips203.generateKeyPair();
+                        encapsulation = fips203.encapsulate(keyPair.getEncapsulationKey());
+                        assertArrayEquals(
+                                encapsulation.getSharedSecretKey().getBytes(),
+                                fips203.decapsulate(keyPair.getDecapsulationKey(), encapsulation.getCipherText()).getBytes()
+                        );
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            // Rethrows the first assertion failure of any thread
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkspacesAreReusedAndReleasedOnClose() throws Exception {
+
+        MimicloneFIPS203 fips203 = (MimicloneFIPS203) MimicloneFIPS203.create(ParameterSet.ML_KEM_512);
+        KeyPair keyPair = fips203.generateKeyPair();
+
+        // Every task runs on a new virtual thread.  The first round creates a workspace for each task that found every
+        // workspace busy, and the later rounds reuse them instead of creating and dropping workspaces of their own.
+        int concurrency = 16;
+        for (int round = 0; round < 4; round++) {
+            CountDownLatch start = new CountDownLatch(1);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < concurrency; i++) {
+                    executor.submit(() -> {
+                        start.await();
+                        return fips203.encapsulate(keyPair.getEncapsulationKey());
+                    });
+                }
+                start.countDown();
+            }
+        }
+        assertTrue(fips203.createdWorkspaces() <= concurrency + 1);
+        assertEquals(fips203.createdWorkspaces(), fips203.idleWorkspaces());
+
+        fips203.close();
+        assertEquals(0, fips203.idleWorkspaces());
+        assertThrows(IllegalStateException.class, fips203::generateKeyPair);
+        assertThrows(IllegalStateException.class, () -> fips203.encapsulate(keyPair.getEncapsulationKey()));
+    }
+
+    @Test
+    public void testThroughputScalesWithThreads() throws Exception {
+
+        // Scaling can only be observed with several processors to spread the threads over
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        assumeTrue(threads >= 4, "Needs at least 4 processors");
+
+        FIPS203 fips203 = MimicloneFIPS203.create(ParameterSet.ML_KEM_768);
+        KeyPair keyPair = fips203.generateKeyPair();
+
+        // Warm up every thread's path through the workspaces before measuring
+        throughput(fips203, keyPair, threads, Duration.ofMillis(500));
+
+        double single = throughput(fips203, keyPair, 1, Duration.ofSeconds(1));
+        double parallel = throughput(fips203, keyPair, threads, Duration.ofSeconds(1));
+
+        // Perfect scaling would be a factor of threads, anything serializing the threads stays close to 1
+        assertTrue(parallel >= 0.5 * threads * single,
+                "%d threads reached %.0f ops/s against %.0f ops/s for one".formatted(threads, parallel, single));
+
+        fips203.close();
+    }
+
+    /**
+     * Runs encapsulations and decapsulations to {@code keyPair} on {@code threads} threads for {@code duration}
+     *
+     * @return The number of round trips completed per second
+     */
+    private static double throughput(FIPS203 fips203, KeyPair keyPair, int threads, Duration duration) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong operations = new AtomicLong();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long deadline = System.nanoTime() + duration.toNanos();
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        Encapsulation encapsulation = fips203.encapsulate(keyPair.getEncapsulationKey());
+                        fips203.decapsulate(keyPair.getDecapsulationKey(), encapsulation.getCipherText());
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return operations.get() / (duration.toNanos() / 1e9);
+    }
+}
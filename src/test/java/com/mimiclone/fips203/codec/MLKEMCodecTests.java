@@ -0,0 +1,208 @@
+package com.mimiclone.fips203.codec;
+
+import com.mimiclone.fips203.ParameterSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MLKEMCodecTests {
+
+    private static final int ITERATIONS = 100;
+    private static final int Q = 3329;
+
+    private final Random random = new Random(203);
+
+    /**
+     * Straightforward bit-by-bit implementation of Algorithm 5 (ByteEncode) of the FIPS203 Specification
+     */
+    private static byte[] referenceEncode(int d, int[] f) {
+        byte[] b = new byte[32 * d];
+        for (int i = 0; i < 256; i++) {
+            int a = f[i] & ((1 << d) - 1);
+            for (int j = 0; j < d; j++) {
+                int bitIndex = i * d + j;
+                b[bitIndex / 8] |= (byte) ((a & 1) << (bitIndex % 8));
+                a >>= 1;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Straightforward bit-by-bit implementation of Algorithm 6 (ByteDecode) of the FIPS203 Specification
+     */
+    private static int[] referenceDecode(int d, byte[] b) {
+        int m = d == 12 ? Q : 1 << d;
+        int[] f = new int[256];
+        for (int i = 0; i < 256; i++) {
+            for (int j = 0; j < d; j++) {
+                int bitIndex = i * d + j;
+                f[i] += ((b[bitIndex / 8] >> (bitIndex % 8)) & 1) << j;
+            }
+            f[i] %= m;
+        }
+        return f;
+    }
+
+    @Test
+    public void testEncodeDecodeMatchesReference() {
+
+        Codec codec = MLKEMCodec.create(ParameterSet.ML_KEM_768);
+
+        for (int d = 1; d <= 12; d++) {
+            for (int i = 0; i < ITERATIONS; i++) {
+
+                int[] f = new int[256];
+                for (int j = 0; j < 256; j++) {
+                    f[j] = d == 12 ? random.nextInt(Q) : random.nextInt(1 << d);
+                }
+                byte[] encoded = codec.byteEncode(d, f);
+                assertArrayEquals(referenceEncode(d, f), encoded);
+                assertArrayEquals(f, codec.byteDecode(d, encoded));
+
+                // Arbitrary bytes, which include 12-bit values of q and above
+                byte[] b = new byte[32 * d];
+                random.nextBytes(b);
+                assertArrayEquals(referenceDecode(d, b), codec.byteDecode(d, b));
+
+            }
+        }
+
+    }
+
+    @Test
+    public void testBufferOverloadsRespectOffsets() {
+
+        Codec codec = MLKEMCodec.create(ParameterSet.ML_KEM_1024);
+
+        for (int d : new int[]{1, 4, 5, 10, 11, 12}) {
+
+            int[] f = new int[256];
+            for (int j = 0; j < 256; j++) {
+                f[j] = random.nextInt(1 << d) % Q;
+            }
+
+            // Encode between two sentinel regions
+            byte[] out = new byte[32 * d + 10];
+            Arrays.fill(out, (byte) 0x5A);
+            codec.byteEncode(d, f, out, 7);
+            assertArrayEquals(codec.byteEncode(d, f), Arrays.copyOfRange(out, 7, 7 + 32 * d));
+            assertArrayEquals(new byte[]{0x5A, 0x5A, 0x5A, 0x5A, 0x5A, 0x5A, 0x5A}, Arrays.copyOfRange(out, 0, 7));
+            assertArrayEquals(new byte[]{0x5A, 0x5A, 0x5A}, Arrays.copyOfRange(out, 7 + 32 * d, out.length));
+
+            // Decode from the same offset
+            int[] decoded = new int[256];
+            codec.byteDecode(d, out, 7, decoded);
+            assertArrayEquals(f, decoded);
+
+            assertThrows(IllegalArgumentException.class, () -> codec.byteEncode(d, f, out, 11));
+            assertThrows(IllegalArgumentException.class, () -> codec.byteDecode(d, out, 11, decoded));
+
+        }
+
+    }
+
+
+    @Test
+    public void testCompressDecompressMatchesDivision() {
+
+        Codec codec = MLKEMCodec.create(ParameterSet.ML_KEM_512);
+
+        // Every value of x in [0, q) for every d
+        int[] x = new int[Q];
+        for (int i = 0; i < Q; i++) {
+            x[i] = i;
+        }
+
+        for (int d = 1; d <= 12; d++) {
+
+            int[] compressed = codec.compress(d, x);
+            for (int i = 0; i < Q; i++) {
+                assertEquals((((i << d) + Q / 2) / Q) % (1 << d), compressed[i]);
+            }
+
+            int[] y = new int[1 << d];
+            for (int i = 0; i < y.length; i++) {
+                y[i] = i;
+            }
+            int[] decompressed = codec.decompress(d, y);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals((i * Q + (1 << (d - 1))) / (1 << d), decompressed[i]);
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testFusedKernelsMatchSeparateSteps() {
+
+        Codec codec = MLKEMCodec.create(ParameterSet.ML_KEM_1024);
+
+        for (int d : new int[]{1, 4, 5, 10, 11}) {
+            for (int i = 0; i < ITERATIONS; i++) {
+
+                int[] x = new int[256];
+                for (int j = 0; j < 256; j++) {
+                    x[j] = random.nextInt(Q);
+                }
+
+                byte[] encoded = new byte[32 * d + 3];
+                codec.compressEncode(d, x, encoded, 3);
+                byte[] expected = codec.byteEncode(d, codec.compress(d, x));
+                assertArrayEquals(expected, Arrays.copyOfRange(encoded, 3, encoded.length));
+
+                int[] decoded = new int[256];
+                codec.decodeDecompress(d, encoded, 3, decoded);
+                assertArrayEquals(codec.decompress(d, codec.byteDecode(d, expected)), decoded);
+
+            }
+        }
+
+    }
+
+    @Test
+    public void testShortOverloadsNormalizeSignedCoefficients() {
+
+        Codec codec = MLKEMCodec.create(ParameterSet.ML_KEM_1024);
+
+        // Every short value, 256 at a time, encodes like its canonical representative
+        for (int first = Short.MIN_VALUE; first <= Short.MAX_VALUE; first += 256) {
+
+            short[] signed = new short[256];
+            int[] x = new int[256];
+            for (int j = 0; j < 256; j++) {
+                signed[j] = (short) (first + j);
+                x[j] = Math.floorMod(signed[j], Q);
+            }
+
+            byte[] encoded = new byte[384];
+            codec.byteEncode(12, signed, encoded, 0);
+            assertArrayEquals(codec.byteEncode(12, x), encoded);
+
+            for (int d : new int[]{1, 4, 5, 10, 11}) {
+                byte[] compressed = new byte[32 * d];
+                byte[] expected = new byte[32 * d];
+                codec.compressEncode(d, signed, compressed, 0);
+                codec.compressEncode(d, x, expected, 0);
+                assertArrayEquals(expected, compressed);
+
+                short[] decompressed = new short[256];
+                int[] expectedDecompressed = new int[256];
+                codec.decodeDecompress(d, compressed, 0, decompressed);
+                codec.decodeDecompress(d, expected, 0, expectedDecompressed);
+                for (int j = 0; j < 256; j++) {
+                    assertEquals(expectedDecompressed[j], decompressed[j]);
+                }
+            }
+
+        }
+
+    }
+
+}
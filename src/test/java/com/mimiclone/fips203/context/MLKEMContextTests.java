@@ -0,0 +1,193 @@
+package com.mimiclone.fips203.context;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.decaps.mlkem.MLKEMDecapsulator;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.encaps.mlkem.MLKEMEncapsulator;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.gen.mlkem.MLKEMKeyPairGenerator;
+import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import com.mimiclone.harness.TestCase;
+import com.mimiclone.harness.TestGroup;
+import com.mimiclone.harness.TestPrompt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MLKEMContextTests {
+
+    private static TestPrompt loadTestPrompt(String fromResource) throws IOException {
+        try (InputStream inputStream = MLKEMContextTests.class.getResourceAsStream(fromResource)) {
+            if (inputStream == null) {
+                throw new IOException("Could not find " + fromResource);
+            }
+            return new ObjectMapper().readValue(inputStream, TestPrompt.class);
+        }
+    }
+
+    private static byte[] hex(TestCase testCase, String name) {
+        return HexFormat.of().parseHex((String) testCase.getValues().get(name));
+    }
+
+    private static List<TestCase> testCases(TestPrompt prompt, ParameterSet params, String function) {
+        return prompt.getTestGroups().stream()
+                .filter(testGroup -> Objects.equals(testGroup.getParameterSet(), params.getName()))
+                .filter(testGroup -> function == null || Objects.equals(testGroup.getFunction(), function))
+                .flatMap(testGroup -> testGroup.getTests().stream())
+                .toList();
+    }
+
+    private static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(int[][] polys) {
+        for (int[] poly : polys) {
+            for (int coefficient : poly) {
+                if (coefficient != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testReusedContextMatchesKnownAnswers() throws IOException {
+
+        TestPrompt keyGenPrompt = loadTestPrompt("/com/mimiclone/fips203/key/gen/mlkem/internalProjection.json");
+        TestPrompt encapsPrompt = loadTestPrompt("/com/mimiclone/fips203/encaps/mlkem/internalProjection.json");
+        TestPrompt decapsPrompt = loadTestPrompt("/com/mimiclone/fips203/decaps/mlkem/internalProjection.json");
+
+        for (ParameterSet params : ParameterSet.values()) {
+
+            MLKEMKeyPairGenerator keyPairGenerator = MLKEMKeyPairGenerator.create(params);
+            MLKEMEncapsulator encapsulator = MLKEMEncapsulator.create(params);
+            MLKEMDecapsulator decapsulator = MLKEMDecapsulator.create(params);
+
+            // A single context is shared by every operation, so any state left behind by one would break the next
+            try (MLKEMContext context = MLKEMContext.create(params)) {
+
+                List<TestCase> keyGenCases = testCases(keyGenPrompt, params, null);
+                List<TestCase> encapsCases = testCases(encapsPrompt, params, "encapsulation");
+                for (int i = 0; i < Math.max(keyGenCases.size(), encapsCases.size()); i++) {
+
+                    if (i < keyGenCases.size()) {
+                        TestCase testCase = keyGenCases.get(i);
+                        KeyPair keyPair = keyPairGenerator.generateKeyPair(context, hex(testCase, "d"), hex(testCase, "z"));
+                        assertArrayEquals(hex(testCase, "ek"), keyPair.getEncapsulationKey().getBytes());
+                        assertArrayEquals(hex(testCase, "dk"), keyPair.getDecapsulationKey().getBytes());
+                    }
+
+                    if (i < encapsCases.size()) {
+                        TestCase testCase = encapsCases.get(i);
+                        Encapsulation encapsulation = encapsulator.encapsulate(context,
+                                MLKEMEncapsulationKey.create(hex(testCase, "ek")), hex(testCase, "m"));
+                        assertArrayEquals(hex(testCase, "c"), encapsulation.getCipherText().getBytes());
+                        assertArrayEquals(hex(testCase, "k"), encapsulation.getSharedSecretKey().getBytes());
+                    }
+                }
+
+                for (TestGroup testGroup : decapsPrompt.getTestGroups()) {
+                    if (!Objects.equals(testGroup.getParameterSet(), params.getName())
+                            || !Objects.equals(testGroup.getFunction(), "decapsulation")) {
+                        continue;
+                    }
+                    MLKEMDecapsulationKey dk = MLKEMDecapsulationKey.create(HexFormat.of().parseHex(testGroup.getDk()));
+                    PreparedDecapsulationKey preparedDk = decapsulator.prepare(dk);
+                    for (TestCase testCase : testGroup.getTests()) {
+                        MLKEMCipherText c = MLKEMCipherText.create(hex(testCase, "c"));
+                        assertArrayEquals(hex(testCase, "k"), decapsulator.decapsulate(context, dk, c).getBytes());
+                        assertArrayEquals(hex(testCase, "k"), decapsulator.decapsulate(context, preparedDk, c).getBytes());
+                    }
+                    preparedDk.destroy();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCloseZeroesWorkspace() {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        MLKEMContext context = MLKEMContext.create(params);
+
+        KeyPair keyPair = MLKEMKeyPairGenerator.create(params).generateKeyPair(context, new byte[32], new byte[32]);
+        Encapsulation encapsulation = MLKEMEncapsulator.create(params)
+                .encapsulate(context, keyPair.getEncapsulationKey(), new byte[32]);
+        MLKEMDecapsulator.create(params).decapsulate(context, keyPair.getDecapsulationKey(), encapsulation.getCipherText());
+
+        // The public matrix rows are left behind by the operations, the secrets are not
+        assertTrue(isZero(context.getSecretVector()));
+        assertTrue(isZero(context.getErrorVector()));
+        assertTrue(isZero(context.getDecapsulationKey()));
+        assertTrue(isZero(context.getSharedSecret()));
+        assertTrue(isZero(context.getMessage()));
+
+        context.close();
+
+        assertTrue(isZero(context.getMatrixRow()));
+        assertTrue(isZero(context.getPublicVector()));
+        assertTrue(isZero(context.getProductVector()));
+        assertTrue(isZero(context.getSeed()));
+        assertTrue(isZero(context.getHashInput()));
+        assertTrue(isZero(context.getHashOutput()));
+        assertTrue(isZero(context.getKeyHash()));
+        assertTrue(isZero(context.getCipherText()));
+        for (byte[] prfOutput : context.getPrfOutputs()) {
+            assertTrue(isZero(prfOutput));
+        }
+
+        // A closed context may be used again
+        byte[] expected = MLKEMDecapsulator.create(params)
+                .decapsulate(keyPair.getDecapsulationKey(), encapsulation.getCipherText()).getBytes();
+        byte[] actual = MLKEMDecapsulator.create(params)
+                .decapsulate(context, keyPair.getDecapsulationKey(), encapsulation.getCipherText()).getBytes();
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testParameterSetMismatchThrows() {
+
+        try (MLKEMContext context = MLKEMContext.create(ParameterSet.ML_KEM_512)) {
+            assertThrows(IllegalArgumentException.class, () -> MLKEMKeyPairGenerator.create(ParameterSet.ML_KEM_1024)
+                    .generateKeyPair(context, new byte[32], new byte[32]));
+            assertThrows(IllegalArgumentException.class, () -> MLKEMEncapsulator.create(ParameterSet.ML_KEM_768)
+                    .encapsulate(context, MLKEMEncapsulationKey.create(new byte[ParameterSet.ML_KEM_768.getEncapsulationKeyLength()]), new byte[32]));
+        }
+    }
+
+    @Test
+    public void testOnlyLibraryClassesMayAccessBuffers() {
+
+        MLKEMContext context = MLKEMContext.create(ParameterSet.ML_KEM_512);
+        assertSame(context.getSecretVector(), ContextAccess.get().getSecretVector(context));
+
+        // The method reference runs in a class of the JDK, which is not part of the library
+        Supplier<ContextAccess> outsider = ContextAccess::get;
+        CompletionException e = assertThrows(CompletionException.class, () -> CompletableFuture.supplyAsync(outsider).join());
+        assertInstanceOf(SecurityException.class, e.getCause());
+    }
+}
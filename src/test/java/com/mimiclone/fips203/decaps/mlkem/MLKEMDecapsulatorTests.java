@@ -2,9 +2,15 @@ package com.mimiclone.fips203.decaps.mlkem;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.decaps.DecapsulationException;
 import com.mimiclone.fips203.decaps.Decapsulator;
+import com.mimiclone.fips203.hash.Hash;
+import com.mimiclone.fips203.hash.MLKEMHash;
 import com.mimiclone.fips203.key.DecapsulationKey;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
 import com.mimiclone.fips203.key.SharedSecretKey;
+import com.mimiclone.fips203.key.gen.mlkem.MLKEMKeyPairGenerator;
 import com.mimiclone.fips203.key.mlkem.MLKEMDecapsulationKey;
 import com.mimiclone.fips203.message.CipherText;
 import com.mimiclone.fips203.message.MLKEMCipherText;
@@ -16,11 +22,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.SecureRandom;
 import java.util.HexFormat;
 import java.util.Objects;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MLKEMDecapsulatorTests {
 
@@ -87,6 +97,25 @@ public class MLKEMDecapsulatorTests {
         for (int i = 0; i < params.getSharedSecretKeyLength(); i++) {
             assertEquals(expectedK[i], sharedSecret[i]);
         }
+
+        // Decapsulating with the prepared key must give exactly the same result
+        PreparedDecapsulationKey preparedDK = mlKemDecapsulator.prepare(decapsulationKey);
+        assertArrayEquals(expectedK, mlKemDecapsulator.decapsulate(preparedDK, cipherText).getBytes());
+
+        // Destroying the prepared key must zero the derived secret values as well as the key bytes
+        int[][] sHat = preparedDK.getSHat();
+        byte[] z = preparedDK.getImplicitRejectionValue();
+        preparedDK.destroy();
+        assertTrue(preparedDK.isDestroyed());
+        assertArrayEquals(new byte[inputDK.length], preparedDK.getBytes());
+        assertArrayEquals(new byte[32], z);
+        for (int[] poly : sHat) {
+            assertArrayEquals(new int[256], poly);
+        }
+
+        // and a destroyed key must never be used again
+        assertThrows(IllegalStateException.class, preparedDK::getImplicitRejectionValue);
+        assertThrows(DecapsulationException.class, () -> mlKemDecapsulator.decapsulate(preparedDK, cipherText));
     }
 
     @Test
@@ -164,4 +193,34 @@ public class MLKEMDecapsulatorTests {
 
     }
 
+    @Test
+    public void testRandomCipherTextsAreImplicitlyRejected() {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        SecureRandom random = new SecureRandom();
+        byte[] d = new byte[32];
+        byte[] z = new byte[32];
+        random.nextBytes(d);
+        random.nextBytes(z);
+        KeyPair keyPair = MLKEMKeyPairGenerator.create(params).generateKeyPair(d, z);
+
+        MLKEMDecapsulator decapsulator = MLKEMDecapsulator.create(params);
+        PreparedDecapsulationKey preparedDK = decapsulator.prepare(keyPair.getDecapsulationKey());
+        Hash hash = MLKEMHash.create(params);
+
+        // A random ciphertext almost surely differs from its re-encryption in bytes with the high bit set, so each
+        // one must come back as the implicit rejection value J(z||c)
+        for (int i = 0; i < 20; i++) {
+            byte[] c = new byte[params.getCiphertextLength()];
+            random.nextBytes(c);
+            CipherText cipherText = MLKEMCipherText.create(c);
+
+            byte[] kBar = new byte[32];
+            hash.jHash(z, 0, c, kBar);
+            assertArrayEquals(kBar, decapsulator.decapsulate(keyPair.getDecapsulationKey(), cipherText).getBytes());
+            assertArrayEquals(kBar, decapsulator.decapsulate(preparedDK, cipherText).getBytes());
+        }
+        preparedDK.destroy();
+    }
+
 }
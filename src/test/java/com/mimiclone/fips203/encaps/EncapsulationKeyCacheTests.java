@@ -0,0 +1,163 @@
+package com.mimiclone.fips203.encaps;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.encaps.mlkem.MLKEMEncapsulator;
+import com.mimiclone.fips203.key.EncapsulationKey;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
+import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
+import com.mimiclone.harness.TestCase;
+import com.mimiclone.harness.TestPrompt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EncapsulationKeyCacheTests {
+
+    private static final ParameterSet PARAMS = ParameterSet.ML_KEM_512;
+
+    /**
+     * Wraps an {@link MLKEMEncapsulator} and counts how often keys are actually prepared
+     */
+    private static final class CountingEncapsulator implements Encapsulator {
+
+        private final Encapsulator delegate = MLKEMEncapsulator.create(PARAMS);
+        private final AtomicInteger preparations = new AtomicInteger();
+
+        @Override
+        public Encapsulation encapsulate(EncapsulationKey ek, byte[] entropy) {
+            return delegate.encapsulate(ek, entropy);
+        }
+
+        @Override
+        public PreparedEncapsulationKey prepare(EncapsulationKey ek) {
+            preparations.incrementAndGet();
+            return delegate.prepare(ek);
+        }
+
+    }
+
+    private static EncapsulationKey key(int seed) {
+        // Any bytes are acceptable as key material for caching purposes, only the length is validated
+        byte[] bytes = new byte[PARAMS.getEncapsulationKeyLength()];
+        bytes[0] = (byte) seed;
+        return MLKEMEncapsulationKey.create(bytes);
+    }
+
+    @Test
+    public void testRepeatedKeysArePreparedOnce() {
+
+        CountingEncapsulator encapsulator = new CountingEncapsulator();
+        EncapsulationKeyCache cache = EncapsulationKeyCache.create(10, Duration.ofMinutes(1));
+
+        PreparedEncapsulationKey first = cache.prepare(key(1), encapsulator);
+        PreparedEncapsulationKey second = cache.prepare(key(1), encapsulator);
+
+        // Every caller gets its own handle onto the same preparation
+        assertNotSame(first, second);
+        assertSame(first.getAHatTranspose(), second.getAHatTranspose());
+        assertEquals(1, encapsulator.preparations.get());
+        assertEquals(1, cache.size());
+
+        // Prepared keys pass straight through
+        assertSame(first, cache.prepare(first, encapsulator));
+        assertEquals(1, encapsulator.preparations.get());
+
+    }
+
+    @Test
+    public void testOldestKeysAreEvictedBeyondMaximumSize() {
+
+        CountingEncapsulator encapsulator = new CountingEncapsulator();
+        EncapsulationKeyCache cache = EncapsulationKeyCache.create(2, Duration.ofMinutes(1));
+
+        cache.prepare(key(1), encapsulator);
+        cache.prepare(key(2), encapsulator);
+        cache.prepare(key(3), encapsulator);
+        assertEquals(2, cache.size());
+        assertEquals(3, encapsulator.preparations.get());
+
+        // Key 3 is still cached, key 1 was evicted
+        cache.prepare(key(3), encapsulator);
+        assertEquals(3, encapsulator.preparations.get());
+        cache.prepare(key(1), encapsulator);
+        assertEquals(4, encapsulator.preparations.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+
+    }
+
+    @Test
+    public void testExpiredKeysArePreparedAgain() {
+
+        AtomicLong now = new AtomicLong();
+        CountingEncapsulator encapsulator = new CountingEncapsulator();
+        EncapsulationKeyCache cache = new EncapsulationKeyCache(10, Duration.ofSeconds(30), now::get);
+
+        PreparedEncapsulationKey first = cache.prepare(key(1), encapsulator);
+
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertSame(first.getAHatTranspose(), cache.prepare(key(1), encapsulator).getAHatTranspose());
+
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNotSame(first.getAHatTranspose(), cache.prepare(key(1), encapsulator).getAHatTranspose());
+        assertEquals(2, encapsulator.preparations.get());
+        assertEquals(1, cache.size());
+
+    }
+
+    @Test
+    public void testDestroyingAHandleLeavesTheCachedKeyIntact() throws IOException {
+
+        // The first ML-KEM-512 encapsulation known answer test
+        TestPrompt prompt;
+        try (InputStream inputStream = getClass().getResourceAsStream("mlkem/internalProjection.json")) {
+            assertNotNull(inputStream);
+            prompt = new ObjectMapper().readValue(inputStream, TestPrompt.class);
+        }
+        TestCase testCase = prompt.getTestGroups().stream()
+                .filter(group -> Objects.equals(group.getParameterSet(), PARAMS.getName())
+                        && Objects.equals(group.getFunction(), "encapsulation"))
+                .findFirst().orElseThrow()
+                .getTests().getFirst();
+        EncapsulationKey ek = MLKEMEncapsulationKey.create(HexFormat.of().parseHex((String) testCase.getValues().get("ek")));
+        byte[] m = HexFormat.of().parseHex((String) testCase.getValues().get("m"));
+        byte[] expectedC = HexFormat.of().parseHex((String) testCase.getValues().get("c"));
+        byte[] expectedK = HexFormat.of().parseHex((String) testCase.getValues().get("k"));
+
+        CountingEncapsulator encapsulator = new CountingEncapsulator();
+        EncapsulationKeyCache cache = EncapsulationKeyCache.create(10, Duration.ofMinutes(1));
+
+        // One caller disposes of its key, which then refuses to be used
+        PreparedEncapsulationKey destroyed = cache.prepare(ek, encapsulator);
+        destroyed.destroy();
+        assertTrue(destroyed.isDestroyed());
+        assertThrows(IllegalStateException.class, destroyed::getAHatTranspose);
+        assertThrows(IllegalStateException.class, () -> encapsulator.encapsulate(destroyed, m));
+
+        // The next caller is still served the intact preparation
+        PreparedEncapsulationKey prepared = cache.prepare(ek, encapsulator);
+        assertFalse(prepared.isDestroyed());
+        Encapsulation encapsulation = encapsulator.encapsulate(prepared, m);
+        assertArrayEquals(expectedK, encapsulation.getSharedSecretKey().getBytes());
+        assertArrayEquals(expectedC, encapsulation.getCipherText().getBytes());
+        assertEquals(1, encapsulator.preparations.get());
+
+    }
+
+    @Test
+    public void testInvalidBoundsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> EncapsulationKeyCache.create(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> EncapsulationKeyCache.create(1, Duration.ZERO));
+    }
+
+}
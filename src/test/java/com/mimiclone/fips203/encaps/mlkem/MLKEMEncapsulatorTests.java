@@ -3,6 +3,7 @@ package com.mimiclone.fips203.encaps.mlkem;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mimiclone.fips203.ParameterSet;
 import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.PreparedEncapsulationKey;
 import com.mimiclone.fips203.key.mlkem.MLKEMEncapsulationKey;
 import com.mimiclone.harness.TestCase;
 import com.mimiclone.harness.TestGroup;
@@ -15,6 +16,7 @@ import java.io.InputStream;
 import java.util.HexFormat;
 import java.util.Objects;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -95,6 +97,12 @@ public class MLKEMEncapsulatorTests {
         for (int i = 0; i < params.getCiphertextLength(); i++) {
             assertEquals(expectedC[i], cipherText[i]);
         }
+
+        // Encapsulating to the prepared key must give exactly the same result
+        PreparedEncapsulationKey preparedEK = mlKemEncapsulator.prepare(MLKEMEncapsulationKey.create(inputEK));
+        Encapsulation preparedEncapsulation = mlKemEncapsulator.encapsulate(preparedEK, inputM);
+        assertArrayEquals(expectedK, preparedEncapsulation.getSharedSecretKey().getBytes());
+        assertArrayEquals(expectedC, preparedEncapsulation.getCipherText().getBytes());
     }
 
     @Test
@@ -0,0 +1,116 @@
+package com.mimiclone.fips203.event;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MLKEMEventTests {
+
+    private static final String KEY_GENERATION = "com.mimiclone.fips203.KeyGeneration";
+    private static final String ENCRYPTION = "com.mimiclone.fips203.Encryption";
+    private static final String DECRYPTION = "com.mimiclone.fips203.Decryption";
+    private static final String DECAPSULATION = "com.mimiclone.fips203.Decapsulation";
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+    }
+
+    /**
+     * Checks that an event carries the parameter set and that its phases add up to no more than its duration.
+     */
+    private static void assertPhases(RecordedEvent event, ParameterSet params, String... phases) {
+        assertEquals(params.getName(), event.getString("parameterSet"));
+        Duration total = Duration.ZERO;
+        for (String phase : phases) {
+            Duration duration = event.getDuration(phase);
+            assertFalse(duration.isNegative(), phase);
+            total = total.plus(duration);
+        }
+        assertTrue(total.compareTo(Duration.ZERO) > 0);
+        assertTrue(total.compareTo(event.getDuration()) <= 0);
+    }
+
+    @Test
+    public void testEventsAreRecorded() throws IOException {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        FIPS203 fips203 = MimicloneFIPS203.create(params);
+        Path file = Files.createTempFile("mlkem", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            for (String name : List.of(KEY_GENERATION, ENCRYPTION, DECRYPTION, DECAPSULATION)) {
+                recording.enable(name);
+            }
+            recording.start();
+
+            KeyPair keyPair = fips203.generateKeyPair();
+            Encapsulation encapsulation = fips203.encapsulate(keyPair.getEncapsulationKey());
+            fips203.decapsulate(keyPair.getDecapsulationKey(), encapsulation.getCipherText());
+            PreparedDecapsulationKey preparedKey = fips203.prepare(keyPair.getDecapsulationKey());
+            fips203.decapsulate(preparedKey, encapsulation.getCipherText());
+            preparedKey.destroy();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events;
+        try {
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        List<RecordedEvent> keyGenerations = eventsNamed(events, KEY_GENERATION);
+        assertEquals(1, keyGenerations.size());
+        assertPhases(keyGenerations.getFirst(), params, "hashing", "noiseSampling", "ntt", "matrixMultiplication", "encoding");
+
+        // One encryption by encapsulation and one re-encryption by each decapsulation
+        List<RecordedEvent> encryptions = eventsNamed(events, ENCRYPTION);
+        assertEquals(3, encryptions.size());
+        assertEquals(1, encryptions.stream().filter(event -> event.getBoolean("prepared")).count());
+        for (RecordedEvent event : encryptions) {
+            assertPhases(event, params, "noiseSampling", "ntt", "matrixMultiplication", "encoding");
+        }
+
+        List<RecordedEvent> decryptions = eventsNamed(events, DECRYPTION);
+        assertEquals(2, decryptions.size());
+        for (RecordedEvent event : decryptions) {
+            assertPhases(event, params, "decoding", "ntt", "encoding");
+        }
+
+        List<RecordedEvent> decapsulations = eventsNamed(events, DECAPSULATION);
+        assertEquals(2, decapsulations.size());
+        assertEquals(1, decapsulations.stream().filter(event -> event.getBoolean("prepared")).count());
+        for (RecordedEvent event : decapsulations) {
+            assertPhases(event, params, "decryption", "hashing", "reEncryption", "comparison");
+        }
+    }
+
+    @Test
+    public void testDisabledEventsAreNotTimed() {
+
+        // Without a recording the phases are never timed
+        KeyGenerationEvent event = new KeyGenerationEvent();
+        event.start();
+        assertEquals(0, event.lap());
+        assertFalse(event.shouldCommit());
+    }
+}
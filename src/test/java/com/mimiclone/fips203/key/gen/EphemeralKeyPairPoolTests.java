@@ -0,0 +1,134 @@
+package com.mimiclone.fips203.key.gen;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.KeyPair;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EphemeralKeyPairPoolTests {
+
+    private static final ParameterSet PARAMS = ParameterSet.ML_KEM_512;
+
+    private static void awaitDepth(EphemeralKeyPairPool pool, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (pool.depth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "Pool was not refilled in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testTakeAndRefill() throws InterruptedException {
+
+        FIPS203 fips203 = MimicloneFIPS203.create(PARAMS);
+        try (EphemeralKeyPairPool pool = EphemeralKeyPairPool.create(PARAMS, 4, 2)) {
+
+            awaitDepth(pool, 4);
+
+            // Pre-generated key pairs are valid and distinct
+            KeyPair first = pool.take();
+            KeyPair second = pool.take();
+            assertFalse(isZero(first.getDecapsulationKey().getBytes()));
+            assertFalse(Arrays.equals(first.getEncapsulationKey().getBytes(), second.getEncapsulationKey().getBytes()));
+            Encapsulation encapsulation = fips203.encapsulate(first.getEncapsulationKey());
+            assertArrayEquals(
+                    encapsulation.getSharedSecretKey().getBytes(),
+                    fips203.decapsulate(first.getDecapsulationKey(), encapsulation.getCipherText()).getBytes()
+            );
+
+            // Dropping to the low water mark refills the pool
+            pool.take();
+            awaitDepth(pool, 4);
+
+            EphemeralKeyPairPool.Metrics metrics = pool.metrics();
+            assertEquals(3, metrics.hits());
+            assertEquals(0, metrics.evictions());
+            assertTrue(metrics.refilled() >= 7);
+            assertTrue(metrics.meanRefillLatency().toNanos() > 0);
+            assertTrue(metrics.maximumRefillLatency().compareTo(metrics.meanRefillLatency()) >= 0);
+            assertEquals(4, metrics.depth());
+        }
+    }
+
+    @Test
+    public void testMissGeneratesOnCallingThread() {
+
+        // Never filled, so the first take misses
+        EphemeralKeyPairPool pool = new EphemeralKeyPairPool(PARAMS, 2, 1, Duration.ofMinutes(1), System::nanoTime);
+        KeyPair keyPair = pool.take();
+        assertEquals(PARAMS.getDecapsulationKeyLength(), keyPair.getDecapsulationKey().getBytes().length);
+        assertEquals(1, pool.metrics().misses());
+        assertEquals(0, pool.metrics().hits());
+
+        pool.close();
+        assertThrows(IllegalStateException.class, pool::take);
+    }
+
+    @Test
+    public void testExpiredKeyPairsAreEvictedAndDestroyed() throws InterruptedException {
+
+        AtomicLong clock = new AtomicLong();
+        try (EphemeralKeyPairPool pool = new EphemeralKeyPairPool(PARAMS, 3, 1, Duration.ofSeconds(10), clock::get)) {
+
+            pool.scheduleRefill();
+            awaitDepth(pool, 3);
+            List<KeyPair> expired = pool.queuedKeyPairs();
+
+            // Every queued key pair is too old, so the take misses and the old key pairs are destroyed
+            clock.addAndGet(Duration.ofSeconds(11).toNanos());
+            KeyPair keyPair = pool.take();
+            assertFalse(isZero(keyPair.getDecapsulationKey().getBytes()));
+
+            EphemeralKeyPairPool.Metrics metrics = pool.metrics();
+            assertEquals(0, metrics.hits());
+            assertEquals(1, metrics.misses());
+            assertEquals(3, metrics.evictions());
+            for (KeyPair evicted : expired) {
+                assertTrue(isZero(evicted.getDecapsulationKey().getBytes()));
+                assertTrue(isZero(evicted.getEncapsulationKey().getBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseDestroysQueuedKeyPairs() throws InterruptedException {
+
+        EphemeralKeyPairPool pool = EphemeralKeyPairPool.create(PARAMS, 3, 1);
+        awaitDepth(pool, 3);
+        KeyPair taken = pool.take();
+        List<KeyPair> queued = pool.queuedKeyPairs();
+
+        pool.close();
+
+        assertEquals(0, pool.depth());
+        for (KeyPair keyPair : queued) {
+            assertTrue(isZero(keyPair.getDecapsulationKey().getBytes()));
+        }
+
+        // Key pairs already handed out belong to the caller
+        assertFalse(isZero(taken.getDecapsulationKey().getBytes()));
+        assertThrows(IllegalStateException.class, pool::take);
+    }
+}
@@ -0,0 +1,145 @@
+package com.mimiclone.fips203.key.gen.provider;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.key.gen.EphemeralKeyPairPool;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
+import com.mimiclone.fips203.provider.MimicloneSecurityProvider;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.KEM;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.spec.NamedParameterSpec;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MLKEMKeyGenerationProviderTests {
+
+    @BeforeAll
+    public static void setUp() {
+        Security.addProvider(new MimicloneSecurityProvider());
+    }
+
+    private static KeyPairGenerator getInstance(ParameterSet params) throws Exception {
+        return KeyPairGenerator.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+    }
+
+    private static SecureRandom seeded(long seed) throws Exception {
+        SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+        random.setSeed(seed);
+        return random;
+    }
+
+    private static void assertRoundTrip(ParameterSet params, KeyPair keyPair) throws Exception {
+        KEM kem = KEM.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+        KEM.Encapsulated encapsulated = kem.newEncapsulator(keyPair.getPublic()).encapsulate();
+        assertArrayEquals(
+                encapsulated.key().getEncoded(),
+                kem.newDecapsulator(keyPair.getPrivate()).decapsulate(encapsulated.encapsulation()).getEncoded()
+        );
+    }
+
+    @Test
+    public void testGenerateKeyPair() throws Exception {
+
+        for (ParameterSet params : ParameterSet.values()) {
+            KeyPair keyPair = getInstance(params).generateKeyPair();
+
+            MLKEMPublicKey publicKey = assertInstanceOf(MLKEMPublicKey.class, keyPair.getPublic());
+            MLKEMPrivateKey privateKey = assertInstanceOf(MLKEMPrivateKey.class, keyPair.getPrivate());
+            assertEquals(params, publicKey.getParameterSet());
+            assertEquals(params, privateKey.getParameterSet());
+            assertEquals(params.getName(), publicKey.getAlgorithm());
+            assertEquals(params.getEncapsulationKeyLength(), publicKey.getEncoded().length);
+            assertEquals(params.getDecapsulationKeyLength(), privateKey.getEncoded().length);
+
+            assertRoundTrip(params, keyPair);
+        }
+    }
+
+    @Test
+    public void testCallerRandomness() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+
+        // The same seeds give the same key pair, however the generator was initialized
+        KeyPairGenerator bySize = getInstance(params);
+        bySize.initialize(params.getMinSecurityStrength(), seeded(42));
+        KeyPairGenerator bySpec = getInstance(params);
+        bySpec.initialize(new NamedParameterSpec(params.getName()), seeded(42));
+
+        KeyPair first = bySize.generateKeyPair();
+        KeyPair second = bySpec.generateKeyPair();
+        assertArrayEquals(first.getPublic().getEncoded(), second.getPublic().getEncoded());
+        assertArrayEquals(first.getPrivate().getEncoded(), second.getPrivate().getEncoded());
+        assertFalse(Arrays.equals(first.getPublic().getEncoded(), bySize.generateKeyPair().getPublic().getEncoded()));
+        assertRoundTrip(params, first);
+
+        assertThrows(InvalidParameterException.class, () -> getInstance(params).initialize(2048));
+        assertThrows(InvalidAlgorithmParameterException.class,
+                () -> getInstance(params).initialize(new NamedParameterSpec("ML-KEM-512")));
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        MLKEMPrefetchParameterSpec spec = MLKEMPrefetchParameterSpec.create(4, 2, Duration.ofMinutes(10));
+
+        // Initializing the first generator creates the pool and starts filling it
+        getInstance(params).initialize(spec);
+        EphemeralKeyPairPool pool = MLKEMKeyGenerationProvider.pool(params, spec);
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (pool.depth() < 4) {
+            assertTrue(System.nanoTime() < deadline, "Pool was not filled in time");
+            Thread.sleep(5);
+        }
+
+        // A generator obtained later with an equal spec takes its key pair from the same pool
+        KeyPairGenerator generator = getInstance(params);
+        generator.initialize(MLKEMPrefetchParameterSpec.create(4, 2, Duration.ofMinutes(10)));
+        KeyPair keyPair = generator.generateKeyPair();
+        assertEquals(1, pool.metrics().hits());
+        assertEquals(0, pool.metrics().misses());
+        assertRoundTrip(params, keyPair);
+
+        assertThrows(IllegalArgumentException.class, () -> MLKEMPrefetchParameterSpec.create(4, 5));
+    }
+
+    @Test
+    public void testPoolsAreBoundedAndClosedOnEviction() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_512;
+
+        // A generator prefetching with a spec of its own
+        KeyPairGenerator generator = getInstance(params);
+        generator.initialize(MLKEMPrefetchParameterSpec.create(1, 1, Duration.ofHours(1)));
+        EphemeralKeyPairPool first = MLKEMKeyGenerationProvider.pool(params, MLKEMPrefetchParameterSpec.create(1, 1, Duration.ofHours(1)));
+
+        // Varying the spec creates new pools, and beyond the bound the least recently requested one is closed
+        for (int i = 1; i <= MLKEMKeyGenerationProvider.MAXIMUM_POOLS; i++) {
+            getInstance(params).initialize(MLKEMPrefetchParameterSpec.create(1, 1, Duration.ofHours(1).plusSeconds(i)));
+        }
+        assertTrue(first.isClosed());
+        assertEquals(0, first.depth());
+
+        // The generator of the closed pool carries on with a new pool for its spec
+        assertRoundTrip(params, generator.generateKeyPair());
+        EphemeralKeyPairPool replacement = MLKEMKeyGenerationProvider.pool(params, MLKEMPrefetchParameterSpec.create(1, 1, Duration.ofHours(1)));
+        assertFalse(replacement.isClosed());
+        assertEquals(1, replacement.metrics().hits() + replacement.metrics().misses());
+    }
+}
@@ -0,0 +1,117 @@
+package com.mimiclone.fips203.metrics;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.encaps.Encapsulation;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramMLKEMMetricsTests {
+
+    @Test
+    public void testBucketBoundaries() {
+
+        // Every bucket holds exactly the latencies from its lower bound up to the lower bound of the next one
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            long lowerBound = LatencyHistogram.lowerBound(i);
+            long upperBound = LatencyHistogram.lowerBound(i + 1) - 1;
+            assertEquals(i, LatencyHistogram.bucket(lowerBound));
+            assertEquals(i, LatencyHistogram.bucket(upperBound));
+            assertTrue(upperBound - lowerBound <= lowerBound / LatencyHistogram.SUB_BUCKETS);
+        }
+
+        // Latencies beyond the last bucket are clamped into it
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        histogram.record(-5);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1001, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMaximumNanos());
+        assertEquals(500_000, snapshot.getMeanNanos());
+
+        // Percentiles are the upper bound of their bucket, so may be at most an eighth too high
+        assertWithinBucket(500_000, snapshot.getP50Nanos());
+        assertWithinBucket(900_000, snapshot.getP90Nanos());
+        assertWithinBucket(990_000, snapshot.getP99Nanos());
+        assertEquals(1_000_000, snapshot.getP999Nanos());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS,
+                "Expected %d but was %d".formatted(expected, actual));
+    }
+
+    @Test
+    public void testOperationsAndImplicitRejectionsAreRecorded() {
+
+        HistogramMLKEMMetrics metrics = HistogramMLKEMMetrics.create();
+        ParameterSet params = ParameterSet.ML_KEM_512;
+        FIPS203 fips203 = MimicloneFIPS203.create(params, metrics);
+
+        KeyPair keyPair = fips203.generateKeyPair();
+        Encapsulation encapsulation = fips203.encapsulate(keyPair.getEncapsulationKey());
+        fips203.decapsulate(keyPair.getDecapsulationKey(), encapsulation.getCipherText());
+
+        // Tampered ciphertexts are rejected implicitly, with a raw and with a prepared key, even when only the high
+        // bit of a byte differs
+        byte[] tampered = encapsulation.getCipherText().getBytes();
+        tampered[0] ^= (byte) 0x80;
+        fips203.decapsulate(keyPair.getDecapsulationKey(), MLKEMCipherText.create(tampered));
+        fips203.decapsulate(fips203.prepare(keyPair.getDecapsulationKey()), MLKEMCipherText.create(tampered));
+
+        assertEquals(1, metrics.keyGeneration(params).getCount());
+        assertEquals(1, metrics.encapsulation(params).getCount());
+        assertEquals(3, metrics.decapsulation(params).getCount());
+        assertEquals(2, metrics.implicitRejections(params));
+        assertTrue(metrics.decapsulation(params).getP50Nanos() > 0);
+
+        // Other parameter sets are untouched
+        assertEquals(0, metrics.keyGeneration(ParameterSet.ML_KEM_768).getCount());
+        assertEquals(0, metrics.decapsulation(ParameterSet.ML_KEM_1024).getP99Nanos());
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+
+        HistogramMLKEMMetrics metrics = HistogramMLKEMMetrics.create();
+        metrics.recordEncapsulation(ParameterSet.ML_KEM_768, 40_000);
+        metrics.recordDecapsulation(ParameterSet.ML_KEM_768, 50_000, 1);
+        metrics.recordDecapsulation(ParameterSet.ML_KEM_768, 50_000, 0);
+
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(server);
+        try {
+            ObjectName name = HistogramMLKEMMetrics.objectName(ParameterSet.ML_KEM_768.getName());
+            assertEquals(1L, server.getAttribute(name, "ImplicitRejections"));
+            CompositeData decapsulation = (CompositeData) server.getAttribute(name, "Decapsulation");
+            assertEquals(2L, decapsulation.get("count"));
+            assertEquals(50_000L, decapsulation.get("maximumNanos"));
+
+            // The names are taken
+            assertThrows(MetricsException.class, () -> HistogramMLKEMMetrics.create().registerMBeans(server));
+        } finally {
+            metrics.unregisterMBeans(server);
+        }
+        assertTrue(server.queryNames(new ObjectName(HistogramMLKEMMetrics.MBEAN_DOMAIN + ":*"), null).isEmpty());
+    }
+}
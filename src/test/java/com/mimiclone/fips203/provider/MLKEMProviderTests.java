@@ -0,0 +1,200 @@
+package com.mimiclone.fips203.provider;
+
+import com.mimiclone.fips203.FIPS203;
+import com.mimiclone.fips203.MimicloneFIPS203;
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.decaps.DecapsulationException;
+import com.mimiclone.fips203.key.KeyPair;
+import com.mimiclone.fips203.key.PreparedDecapsulationKey;
+import com.mimiclone.fips203.key.provider.MLKEMPrivateKey;
+import com.mimiclone.fips203.key.provider.MLKEMPublicKey;
+import com.mimiclone.fips203.message.MLKEMCipherText;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.DecapsulateException;
+import javax.crypto.KEM;
+import javax.crypto.SecretKey;
+import java.lang.reflect.Proxy;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MLKEMProviderTests {
+
+    @BeforeAll
+    public static void setUp() {
+        new MimicloneSecurityProvider().install();
+    }
+
+    private static MLKEMPublicKey publicKey(ParameterSet params, KeyPair keyPair) {
+        return MLKEMPublicKey.create(params, keyPair.getEncapsulationKey());
+    }
+
+    private static MLKEMPrivateKey privateKey(ParameterSet params, KeyPair keyPair) {
+        return MLKEMPrivateKey.create(params, keyPair.getDecapsulationKey());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        for (ParameterSet params : ParameterSet.values()) {
+            FIPS203 fips203 = MimicloneFIPS203.create(params);
+            KeyPair keyPair = fips203.generateKeyPair();
+            KEM kem = KEM.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+
+            KEM.Encapsulator encapsulator = kem.newEncapsulator(publicKey(params, keyPair));
+            assertEquals(32, encapsulator.secretSize());
+            assertEquals(params.getCiphertextLength(), encapsulator.encapsulationSize());
+            KEM.Encapsulated encapsulated = encapsulator.encapsulate();
+            assertEquals(params.getCiphertextLength(), encapsulated.encapsulation().length);
+
+            KEM.Decapsulator decapsulator = kem.newDecapsulator(privateKey(params, keyPair));
+            SecretKey secretKey = decapsulator.decapsulate(encapsulated.encapsulation());
+            assertEquals("Generic", secretKey.getAlgorithm());
+            assertArrayEquals(encapsulated.key().getEncoded(), secretKey.getEncoded());
+
+            // The engine agrees
+            assertArrayEquals(secretKey.getEncoded(), fips203.decapsulate(keyPair.getDecapsulationKey(),
+                    MLKEMCipherText.create(encapsulated.encapsulation())).getBytes());
+
+            // A range of the secret can be requested as a key of any algorithm
+            SecretKey aesKey = decapsulator.decapsulate(encapsulated.encapsulation(), 0, 16, "AES");
+            assertEquals("AES", aesKey.getAlgorithm());
+            assertEquals(16, aesKey.getEncoded().length);
+        }
+    }
+
+    @Test
+    public void testImplicitRejection() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        FIPS203 fips203 = MimicloneFIPS203.create(params);
+        KeyPair keyPair = fips203.generateKeyPair();
+        KEM kem = KEM.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+
+        byte[] encapsulation = kem.newEncapsulator(publicKey(params, keyPair)).encapsulate().encapsulation();
+        encapsulation[7] ^= 1;
+
+        // A tampered ciphertext yields the implicit rejection value rather than an exception
+        KEM.Decapsulator decapsulator = kem.newDecapsulator(privateKey(params, keyPair));
+        assertArrayEquals(
+                fips203.decapsulate(keyPair.getDecapsulationKey(), MLKEMCipherText.create(encapsulation)).getBytes(),
+                decapsulator.decapsulate(encapsulation).getEncoded()
+        );
+
+        // A ciphertext of the wrong length is an error
+        assertThrows(DecapsulateException.class, () -> decapsulator.decapsulate(new byte[encapsulation.length - 1]));
+    }
+
+    @Test
+    public void testCallerRandomness() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_512;
+        MLKEMPublicKey publicKey = publicKey(params, MimicloneFIPS203.create(params).generateKeyPair());
+        KEM kem = KEM.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+
+        // Identically seeded generators give identical encapsulations
+        byte[][] encapsulations = new byte[2][];
+        for (int i = 0; i < 2; i++) {
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(203);
+            encapsulations[i] = kem.newEncapsulator(publicKey, random).encapsulate().encapsulation();
+        }
+        assertArrayEquals(encapsulations[0], encapsulations[1]);
+    }
+
+    @Test
+    public void testKeysAreCheckedAndPreparedOnce() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_1024;
+        KeyPair keyPair = MimicloneFIPS203.create(params).generateKeyPair();
+        MLKEMPublicKey publicKey = publicKey(params, keyPair);
+        MLKEMPrivateKey privateKey = privateKey(params, keyPair);
+
+        // Keys of another parameter set are rejected
+        KEM kem768 = KEM.getInstance(ParameterSet.ML_KEM_768.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+        assertThrows(InvalidKeyException.class, () -> kem768.newEncapsulator(publicKey));
+        assertThrows(InvalidKeyException.class, () -> kem768.newDecapsulator(privateKey));
+
+        // The preparation is kept by the key and shared by every encapsulator
+        FIPS203 engine = MLKEMEngines.get(params);
+        assertSame(engine, MLKEMEngines.get(params));
+        assertSame(publicKey.prepare(engine), publicKey.prepare(engine));
+
+        // The generic service takes the parameter set from the key
+        MimicloneSecurityProvider provider = new MimicloneSecurityProvider();
+        byte[] encapsulation = provider.engineNewEncapsulator(publicKey, null, null).engineEncapsulate(0, 32, "Generic").encapsulation();
+        assertEquals(params.getCiphertextLength(), encapsulation.length);
+
+        // Destroyed keys cannot be used
+        KEM kem = KEM.getInstance(params.getName(), MimicloneSecurityProvider.PROVIDER_NAME);
+        KEM.Decapsulator decapsulator = kem.newDecapsulator(privateKey);
+        byte[] encapsulated = kem.newEncapsulator(publicKey).encapsulate().encapsulation();
+        privateKey.destroy();
+        assertTrue(privateKey.isDestroyed());
+        assertThrows(InvalidKeyException.class, () -> kem.newDecapsulator(privateKey));
+
+        // Nor can the decapsulators created before the key was destroyed
+        assertThrows(IllegalStateException.class, () -> decapsulator.decapsulate(encapsulated));
+        assertThrows(DecapsulationException.class, () -> engine.decapsulate(keyPair.getDecapsulationKey(), MLKEMCipherText.create(encapsulated)));
+
+        // Keys that fail the hash check cannot be used either
+        assertThrows(InvalidKeyException.class, () -> kem.newDecapsulator(MLKEMPrivateKey.create(params, new byte[params.getDecapsulationKeyLength() - 1])));
+    }
+
+    @Test
+    public void testConcurrentPreparationsKeepOne() throws Exception {
+
+        ParameterSet params = ParameterSet.ML_KEM_512;
+        FIPS203 engine = MLKEMEngines.get(params);
+        MLKEMPrivateKey privateKey = privateKey(params, engine.generateKeyPair());
+
+        // An engine whose preparations wait for each other, so that both threads prepare the key
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<PreparedDecapsulationKey> preparations = new CopyOnWriteArrayList<>();
+        FIPS203 racing = (FIPS203) Proxy.newProxyInstance(FIPS203.class.getClassLoader(), new Class<?>[]{FIPS203.class},
+                (proxy, method, args) -> {
+                    Object result = method.invoke(engine, args);
+                    if (result instanceof PreparedDecapsulationKey prepared) {
+                        preparations.add(prepared);
+                        barrier.await(10, TimeUnit.SECONDS);
+                    }
+                    return result;
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PreparedDecapsulationKey> first = executor.submit(() -> privateKey.prepare(racing));
+            Future<PreparedDecapsulationKey> second = executor.submit(() -> privateKey.prepare(racing));
+            assertSame(first.get(), second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The preparation that lost is destroyed rather than left holding sHat and z
+        assertEquals(2, preparations.size());
+        PreparedDecapsulationKey kept = privateKey.prepare(engine);
+        for (PreparedDecapsulationKey prepared : preparations) {
+            assertEquals(prepared != kept, prepared.isDestroyed());
+        }
+    }
+
+    @Test
+    public void testUnknownAlgorithm() {
+        assertThrows(NoSuchAlgorithmException.class, () -> KEM.getInstance("ML-KEM-2048", MimicloneSecurityProvider.PROVIDER_NAME));
+    }
+}
@@ -0,0 +1,92 @@
+package com.mimiclone.fips203.reduce.montgomery;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.Reducer;
+import com.mimiclone.fips203.reduce.ReductionException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MontgomeryReducerTests {
+
+    @Test
+    public void testModulusMultiplication() {
+
+        Reducer montgomeryReducer = MontgomeryReducer.create(ParameterSet.ML_KEM_1024);
+
+        for (int a = 0; a < 3329; a++) {
+
+            // Converting one operand into Montgomery form yields the ordinary product
+            int aMont = montgomeryReducer.toDomain(a);
+
+            for (int b = 0; b < 3329; b++) {
+
+                int knownValue = (a * b) % 3329;
+
+                assertEquals(knownValue, montgomeryReducer.multiply(aMont, b));
+                assertEquals(knownValue, montgomeryReducer.reduce(a * b));
+
+            }
+        }
+
+    }
+
+    @Test
+    public void testModulusAddition() {
+
+        Reducer montgomeryReducer = MontgomeryReducer.create(ParameterSet.ML_KEM_1024);
+
+        for (int a = 0; a < 3329; a++) {
+            for (int b = 0; b < 3329; b++) {
+
+                int knownValue = (a + b) % 3329;
+
+                assertEquals(knownValue, montgomeryReducer.reduce(a + b));
+                assertEquals(knownValue, montgomeryReducer.add(a, b));
+
+            }
+        }
+
+    }
+
+    @Test
+    public void testModulusSubtraction() {
+
+        Reducer montgomeryReducer = MontgomeryReducer.create(ParameterSet.ML_KEM_1024);
+
+        for (int a = 0; a < 3329; a++) {
+            for (int b = 0; b < 3329; b++) {
+
+                int knownValue = (a - b + 3329) % 3329;
+
+                assertEquals(knownValue, montgomeryReducer.reduce(a - b));
+                assertEquals(knownValue, montgomeryReducer.subtract(a, b));
+
+            }
+        }
+
+    }
+
+    @Test
+    public void testDomainRoundTrip() {
+
+        Reducer montgomeryReducer = MontgomeryReducer.create(ParameterSet.ML_KEM_1024);
+
+        for (int a = 0; a < 3329; a++) {
+            assertEquals(a, montgomeryReducer.fromDomain(montgomeryReducer.toDomain(a)));
+        }
+
+    }
+
+    @Test
+    public void testOutOfRangeInput() {
+
+        Reducer montgomeryReducer = MontgomeryReducer.create(ParameterSet.ML_KEM_1024);
+
+        assertThrows(ReductionException.class, () -> montgomeryReducer.reduce(Integer.MAX_VALUE));
+        assertThrows(ReductionException.class, () -> montgomeryReducer.reduce(3329 << 15));
+
+    }
+
+}
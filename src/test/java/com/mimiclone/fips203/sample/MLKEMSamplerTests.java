@@ -0,0 +1,147 @@
+package com.mimiclone.fips203.sample;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.context.MLKEMContext;
+import com.mimiclone.fips203.hash.Hash;
+import com.mimiclone.fips203.hash.MLKEMHash;
+import com.mimiclone.fips203.transform.MatrixEntrySource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MLKEMSamplerTests {
+
+    private final Random random = new Random(203);
+
+    private byte[] randomSeed() {
+        byte[] seed = new byte[32];
+        random.nextBytes(seed);
+        return seed;
+    }
+
+    @Test
+    public void testSampleNTTBatchMatchesSampleNTT() {
+
+        Sampler sampler = MLKEMSampler.create(ParameterSet.ML_KEM_768);
+
+        // Every batch size up to two full groups of four, plus an empty batch
+        for (int count = 0; count <= 9; count++) {
+            byte[] seed = randomSeed();
+            byte[] indices = new byte[2 * count];
+            random.nextBytes(indices);
+
+            int[][] batch = new int[count][256];
+            sampler.sampleNTTBatch(seed, indices, batch);
+
+            for (int n = 0; n < count; n++) {
+                assertArrayEquals(sampler.sampleNTT(seed, indices[2 * n], indices[2 * n + 1]), batch[n]);
+            }
+        }
+    }
+
+    @Test
+    public void testMatrixSourceMatchesSampleNTT() {
+
+        for (ParameterSet parameterSet : ParameterSet.values()) {
+            Sampler sampler = MLKEMSampler.create(parameterSet);
+            int k = parameterSet.getK();
+            byte[] rho = randomSeed();
+
+            for (boolean transpose : new boolean[] {false, true}) {
+                MatrixEntrySource source = sampler.matrixSource(rho, k, transpose);
+                int[] entry = new int[256];
+                for (int i = 0; i < k; i++) {
+                    for (int j = 0; j < k; j++) {
+                        source.fill(i, j, entry);
+                        byte a = (byte) (transpose ? i : j);
+                        byte b = (byte) (transpose ? j : i);
+                        assertArrayEquals(sampler.sampleNTT(rho, a, b), entry);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSampleNoiseVectorMatchesPrfAndCBD() {
+
+        for (ParameterSet parameterSet : ParameterSet.values()) {
+            Sampler sampler = MLKEMSampler.create(parameterSet);
+            Hash hash = MLKEMHash.create(parameterSet);
+            byte[] sigma = randomSeed();
+
+            // Every batch size up to two full groups of four, starting from a nonce other than zero
+            for (int count = 1; count <= 8; count++) {
+                int[][] eta1 = new int[count][256];
+                int[][] eta2 = new int[count][256];
+                sampler.sampleNoiseVector(sigma, 3, parameterSet.getEta1(), eta1);
+                sampler.sampleNoiseVector(sigma, 3, parameterSet.getEta2(), eta2);
+
+                for (int n = 0; n < count; n++) {
+                    byte nonce = (byte) (3 + n);
+                    assertArrayEquals(sampler.samplePolyCBDEta1(hash.prfEta1(sigma, nonce)), eta1[n]);
+                    assertArrayEquals(sampler.samplePolyCBDEta2(hash.prfEta2(sigma, nonce)), eta2[n]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSignedNoiseVectorMatchesNoiseVector() {
+
+        for (ParameterSet parameterSet : ParameterSet.values()) {
+            Sampler sampler = MLKEMSampler.create(parameterSet);
+            byte[] sigma = randomSeed();
+            int eta = parameterSet.getEta1();
+
+            try (MLKEMContext context = MLKEMContext.create(parameterSet)) {
+                for (int count = 1; count <= 8; count++) {
+                    int[][] expected = new int[count][256];
+                    short[][] signed = new short[count][256];
+                    sampler.sampleNoiseVector(sigma, 5, eta, expected);
+                    sampler.sampleNoiseVector(context, sigma, 5, eta, signed);
+
+                    // The signed coefficients are in [-eta, eta] and congruent to the mapped ones
+                    for (int n = 0; n < count; n++) {
+                        for (int j = 0; j < 256; j++) {
+                            assertTrue(Math.abs(signed[n][j]) <= eta);
+                            assertEquals(expected[n][j], Math.floorMod(signed[n][j], parameterSet.getQ()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSamplePolyCBDMatchesSpecification() {
+
+        int q = 3329;
+        for (ParameterSet parameterSet : ParameterSet.values()) {
+            Sampler sampler = MLKEMSampler.create(parameterSet);
+            int eta = parameterSet.getEta1();
+            byte[] input = new byte[64 * eta];
+            random.nextBytes(input);
+
+            // Algorithm 8 (SamplePolyCBD) of the FIPS203 Specification, one bit at a time
+            int[] expected = new int[256];
+            for (int i = 0; i < 256; i++) {
+                int x = 0;
+                int y = 0;
+                for (int j = 0; j < eta; j++) {
+                    int xBit = 2 * i * eta + j;
+                    int yBit = 2 * i * eta + eta + j;
+                    x += (input[xBit / 8] >> (xBit % 8)) & 1;
+                    y += (input[yBit / 8] >> (yBit % 8)) & 1;
+                }
+                expected[i] = Math.floorMod(x - y, q);
+            }
+
+            assertArrayEquals(expected, sampler.samplePolyCBDEta1(input));
+        }
+    }
+}
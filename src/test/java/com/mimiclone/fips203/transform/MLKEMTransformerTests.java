@@ -0,0 +1,392 @@
+package com.mimiclone.fips203.transform;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.barrett.BarrettReducer;
+import com.mimiclone.fips203.reduce.montgomery.MontgomeryReducer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MLKEMTransformerTests {
+
+    private static final int ITERATIONS = 100;
+
+    private final Random random = new Random(203);
+
+    private int[] randomPolynomial() {
+        int[] poly = new int[256];
+        for (int i = 0; i < poly.length; i++) {
+            poly[i] = random.nextInt(3329);
+        }
+        return poly;
+    }
+
+    @Test
+    public void testTransformRoundTrip() {
+
+        Transformer transformer = MLKEMTransformer.create(ParameterSet.ML_KEM_768);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            int[] poly = randomPolynomial();
+            assertArrayEquals(poly, transformer.inverse(transformer.transform(poly)));
+        }
+
+    }
+
+    @Test
+    public void testInPlaceTransformMatchesCopyingTransform() {
+
+        Transformer transformer = MLKEMTransformer.create(ParameterSet.ML_KEM_768);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+
+            int[] poly = randomPolynomial();
+
+            // Place the polynomial in the middle of a larger caller-owned buffer
+            int offset = 256 + i;
+            int[] buffer = new int[offset + 512];
+            buffer[offset - 1] = -1;
+            buffer[offset + 256] = -1;
+            System.arraycopy(poly, 0, buffer, offset, 256);
+
+            // Forward transform
+            int[] expected = transformer.transform(poly);
+            transformer.transformInPlace(buffer, offset);
+            for (int j = 0; j < 256; j++) {
+                assertEquals(expected[j], buffer[offset + j]);
+            }
+
+            // Inverse transform
+            transformer.inverseInPlace(buffer, offset);
+            for (int j = 0; j < 256; j++) {
+                assertEquals(poly[j], buffer[offset + j]);
+            }
+
+            // Neighbouring values must not have been touched
+            assertEquals(-1, buffer[offset - 1]);
+            assertEquals(-1, buffer[offset + 256]);
+
+        }
+
+    }
+
+    @Test
+    public void testInPlaceTransformRejectsShortBuffers() {
+
+        Transformer transformer = MLKEMTransformer.create(ParameterSet.ML_KEM_768);
+
+        assertThrows(IllegalArgumentException.class, () -> transformer.transformInPlace(new int[256], 1));
+        assertThrows(IllegalArgumentException.class, () -> transformer.inverseInPlace(new int[255], 0));
+        assertThrows(IllegalArgumentException.class, () -> transformer.transformInPlace(null, 0));
+
+    }
+
+    @Test
+    public void testMontgomeryTransformerMatchesBarrettTransformer() {
+
+        ParameterSet params = ParameterSet.ML_KEM_1024;
+        Transformer barrett = MLKEMTransformer.create(params, BarrettReducer.create(params));
+        Transformer montgomery = MLKEMTransformer.create(params, MontgomeryReducer.create(params));
+
+        for (int i = 0; i < ITERATIONS; i++) {
+
+            int[][] a = new int[params.getK()][];
+            int[][] b = new int[params.getK()][];
+            int[][][] matrix = new int[params.getK()][params.getK()][];
+            for (int j = 0; j < params.getK(); j++) {
+                a[j] = randomPolynomial();
+                b[j] = randomPolynomial();
+                for (int k = 0; k < params.getK(); k++) {
+                    matrix[j][k] = randomPolynomial();
+                }
+            }
+
+            assertArrayEquals(barrett.transform(a[0]), montgomery.transform(a[0]));
+            assertArrayEquals(barrett.inverse(a[0]), montgomery.inverse(a[0]));
+            assertArrayEquals(barrett.multiplyNTTs(a[0], b[0]), montgomery.multiplyNTTs(a[0], b[0]));
+            assertArrayEquals(barrett.vectorTransposeMultiply(a, b), montgomery.vectorTransposeMultiply(a, b));
+            assertArrayEquals(barrett.arrayAdd(a[0], b[0]), montgomery.arrayAdd(a[0], b[0]));
+            assertArrayEquals(barrett.arraySubtract(a[0], b[0]), montgomery.arraySubtract(a[0], b[0]));
+            assertArrayEquals(
+                    barrett.baseCaseMultiply(a[0][0], a[0][1], b[0][0], b[0][1], -17),
+                    montgomery.baseCaseMultiply(a[0][0], a[0][1], b[0][0], b[0][1], -17)
+            );
+
+            int[][] barrettProduct = barrett.matrixMultiply(matrix, a);
+            int[][] montgomeryProduct = montgomery.matrixMultiply(matrix, a);
+            for (int j = 0; j < params.getK(); j++) {
+                assertArrayEquals(barrettProduct[j], montgomeryProduct[j]);
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testMatrixMultiplyAccumulateMatchesUnfusedProduct() {
+
+        for (ParameterSet params : ParameterSet.values()) {
+
+            Transformer expected = MLKEMTransformer.create(params, BarrettReducer.create(params));
+            Transformer[] transformers = {
+                    expected,
+                    MLKEMTransformer.create(params, MontgomeryReducer.create(params)),
+                    TransformerFactory.create(params, "vector")
+            };
+
+            for (int i = 0; i < ITERATIONS; i++) {
+
+                int[][] b = new int[params.getK()][];
+                int[][] c = new int[params.getK()][];
+                int[][][] matrix = new int[params.getK()][params.getK()][];
+                for (int j = 0; j < params.getK(); j++) {
+                    b[j] = randomPolynomial();
+                    c[j] = randomPolynomial();
+                    for (int k = 0; k < params.getK(); k++) {
+                        matrix[j][k] = randomPolynomial();
+                    }
+                }
+
+                int[][] product = expected.matrixAdd(expected.matrixMultiply(matrix, b), c);
+                int[][] transposeProduct = expected.matrixAdd(
+                        expected.matrixMultiply(expected.matrixTranspose(matrix), b), c);
+
+                for (Transformer transformer : transformers) {
+
+                    int[][] out = new int[params.getK()][];
+                    int[][] transposeOut = new int[params.getK()][];
+                    for (int j = 0; j < params.getK(); j++) {
+                        out[j] = c[j].clone();
+                        transposeOut[j] = c[j].clone();
+                    }
+
+                    transformer.matrixMultiplyAccumulate(matrix, b, out);
+                    transformer.matrixTransposeMultiplyAccumulate(matrix, b, transposeOut);
+
+                    for (int j = 0; j < params.getK(); j++) {
+                        assertArrayEquals(product[j], out[j]);
+                        assertArrayEquals(transposeProduct[j], transposeOut[j]);
+                    }
+
+                    int[][] streamedOut = new int[params.getK()][];
+                    int[][] streamedTransposeOut = new int[params.getK()][];
+                    for (int j = 0; j < params.getK(); j++) {
+                        streamedOut[j] = c[j].clone();
+                        streamedTransposeOut[j] = c[j].clone();
+                    }
+
+                    transformer.matrixMultiplyAccumulate(
+                            (row, col, entry) -> System.arraycopy(matrix[row][col], 0, entry, 0, 256), b, streamedOut);
+                    transformer.matrixMultiplyAccumulate(
+                            (row, col, entry) -> System.arraycopy(matrix[col][row], 0, entry, 0, 256), b, streamedTransposeOut);
+
+                    for (int j = 0; j < params.getK(); j++) {
+                        assertArrayEquals(product[j], streamedOut[j]);
+                        assertArrayEquals(transposeProduct[j], streamedTransposeOut[j]);
+                    }
+
+                }
+
+            }
+
+        }
+
+    }
+
+    @Test
+    public void testLazyReductionTransformerMatchesTransformer() {
+
+        ParameterSet params = ParameterSet.ML_KEM_768;
+        Transformer expected = MLKEMTransformer.create(params, BarrettReducer.create(params));
+        LazyReductionTransformer lazy = LazyReductionTransformer.create(params);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+
+            int[] a = randomPolynomial();
+            int[] b = randomPolynomial();
+
+            assertArrayEquals(expected.transform(a), lazy.transform(a));
+            assertArrayEquals(expected.inverse(a), lazy.inverse(a));
+
+            int[] product = expected.inverse(expected.multiplyNTTs(expected.transform(a), expected.transform(b)));
+            assertArrayEquals(product, lazy.inverse(lazy.multiplyNTTs(lazy.transform(a), lazy.transform(b))));
+
+        }
+
+    }
+
+    /**
+     * A polynomial with coefficients in {@code (-q, q)}, as the lazily reduced kernels accept them
+     */
+    private short[] randomSignedPolynomial() {
+        short[] poly = new short[256];
+        for (int i = 0; i < poly.length; i++) {
+            poly[i] = (short) (random.nextInt(2 * 3329 - 1) - 3328);
+        }
+        return poly;
+    }
+
+    private static int[] canonical(short[] poly) {
+        int[] result = new int[poly.length];
+        for (int i = 0; i < poly.length; i++) {
+            result[i] = Math.floorMod(poly[i], 3329);
+        }
+        return result;
+    }
+
+    private static void assertBounded(int bound, short[] poly) {
+        for (short coefficient : poly) {
+            assertTrue(Math.abs(coefficient) <= bound, "Coefficient %d exceeds %d".formatted(coefficient, bound));
+        }
+    }
+
+    @Test
+    public void testShortPolynomialKernelsMatchTransformer() {
+
+        // ML-KEM-1024 accumulates the most products, so it comes closest to the bounds of a short
+        ParameterSet params = ParameterSet.ML_KEM_1024;
+        int k = params.getK();
+        Transformer expected = MLKEMTransformer.create(params, BarrettReducer.create(params));
+        LazyReductionTransformer lazy = LazyReductionTransformer.create(params);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+
+            int[][][] matrix = new int[k][k][];
+            int[][] vector = new int[k][];
+            short[][] b = new short[k][];
+            for (int j = 0; j < k; j++) {
+                vector[j] = randomPolynomial();
+                b[j] = randomSignedPolynomial();
+                for (int l = 0; l < k; l++) {
+                    matrix[j][l] = randomPolynomial();
+                }
+            }
+
+            // Forward transform
+            int[][] bHat = new int[k][];
+            for (int j = 0; j < k; j++) {
+                bHat[j] = expected.transform(canonical(b[j]));
+                lazy.transformInPlace(b[j], 0);
+                assertBounded(3328 / 2, b[j]);
+                assertArrayEquals(bHat[j], canonical(b[j]));
+            }
+
+            // Matrix product accumulated on top of existing values, from the matrix and from a source
+            int[][] expectedProduct = new int[k][];
+            short[][] product = new short[k][];
+            short[][] sourcedProduct = new short[k][];
+            for (int j = 0; j < k; j++) {
+                product[j] = randomSignedPolynomial();
+                sourcedProduct[j] = product[j].clone();
+                expectedProduct[j] = canonical(product[j]);
+            }
+            expected.matrixMultiplyAccumulate(matrix, bHat, expectedProduct);
+            lazy.matrixMultiplyAccumulate(matrix, b, product);
+            lazy.matrixMultiplyAccumulate((row, col, out) -> System.arraycopy(matrix[row][col], 0, out, 0, 256),
+                    b, sourcedProduct, new int[256]);
+            for (int j = 0; j < k; j++) {
+                assertBounded(3328, product[j]);
+                assertArrayEquals(expectedProduct[j], canonical(product[j]));
+                assertArrayEquals(product[j], sourcedProduct[j]);
+            }
+
+            // Vector product and inverse transform
+            int[] expectedInner = expected.arrayAdd(new int[256], vector[0]);
+            short[] inner = new short[256];
+            for (int j = 0; j < 256; j++) {
+                inner[j] = (short) vector[0][j];
+            }
+            expected.vectorTransposeMultiplyAccumulate(vector, bHat, expectedInner);
+            lazy.vectorTransposeMultiplyAccumulate(vector, b, inner);
+            assertBounded(3328, inner);
+            assertArrayEquals(expectedInner, canonical(inner));
+
+            expected.inverseInPlace(expectedInner, 0);
+            lazy.inverseInPlace(inner, 0);
+            assertBounded(3328, inner);
+            assertArrayEquals(expectedInner, canonical(inner));
+
+            // Unreduced addition and subtraction
+            short[] other = randomSignedPolynomial();
+            short[] sum = new short[256];
+            short[] difference = new short[256];
+            lazy.arrayAdd(inner, other, sum);
+            lazy.arraySubtract(inner, other, difference);
+            assertArrayEquals(expected.arrayAdd(expectedInner, canonical(other)), canonical(sum));
+            assertArrayEquals(expected.arraySubtract(expectedInner, canonical(other)), canonical(difference));
+
+        }
+
+    }
+
+    @Test
+    public void testFactoryFallsBackWithoutVectorApi() {
+
+        ParameterSet params = ParameterSet.ML_KEM_512;
+
+        Transformer vector = TransformerFactory.create(params, "vector");
+        if (TransformerFactory.isVectorApiAvailable()) {
+            assertEquals("VectorizedTransformer", vector.getClass().getSimpleName());
+        } else {
+            assertEquals(MLKEMTransformer.class, vector.getClass());
+        }
+
+        assertInstanceOf(LazyReductionTransformer.class, TransformerFactory.create(params, "lazy"));
+        assertThrows(TransformerException.class, () -> TransformerFactory.create(params, "bogus"));
+
+    }
+
+    @Test
+    public void testVectorizedTransformerMatchesTransformer() {
+
+        // Only meaningful when run with --add-modules jdk.incubator.vector (see the vectorTest task)
+        assumeTrue(TransformerFactory.isVectorApiAvailable());
+
+        ParameterSet params = ParameterSet.ML_KEM_1024;
+        Transformer expected = MLKEMTransformer.create(params, BarrettReducer.create(params));
+        Transformer vector = TransformerFactory.create(params, "vector");
+
+        for (int i = 0; i < ITERATIONS; i++) {
+
+            int[][] a = new int[params.getK()][];
+            int[][] b = new int[params.getK()][];
+            int[][][] matrix = new int[params.getK()][params.getK()][];
+            for (int j = 0; j < params.getK(); j++) {
+                a[j] = randomPolynomial();
+                b[j] = randomPolynomial();
+                for (int k = 0; k < params.getK(); k++) {
+                    matrix[j][k] = randomPolynomial();
+                }
+            }
+
+            assertArrayEquals(expected.transform(a[0]), vector.transform(a[0]));
+            assertArrayEquals(expected.inverse(a[0]), vector.inverse(a[0]));
+            assertArrayEquals(expected.multiplyNTTs(a[0], b[0]), vector.multiplyNTTs(a[0], b[0]));
+            assertArrayEquals(expected.vectorTransposeMultiply(a, b), vector.vectorTransposeMultiply(a, b));
+            assertArrayEquals(expected.arrayAdd(a[0], b[0]), vector.arrayAdd(a[0], b[0]));
+            assertArrayEquals(expected.arraySubtract(a[0], b[0]), vector.arraySubtract(a[0], b[0]));
+
+            int[][] expectedProduct = expected.matrixMultiply(matrix, a);
+            int[][] vectorProduct = vector.matrixMultiply(matrix, a);
+            for (int j = 0; j < params.getK(); j++) {
+                assertArrayEquals(expectedProduct[j], vectorProduct[j]);
+            }
+
+            int[] offsetPoly = new int[300];
+            System.arraycopy(a[1], 0, offsetPoly, 7, 256);
+            vector.transformInPlace(offsetPoly, 7);
+            assertArrayEquals(expected.transform(a[1]), Arrays.copyOfRange(offsetPoly, 7, 263));
+
+        }
+
+    }
+
+}
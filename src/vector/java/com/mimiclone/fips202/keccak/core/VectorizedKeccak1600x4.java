@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024 - Mimiclone, Inc.
+ *
+
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mimiclone.fips202.keccak.core;
+
+import static jdk.incubator.vector.VectorOperators.AND_NOT;
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link Keccak1600x4} that permutes the four interleaved states together, one 256-bit vector per lane index,
+ * with the (incubating) Java Vector API.  The round structure is the same as {@link Keccak1600#permute(long[], int)}.
+ * <p>
+ * This class must only be loaded when the {@code jdk.incubator.vector} module is present, and is only worth using
+ * when {@link #isSupported()}, which is why it should be obtained through {@link Keccak1600x4#create(int)} rather
+ * than created directly.
+ */
+final class VectorizedKeccak1600x4 extends Keccak1600x4 {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_256;
+
+	VectorizedKeccak1600x4(int bitCapacity, int rounds) {
+		super(bitCapacity, rounds);
+	}
+
+	/**
+	 * @return {@code true} if the hardware has vectors of at least 256 bits.  On narrower hardware (i.e. NEON or
+	 *         SSE only) the Vector API emulates {@link #SPECIES}, and this permutation is slower than the scalar one.
+	 */
+	static boolean isSupported() {
+		return LongVector.SPECIES_PREFERRED.vectorBitSize() >= SPECIES.vectorBitSize();
+	}
+
+	@Override
+	public void permute() {
+		LongVector a0 = LongVector.fromArray(SPECIES, state, 0);
+		LongVector a1 = LongVector.fromArray(SPECIES, state, 4);
+		LongVector a2 = LongVector.fromArray(SPECIES, state, 8);
+		LongVector a3 = LongVector.fromArray(SPECIES, state, 12);
+		LongVector a4 = LongVector.fromArray(SPECIES, state, 16);
+		LongVector a5 = LongVector.fromArray(SPECIES, state, 20);
+		LongVector a6 = LongVector.fromArray(SPECIES, state, 24);
+		LongVector a7 = LongVector.fromArray(SPECIES, state, 28);
+		LongVector a8 = LongVector.fromArray(SPECIES, state, 32);
+		LongVector a9 = LongVector.fromArray(SPECIES, state, 36);
+		LongVector a10 = LongVector.fromArray(SPECIES, state, 40);
+		LongVector a11 = LongVector.fromArray(SPECIES, state, 44);
+		LongVector a12 = LongVector.fromArray(SPECIES, state, 48);
+		LongVector a13 = LongVector.fromArray(SPECIES, state, 52);
+		LongVector a14 = LongVector.fromArray(SPECIES, state, 56);
+		LongVector a15 = LongVector.fromArray(SPECIES, state, 60);
+		LongVector a16 = LongVector.fromArray(SPECIES, state, 64);
+		LongVector a17 = LongVector.fromArray(SPECIES, state, 68);
+		LongVector a18 = LongVector.fromArray(SPECIES, state, 72);
+		LongVector a19 = LongVector.fromArray(SPECIES, state, 76);
+		LongVector a20 = LongVector.fromArray(SPECIES, state, 80);
+		LongVector a21 = LongVector.fromArray(SPECIES, state, 84);
+		LongVector a22 = LongVector.fromArray(SPECIES, state, 88);
+		LongVector a23 = LongVector.fromArray(SPECIES, state, 92);
+		LongVector a24 = LongVector.fromArray(SPECIES, state, 96);
+		for (int i=firstRound; i < Keccak1600.NR_ROUNDS; ++i) {
+			// Theta
+			LongVector c0 = a0.lanewise(XOR, a5).lanewise(XOR, a10).lanewise(XOR, a15).lanewise(XOR, a20);
+			LongVector c1 = a1.lanewise(XOR, a6).lanewise(XOR, a11).lanewise(XOR, a16).lanewise(XOR, a21);
+			LongVector c2 = a2.lanewise(XOR, a7).lanewise(XOR, a12).lanewise(XOR, a17).lanewise(XOR, a22);
+			LongVector c3 = a3.lanewise(XOR, a8).lanewise(XOR, a13).lanewise(XOR, a18).lanewise(XOR, a23);
+			LongVector c4 = a4.lanewise(XOR, a9).lanewise(XOR, a14).lanewise(XOR, a19).lanewise(XOR, a24);
+			LongVector d0 = c1.lanewise(ROL, 1).lanewise(XOR, c4);
+			LongVector d1 = c2.lanewise(ROL, 1).lanewise(XOR, c0);
+			LongVector d2 = c3.lanewise(ROL, 1).lanewise(XOR, c1);
+			LongVector d3 = c4.lanewise(ROL, 1).lanewise(XOR, c2);
+			LongVector d4 = c0.lanewise(ROL, 1).lanewise(XOR, c3);
+			// Theta applied while loading, then rho and pi
+			LongVector b0 = a0.lanewise(XOR, d0);
+			LongVector b10 = a1.lanewise(XOR, d1).lanewise(ROL, 1);
+			LongVector b20 = a2.lanewise(XOR, d2).lanewise(ROL, 62);
+			LongVector b5 = a3.lanewise(XOR, d3).lanewise(ROL, 28);
+			LongVector b15 = a4.lanewise(XOR, d4).lanewise(ROL, 27);
+			LongVector b16 = a5.lanewise(XOR, d0).lanewise(ROL, 36);
+			LongVector b1 = a6.lanewise(XOR, d1).lanewise(ROL, 44);
+			LongVector b11 = a7.lanewise(XOR, d2).lanewise(ROL, 6);
+			LongVector b21 = a8.lanewise(XOR, d3).lanewise(ROL, 55);
+			LongVector b6 = a9.lanewise(XOR, d4).lanewise(ROL, 20);
+			LongVector b7 = a10.lanewise(XOR, d0).lanewise(ROL, 3);
+			LongVector b17 = a11.lanewise(XOR, d1).lanewise(ROL, 10);
+			LongVector b2 = a12.lanewise(XOR, d2).lanewise(ROL, 43);
+			LongVector b12 = a13.lanewise(XOR, d3).lanewise(ROL, 25);
+			LongVector b22 = a14.lanewise(XOR, d4).lanewise(ROL, 39);
+			LongVector b23 = a15.lanewise(XOR, d0).lanewise(ROL, 41);
+			LongVector b8 = a16.lanewise(XOR, d1).lanewise(ROL, 45);
+			LongVector b18 = a17.lanewise(XOR, d2).lanewise(ROL, 15);
+			LongVector b3 = a18.lanewise(XOR, d3).lanewise(ROL, 21);
+			LongVector b13 = a19.lanewise(XOR, d4).lanewise(ROL, 8);
+			LongVector b14 = a20.lanewise(XOR, d0).lanewise(ROL, 18);
+			LongVector b24 = a21.lanewise(XOR, d1).lanewise(ROL, 2);
+			LongVector b9 = a22.lanewise(XOR, d2).lanewise(ROL, 61);
+			LongVector b19 = a23.lanewise(XOR, d3).lanewise(ROL, 56);
+			LongVector b4 = a24.lanewise(XOR, d4).lanewise(ROL, 14);
+			// Chi, where b AND_NOT c is b & ~c
+			a0 = b0.lanewise(XOR, b2.lanewise(AND_NOT, b1));
+			a1 = b1.lanewise(XOR, b3.lanewise(AND_NOT, b2));
+			a2 = b2.lanewise(XOR, b4.lanewise(AND_NOT, b3));
+			a3 = b3.lanewise(XOR, b0.lanewise(AND_NOT, b4));
+			a4 = b4.lanewise(XOR, b1.lanewise(AND_NOT, b0));
+			a5 = b5.lanewise(XOR, b7.lanewise(AND_NOT, b6));
+			a6 = b6.lanewise(XOR, b8.lanewise(AND_NOT, b7));
+			a7 = b7.lanewise(XOR, b9.lanewise(AND_NOT, b8));
+			a8 = b8.lanewise(XOR, b5.lanewise(AND_NOT, b9));
+			a9 = b9.lanewise(XOR, b6.lanewise(AND_NOT, b5));
+			a10 = b10.lanewise(XOR, b12.lanewise(AND_NOT, b11));
+			a11 = b11.lanewise(XOR, b13.lanewise(AND_NOT, b12));
+			a12 = b12.lanewise(XOR, b14.lanewise(AND_NOT, b13));
+			a13 = b13.lanewise(XOR, b10.lanewise(AND_NOT, b14));
+			a14 = b14.lanewise(XOR, b11.lanewise(AND_NOT, b10));
+			a15 = b15.lanewise(XOR, b17.lanewise(AND_NOT, b16));
+			a16 = b16.lanewise(XOR, b18.lanewise(AND_NOT, b17));
+			a17 = b17.lanewise(XOR, b19.lanewise(AND_NOT, b18));
+			a18 = b18.lanewise(XOR, b15.lanewise(AND_NOT, b19));
+			a19 = b19.lanewise(XOR, b16.lanewise(AND_NOT, b15));
+			a20 = b20.lanewise(XOR, b22.lanewise(AND_NOT, b21));
+			a21 = b21.lanewise(XOR, b23.lanewise(AND_NOT, b22));
+			a22 = b22.lanewise(XOR, b24.lanewise(AND_NOT, b23));
+			a23 = b23.lanewise(XOR, b20.lanewise(AND_NOT, b24));
+			a24 = b24.lanewise(XOR, b21.lanewise(AND_NOT, b20));
+			// Iota
+			a0 = a0.lanewise(XOR, Keccak1600.KeccackRoundConstants[i]);
+		}
+		a0.intoArray(state, 0);
+		a1.intoArray(state, 4);
+		a2.intoArray(state, 8);
+		a3.intoArray(state, 12);
+		a4.intoArray(state, 16);
+		a5.intoArray(state, 20);
+		a6.intoArray(state, 24);
+		a7.intoArray(state, 28);
+		a8.intoArray(state, 32);
+		a9.intoArray(state, 36);
+		a10.intoArray(state, 40);
+		a11.intoArray(state, 44);
+		a12.intoArray(state, 48);
+		a13.intoArray(state, 52);
+		a14.intoArray(state, 56);
+		a15.intoArray(state, 60);
+		a16.intoArray(state, 64);
+		a17.intoArray(state, 68);
+		a18.intoArray(state, 72);
+		a19.intoArray(state, 76);
+		a20.intoArray(state, 80);
+		a21.intoArray(state, 84);
+		a22.intoArray(state, 88);
+		a23.intoArray(state, 92);
+		a24.intoArray(state, 96);
+	}
+}
@@ -0,0 +1,236 @@
+package com.mimiclone.fips203.transform;
+
+import com.mimiclone.fips203.ParameterSet;
+import com.mimiclone.fips203.reduce.montgomery.MontgomeryReducer;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link Transformer} that uses the (incubating) Java Vector API to process several coefficients per instruction.
+ * <p>
+ * All modular arithmetic is performed with Montgomery reduction in 32-bit lanes, which only requires lane-wise
+ * multiplication, addition, subtraction and shifts.  The butterfly layers of the forward and inverse transforms
+ * are vectorized whenever a layer's {@code len} is at least the number of lanes in the preferred species (8 on
+ * AVX2 hardware) and the remaining layers fall back to the scalar implementation.  Base case multiplication,
+ * and with it every matrix and vector product, processes interleaved coefficient pairs by swapping adjacent
+ * lanes.
+ * <p>
+ * This class must only be loaded when the {@code jdk.incubator.vector} module is present, which is why it should
+ * be obtained through {@link TransformerFactory} rather than created directly.
+ */
+public class VectorizedTransformer extends MLKEMTransformer {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    private static final int MONTGOMERY_SHIFT = 16;
+
+    /**
+     * Swaps each pair of adjacent lanes, so that lane {@code 2i} holds the value of lane {@code 2i+1} and vice versa
+     */
+    private static final VectorShuffle<Integer> SWAP_PAIRS = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+
+    /**
+     * Selects the odd lanes of a vector
+     */
+    private static final VectorMask<Integer> ODD_LANES = VectorMask.fromLong(SPECIES, 0xAAAAAAAAAAAAAAAAL);
+
+    private final int q;
+
+    private final int qInverse;
+
+    /**
+     * Per-lane multipliers used during base case multiplication.  Even lanes hold {@code 1} and odd lanes hold the
+     * gamma value for the coefficient pair, both in Montgomery form.
+     */
+    private final int[] gammaLanes;
+
+    protected VectorizedTransformer(ParameterSet parameterSet, MontgomeryReducer reducer) {
+        super(parameterSet, reducer);
+        this.q = parameterSet.getQ();
+        int inverse = q;
+        for (int i = 0; i < 3; i++) {
+            inverse *= 2 - q * inverse;
+        }
+        this.qInverse = inverse & 0xFFFF;
+        this.gammaLanes = new int[INPUT_OUTPUT_LENGTH];
+        for (int i = 0; i < 128; i++) {
+            gammaLanes[2*i] = reducer.toDomain(1);
+            gammaLanes[2*i+1] = nttGammas[i];
+        }
+    }
+
+    public static VectorizedTransformer create(ParameterSet parameterSet) {
+        return new VectorizedTransformer(parameterSet, MontgomeryReducer.create(parameterSet));
+    }
+
+    /**
+     * Lane-wise Montgomery reduction of values with magnitude below {@code q*2^15} into {@code [0, q)}.
+     */
+    private IntVector montgomeryReduce(IntVector a) {
+
+        // Low 16 bits of a*q^-1, sign extended
+        IntVector t = a.mul(qInverse)
+                .lanewise(VectorOperators.LSHL, MONTGOMERY_SHIFT)
+                .lanewise(VectorOperators.ASHR, MONTGOMERY_SHIFT);
+
+        // Exact division by R, leaving a value in (-q, q)
+        IntVector r = a.sub(t.mul(q)).lanewise(VectorOperators.ASHR, MONTGOMERY_SHIFT);
+
+        // Masked correction into [0, q)
+        return r.add(r.lanewise(VectorOperators.ASHR, 31).and(q));
+    }
+
+    /**
+     * Lane-wise {@code (a + b) mod q} for values in {@code [0, q)}.
+     */
+    private IntVector addMod(IntVector a, IntVector b) {
+        IntVector r = a.add(b).sub(q);
+        return r.add(r.lanewise(VectorOperators.ASHR, 31).and(q));
+    }
+
+    /**
+     * Lane-wise {@code (a - b) mod q} for values in {@code [0, q)}.
+     */
+    private IntVector subtractMod(IntVector a, IntVector b) {
+        IntVector r = a.sub(b);
+        return r.add(r.lanewise(VectorOperators.ASHR, 31).and(q));
+    }
+
+    @Override
+    public void transformInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        validateInput(poly, offset);
+
+        for (int i = 0; i < transformLenVals.length; i++) {
+
+            // Retrieve pre-calculated loop values
+            int len = transformLenVals[i];
+            int start = offset + transformStartVals[i];
+            int zeta = transformZetas[i];
+
+            if (len >= LANES) {
+
+                // Vectorized butterflies
+                for (int j = start; j < start + len; j += LANES) {
+                    IntVector lo = IntVector.fromArray(SPECIES, poly, j);
+                    IntVector hi = IntVector.fromArray(SPECIES, poly, j + len);
+                    IntVector t = montgomeryReduce(hi.mul(zeta));
+                    subtractMod(lo, t).intoArray(poly, j + len);
+                    addMod(lo, t).intoArray(poly, j);
+                }
+
+            } else {
+
+                // Scalar butterflies for the layers narrower than a vector
+                for (int j = start; j < start + len; j++) {
+                    int t = reducer.multiply(zeta, poly[j + len]);
+                    poly[j + len] = reducer.subtract(poly[j], t);
+                    poly[j] = reducer.add(poly[j], t);
+                }
+
+            }
+        }
+
+    }
+
+    @Override
+    public void inverseInPlace(int[] poly, int offset) {
+
+        // Validate the input
+        validateInput(poly, offset);
+
+        for (int i = 0; i < inverseLenVals.length; i++) {
+
+            // Retrieve pre-calculated loop values
+            int len = inverseLenVals[i];
+            int start = offset + inverseStartVals[i];
+            int zeta = inverseZetas[i];
+
+            if (len >= LANES) {
+
+                // Vectorized butterflies
+                for (int j = start; j < start + len; j += LANES) {
+                    IntVector lo = IntVector.fromArray(SPECIES, poly, j);
+                    IntVector hi = IntVector.fromArray(SPECIES, poly, j + len);
+                    addMod(lo, hi).intoArray(poly, j);
+                    montgomeryReduce(subtractMod(hi, lo).mul(zeta)).intoArray(poly, j + len);
+                }
+
+            } else {
+
+                // Scalar butterflies for the layers narrower than a vector
+                for (int j = start; j < start + len; j++) {
+                    int t = poly[j];
+                    poly[j] = reducer.add(t, poly[j + len]);
+                    poly[j + len] = reducer.multiply(zeta, reducer.subtract(poly[j + len], t));
+                }
+
+            }
+        }
+
+        // Multiply all entries by 128^-1
+        for (int i = offset; i < offset + INPUT_OUTPUT_LENGTH; i += LANES) {
+            montgomeryReduce(IntVector.fromArray(SPECIES, poly, i).mul(inverseScale)).intoArray(poly, i);
+        }
+
+    }
+
+    @Override
+    void accumulateProduct(int[] fHat, int[] gHat, int[] accumulator) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i += LANES) {
+
+            IntVector a = IntVector.fromArray(SPECIES, fHat, i);
+            IntVector b = IntVector.fromArray(SPECIES, gHat, i);
+
+            // [a0*b0, a1*b1*gamma, ...] and [a0*b1, a1*b0, ...], each scaled by R^-1
+            IntVector straight = montgomeryReduce(montgomeryReduce(a.mul(b)).mul(IntVector.fromArray(SPECIES, gammaLanes, i)));
+            IntVector crossed = montgomeryReduce(a.mul(b.rearrange(SWAP_PAIRS)));
+
+            // Regroup into [a0*b0, a1*b0, ...] and [a0*b1, a1*b1*gamma, ...] and add the swapped pairs, giving
+            // c0 = a0*b0 + a1*b1*gamma in the even lanes and c1 = a1*b0 + a0*b1 in the odd lanes
+            IntVector even = straight.blend(crossed, ODD_LANES);
+            IntVector odd = crossed.blend(straight, ODD_LANES);
+            IntVector.fromArray(SPECIES, accumulator, i)
+                    .add(even)
+                    .add(odd.rearrange(SWAP_PAIRS))
+                    .intoArray(accumulator, i);
+
+        }
+    }
+
+    @Override
+    void correctProduct(int[] accumulator) {
+        for (int i = 0; i < INPUT_OUTPUT_LENGTH; i += LANES) {
+            montgomeryReduce(IntVector.fromArray(SPECIES, accumulator, i).mul(productCorrection)).intoArray(accumulator, i);
+        }
+    }
+
+    @Override
+    public void arrayAdd(int[] a, int[] b, int[] out) {
+        int i = 0;
+        for (; i < SPECIES.loopBound(a.length); i += LANES) {
+            addMod(IntVector.fromArray(SPECIES, a, i), IntVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < a.length; i++) {
+            out[i] = reducer.add(a[i], b[i]);
+        }
+    }
+
+    @Override
+    public void arraySubtract(int[] a, int[] b, int[] out) {
+        int i = 0;
+        for (; i < SPECIES.loopBound(a.length); i += LANES) {
+            subtractMod(IntVector.fromArray(SPECIES, a, i), IntVector.fromArray(SPECIES, b, i)).intoArray(out, i);
+        }
+        for (; i < a.length; i++) {
+            out[i] = reducer.subtract(a[i], b[i]);
+        }
+    }
+
+}